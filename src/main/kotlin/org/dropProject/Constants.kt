@@ -29,6 +29,8 @@ object Constants {
     const val COOLOFF_FOR_STRUCTURE_OR_COMPILATION = 2 // minutes
 
     const val TOO_MUCH_OUTPUT_THRESHOLD = 2500 // more than 2500 println's is too much
+    const val TOO_MUCH_OUTPUT_MAX_LINES = 50_000 // including stacktraces, which don't count for the threshold
+    const val TOO_MUCH_OUTPUT_TAIL_LINES = 50 // lines kept from the end of an output that was trimmed
 
     const val CACHE_ARCHIVED_ASSIGNMENTS_KEY = "archivedAssignmentsCache"
 
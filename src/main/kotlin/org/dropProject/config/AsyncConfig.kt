@@ -19,6 +19,7 @@
  */
 package org.dropproject.config
 
+import org.dropproject.services.BuildProcessMonitor
 import org.dropproject.services.CancellableTaskScheduler
 import org.dropproject.services.MyAsyncUncaughtExceptionHandler
 import org.slf4j.LoggerFactory
@@ -30,14 +31,19 @@ import org.springframework.context.annotation.Profile
 import org.springframework.scheduling.annotation.AsyncConfigurer
 import org.springframework.scheduling.annotation.EnableAsync
 import org.springframework.scheduling.annotation.EnableScheduling
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor
 import java.util.concurrent.Executor
+import java.util.concurrent.RejectedExecutionException
+import java.util.concurrent.RejectedExecutionHandler
+import java.util.concurrent.ThreadPoolExecutor
 
 @Configuration
 @EnableAsync
 @EnableScheduling
 @Profile("!test")
 class AsyncConfig(
-    val dropProjectProperties: DropProjectProperties
+    val dropProjectProperties: DropProjectProperties,
+    val buildProcessMonitor: BuildProcessMonitor
 ) : AsyncConfigurer, org.dropproject.config.AsyncConfigurer {
 
     var asyncTimeout: Int = dropProjectProperties.async.timeout
@@ -47,7 +53,7 @@ class AsyncConfig(
             LOG.info("Changed async execution timeout to $value seconds")
         }
 
-    var asyncThreadPoolSize: Int = 1
+    var asyncThreadPoolSize: Int = defaultThreadPoolSize()
         set(value) {
             field = value
             scheduler.poolSize = value
@@ -69,12 +75,64 @@ class AsyncConfig(
     override fun getAsyncExecutor(): Executor? {
         LOG.info("Initializing task scheduler")
 
-        scheduler = CancellableTaskScheduler(dropProjectProperties.async.timeout * 1000L)
-        scheduler.poolSize = 1
+        // when a build times out, its maven processes are killed (interrupting the thread wouldn't stop them)
+        scheduler = CancellableTaskScheduler(dropProjectProperties.async.timeout * 1000L) { thread ->
+            val numKilled = buildProcessMonitor.killBuildsOfThread(thread)
+            LOG.warn("Task running in ${thread.name} timed out (killed ${numKilled} builds)")
+        }
+        scheduler.poolSize = asyncThreadPoolSize
         scheduler.initialize()
+        LOG.info("Building up to $asyncThreadPoolSize submissions at the same time")
+
+        val maxConcurrentPerAssignment = dropProjectProperties.build.maxConcurrentPerAssignment
+        if (maxConcurrentPerAssignment >= asyncThreadPoolSize) {
+            LOG.warn("drop-project.build.max-concurrent-per-assignment ($maxConcurrentPerAssignment) is not lower " +
+                    "than the thread pool size, so it doesn't limit the builds of each assignment")
+        }
         return scheduler
     }
 
+    private fun defaultThreadPoolSize(): Int {
+        val threadPoolSize = dropProjectProperties.build.threadPoolSize
+        return if (threadPoolSize > 0) threadPoolSize else Runtime.getRuntime().availableProcessors()
+    }
+
+    /**
+     * Unzips the uploaded submissions (the first stage of the ingestion, see SubmissionService.uploadSubmission)
+     */
+    @Bean(name=["unzipExecutor"])
+    fun unzipExecutor(): Executor {
+        // when its queue is full, new uploads are rejected (see SubmissionService.uploadSubmission)
+        return ingestionExecutor("unzip-", dropProjectProperties.ingestion.unzipThreads,
+            ThreadPoolExecutor.AbortPolicy())
+    }
+
+    /**
+     * Checks the structure of the unzipped submissions and mavenizes them (the second stage of the ingestion)
+     */
+    @Bean(name=["mavenizeExecutor"])
+    fun mavenizeExecutor(): Executor {
+        // when its queue is full, the unzip threads wait for room, so the unzip queue fills up in turn
+        return ingestionExecutor("mavenize-", dropProjectProperties.ingestion.mavenizeThreads) { task, executor ->
+            if (executor.isShutdown) {
+                throw RejectedExecutionException("The mavenize executor was shut down")
+            }
+            executor.queue.put(task)
+        }
+    }
+
+    private fun ingestionExecutor(threadNamePrefix: String, numThreads: Int,
+                                  rejectedExecutionHandler: RejectedExecutionHandler): ThreadPoolTaskExecutor {
+        val executor = ThreadPoolTaskExecutor()
+        executor.corePoolSize = numThreads
+        executor.maxPoolSize = numThreads
+        executor.queueCapacity = dropProjectProperties.ingestion.queueCapacity
+        executor.setThreadNamePrefix(threadNamePrefix)
+        executor.setRejectedExecutionHandler(rejectedExecutionHandler)
+        executor.initialize()
+        return executor
+    }
+
     override fun getTimeout(): Int {
         return asyncTimeout
     }
@@ -43,6 +43,16 @@ class AsyncTestConfig : AsyncConfigurer, org.dropproject.config.AsyncConfigurer
         return SyncTaskExecutor()
     }
 
+    @Bean(name=["unzipExecutor"])
+    fun unzipExecutor(): Executor {
+        return SyncTaskExecutor()
+    }
+
+    @Bean(name=["mavenizeExecutor"])
+    fun mavenizeExecutor(): Executor {
+        return SyncTaskExecutor()
+    }
+
     override fun getTimeout(): Int {
         return 0
     }
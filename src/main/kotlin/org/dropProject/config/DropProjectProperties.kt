@@ -51,6 +51,15 @@ data class DropProjectProperties(
     /** Async configuration */
     val async: Async = Async(),
     
+    /** Build scheduling configuration */
+    val build: Build = Build(),
+    
+    /** Upload ingestion (unzip and mavenize) configuration */
+    val ingestion: Ingestion = Ingestion(),
+    
+    /** Remote build workers configuration */
+    val workers: Workers = Workers(),
+    
     /** GitHub integration */
     val github: GitHub = GitHub(),
     
@@ -70,12 +79,16 @@ data class DropProjectProperties(
         /** Location for upload submissions */
         val uploadLocation: String = "submissions/upload",
         /** Location for git submissions */
-        val gitLocation: String = "submissions/git"
+        val gitLocation: String = "submissions/git",
+        /** Compress the build reports (maven output, JUnit and Jacoco reports) stored in the database */
+        val compressReports: Boolean = true
     )
 
     data class Assignments(
         /** Root location for assignments */
-        val rootLocation: String = "assignments"
+        val rootLocation: String = "assignments",
+        /** Location for the compiled teacher tests of each assignment */
+        val compiledTestsLocation: String = "assignments-compiled-tests"
     )
 
     data class MavenizedProjects(
@@ -89,7 +102,26 @@ data class DropProjectProperties(
         /** Maven local repository */
         val repository: String = "",
         /** Force Maven to use the same Java version running Drop Project */
-        val useCurrentJdk: Boolean = true
+        val useCurrentJdk: Boolean = true,
+        /** Pool of long-lived build JVMs (Maven Daemon) */
+        val daemon: MavenDaemon = MavenDaemon()
+    )
+
+    data class MavenDaemon(
+        /** Run builds on warm Maven Daemon (mvnd) JVMs instead of forking a cold maven for each submission */
+        val enabled: Boolean = false,
+        /** Maven Daemon home directory (the one containing bin/mvnd) */
+        val home: String = "",
+        /** Number of daemons started when DP boots, so that the first submissions already find warm JVMs */
+        val warmUpDaemons: Int = 1,
+        /** Daemons are stopped (and replaced by fresh ones) after this number of builds */
+        val recycleAfterBuilds: Int = 200,
+        /** Daemons are also recycled when the machine's free memory drops below this value (in Mb) */
+        val minFreeMemoryMb: Int = 512,
+        /** Max heap of each daemon JVM */
+        val maxHeapSize: String = "1g",
+        /** Daemons that are idle for longer than this are stopped by mvnd itself */
+        val idleTimeout: String = "3h"
     )
 
     data class Admin(
@@ -102,6 +134,53 @@ data class DropProjectProperties(
         val timeout: Int = 180
     )
 
+    data class Build(
+        /** Number of builds running at the same time (0 means the number of available processors) */
+        val threadPoolSize: Int = 0,
+        /** Maximum number of builds of the same assignment running at the same time (0 means no limit) */
+        val maxConcurrentPerAssignment: Int = 0,
+        /** Time in seconds after which a build whose node stopped renewing its lease is considered abandoned */
+        val leaseSeconds: Int = 60,
+        /** Maximum number of times a build is attempted (when it fails unexpectedly or its node dies) */
+        val maxAttempts: Int = 2,
+        /** Maximum number of builds of a bulk rebuild that are in the queue (or running) at the same time */
+        val bulkRebuildConcurrency: Int = 4,
+        /** Number of builds waiting in the queue from which each student is throttled (0 means no throttling) */
+        val throttleQueueDepth: Int = 0,
+        /** Minimum time in seconds between two submissions of the same student, while throttled */
+        val throttleIntervalSeconds: Int = 300,
+        /** Maximum number of build reports kept in memory, to show them without parsing them again (0 disables it) */
+        val reportCacheSize: Int = 500
+    )
+
+    data class Ingestion(
+        /** Number of threads unzipping the uploaded submissions */
+        val unzipThreads: Int = 2,
+        /** Number of threads checking the structure of the unzipped submissions and mavenizing them */
+        val mavenizeThreads: Int = 2,
+        /** Maximum number of submissions waiting for each stage. When the unzip queue is full, uploads are rejected */
+        val queueCapacity: Int = 100,
+        /** Seconds that the students are told to wait (Retry-After) when their upload is rejected */
+        val retryAfterSeconds: Int = 30
+    )
+
+    data class Workers(
+        /** Leave the builds to remote workers instead of running them on this node */
+        val remoteBuilds: Boolean = false,
+        /** Shared secret that the workers use to authenticate against the web node */
+        val token: String = "",
+        /** Url of the web node. When set, this node runs in worker mode, pulling builds from there */
+        val coordinatorUrl: String = "",
+        /** Identifies this worker (defaults to the host name) */
+        val id: String = "",
+        /** Number of builds that this worker runs at the same time */
+        val concurrency: Int = 1,
+        /** Time in milliseconds that an idle worker waits before asking for another build */
+        val pollInterval: Long = 5000,
+        /** Folder where the worker unpacks the projects it builds */
+        val workFolder: String = "worker-builds"
+    )
+
     data class GitHub(
         /** GitHub token for repository access (optional) */
         val token: String = "no-token"
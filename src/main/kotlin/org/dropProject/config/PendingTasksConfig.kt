@@ -23,6 +23,7 @@ import org.springframework.context.annotation.Bean
 import org.springframework.context.annotation.Configuration
 import org.springframework.context.annotation.Scope
 import java.lang.Exception
+import java.util.concurrent.ConcurrentHashMap
 
 /**
  * Used to signal errors on pending tasks
@@ -35,7 +36,7 @@ data class PendingTaskError(val exception: Throwable)
 class PendingTasks {
 
     // key is the id of the task, value can be anything but if it is an error, will be PendingTaskError
-    val pendingTasks = HashMap<String,Any>()
+    val pendingTasks = ConcurrentHashMap<String,Any>()
 
     fun get(taskId: String) : Any? {
         return pendingTasks[taskId]
@@ -0,0 +1,60 @@
+/*-
+ * ========================LICENSE_START=================================
+ * DropProject
+ * %%
+ * Copyright (C) 2019 - 2026 Pedro Alves
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package org.dropproject.config
+
+import jakarta.servlet.FilterChain
+import jakarta.servlet.http.HttpServletRequest
+import jakarta.servlet.http.HttpServletResponse
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken
+import org.springframework.security.core.authority.SimpleGrantedAuthority
+import org.springframework.security.core.context.SecurityContextHolder
+import org.springframework.web.filter.OncePerRequestFilter
+import java.security.MessageDigest
+
+/**
+ * Filter that validates the shared token sent by remote build workers.
+ */
+class WorkerTokenFilter(
+    private val dropProjectProperties: DropProjectProperties
+) : OncePerRequestFilter() {
+
+    override fun doFilterInternal(
+        request: HttpServletRequest,
+        response: HttpServletResponse,
+        filterChain: FilterChain
+    ) {
+        val authHeader = request.getHeader("Authorization")
+        val expectedToken = dropProjectProperties.workers.token
+
+        // without a configured token, no worker is accepted
+        if (expectedToken.isNotEmpty() && authHeader?.startsWith("Bearer ") == true) {
+            val token = authHeader.substring(7)
+
+            if (MessageDigest.isEqual(token.toByteArray(), expectedToken.toByteArray())) {
+                val authentication = UsernamePasswordAuthenticationToken(
+                    request.getParameter("workerId") ?: "worker", null, listOf(SimpleGrantedAuthority("ROLE_WORKER"))
+                )
+                SecurityContextHolder.getContext().authentication = authentication
+            }
+        }
+
+        filterChain.doFilter(request, response)
+    }
+}
@@ -22,10 +22,19 @@ package org.dropproject.controllers
 import org.dropproject.config.AsyncConfigurer
 import org.dropproject.dao.AssignmentTag
 import org.dropproject.dao.SubmissionStatus
+import org.dropproject.data.BuildSystemStatus
+import org.dropproject.data.QueuedBuildInfo
+import org.dropproject.data.RunningBuildInfo
 import org.dropproject.forms.AdminDashboardForm
 import org.dropproject.repository.AssignmentTagRepository
 import org.dropproject.repository.SubmissionRepository
+import org.dropproject.services.BuildMetrics
+import org.dropproject.services.BuildProcessMonitor
+import org.dropproject.services.BuildReportCache
+import org.dropproject.services.BuildScheduler
 import org.dropproject.services.MavenInvoker
+import org.dropproject.services.ReportCompressor
+import org.dropproject.services.SubmissionEvents
 import org.dropproject.services.SubmissionService
 import org.slf4j.LoggerFactory
 import org.springframework.stereotype.Controller
@@ -48,7 +57,13 @@ class AdminController(val mavenInvoker: MavenInvoker,
                       val assignmentRepository: AssignmentRepository,
                       val assignmentTagRepository: AssignmentTagRepository,
                       val asyncConfigurer: AsyncConfigurer,
-                      val submissionService: SubmissionService) {
+                      val submissionService: SubmissionService,
+                      val buildScheduler: BuildScheduler,
+                      val buildProcessMonitor: BuildProcessMonitor,
+                      val buildMetrics: BuildMetrics,
+                      val buildReportCache: BuildReportCache,
+                      val reportCompressor: ReportCompressor,
+                      val submissionEvents: SubmissionEvents) {
 
     val LOG = LoggerFactory.getLogger(this.javaClass.name)
 
@@ -63,9 +78,50 @@ class AdminController(val mavenInvoker: MavenInvoker,
             showMavenOutput = mavenInvoker.showMavenOutput,
             asyncTimeout = asyncConfigurer.getTimeout(),
             threadPoolSize = asyncConfigurer.getThreadPoolSize())
+        model["buildQueueStats"] = buildScheduler.stats()
+        model["buildSystemStatus"] = buildSystemStatus()
         return "admin-dashboard"
     }
 
+    /**
+     * Controller that returns the current state of the build system (see [BuildSystemStatus]), used to refresh the
+     * admin dashboard.
+     * @return A [BuildSystemStatus]
+     */
+    @GetMapping("/buildSystem", produces = ["application/json"])
+    @ResponseBody
+    fun getBuildSystemStatus(): BuildSystemStatus {
+        return buildSystemStatus()
+    }
+
+    private fun buildSystemStatus(): BuildSystemStatus {
+        val now = System.currentTimeMillis()
+
+        val queued = buildScheduler.queuedJobsList().map {
+            QueuedBuildInfo(it.submissionId, it.assignmentId, it.priority.description, (now - it.enqueuedAt.time) / 1000)
+        }
+
+        // the jobs running on this node are matched with their processes. The assignment checks aren't jobs
+        val localBuilds = buildProcessMonitor.runningBuilds()
+        val runningJobs = buildScheduler.runningJobsList()
+        val running = runningJobs.map { job ->
+            val localBuild = localBuilds.firstOrNull { it.submissionId == job.submissionId }
+            val usage = localBuild?.let { buildProcessMonitor.resourceUsage(it) }
+            RunningBuildInfo(job.submissionId, job.assignmentId, job.leaseOwner ?: buildScheduler.nodeId,
+                (now - (job.startedAt ?: job.enqueuedAt).time) / 1000, localBuild?.pid, usage?.cpuSeconds,
+                usage?.memoryMb)
+        } + localBuilds.filter { build -> runningJobs.none { it.submissionId == build.submissionId } }.map { build ->
+            val usage = buildProcessMonitor.resourceUsage(build)
+            RunningBuildInfo(build.submissionId, null, buildScheduler.nodeId, build.runningSeconds, build.pid,
+                usage?.cpuSeconds, usage?.memoryMb)
+        }
+
+        return BuildSystemStatus(queued, running,
+            finishedLastMinute = buildMetrics.finishedBuildsSince(BuildMetrics.ONE_MINUTE, now),
+            finishedLastHour = buildMetrics.finishedBuildsSince(BuildMetrics.ONE_HOUR, now),
+            latencies = buildMetrics.latencies(now))
+    }
+
     /**
      * Controller to handle HTTP POST requests related with the admin dashboard.
      * @param modelMap is a [ModelMap] that will be populated with the information to use in a View
@@ -88,6 +144,17 @@ class AdminController(val mavenInvoker: MavenInvoker,
         return "redirect:/admin/dashboard"
     }
 
+    /**
+     * Exports the time spent in each stage of the submissions (see [BuildMetrics]) and the usage of the
+     * [BuildReportCache], in the Prometheus text format.
+     * @return A String with the metrics
+     */
+    @GetMapping("/metrics", produces = ["text/plain; version=0.0.4; charset=utf-8"])
+    @ResponseBody
+    fun metrics(): String {
+        return buildMetrics.prometheusText() + buildReportCache.prometheusText() + reportCompressor.prometheusText()
+    }
+
     /**
      * Controller to handle requests related with the list of pending assignments.
      * @model is a [ModelMap] that will be populated with the information to use in a View
@@ -111,12 +178,17 @@ class AdminController(val mavenInvoker: MavenInvoker,
                         redirectAttributes: RedirectAttributes): String {
 
         val submission = submissionRepository.findById(submissionId).get()
+        buildScheduler.cancel(submissionId)  // if it's still waiting in the queue, it will no longer be built
+        // if it's running here, its processes are killed. If it's running on a remote worker, its result is discarded
+        val wasRunning = buildProcessMonitor.abort(submissionId) || buildScheduler.abandonRemoteBuild(submissionId)
         submission.setStatus(SubmissionStatus.ABORTED_BY_TIMEOUT)
         submissionRepository.save(submission)
+        submissionEvents.publish(submission)
 
-        LOG.info("Aborted submission ${submissionId}")
+        LOG.info("Aborted submission ${submissionId}" + if (wasRunning) " (its build was killed)" else "")
 
-        redirectAttributes.addFlashAttribute("message", "Aborted submission ${submissionId}")
+        redirectAttributes.addFlashAttribute("message", "Aborted submission ${submissionId}" +
+                if (wasRunning) " (its build was killed)" else "")
         return "redirect:/admin/showPending"
     }
 
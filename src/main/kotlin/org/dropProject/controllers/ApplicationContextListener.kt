@@ -26,6 +26,7 @@ import org.dropproject.forms.SubmissionMethod
 import org.dropproject.repository.*
 import org.dropproject.services.AssignmentService
 import org.dropproject.services.AssignmentTeacherFiles
+import org.dropproject.services.BuildReportBuilder
 import org.dropproject.services.GitClient
 import org.eclipse.jgit.api.Git
 import org.slf4j.LoggerFactory
@@ -54,6 +55,7 @@ class ApplicationContextListener(val assignmentRepository: AssignmentRepository,
                                  val submissionReportRepository: SubmissionReportRepository,
                                  val buildReportRepository: BuildReportRepository,
                                  val jUnitReportRepository: JUnitReportRepository,
+                                 val buildReportBuilder: BuildReportBuilder,
                                  val authorRepository: AuthorRepository,
                                  val projectGroupRepository: ProjectGroupRepository,
                                  val gitClient: GitClient,
@@ -158,6 +160,24 @@ class ApplicationContextListener(val assignmentRepository: AssignmentRepository,
         LOG.info("Updating assignment metrics")
         updateAssignmentMetrics()
         LOG.info("Finished updating assignment metrics")
+
+        extractTestResults()
+    }
+
+    // submissions built before the result of each test was stored in the DB only have the junit reports
+    private fun extractTestResults() {
+        val submissionIds = jUnitReportRepository.findSubmissionIdsWithoutTestResults()
+        if (submissionIds.isNotEmpty()) {
+            LOG.info("Extracting the test results of ${submissionIds.size} submission(s)")
+            for (submissionId in submissionIds) {
+                try {
+                    buildReportBuilder.saveTestResultsFromJUnitReports(submissionId)
+                } catch (e: Exception) {
+                    LOG.warn("Unable to extract the test results of submission ${submissionId}", e)
+                }
+            }
+            LOG.info("Finished extracting the test results")
+        }
     }
 
     private fun createAndPopulateSampleJavaAssignment() {
@@ -352,6 +372,7 @@ class ApplicationContextListener(val assignmentRepository: AssignmentRepository,
         jUnitReportRepository.save(JUnitReport(submissionId = submission.id,
                 fileName = "TEST-org.dropProject.samples.sampleJavaAssignment.TestTeacherProject.xml",
                 xmlReport = (resourceLoader.getResource("classpath:/initialData/${submissionName}JUnitXml.txt")as ClassPathResource).getContent()))
+        buildReportBuilder.saveTestResultsFromJUnitReports(submission.id)
 
         return submission.id
     }
@@ -77,6 +77,8 @@ class AssignmentController(
     val gitSubmissionRepository: GitSubmissionRepository,
     val buildReportRepository: BuildReportRepository,
     val jUnitReportRepository: JUnitReportRepository,
+    val submissionTestResultRepository: SubmissionTestResultRepository,
+    val submissionSummaryRepository: SubmissionSummaryRepository,
     val jacocoReportRepository: JacocoReportRepository,
     val projectGroupRestrictionsRepository: ProjectGroupRestrictionsRepository,
     val gitClient: GitClient,
@@ -88,7 +90,11 @@ class AssignmentController(
     val projectGroupService: ProjectGroupService,
     val pendingTasks: PendingTasks,
     val dropProjectProperties: DropProjectProperties,
-    val cooloffOverrideService: CooloffOverrideService) {
+    val cooloffOverrideService: CooloffOverrideService,
+    val bulkRebuildService: BulkRebuildService,
+    val teacherTestsCache: TeacherTestsCache,
+    val buildReportCache: BuildReportCache,
+    val reportCompressor: ReportCompressor) {
 
     val LOG = LoggerFactory.getLogger(this.javaClass.name)
 
@@ -174,6 +180,12 @@ class AssignmentController(
                 "Error: Exceptions to group size should only be filled in when you set the min group size")
         }
 
+        if (assignmentForm.buildEngine == BuildEngine.FAST && assignmentForm.language != Language.JAVA) {
+            LOG.warn("The fast build engine only supports Java assignments")
+            bindingResult.rejectValue("buildEngine", "buildEngine.notJava",
+                "Error: The fast build engine only supports Java assignments")
+        }
+
         if (assignmentForm.visibility == AssignmentVisibility.PRIVATE && assignmentForm.assignees.isNullOrEmpty()) {
             LOG.warn("Exceptions to group size should only be filled in when you set the min group size")
             bindingResult.rejectValue("assignees", "assignees.mustBeFilled",
@@ -281,6 +293,9 @@ class AssignmentController(
 
             assignmentRepository.save(existingAssignment)
 
+            // the build reports depend on the assignment's settings (e.g., the number of student tests)
+            buildReportCache.evictAssignment(existingAssignment.id)
+
             assignment = existingAssignment
 
             if (assignment.archived) {
@@ -344,6 +359,7 @@ class AssignmentController(
             gitRepositoryFolder = assignmentForm.assignmentId!!, showLeaderBoard = assignmentForm.leaderboardType != null,
             hiddenTestsVisibility = assignmentForm.hiddenTestsVisibility,
             leaderboardType = assignmentForm.leaderboardType,
+            buildEngine = assignmentForm.buildEngine,
             visibility = assignmentForm.visibility)
 
         // we only need to check minGroupSize since maxGroupSize and exceptions depend on this field
@@ -467,6 +483,7 @@ class AssignmentController(
             hiddenTestsVisibility = assignment.hiddenTestsVisibility,
             maxMemoryMb = assignment.maxMemoryMb,
             leaderboardType = assignment.leaderboardType,
+            buildEngine = assignment.buildEngine,
             minGroupSize = assignment.projectGroupRestrictions?.minGroupSize,
             maxGroupSize = assignment.projectGroupRestrictions?.maxGroupSize,
             visibility = assignment.visibility
@@ -525,6 +542,10 @@ class AssignmentController(
             val git = Git.open(File(dropProjectProperties.assignments.rootLocation, assignment.gitRepositoryFolder))
             assignment.gitCurrentHash = gitClient.getLastCommitInfo(git)?.sha1
 
+            // the compiled teacher tests are from the previous version
+            teacherTestsCache.evict(assignmentId)
+            buildReportCache.evictAssignment(assignmentId)
+
             // remove the reportId from all git submissions (if there are any) to signal the student that he should
             // generate a report again
             val gitSubmissionsForThisAssignment = gitSubmissionRepository.findByAssignmentId(assignmentId)
@@ -783,6 +804,8 @@ class AssignmentController(
                 try {
                     submissionReportRepository.deleteBySubmissionId(submission.id)
                     jUnitReportRepository.deleteBySubmissionId(submission.id)
+                    submissionTestResultRepository.deleteBySubmissionId(submission.id)
+                    submissionSummaryRepository.deleteBySubmissionId(submission.id)
                     jacocoReportRepository.deleteBySubmissionId(submission.id)
                     // This is not needed since the build_report_id is a foreign key with cascade delete
 //                    submission.buildReport?.let {
@@ -808,6 +831,9 @@ class AssignmentController(
         assignmentReportRepository.deleteByAssignmentId(assignmentId)
         assignmentRepository.deleteById(assignmentId)
         assigneeRepository.deleteByAssignmentId(assignmentId)
+        teacherTestsCache.evict(assignmentId)
+        buildReportCache.evictAssignment(assignmentId)
+        reportCompressor.deleteDictionaries(assignmentId)
 
         val rootFolder = File(dropProjectProperties.assignments.rootLocation, assignment.gitRepositoryFolder)
 
@@ -952,6 +978,85 @@ class AssignmentController(
         return "redirect:/report/${assignmentId}"
     }
 
+    /**
+     * Controller that handles requests for rebuilding the final submission (or the last one) of every group, applying
+     * the current assignment files. The rebuild runs in the background; this redirects to a page showing its progress.
+     * @param assignmentId is a String representing the relevant Assignment
+     * @param principal is a [Principal] representing the user making the request
+     * @return A String with the name of the relevant View
+     */
+    @RequestMapping(value = ["/rebuildAll/{assignmentId}"], method = [(RequestMethod.POST)])
+    fun rebuildAllSubmissions(@PathVariable assignmentId: String, principal: Principal): String {
+
+        val assignment = assignmentRepository.findById(assignmentId)
+            .orElseThrow { EntityNotFoundException("Assignment $assignmentId not found") }
+
+        val acl = assignmentACLRepository.findByAssignmentId(assignment.id)
+
+        if (principal.realName() != assignment.ownerUserId && acl.find { it -> it.userId == principal.realName() } == null) {
+            throw IllegalAccessException("Submissions can only be rebuilt by the assignment owner or authorized teachers")
+        }
+
+        val progress = bulkRebuildService.start(assignment, principal)
+
+        LOG.info("[${principal.realName()}] requested the rebuild of all ${assignmentId} submissions (taskId: ${progress.taskId})")
+
+        return "redirect:/assignment/rebuildAll-status/${progress.taskId}"
+    }
+
+    /**
+     * Shows the progress of a bulk rebuild. This page refreshes periodically until the rebuild finishes.
+     */
+    @RequestMapping(value = ["/rebuildAll-status/{taskId}"], method = [(RequestMethod.GET)])
+    fun getRebuildAllStatus(@PathVariable taskId: String, model: ModelMap, principal: Principal): String {
+
+        val progress = bulkRebuildService.getProgress(taskId)
+            ?: throw EntityNotFoundException("Rebuild $taskId not found")
+
+        val assignment = assignmentRepository.findById(progress.assignmentId)
+            .orElseThrow { EntityNotFoundException("Assignment ${progress.assignmentId} not found") }
+
+        val acl = assignmentACLRepository.findByAssignmentId(assignment.id)
+
+        if (principal.realName() != assignment.ownerUserId && acl.find { it -> it.userId == principal.realName() } == null) {
+            throw IllegalAccessException("Rebuilds can only be accessed by the assignment owner or authorized teachers")
+        }
+
+        model["progress"] = progress
+        model["autoRefresh"] = !progress.finished
+        return "rebuild-all-status"
+    }
+
+    /**
+     * Cancels a bulk rebuild. The rebuilds that are waiting in the queue are discarded, but the ones already running
+     * are allowed to finish.
+     */
+    @RequestMapping(value = ["/rebuildAll-cancel/{taskId}"], method = [(RequestMethod.POST)])
+    fun cancelRebuildAll(@PathVariable taskId: String,
+                         redirectAttributes: RedirectAttributes,
+                         principal: Principal): String {
+
+        val progress = bulkRebuildService.getProgress(taskId)
+            ?: throw EntityNotFoundException("Rebuild $taskId not found")
+
+        val assignment = assignmentRepository.findById(progress.assignmentId)
+            .orElseThrow { EntityNotFoundException("Assignment ${progress.assignmentId} not found") }
+
+        val acl = assignmentACLRepository.findByAssignmentId(assignment.id)
+
+        if (principal.realName() != assignment.ownerUserId && acl.find { it -> it.userId == principal.realName() } == null) {
+            throw IllegalAccessException("Rebuilds can only be cancelled by the assignment owner or authorized teachers")
+        }
+
+        if (bulkRebuildService.cancel(taskId)) {
+            LOG.info("[${principal.realName()}] cancelled the rebuild of all ${progress.assignmentId} submissions")
+            redirectAttributes.addFlashAttribute("message", "The rebuild was cancelled. " +
+                    "Rebuilds that were already running will still finish.")
+        }
+
+        return "redirect:/assignment/rebuildAll-status/${taskId}"
+    }
+
     /**
      * Controller that handles the exportation of an assignment and (optionally) its submissions.
      * @param assignmentId is a String, identifying the relevant Assignment
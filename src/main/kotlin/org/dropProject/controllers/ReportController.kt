@@ -25,7 +25,6 @@ import net.lingala.zip4j.model.ZipParameters
 import net.lingala.zip4j.model.enums.CompressionLevel
 import org.apache.commons.io.FileUtils
 import org.dropproject.dao.*
-import org.dropproject.data.TestType
 import org.dropproject.extensions.formatDefault
 import org.dropproject.extensions.realName
 import org.dropproject.forms.SubmissionMethod
@@ -44,6 +43,7 @@ import org.springframework.security.access.AccessDeniedException
 import org.springframework.stereotype.Controller
 import org.springframework.ui.ModelMap
 import org.springframework.web.bind.annotation.*
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter
 import org.thymeleaf.TemplateEngine
 import org.thymeleaf.context.Context
 import java.io.File
@@ -70,7 +70,6 @@ class ReportController(
     val submissionReportRepository: SubmissionReportRepository,
     val authorRepository: AuthorRepository,
     val assignmentTeacherFiles: AssignmentTeacherFiles,
-    val buildReportBuilder: BuildReportBuilder,
     val gitClient: GitClient,
     val submissionService: SubmissionService,
     val storageService: StorageService,
@@ -174,6 +173,7 @@ class ReportController(
         model["readmeHTML"] = buildReport.readmeHtml
         model["error"] = buildReport.error
         model["autoRefresh"] = buildReport.isValidating
+        model["liveUpdates"] = buildReport.isValidating
         model["summary"] = buildReport.summary
         model["structureErrors"] = buildReport.structureErrors
         model["authors"] = buildReport.authors
@@ -182,6 +182,24 @@ class ReportController(
         return "build-report"
     }
 
+    /**
+     * Controller that pushes the status of a [Submission] to the build report page, as server-sent events, until it is
+     * validated (see [SubmissionEvents]).
+     *
+     * @param submissionId is a Long, identifying the relevant Submission
+     * @param principal is a [Principal] representing the user making the request
+     * @param request is an [HttpServletRequest]
+     *
+     * @return an SseEmitter
+     */
+    @RequestMapping(value = ["/buildReport/{submissionId}/events"], method = [(RequestMethod.GET)],
+        produces = [MediaType.TEXT_EVENT_STREAM_VALUE])
+    @ResponseBody
+    fun followSubmission(@PathVariable submissionId: Long, principal: Principal,
+                         request: HttpServletRequest): SseEmitter {
+        return reportService.followSubmission(submissionId, principal, request)
+    }
+
     /**
      * Controller that handles the download of a specific submission's code. The submission is downloaded in
      * a format compatible with Maven.
@@ -580,19 +598,16 @@ class ReportController(
         val submissions = submissionRepository
             .findByGroupAndAssignmentIdOrderBySubmissionDateDescStatusDateDesc(group, assignmentId)
             .filter { it.getStatus() != SubmissionStatus.DELETED }
+        val summaries = submissionService.getSummaries(submissions, assignment)
         for (submission in submissions) {
             val reportElements = submissionReportRepository.findBySubmissionId(submission.id)
             submission.reportElements = reportElements
             submission.overdue = assignment.overdue(submission)
-            submission.buildReport?.let {
-                    buildReportDB ->
-                val mavenizedProjectFolder = assignmentTeacherFiles.getProjectFolderAsFile(submission,
-                    submission.getStatus() == SubmissionStatus.VALIDATED_REBUILT)
-                val buildReport = buildReportBuilder.build(buildReportDB.buildReport.split("\n"),
-                    mavenizedProjectFolder.absolutePath, assignment, submission)
-                submission.ellapsed = buildReport.elapsedTimeJUnit()
-                submission.teacherTests = buildReport.junitSummaryAsObject(TestType.TEACHER)
-                submission.hiddenTests = buildReport.junitSummaryAsObject(TestType.HIDDEN)
+            summaries[submission.id]?.let {
+                    summary ->
+                submission.ellapsed = summary.ellapsed()
+                submission.teacherTests = summary.teacherTests
+                submission.hiddenTests = summary.hiddenTests
             }
             submission.submitterName = authorRepository.findByUserId(submission.submitterUserId)?.last()?.name
         }
@@ -638,24 +653,21 @@ class ReportController(
 
         val submissions = submissionRepository.findByAssignmentIdAndMarkedAsFinal(assignmentId, true)
             .filter { it.getStatus() != SubmissionStatus.DELETED }
+        val summaries = submissionService.getSummaries(submissions, assignment)
         for (submission in submissions) {
             val reportElements = submissionReportRepository.findBySubmissionId(submission.id)
             submission.reportElements = reportElements
             submission.overdue = assignment.overdue(submission)
-            submission.buildReport?.let {
-                    buildReportDB ->
-                val mavenizedProjectFolder = assignmentTeacherFiles.getProjectFolderAsFile(submission,
-                    submission.getStatus() == SubmissionStatus.VALIDATED_REBUILT)
-                val buildReport = buildReportBuilder.build(buildReportDB.buildReport.split("\n"),
-                    mavenizedProjectFolder.absolutePath, assignment, submission)
-                submission.ellapsed = buildReport.elapsedTimeJUnit()
+            summaries[submission.id]?.let {
+                    summary ->
+                submission.ellapsed = summary.ellapsed()
                 if (assignment.acceptsStudentTests) {
-                    submission.studentTests = buildReport.junitSummaryAsObject(TestType.STUDENT)
+                    submission.studentTests = summary.studentTests
                 }
-                submission.teacherTests = buildReport.junitSummaryAsObject(TestType.TEACHER)
-                submission.hiddenTests = buildReport.junitSummaryAsObject(TestType.HIDDEN)
-                if (assignment.calculateStudentTestsCoverage && buildReport.jacocoResults.isNotEmpty()) {
-                    submission.coverage = buildReport.jacocoResults[0].lineCoveragePercent
+                submission.teacherTests = summary.teacherTests
+                submission.hiddenTests = summary.hiddenTests
+                if (assignment.calculateStudentTestsCoverage) {
+                    submission.coverage = summary.coverage
                 }
             }
         }
@@ -48,6 +48,7 @@ import org.springframework.http.ResponseEntity
 import org.springframework.validation.BindingResult
 import org.springframework.web.bind.annotation.*
 import org.springframework.web.multipart.MultipartFile
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter
 import java.security.Principal
 
 
@@ -152,6 +153,16 @@ class StudentAPIController(
 
     }
 
+    @RequestMapping(value = ["/submissions/{submissionId}/events"], method = [(RequestMethod.GET)], produces = [MediaType.TEXT_EVENT_STREAM_VALUE])
+    @Operation(summary = "Follow the status of this submission, instead of polling its build report. " +
+            "This is a stream of server-sent events (named 'status') that starts with the current status and ends when " +
+            "the submission is validated. The last event includes the results summary. " +
+            "Example using curl: curl -N -u student1:2RVawLImDTV0betF17P2 http://localhost:8080/api/student/submissions/1/events")
+    fun followSubmission(@PathVariable submissionId: Long, principal: Principal,
+                         request: HttpServletRequest): SseEmitter {
+        return reportService.followSubmission(submissionId, principal, request)
+    }
+
     @RequestMapping(value = ["/assignments/{assignmentID}"], method = [(RequestMethod.GET)], produces = [MediaType.APPLICATION_JSON_VALUE])
     @JsonView(JSONViews.StudentAPI::class)  // to publish only certain fields of the Assignment
     @Operation(summary = "Get specific assignment information")
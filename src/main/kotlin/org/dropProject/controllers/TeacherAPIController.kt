@@ -25,6 +25,7 @@ import io.swagger.v3.oas.annotations.security.SecurityRequirement
 import io.swagger.v3.oas.annotations.tags.Tag
 import org.dropproject.dao.*
 import org.dropproject.data.AssignmentLatestSubmissionsResponse
+import org.dropproject.data.BulkRebuildProgress
 import org.dropproject.data.JSONViews
 import org.dropproject.data.StudentHistory
 import org.dropproject.data.SubmissionInfo
@@ -65,7 +66,8 @@ class TeacherAPIController(
     val reportService: ReportService,
     val projectGroupRepository: ProjectGroupRepository,
     val assignmentACLRepository: AssignmentACLRepository,
-    val studentService: StudentService
+    val studentService: StudentService,
+    val bulkRebuildService: BulkRebuildService
 ) {
 
     val LOG = LoggerFactory.getLogger(this.javaClass.name)
@@ -200,6 +202,50 @@ class TeacherAPIController(
         return true
     }
 
+    @PostMapping(value = ["/assignments/{assignmentId}/rebuild"], produces = [MediaType.APPLICATION_JSON_VALUE])
+    @Operation(summary = "Rebuild the final (or last) submission of each group with the current assignment files. " +
+            "The rebuild runs in the background and skips submissions that are already up to date. " +
+            "Returns its progress, which can be checked later using the taskId")
+    fun rebuildAssignment(@PathVariable assignmentId: String, principal: Principal): ResponseEntity<BulkRebuildProgress> {
+        val assignment = assignmentRepository.findById(assignmentId).orElse(null) ?: throw ResourceNotFoundException()
+        checkCanRebuild(assignment, principal)
+
+        LOG.info("[${principal.realName()}] requested the rebuild of all ${assignmentId} submissions")
+
+        return ResponseEntity.ok(bulkRebuildService.start(assignment, principal))
+    }
+
+    @GetMapping(value = ["/rebuilds/{taskId}"], produces = [MediaType.APPLICATION_JSON_VALUE])
+    @Operation(summary = "Get the progress of an assignment rebuild")
+    fun getRebuildProgress(@PathVariable taskId: String, principal: Principal): ResponseEntity<BulkRebuildProgress> {
+        val progress = bulkRebuildService.getProgress(taskId) ?: throw ResourceNotFoundException()
+        val assignment = assignmentRepository.findById(progress.assignmentId).orElse(null) ?: throw ResourceNotFoundException()
+        checkCanRebuild(assignment, principal)
+
+        return ResponseEntity.ok(progress)
+    }
+
+    @PostMapping(value = ["/rebuilds/{taskId}/cancel"], produces = [MediaType.APPLICATION_JSON_VALUE])
+    @Operation(summary = "Cancel an assignment rebuild. The rebuilds that are already running will still finish")
+    fun cancelRebuild(@PathVariable taskId: String, principal: Principal): ResponseEntity<BulkRebuildProgress> {
+        val progress = bulkRebuildService.getProgress(taskId) ?: throw ResourceNotFoundException()
+        val assignment = assignmentRepository.findById(progress.assignmentId).orElse(null) ?: throw ResourceNotFoundException()
+        checkCanRebuild(assignment, principal)
+
+        if (bulkRebuildService.cancel(taskId)) {
+            LOG.info("[${principal.realName()}] cancelled the rebuild of all ${assignment.id} submissions")
+        }
+
+        return ResponseEntity.ok(progress)
+    }
+
+    private fun checkCanRebuild(assignment: Assignment, principal: Principal) {
+        val acl = assignmentACLRepository.findByAssignmentId(assignment.id)
+        if (principal.realName() != assignment.ownerUserId && acl.find { it.userId == principal.realName() } == null) {
+            throw AccessDeniedException("${principal.realName()} is not allowed to rebuild ${assignment.id} submissions")
+        }
+    }
+
     @GetMapping(value = ["/assignmentSearch/{query}"], produces = [MediaType.APPLICATION_JSON_VALUE])
     @JsonView(JSONViews.TeacherAPI::class)
     @Operation(summary = "Get all assignments that match the query value")
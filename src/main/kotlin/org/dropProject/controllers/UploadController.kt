@@ -68,7 +68,7 @@ import kotlin.collections.HashSet
 @EnableAsync
 class UploadController(
         val storageService: StorageService,
-        val buildWorker: BuildWorker,
+        val buildScheduler: BuildScheduler,
         val projectGroupRepository: ProjectGroupRepository,
         val submissionRepository: SubmissionRepository,
         val gitSubmissionRepository: GitSubmissionRepository,
@@ -288,9 +288,9 @@ class UploadController(
         submission.setStatus(SubmissionStatus.REBUILDING, dontUpdateStatusDate = true)
         submissionService.saveSubmissionAndUpdateAssignmentMetrics(submission)
 
-        buildWorker.checkProject(mavenizedProjectFolder, authors.joinToString(separator = "|"), submission,
-                dontChangeStatusDate = true,
-                principalName = principal.realName())
+        val authorsStr = authors.joinToString(separator = "|")
+        buildScheduler.schedule(submission, mavenizedProjectFolder, authorsStr, BuildPriority.TEACHER_REBUILD,
+                principalName = principal.realName(), dontChangeStatusDate = true)
 
         return "redirect:/buildReport/${submissionId}";
     }
@@ -307,24 +307,7 @@ class UploadController(
         val assignment = assignmentRepository.findById(submission.assignmentId)
             .orElseThrow { EntityNotFoundException("Assignment ${submission.assignmentId} not found") }
 
-        // create another submission that is a clone of this one, to preserve the original submission
-        val rebuiltSubmission = Submission(submissionId = submission.submissionId,
-                gitSubmissionId = submission.gitSubmissionId,
-                submissionDate = submission.submissionDate,
-                submitterUserId = submission.submitterUserId,
-                assignmentId = submission.assignmentId,
-                assignmentGitHash = submission.assignmentGitHash,
-                submissionFolder = submission.submissionFolder,
-                status = SubmissionStatus.SUBMITTED_FOR_REBUILD.code,
-                statusDate = Date())
-        rebuiltSubmission.group = submission.group
-
-        val projectFolder = submissionService.getOriginalProjectFolder(rebuiltSubmission)
-        val authors = submissionService.getProjectAuthors(File(projectFolder, "AUTHORS.txt"))
-
-        submissionService.saveSubmissionAndUpdateAssignmentMetrics(rebuiltSubmission)
-        submissionService.buildSubmission(projectFolder, assignment, authors.joinToString(separator = "|"), rebuiltSubmission,
-                asyncExecutor, teacherRebuild = true, principal = principal)
+        val rebuiltSubmission = submissionService.rebuildFull(submission, assignment, principal)!!
 
         return "redirect:/buildReport/${rebuiltSubmission.id}";
     }
@@ -0,0 +1,130 @@
+/*-
+ * ========================LICENSE_START=================================
+ * DropProject
+ * %%
+ * Copyright (C) 2019 - 2026 Pedro Alves
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package org.dropproject.controllers
+
+import jakarta.servlet.http.HttpServletResponse
+import org.dropproject.dao.BuildJobStatus
+import org.dropproject.data.BuildExecution
+import org.dropproject.data.WorkerBuildJob
+import org.dropproject.repository.AssignmentRepository
+import org.dropproject.repository.BuildJobRepository
+import org.dropproject.repository.SubmissionRepository
+import org.dropproject.services.BuildScheduler
+import org.dropproject.services.ZipService
+import org.slf4j.LoggerFactory
+import org.springframework.http.HttpStatus
+import org.springframework.http.MediaType
+import org.springframework.http.ResponseEntity
+import org.springframework.web.bind.annotation.*
+import java.io.File
+
+/**
+ * WorkerAPIController contains the endpoints used by remote build workers (i.e., Drop Project instances running with
+ * drop-project.workers.coordinator-url) to pull builds from this node and send back the results.
+ *
+ * All endpoints must be authenticated with the shared token (drop-project.workers.token), sent as a bearer token.
+ */
+@RestController
+@RequestMapping("/api/worker")
+class WorkerAPIController(
+    val buildScheduler: BuildScheduler,
+    val buildJobRepository: BuildJobRepository,
+    val submissionRepository: SubmissionRepository,
+    val assignmentRepository: AssignmentRepository,
+    val zipService: ZipService
+) {
+
+    val LOG = LoggerFactory.getLogger(this.javaClass.name)
+
+    /**
+     * Gives the next waiting build to the worker.
+     *
+     * @return the [WorkerBuildJob] or 204 (No Content) if there are no builds waiting
+     */
+    @PostMapping(value = ["/jobs/claim"], produces = [MediaType.APPLICATION_JSON_VALUE])
+    fun claim(@RequestParam workerId: String): ResponseEntity<WorkerBuildJob> {
+
+        val job = buildScheduler.claimForWorker(workerId) ?: return ResponseEntity.noContent().build()
+
+        val submission = submissionRepository.findById(job.submissionId).orElse(null)
+        val assignment = assignmentRepository.findById(job.assignmentId).orElse(null)
+        if (submission == null || assignment == null) {
+            LOG.warn("Submission ${job.submissionId} (or its assignment) no longer exists. Discarding its build")
+            buildJobRepository.deleteById(job.id)
+            return ResponseEntity.noContent().build()
+        }
+
+        LOG.info("[${job.authorsStr}] Worker ${workerId} claimed the build of submission ${job.submissionId}")
+
+        val principalName = if (job.rebuildByTeacher) submission.submitterUserId else job.principalName
+        return ResponseEntity.ok(WorkerBuildJob(jobId = job.id, submissionId = job.submissionId,
+            authorsStr = job.authorsStr, principalName = principalName, maxMemoryMb = assignment.maxMemoryMb,
+            calculateCoverage = assignment.calculateStudentTestsCoverage))
+    }
+
+    /**
+     * Downloads the (mavenized) project to build, which already includes the teacher files. The zip is a temporary
+     * file, removed as soon as it's sent.
+     */
+    @GetMapping(value = ["/jobs/{jobId}/project"], produces = ["application/zip"])
+    fun downloadProject(@PathVariable jobId: Long, @RequestParam workerId: String, response: HttpServletResponse) {
+
+        val job = buildJobRepository.findById(jobId).orElse(null)
+        if (job == null || job.status != BuildJobStatus.RUNNING || job.leaseOwner != workerId) {
+            response.status = HttpStatus.CONFLICT.value()
+            return
+        }
+
+        val projectFolder = File(job.mavenizedProjectFolder)
+        val zipFile = zipService.createZipFromFolder(projectFolder.name, projectFolder)
+        try {
+            response.contentType = "application/zip"
+            response.setContentLengthLong(zipFile.length())
+            zipFile.inputStream().use { it.copyTo(response.outputStream) }
+        } finally {
+            zipFile.delete()
+        }
+    }
+
+    /**
+     * Renews the leases of all the builds running on the worker.
+     */
+    @PostMapping(value = ["/heartbeat"])
+    fun heartbeat(@RequestParam workerId: String): ResponseEntity<String> {
+        buildScheduler.renewWorkerLeases(workerId)
+        return ResponseEntity.ok("")
+    }
+
+    /**
+     * Receives the result of a build. It's evaluated and stored as if the build had run on this node.
+     *
+     * @return 409 (Conflict) if the worker no longer owns the build
+     */
+    @PostMapping(value = ["/jobs/{jobId}/result"], consumes = [MediaType.APPLICATION_JSON_VALUE])
+    fun postResult(@PathVariable jobId: Long, @RequestParam workerId: String,
+                   @RequestBody buildExecution: BuildExecution): ResponseEntity<String> {
+
+        return if (buildScheduler.completeWorkerJob(jobId, workerId, buildExecution)) {
+            ResponseEntity.ok("")
+        } else {
+            ResponseEntity.status(HttpStatus.CONFLICT).build()
+        }
+    }
+}
@@ -60,6 +60,18 @@ enum class LeaderboardType {
     COVERAGE     // ordered by number of passed tests (desc) and then coverage (desc)
 }
 
+/**
+ * Enum representing the engines that can build the submissions of an assignment.
+ *  - MAVEN - runs the full maven lifecycle (this is the default);
+ *  - FAST - compiles the project in-process and runs the tests in a separate JVM, without maven. Only supports Java
+ *  projects tested with JUnit 4 and doesn't run the other plugins of the pom (e.g., checkstyle). If the project can't
+ *  be built this way (e.g., coverage is required), it falls back to maven.
+ */
+enum class BuildEngine {
+    MAVEN,
+    FAST
+}
+
 /**
  * Enum representing the types of visibility of each assignment.
  *  - PUBLIC - everyone sees this assignment;
@@ -93,6 +105,7 @@ enum class AssignmentVisibility {
  * @property maxMemoryMb is an optional Integer, indicating the maximum number of Mb that the student's code can use
  * @property showLeaderBoard is a Boolean, indicating if the leaderboard page should be active for this Assignment
  * @property leaderboardType is a [LeaderboardType]
+ * @property buildEngine is the [BuildEngine] used to build the submissions (null means [BuildEngine.MAVEN])
  * @property gitRepositoryUrl is a String with the location of the git repository used to create the Assignment
  * @property gitRepositoryPubKey is a String with the Public Key of the git repository
  * @property gitRepositoryPrivKey is a String the Private Key of the git repository
@@ -147,6 +160,8 @@ data class Assignment(
     var maxMemoryMb: Int? = null,
     var showLeaderBoard: Boolean = false,
     var leaderboardType: LeaderboardType? = null,
+    @Enumerated(EnumType.STRING)
+    var buildEngine: BuildEngine? = null,
 
     @JsonView(JSONViews.TeacherAPI::class)
     val gitRepositoryUrl: String,
@@ -0,0 +1,102 @@
+/*-
+ * ========================LICENSE_START=================================
+ * DropProject
+ * %%
+ * Copyright (C) 2019 - 2026 Pedro Alves
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package org.dropproject.dao
+
+import jakarta.persistence.*
+import java.util.*
+
+/**
+ * Priority classes of the builds. When a build thread becomes free, it picks a build of the first (highest) priority
+ * class that has builds waiting.
+ */
+enum class BuildPriority(val description: String) {
+    STUDENT_UPLOAD("Student upload"),
+    GIT_REPORT("Git report"),
+    TEACHER_REBUILD("Teacher rebuild")
+}
+
+enum class BuildJobStatus {
+    QUEUED, RUNNING
+}
+
+/**
+ * Represents the build of a [Submission] that is waiting or running. The row is deleted when the build finishes, so
+ * the jobs that are found when Drop Project starts are the ones that were interrupted by a restart (or crash).
+ *
+ * While a job is running, the node that claimed it holds a lease on it, which is renewed periodically (heartbeat). A job
+ * whose lease expired is considered abandoned and is put back in the queue, up to a maximum number of attempts.
+ *
+ * @property id is a primary-key like generated value
+ * @property submissionId is a Long, identifying the [Submission] being built
+ * @property assignmentId is a String, identifying the [Assignment] of the submission
+ * @property groupId is a Long, identifying the [ProjectGroup] that made the submission
+ * @property priority is the [BuildPriority] of the job
+ * @property mavenizedProjectFolder is the absolute path of the folder that will be built
+ * @property authorsStr is a String identifying the authors, used for logging
+ * @property principalName is the user that requested the build
+ * @property rebuildByTeacher is a Boolean, indicating if this build was requested by a teacher
+ * @property dontChangeStatusDate is a Boolean, indicating if the submission's status date should be preserved
+ * @property reuseResultOf is the id of an earlier [Submission] with the same files, whose result is evaluated instead of
+ * building this one
+ * @property status is the [BuildJobStatus]
+ * @property attempts is an Int with the number of times this job was claimed
+ * @property leaseOwner identifies the node that is running the job
+ * @property leaseExpiresAt is the [Date] after which a running job is considered abandoned
+ * @property heartbeatDate is the [Date] of the last lease renewal
+ * @property enqueuedAt is the [Date] when the job was created
+ * @property startedAt is the [Date] when the job was last claimed
+ */
+@Entity
+@Table(indexes = [Index(columnList = "submissionId"), Index(columnList = "status")])
+data class BuildJob(
+    @Id @GeneratedValue(strategy = GenerationType.IDENTITY)
+    val id: Long = 0,
+    val submissionId: Long,  // FK for Submission.id
+
+    @Column(length = 50)
+    val assignmentId: String,
+    val groupId: Long,
+
+    @Enumerated(EnumType.STRING)
+    @Column(length = 20, nullable = false)
+    val priority: BuildPriority,
+
+    @Column(length = 1024, nullable = false)
+    val mavenizedProjectFolder: String,
+
+    @Column(length = 1024)
+    val authorsStr: String,
+    val principalName: String? = null,
+    val rebuildByTeacher: Boolean = false,
+    val dontChangeStatusDate: Boolean = false,
+    val reuseResultOf: Long? = null,
+
+    @Enumerated(EnumType.STRING)
+    @Column(length = 20, nullable = false)
+    var status: BuildJobStatus = BuildJobStatus.QUEUED,
+    var attempts: Int = 0,
+    var leaseOwner: String? = null,
+    var leaseExpiresAt: Date? = null,
+    var heartbeatDate: Date? = null,
+
+    @Column(nullable = false)
+    val enqueuedAt: Date = Date(),
+    var startedAt: Date? = null
+)
@@ -19,19 +19,34 @@
  */
 package org.dropproject.dao
 
+import com.fasterxml.jackson.annotation.JsonIgnore
 import jakarta.persistence.*
+import org.dropproject.services.ReportCompressor
 
 /**
  * Represents an [Assignment]'s "Build Report".
  *
+ * The report is usually stored compressed, so it must be read with [ReportCompressor.buildReportOf].
+ *
  * @property id is a primary-key like generated value
- * @property buildReport is a String, containing the textual information that resulted from building an [Assignment]
+ * @property plainBuildReport is a String with the report, if it's not compressed
+ * @property compressedBuildReport is a ByteArray with the compressed report or null if it's not compressed
  */
 @Entity
 data class BuildReport(
         @Id @GeneratedValue(strategy = GenerationType.IDENTITY)
         val id: Long = 0,
 
-        @Column(columnDefinition = "LONGTEXT", nullable = false)
-        val buildReport: String
-)
+        // empty if the report is compressed (the column was created as not nullable)
+        @Column(name = "build_report", columnDefinition = "LONGTEXT", nullable = false)
+        val plainBuildReport: String = "",
+
+        @JsonIgnore
+        @Column(columnDefinition = "LONGBLOB")
+        val compressedBuildReport: ByteArray? = null
+) {
+
+    constructor(buildReport: String) : this(plainBuildReport = buildReport)
+
+    fun withCompressedReport(compressed: ByteArray) = copy(plainBuildReport = "", compressedBuildReport = compressed)
+}
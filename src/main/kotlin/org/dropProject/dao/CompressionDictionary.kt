@@ -0,0 +1,49 @@
+/*-
+ * ========================LICENSE_START=================================
+ * DropProject
+ * %%
+ * Copyright (C) 2019 - 2026 Pedro Alves
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package org.dropproject.dao
+
+import jakarta.persistence.*
+import org.dropproject.services.ReportCompressor
+import java.util.*
+
+/**
+ * Represents a dictionary used to compress the reports of the submissions of an [Assignment] (see [ReportCompressor]).
+ * Since those reports are very similar to each other, compressing them with a dictionary built from one of them
+ * gives much better results than compressing each one on its own.
+ *
+ * @property id is a primary-key like generated value, which is stored with each report compressed with the dictionary
+ * @property assignmentId is a String, identifying the [Assignment]
+ * @property dictionary is a ByteArray with the contents of the dictionary
+ * @property creationDate is a [Date]
+ */
+@Entity
+@Table(indexes = [Index(columnList = "assignmentId")])
+data class CompressionDictionary(
+        @Id @GeneratedValue(strategy = GenerationType.IDENTITY)
+        val id: Long = 0,
+
+        @Column(length = 50, nullable = false)
+        val assignmentId: String,
+
+        @Column(columnDefinition = "LONGBLOB", nullable = false)
+        val dictionary: ByteArray,
+
+        val creationDate: Date = Date()
+)
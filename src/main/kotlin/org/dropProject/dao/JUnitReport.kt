@@ -19,7 +19,9 @@
  */
 package org.dropproject.dao
 
+import com.fasterxml.jackson.annotation.JsonIgnore
 import jakarta.persistence.*
+import org.dropproject.services.ReportCompressor
 
 /**
  * Represents a persisted JUnitReport.
@@ -27,7 +29,9 @@ import jakarta.persistence.*
  * @property id is a Long with a primary-key like generated id
  * @property submissionId is a Long, identifying the [Submission] that the report is based on
  * @property fileName is a String with the name of the JUnit report file
- * @property xmlReport is a String with the XML version of the report
+ * @property plainXmlReport is a String with the report, if it's not compressed
+ * @property compressedXmlReport is a ByteArray with the compressed report or null if it's not compressed. Either way,
+ * the report must be read with [ReportCompressor.xmlReportOf]
  */
 @Entity
 @Table(uniqueConstraints=[UniqueConstraint(columnNames = ["submissionId", "fileName"])], indexes = [Index(columnList = "submissionId")])
@@ -39,6 +43,17 @@ data class JUnitReport(
 
         val fileName: String,
 
-        @Column(columnDefinition = "LONGTEXT")  // TODO This is not working, it still creates with type TEXT...
-        val xmlReport: String
-)
+        // empty if the report is compressed
+        @Column(name = "xml_report", columnDefinition = "LONGTEXT")  // TODO This is not working, it still creates with type TEXT...
+        val plainXmlReport: String = "",
+
+        @JsonIgnore
+        @Column(columnDefinition = "LONGBLOB")
+        val compressedXmlReport: ByteArray? = null
+) {
+
+    constructor(submissionId: Long, fileName: String, xmlReport: String) :
+            this(submissionId = submissionId, fileName = fileName, plainXmlReport = xmlReport)
+
+    fun withCompressedReport(compressed: ByteArray) = copy(plainXmlReport = "", compressedXmlReport = compressed)
+}
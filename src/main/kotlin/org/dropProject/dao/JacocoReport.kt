@@ -19,7 +19,9 @@
  */
 package org.dropproject.dao
 
+import com.fasterxml.jackson.annotation.JsonIgnore
 import jakarta.persistence.*
+import org.dropproject.services.ReportCompressor
 
 /**
  * Represents a persisted Jacoco report. The Jacoco report contains the result of calculating the code
@@ -28,7 +30,9 @@ import jakarta.persistence.*
  * @property id is a Long with a primary-key like generated id
  * @property submissionId is Long is a Long, identifying the [Submission] that the report is based on
  * @property fileName is a String with the name of the JUnit report file
- * @property csvReport is a String with the CSV version of the report
+ * @property plainCsvReport is a String with the report, if it's not compressed
+ * @property compressedCsvReport is a ByteArray with the compressed report or null if it's not compressed. Either way,
+ * the report must be read with [ReportCompressor.csvReportOf]
  */
 @Entity
 @Table(uniqueConstraints=[UniqueConstraint(columnNames = ["submissionId", "fileName"])], indexes = [Index(columnList = "submissionId")])
@@ -40,6 +44,17 @@ data class JacocoReport(
 
         val fileName: String,
 
-        @Column(columnDefinition = "LONGTEXT")  // TODO This is not working, it still creates with type TEXT...
-        val csvReport: String
-)
+        // empty if the report is compressed
+        @Column(name = "csv_report", columnDefinition = "LONGTEXT")  // TODO This is not working, it still creates with type TEXT...
+        val plainCsvReport: String = "",
+
+        @JsonIgnore
+        @Column(columnDefinition = "LONGBLOB")
+        val compressedCsvReport: ByteArray? = null
+) {
+
+    constructor(submissionId: Long, fileName: String, csvReport: String) :
+            this(submissionId = submissionId, fileName = fileName, plainCsvReport = csvReport)
+
+    fun withCompressedReport(compressed: ByteArray) = copy(plainCsvReport = "", compressedCsvReport = compressed)
+}
@@ -88,6 +88,9 @@ enum class SubmissionMode {
  * @property coverage is an Int with the test coverage percentage calculated for the submission's own unit tests
  * @property testResults is a List of [JUnitMethodResult] containing the result for each evaluation JUnit Test
  * @property group is the [ProjectGrop] that performed the submission.
+ * @property sourcesFingerprint is a hash of the files that were built (see [org.dropproject.services.SubmissionService.sourcesFingerprint])
+ * @property reusedFromSubmissionId is the id of an earlier submission with the same fingerprint, whose result was reused
+ * instead of building this one
  */
 
 @Entity @JsonInclude(JsonInclude.Include.NON_EMPTY)
@@ -163,7 +166,12 @@ data class Submission(
         @JsonView(JSONViews.StudentAPI::class)
         var overdue: Boolean? = null,
 
-        var submissionMode: SubmissionMode? = null
+        var submissionMode: SubmissionMode? = null,
+
+        @Column(length = 64)
+        var sourcesFingerprint: String? = null,
+
+        var reusedFromSubmissionId: Long? = null
 ) {
     @ManyToOne
     @JsonView(JSONViews.TeacherAPI::class)
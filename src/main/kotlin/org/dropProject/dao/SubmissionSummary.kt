@@ -0,0 +1,90 @@
+/*-
+ * ========================LICENSE_START=================================
+ * DropProject
+ * %%
+ * Copyright (C) 2019 - 2026 Pedro Alves
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package org.dropproject.dao
+
+import jakarta.persistence.*
+import org.dropproject.data.BuildReport
+import org.dropproject.data.JUnitSummary
+import java.math.BigDecimal
+
+/**
+ * Represents the summary of the [BuildReport] of a [Submission] (e.g., how many teacher tests passed), calculated when
+ * the submission is built. The reports that list many submissions (e.g., the assignment's report or the leaderboard)
+ * use it instead of building the full report of each submission.
+ *
+ * @property submissionId is a Long, identifying the [Submission]
+ * @property assignmentId is a String, identifying the [Assignment]
+ * @property studentTests is a [JUnitSummary] with the results of the student tests
+ * @property teacherTests is a [JUnitSummary] with the results of the (public) teacher tests
+ * @property hiddenTests is a [JUnitSummary] with the results of the hidden teacher tests
+ * @property coverage is an Int with the percentage of lines covered by the student tests
+ */
+@Entity
+@Table(indexes = [Index(columnList = "assignmentId")])
+data class SubmissionSummary(
+        @Id
+        val submissionId: Long,  // submission.id
+
+        @Column(length = 50)
+        val assignmentId: String,
+
+        @Embedded
+        @AttributeOverrides(
+                AttributeOverride(name = "numTests", column = Column(name = "student_num_tests")),
+                AttributeOverride(name = "numFailures", column = Column(name = "student_num_failures")),
+                AttributeOverride(name = "numErrors", column = Column(name = "student_num_errors")),
+                AttributeOverride(name = "numSkipped", column = Column(name = "student_num_skipped")),
+                AttributeOverride(name = "ellapsed", column = Column(name = "student_ellapsed")),
+                AttributeOverride(name = "numMandatoryOK", column = Column(name = "student_num_mandatory_ok")),
+                AttributeOverride(name = "numMandatoryNOK", column = Column(name = "student_num_mandatory_nok")))
+        val studentTests: JUnitSummary? = null,
+
+        @Embedded
+        @AttributeOverrides(
+                AttributeOverride(name = "numTests", column = Column(name = "teacher_num_tests")),
+                AttributeOverride(name = "numFailures", column = Column(name = "teacher_num_failures")),
+                AttributeOverride(name = "numErrors", column = Column(name = "teacher_num_errors")),
+                AttributeOverride(name = "numSkipped", column = Column(name = "teacher_num_skipped")),
+                AttributeOverride(name = "ellapsed", column = Column(name = "teacher_ellapsed")),
+                AttributeOverride(name = "numMandatoryOK", column = Column(name = "teacher_num_mandatory_ok")),
+                AttributeOverride(name = "numMandatoryNOK", column = Column(name = "teacher_num_mandatory_nok")))
+        val teacherTests: JUnitSummary? = null,
+
+        @Embedded
+        @AttributeOverrides(
+                AttributeOverride(name = "numTests", column = Column(name = "hidden_num_tests")),
+                AttributeOverride(name = "numFailures", column = Column(name = "hidden_num_failures")),
+                AttributeOverride(name = "numErrors", column = Column(name = "hidden_num_errors")),
+                AttributeOverride(name = "numSkipped", column = Column(name = "hidden_num_skipped")),
+                AttributeOverride(name = "ellapsed", column = Column(name = "hidden_ellapsed")),
+                AttributeOverride(name = "numMandatoryOK", column = Column(name = "hidden_num_mandatory_ok")),
+                AttributeOverride(name = "numMandatoryNOK", column = Column(name = "hidden_num_mandatory_nok")))
+        val hiddenTests: JUnitSummary? = null,
+
+        val coverage: Int? = null
+) {
+
+    /**
+     * @return the total elapsed time of the teacher tests (see [BuildReport.elapsedTimeJUnit])
+     */
+    fun ellapsed(): BigDecimal? {
+        return BuildReport.elapsedTimeJUnit(teacherTests, hiddenTests)
+    }
+}
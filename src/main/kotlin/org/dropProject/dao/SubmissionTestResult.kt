@@ -0,0 +1,136 @@
+/*-
+ * ========================LICENSE_START=================================
+ * DropProject
+ * %%
+ * Copyright (C) 2019 - 2026 Pedro Alves
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package org.dropproject.dao
+
+import jakarta.persistence.*
+import org.dropproject.services.JUnitMethodResult
+import org.dropproject.services.JUnitMethodResultType
+import org.dropproject.services.JUnitResults
+
+/**
+ * Represents the result of a single test of a [Submission], extracted from the JUnit reports when the submission is
+ * built, so that the reports don't have to be parsed again each time they're viewed.
+ *
+ * A test class without tests is stored as a single row with the EMPTY outcome.
+ *
+ * @property id is a Long with a primary-key like generated id
+ * @property submissionId is a Long, identifying the [Submission]
+ * @property testClassName is a String with the name of the test class
+ * @property fullTestClassName is a String with the name of the test class, prefixed by the name of its package
+ * @property testClassTime is a Float with the time (in seconds) that it took to execute the whole test class
+ * @property methodName is a String with the name of the test method
+ * @property fullMethodName is a String with the name of the test method, prefixed by the full name of its class
+ * @property outcome is a [JUnitMethodResultType]
+ * @property time is a Float with the time (in seconds) that it took to execute the test method
+ * @property failureType is a String with the type of the failure (e.g. the exception)
+ * @property failureErrorLine is a String
+ * @property failureDetail is a String with the failure details (e.g. the stacktrace), truncated to
+ * [MAX_FAILURE_DETAIL_LENGTH] characters
+ */
+@Entity
+@Table(uniqueConstraints = [UniqueConstraint(columnNames = ["submissionId", "fullTestClassName", "methodName"])],
+        indexes = [Index(columnList = "submissionId")])
+data class SubmissionTestResult(
+        @Id @GeneratedValue(strategy = GenerationType.IDENTITY)
+        val id: Long = 0,
+
+        val submissionId: Long,  // submission.id
+
+        @Column(length = MAX_NAME_LENGTH)
+        val testClassName: String,
+
+        @Column(length = MAX_KEY_NAME_LENGTH)
+        val fullTestClassName: String,
+
+        val testClassTime: Float,
+
+        @Column(length = MAX_KEY_NAME_LENGTH)
+        val methodName: String,
+
+        @Column(length = MAX_NAME_LENGTH)
+        val fullMethodName: String,
+
+        @Enumerated(EnumType.STRING)
+        @Column(length = 20)
+        val outcome: JUnitMethodResultType,
+
+        val time: Float,
+
+        @Column(length = MAX_NAME_LENGTH)
+        val failureType: String? = null,
+
+        @Column(length = MAX_NAME_LENGTH)
+        val failureErrorLine: String? = null,
+
+        @Column(columnDefinition = "TEXT")
+        val failureDetail: String? = null
+) {
+
+    fun toJUnitMethodResult(): JUnitMethodResult {
+        return JUnitMethodResult(methodName, fullMethodName, outcome, failureType, failureErrorLine, failureDetail, time)
+    }
+
+    companion object {
+        const val MAX_NAME_LENGTH = 1000
+        const val MAX_KEY_NAME_LENGTH = 255  // the names in the unique key must fit in the index (e.g. 3072 bytes in MySQL)
+        const val MAX_FAILURE_DETAIL_LENGTH = 16000
+
+        /**
+         * Converts the results of a test class (parsed from a JUnit report) into [SubmissionTestResult]s.
+         */
+        fun fromJUnitResults(submissionId: Long, junitResults: JUnitResults): List<SubmissionTestResult> {
+            val methodResults = junitResults.junitMethodResults.ifEmpty { listOf(JUnitMethodResult.empty()) }
+            return methodResults.map {
+                SubmissionTestResult(submissionId = submissionId,
+                    testClassName = junitResults.testClassName.take(MAX_NAME_LENGTH),
+                    fullTestClassName = junitResults.fullTestClassName.take(MAX_KEY_NAME_LENGTH),
+                    testClassTime = junitResults.timeEllapsed,
+                    methodName = it.methodName.take(MAX_KEY_NAME_LENGTH),
+                    fullMethodName = it.fullMethodName.take(MAX_NAME_LENGTH),
+                    outcome = it.type,
+                    time = it.time,
+                    failureType = it.failureType?.take(MAX_NAME_LENGTH),
+                    failureErrorLine = it.failureErrorLine?.take(MAX_NAME_LENGTH),
+                    failureDetail = it.failureDetail?.take(MAX_FAILURE_DETAIL_LENGTH))
+            }
+        }
+
+        /**
+         * Converts the [SubmissionTestResult]s of a submission back into the results of each test class, in the
+         * order in which they were stored.
+         */
+        fun toJUnitResults(testResults: List<SubmissionTestResult>): List<JUnitResults> {
+            return testResults
+                .groupBy { it.fullTestClassName }
+                .values
+                .map { classResults ->
+                    val methodResults = classResults
+                        .filter { it.outcome != JUnitMethodResultType.EMPTY }
+                        .map { it.toJUnitMethodResult() }
+                    val numSkipped = methodResults.count { it.type == JUnitMethodResultType.IGNORED }
+                    JUnitResults(classResults[0].testClassName, classResults[0].fullTestClassName,
+                        methodResults.size - numSkipped,
+                        methodResults.count { it.type == JUnitMethodResultType.ERROR },
+                        methodResults.count { it.type == JUnitMethodResultType.FAILURE },
+                        numSkipped, classResults[0].testClassTime, methodResults)
+                }
+        }
+    }
+}
@@ -0,0 +1,71 @@
+/*-
+ * ========================LICENSE_START=================================
+ * DropProject
+ * %%
+ * Copyright (C) 2019 - 2026 Pedro Alves
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package org.dropproject.data
+
+import java.io.File
+
+/**
+ * Represents everything that a build of a submission produces, before it is evaluated and stored in the database.
+ * This is what a remote worker sends back to the web node.
+ *
+ * @property mavenResult is the [MavenResult] of the (main) maven invocation
+ * @property surefireReports is a Map with the contents of each surefire XML report, indexed by file name
+ * @property jacocoReports is a Map with the contents of each jacoco CSV report, indexed by file name. It's null if
+ * the coverage wasn't measured
+ * @property projectFolder is the absolute path of the folder where the project was built (e.g., on a remote worker),
+ * which appears in the maven output. It's null if it was built in the folder where it's evaluated
+ */
+data class BuildExecution(val mavenResult: MavenResult,
+                          val surefireReports: Map<String, String> = emptyMap(),
+                          val jacocoReports: Map<String, String>? = null,
+                          val projectFolder: String? = null) {
+
+    /**
+     * Replaces the folder where the project was built by [mavenizedProjectFolder] in the maven output, so that it's
+     * evaluated as if it was built there (e.g., the paths of the compilation errors are relative to the project).
+     */
+    fun relocatedTo(mavenizedProjectFolder: File): BuildExecution {
+        val localFolder = mavenizedProjectFolder.absolutePath
+        if (projectFolder == null || projectFolder == localFolder) {
+            return this
+        }
+
+        val outputLines = mavenResult.outputLines.map { it.replace(projectFolder, localFolder) }
+        return copy(mavenResult = mavenResult.copy(outputLines = outputLines), projectFolder = localFolder)
+    }
+
+    /**
+     * Writes the reports to the folder where maven would have put them, replacing whatever is there.
+     */
+    fun writeReportsTo(mavenizedProjectFolder: File) {
+        val surefireFolder = File(mavenizedProjectFolder, "target/surefire-reports")
+        surefireFolder.deleteRecursively()
+        if (surefireReports.isNotEmpty()) {
+            surefireFolder.mkdirs()
+            surefireReports.forEach { (fileName, xml) -> File(surefireFolder, File(fileName).name).writeText(xml) }
+        }
+
+        if (!jacocoReports.isNullOrEmpty()) {
+            val jacocoFolder = File(mavenizedProjectFolder, "target/site/jacoco")
+            jacocoFolder.mkdirs()
+            jacocoReports.forEach { (fileName, csv) -> File(jacocoFolder, File(fileName).name).writeText(csv) }
+        }
+    }
+}
@@ -0,0 +1,45 @@
+/*-
+ * ========================LICENSE_START=================================
+ * DropProject
+ * %%
+ * Copyright (C) 2019 - 2026 Pedro Alves
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package org.dropproject.data
+
+import org.dropproject.dao.BuildPriority
+
+/**
+ * Represents a snapshot of the build queue managed by the [BuildScheduler].
+ *
+ * @property queuedByPriority is a Map with the number of waiting builds of each [BuildPriority]
+ * @property queuedByAssignment is a Map with the number of waiting builds of each assignment
+ * @property runningByAssignment is a Map with the number of running builds of each assignment
+ * @property oldestWaitingSeconds is the time, in seconds, that the oldest waiting build has been in the queue
+ */
+data class BuildQueueStats(val queuedByPriority: Map<BuildPriority, Int>,
+                           val queuedByAssignment: Map<String, Int>,
+                           val runningByAssignment: Map<String, Int>,
+                           val oldestWaitingSeconds: Long) {
+
+    val totalQueued: Int
+        get() = queuedByPriority.values.sum()
+
+    val totalRunning: Int
+        get() = runningByAssignment.values.sum()
+
+    val assignmentIds: Set<String>
+        get() = (runningByAssignment.keys + queuedByAssignment.keys).toSortedSet()
+}
@@ -91,9 +91,15 @@ data class BuildReport(val mavenOutputLines: List<String>,
     val junitSummaryHidden: String?
     val junitErrorsHidden: String?
 
+    // the maven output is parsed only once (see MavenOutputParser)
+    private val parsedOutput = MavenOutputParser.parse(assignment.language, mavenizedProjectFolder, mavenOutputLines)
+
     init {
-        compilationErrors = processCompilationErrors()
-        checkstyleErrors = processCheckstyleErrors()
+        compilationErrors = parsedOutput.compilationErrors
+        checkstyleErrors = when (assignment.language) {
+            Language.JAVA -> parsedOutput.checkstyleErrors
+            Language.KOTLIN -> parsedOutput.checkstyleErrors.map { translateDetektError(it) }.distinct()
+        }
         junitSummaryStudent = junitSummary(TestType.STUDENT)
         junitErrorsStudent = jUnitErrors(TestType.STUDENT)
         junitSummaryTeacher = junitSummary(TestType.TEACHER)
@@ -108,206 +114,15 @@ data class BuildReport(val mavenOutputLines: List<String>,
     }
 
     fun mavenExecutionFailed() : Boolean {
-
-        // if there were problems with the pom.xml, it is a fatal error
-        if (mavenOutputLines.any { it.startsWith("[WARNING] Some problems were encountered while building the effective model") }) {
-            return true
-        }
-
-        // if there were problems forking the process (e.g., heap space), it is a fatal error
-        if (mavenOutputLines.any { it.contains("There was an error in the forked process") }) {
-            return true
-        }
-
-        // if it has a failed goal other than compiler or surefire (junit), it is a fatal error
-        if (mavenOutputLines.
-                        filter { it.startsWith("[ERROR] Failed to execute goal") }.isNotEmpty()) {
-            return mavenOutputLines.filter {
-                        it.startsWith("[ERROR] Failed to execute goal org.apache.maven.plugins:maven-surefire-plugin") ||
-                        it.startsWith("[ERROR] Failed to execute goal org.apache.maven.plugins:maven-compiler-plugin") ||
-                        it.startsWith("[ERROR] Failed to execute goal org.jetbrains.kotlin:kotlin-maven-plugin")
-            }.isEmpty()
-        }
-
-
-
-        return false;
-    }
-
-    /**
-     * Collects from a Maven Output the errors related with the Compilation process.
-     *
-     * @return a List of String where each String is a Compilation problem / warning.
-     */
-    private fun processCompilationErrors() : List<String> {
-
-        var errors = ArrayList<String>()
-
-        val folder = if (assignment.language == Language.JAVA) "java" else "kotlin"
-
-        // parse compilation errors
-        run {
-            val triggerStartOfCompilationOutput =
-                    if (assignment.language == Language.JAVA)
-                        "\\[ERROR\\] COMPILATION ERROR :.*".toRegex()
-                    else
-                        "\\[INFO\\] --- kotlin(-maven-plugin)?:\\d+\\.\\d+\\.\\d+:compile.*".toRegex()
-
-            var startIdx = -1;
-            var endIdx = -1;
-            for ((idx, mavenOutputLine) in mavenOutputLines.withIndex()) {
-                if (triggerStartOfCompilationOutput.matches(mavenOutputLine)) {
-                    startIdx = idx + 1
-                    LOG.trace("Found start of compilation output (line $idx)")
-                } else if (startIdx > 0) {
-                    if (mavenOutputLine.startsWith("[INFO] BUILD FAILURE") ||
-                            mavenOutputLine.startsWith("[INFO] --- ")) {    // no compilation errors on Kotlin
-                        endIdx = idx
-                        LOG.trace("Found end of compilation output (line $idx)")
-                        break
-                    }
-                }
-            }
-
-            if (startIdx > 0 && endIdx > startIdx) {
-                errors.addAll(
-                        mavenOutputLines
-                                .subList(startIdx, endIdx)
-                                .filter { it -> it.startsWith("[ERROR] ") || it.startsWith("  ") }
-                                .map { it -> it.replace("[ERROR] ${mavenizedProjectFolder}/src/main/${folder}/", "") }
-                                .map { it -> it.replace("[ERROR] ${mavenizedProjectFolder}/src/test/${folder}/", "[TEST] ") })
-            }
-        }
-
-        // parse test compilation errors
-        run {
-            val triggerStartOfTestCompilationOutput =
-//                    if (language == Language.JAVA) "???" else
-                        "\\[ERROR\\] Failed to execute goal org\\.jetbrains\\.kotlin:kotlin-maven-plugin.*test-compile.*".toRegex()
-
-            var startIdx = -1;
-            var endIdx = -1;
-            for ((idx, mavenOutputLine) in mavenOutputLines.withIndex()) {
-                if (triggerStartOfTestCompilationOutput.matches(mavenOutputLine)) {
-                    startIdx = idx + 1
-                }
-                if (mavenOutputLine.startsWith("[ERROR] -> [Help 1]")) {
-                    endIdx = idx
-                }
-            }
-
-            if (startIdx > 0) {
-                errors.addAll(
-                        mavenOutputLines
-                                .subList(startIdx, endIdx)
-                                .filter { it -> it.startsWith("[ERROR] ") || it.startsWith("  ") }
-                                .map { it -> it.replace("[ERROR] ${mavenizedProjectFolder}/src/main/${folder}/", "") }
-                                .map { it -> it.replace("[ERROR] ${mavenizedProjectFolder}/src/test/${folder}/", "[TEST] ") })
-            }
-        }
-
-        // check if tests didn't run because of a crash or System.exit(). for the lack of better solution, I'll
-        // consider this as a compilation error
-        if (mavenOutputLines.any { it.contains("The forked VM terminated without properly saying goodbye.") }) {
-           when (assignment.language) {
-               Language.JAVA -> errors.add("Invalid call to System.exit(). Please remove this instruction")
-               Language.KOTLIN ->  errors.add("Invalid call to System.exit() or exitProcess(). Please remove this instruction")
-            }
-        }
-
-        return errors
-    }
-
-    /**
-     * Collects from a Maven Output the errors related with the CheckStyle plugin / rules.
-     *
-     * @return a List of String where each String is a CheckStyle problem / warning.
-     */
-    private fun processCheckstyleErrors() : List<String> {
-
-        val folder = if (assignment.language == Language.JAVA) "java" else "kotlin"
-
-        when (assignment.language) {
-            Language.JAVA -> {
-                var startIdx = -1;
-                var endIdx = -1;
-                for ((idx, mavenOutputLine) in mavenOutputLines.withIndex()) {
-                    if (mavenOutputLine.startsWith("[INFO] Starting audit...")) {
-                        startIdx = idx + 1
-                    }
-                    if (mavenOutputLine.startsWith("Audit done.")) {
-                        endIdx = idx
-                    }
-                }
-
-                if (startIdx > 0) {
-                    return mavenOutputLines
-                            .subList(startIdx, endIdx)
-                            .filter { it -> it.startsWith("[WARN] ") }
-                            .map { it -> it.replace("[WARN] ${mavenizedProjectFolder}/src/main/${folder}/", "") }
-                } else {
-                    return emptyList()
-                }
-            }
-
-            Language.KOTLIN -> {
-                var startIdx = -1;
-                var endIdx = -1;
-                for ((idx, mavenOutputLine) in mavenOutputLines.withIndex()) {
-                    if (mavenOutputLine.startsWith("[INFO] --- detekt")) {
-                        startIdx = idx + 1
-                    }
-                    // depending on the detekt-maven-plugin version, the output is different
-                    if (startIdx > 0 &&
-                            idx > startIdx + 1 &&
-                            (mavenOutputLine.startsWith("detekt finished") || mavenOutputLine.startsWith("[INFO]"))) {
-                        endIdx = idx
-                        break
-                    }
-                }
-
-                if (startIdx > 0) {
-                    return mavenOutputLines
-                            .subList(startIdx, endIdx)
-                            .filter { it.startsWith("\t") && !it.startsWith("\t-") }
-                            .map { it.replace("\t", "") }
-                            .map { it.replace("${mavenizedProjectFolder}/src/main/${folder}/", "") }
-                            .map { translateDetektError(it) }
-                            .distinct()
-                } else {
-                    return emptyList()
-                }
-            }
-        }
+        return parsedOutput.executionFailed
     }
 
     fun checkstyleValidationActive() : Boolean {
-        when (assignment.language) {
-            Language.JAVA -> {
-                for (mavenOutputLine in mavenOutputLines) {
-                    if (mavenOutputLine.startsWith("[INFO] Starting audit...")) {
-                        return true
-                    }
-                }
-
-                return false
-            }
-            Language.KOTLIN -> {
-                for (mavenOutputLine in mavenOutputLines) {
-                    if (mavenOutputLine.startsWith("[INFO] --- detekt")) {
-                        return true
-                    }
-                }
-
-                return false
-            }
-        }
+        return parsedOutput.checkstyleValidationActive
     }
 
     fun PMDerrors() : List<String> {
-        return mavenOutputLines
-                .filter { it -> it.startsWith("[INFO] PMD Failure") }
-                .map { it -> it.substring(19) }  // to remove "[INFO] PMD Failure: "
+        return parsedOutput.pmdErrors
     }
 
     private fun junitSummary(testType: TestType = TestType.TEACHER) : String? {
@@ -394,18 +209,7 @@ data class BuildReport(val mavenOutputLines: List<String>,
      * @return a BigDecimal representing the elapsed time
      */
     fun elapsedTimeJUnit() : BigDecimal? {
-        var total : BigDecimal? = null
-        val junitSummaryTeacher = junitSummaryAsObject(TestType.TEACHER)
-        if (junitSummaryTeacher != null) {
-            total = junitSummaryTeacher.ellapsed.toBigDecimal()
-        }
-
-        val junitSummaryHidden = junitSummaryAsObject(TestType.HIDDEN)
-        if (junitSummaryHidden != null && total != null) {
-            total += junitSummaryHidden.ellapsed.toBigDecimal()
-        }
-
-        return total
+        return elapsedTimeJUnit(junitSummaryAsObject(TestType.TEACHER), junitSummaryAsObject(TestType.HIDDEN))
     }
 
     /**
@@ -481,36 +285,7 @@ data class BuildReport(val mavenOutputLines: List<String>,
     }
 
     fun testResults() : List<JUnitMethodResult>? {
-        if (assignment.assignmentTestMethods.isEmpty()) {
-            return null  // assignment is not properly configured
-        }
-
-        var globalMethodResults = mutableListOf<JUnitMethodResult>()
-        for (junitResult in junitResults) {
-            if (junitResult.isTeacherPublic(assignment) || junitResult.isTeacherHidden()) {
-                globalMethodResults.addAll(junitResult.junitMethodResults)
-            }
-        }
-
-        var result = mutableListOf<JUnitMethodResult>()
-        for (assignmentTest in assignment.assignmentTestMethods) {
-            var found = false
-            for (submissionTest in globalMethodResults) {
-                if (submissionTest.methodName.equals(assignmentTest.testMethod) &&
-                        submissionTest.getClassName().equals(assignmentTest.testClass)) {
-                    result.add(submissionTest)
-                    found = true
-                    break
-                }
-            }
-
-            // make sure there are no holes in the tests "matrix"
-            if (!found) {
-                result.add(JUnitMethodResult.empty())
-            }
-        }
-
-        return result
+        return testResults(assignment, junitResults)
     }
 
     /**
@@ -542,4 +317,60 @@ data class BuildReport(val mavenOutputLines: List<String>,
 
         return sanitizedError.replace(escapeSequenceRegex, "")  // remove extra escape characters used for coloring
     }
+
+    companion object {
+
+        /**
+         * Calculates the total elapsed time during the execution of the Unit Tests (see [elapsedTimeJUnit]).
+         */
+        fun elapsedTimeJUnit(junitSummaryTeacher: JUnitSummary?, junitSummaryHidden: JUnitSummary?) : BigDecimal? {
+            var total : BigDecimal? = null
+            if (junitSummaryTeacher != null) {
+                total = junitSummaryTeacher.ellapsed.toBigDecimal()
+            }
+
+            if (junitSummaryHidden != null && total != null) {
+                total += junitSummaryHidden.ellapsed.toBigDecimal()
+            }
+
+            return total
+        }
+
+        /**
+         * Gets the result of each test of the [Assignment] (its row in the tests "matrix"), in the order of
+         * [Assignment.assignmentTestMethods].
+         */
+        fun testResults(assignment: Assignment, junitResults: List<JUnitResults>) : List<JUnitMethodResult>? {
+            if (assignment.assignmentTestMethods.isEmpty()) {
+                return null  // assignment is not properly configured
+            }
+
+            var globalMethodResults = mutableListOf<JUnitMethodResult>()
+            for (junitResult in junitResults) {
+                if (junitResult.isTeacherPublic(assignment) || junitResult.isTeacherHidden()) {
+                    globalMethodResults.addAll(junitResult.junitMethodResults)
+                }
+            }
+
+            var result = mutableListOf<JUnitMethodResult>()
+            for (assignmentTest in assignment.assignmentTestMethods) {
+                var found = false
+                for (submissionTest in globalMethodResults) {
+                    if (submissionTest.methodName.equals(assignmentTest.testMethod) &&
+                            submissionTest.getClassName().equals(assignmentTest.testClass)) {
+                        result.add(submissionTest)
+                        found = true
+                        break
+                    }
+                }
+
+                // make sure there are no holes in the tests "matrix"
+                if (!found) {
+                    result.add(JUnitMethodResult.empty())
+                }
+            }
+
+            return result
+        }
+    }
 }
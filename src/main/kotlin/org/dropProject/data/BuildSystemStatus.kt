@@ -0,0 +1,72 @@
+/*-
+ * ========================LICENSE_START=================================
+ * DropProject
+ * %%
+ * Copyright (C) 2019 - 2026 Pedro Alves
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package org.dropproject.data
+
+/**
+ * Represents a snapshot of the build system, shown (and refreshed) in the admin dashboard.
+ *
+ * @property queued are the builds waiting in the queue, starting with the oldest
+ * @property running are the builds that are running, starting with the oldest
+ * @property finishedLastMinute is the number of builds that finished in the last minute
+ * @property finishedLastHour is the number of builds that finished in the last hour
+ * @property latencies are the end-to-end latencies (from the submission until its results are stored) of the builds
+ * that finished in the last hour, by assignment
+ */
+data class BuildSystemStatus(val queued: List<QueuedBuildInfo>,
+                             val running: List<RunningBuildInfo>,
+                             val finishedLastMinute: Int,
+                             val finishedLastHour: Int,
+                             val latencies: List<AssignmentLatency>)
+
+/**
+ * Represents a build waiting in the queue.
+ */
+data class QueuedBuildInfo(val submissionId: Long,
+                           val assignmentId: String,
+                           val priority: String,
+                           val waitingSeconds: Long)
+
+/**
+ * Represents a running build.
+ *
+ * @property submissionId is the id of the submission being built, or null if it's not a submission (e.g., the
+ * assignment check)
+ * @property assignmentId is the id of the assignment or null if it's not known
+ * @property worker identifies the node (or remote worker) that is running the build
+ * @property pid is the id of the maven process, if it's running on this node
+ * @property cpuSeconds is the CPU time used by the build processes, if it's running on this node
+ * @property memoryMb is the resident memory of the build processes, if it's running on this node (and it's
+ * available, which is only the case on Linux)
+ */
+data class RunningBuildInfo(val submissionId: Long?,
+                            val assignmentId: String?,
+                            val worker: String,
+                            val runningSeconds: Long,
+                            val pid: Long? = null,
+                            val cpuSeconds: Double? = null,
+                            val memoryMb: Long? = null)
+
+/**
+ * Represents the end-to-end latency of the builds of an assignment.
+ */
+data class AssignmentLatency(val assignmentId: String,
+                             val builds: Int,
+                             val p50Seconds: Long,
+                             val p95Seconds: Long)
@@ -0,0 +1,58 @@
+/*-
+ * ========================LICENSE_START=================================
+ * DropProject
+ * %%
+ * Copyright (C) 2019 - 2026 Pedro Alves
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package org.dropproject.data
+
+import java.util.*
+
+/**
+ * Represents the progress of a bulk rebuild (i.e., the rebuild of the final submissions of every group of an
+ * assignment). It's kept in the [org.dropproject.config.PendingTasks], under its taskId.
+ *
+ * @property taskId is a String identifying the bulk rebuild
+ * @property assignmentId is a String identifying the assignment being rebuilt
+ * @property requestedBy is the user that requested the rebuild
+ * @property total is the number of submissions that will be rebuilt or skipped
+ * @property skipped is the number of submissions that didn't need to be rebuilt (their inputs didn't change)
+ * @property rebuilt is the number of submissions that were rebuilt successfully
+ * @property failed is the number of submissions whose rebuild failed
+ * @property cancelledBuilds is the number of rebuilds that were cancelled before running
+ * @property running is the number of rebuilds that are waiting in the queue or running
+ */
+class BulkRebuildProgress(val taskId: String,
+                          val assignmentId: String,
+                          val requestedBy: String,
+                          val startDate: Date = Date()) {
+
+    @Volatile var total = 0
+    @Volatile var skipped = 0
+    @Volatile var rebuilt = 0
+    @Volatile var failed = 0
+    @Volatile var cancelledBuilds = 0
+    @Volatile var running = 0
+
+    @Volatile var cancelled = false
+    @Volatile var finished = false
+
+    val processed: Int
+        get() = skipped + rebuilt + failed + cancelledBuilds
+
+    val progressPercent: Int
+        get() = if (total == 0) (if (finished) 100 else 0) else processed * 100 / total
+}
@@ -20,6 +20,7 @@
 package org.dropproject.data
 
 import com.fasterxml.jackson.annotation.JsonView
+import jakarta.persistence.Embeddable
 
 /**
  * Represents the summary of execution of a set of JUnit Tests.
@@ -31,7 +32,7 @@ import com.fasterxml.jackson.annotation.JsonView
  * @property numSkipped is an Int
  * @property ellapsed is a Float representing the time that the execution of the tests took
  */
-
+@Embeddable  // see SubmissionSummary
 data class JUnitSummary(
         @JsonView(JSONViews.TeacherAPI::class)
         val numTests: Int,
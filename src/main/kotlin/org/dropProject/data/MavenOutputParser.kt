@@ -0,0 +1,257 @@
+/*-
+ * ========================LICENSE_START=================================
+ * DropProject
+ * %%
+ * Copyright (C) 2019 - 2026 Pedro Alves
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package org.dropproject.data
+
+import org.dropproject.dao.Language
+
+/**
+ * Represents what was extracted from the output of a maven build (see [MavenOutputParser]).
+ *
+ * @property compilationErrors is a List of String with the compilation problems (main and test code)
+ * @property checkstyleErrors is a List of String with the checkstyle (java) or detekt (kotlin) problems. The detekt
+ * problems are not yet translated (see [BuildReport.checkstyleErrors])
+ * @property checkstyleValidationActive is a Boolean, indicating if the checkstyle (or detekt) plugin ran
+ * @property pmdErrors is a List of String with the PMD problems
+ * @property executionFailed is a Boolean, indicating if maven itself failed (see [BuildReport.mavenExecutionFailed])
+ */
+data class ParsedMavenOutput(val compilationErrors: List<String>,
+                             val checkstyleErrors: List<String>,
+                             val checkstyleValidationActive: Boolean,
+                             val pmdErrors: List<String>,
+                             val executionFailed: Boolean)
+
+/**
+ * Parses the output of a maven build in a single pass, classifying each line only once. The lines can be fed as they
+ * are produced (e.g., from the output handler of the maven invocation) or all at once, with [parse].
+ *
+ * Each kind of problem is reported by maven in a block of lines (e.g., the checkstyle problems are between
+ * "Starting audit..." and "Audit done."), so the parser keeps track of the blocks it's in and collects the relevant
+ * lines of each one.
+ *
+ * @param language is the [Language] of the project, since the compiler and the checkstyle plugin depend on it
+ * @param mavenizedProjectFolder is the folder where the project was built, which is removed from the file names
+ */
+class MavenOutputParser(private val language: Language, mavenizedProjectFolder: String) {
+
+    private enum class BlockState { NOT_STARTED, STARTED, ENDED }
+
+    /**
+     * The lines of a block that starts with the last occurrence of a line and ends with the last occurrence of another.
+     */
+    private class LastBlock(private val keep: (String) -> Boolean) {
+        var lines: ArrayList<String>? = null  // null until the block starts
+        private var endIdx = -1
+
+        fun start() {
+            lines = ArrayList()
+            endIdx = -1
+        }
+
+        fun end() {
+            lines?.let { endIdx = it.size }
+        }
+
+        fun accept(line: String) {
+            lines?.takeIf { keep(line) }?.add(line)
+        }
+
+        fun result(): List<String> = lines?.takeIf { endIdx >= 0 }?.subList(0, endIdx) ?: emptyList()
+    }
+
+    private val folder = if (language == Language.JAVA) "java" else "kotlin"
+    private val mainFolder = "${mavenizedProjectFolder}/src/main/${folder}/"
+    private val testFolder = "${mavenizedProjectFolder}/src/test/${folder}/"
+
+    private val compilationTrigger = if (language == Language.JAVA) javaCompilationTrigger else kotlinCompilationTrigger
+    private val compilationTriggerPrefix = if (language == Language.JAVA) "[ERROR] COMPILATION ERROR :" else "[INFO] --- kotlin"
+
+    // only the first block of compilation output is considered
+    private var compilationState = BlockState.NOT_STARTED
+    private val compilationLines = ArrayList<String>()
+
+    private val testCompilationBlock = LastBlock { isCompilationProblem(it) }
+    private var forkedVMTerminated = false
+
+    private val auditBlock = LastBlock { it.startsWith("[WARN] ") }
+
+    // only the first detekt output is considered. Its end depends on the version of the detekt-maven-plugin
+    private var detektState = BlockState.NOT_STARTED
+    private var detektLinesSinceStart = 0
+    private val detektLines = ArrayList<String>()
+
+    private var checkstyleValidationActive = false
+    private val pmdErrors = ArrayList<String>()
+
+    private var effectiveModelProblems = false
+    private var forkedProcessError = false
+    private var failedGoal = false
+    private var failedGoalOfCompilerOrTests = false
+
+    @Synchronized
+    fun accept(line: String) {
+        parseCompilation(line)
+
+        if (line.startsWith(TEST_COMPILATION_TRIGGER_PREFIX) && testCompilationTrigger.matches(line)) {
+            testCompilationBlock.start()
+        } else {
+            if (line.startsWith("[ERROR] -> [Help 1]")) {
+                testCompilationBlock.end()
+            }
+            testCompilationBlock.accept(line)
+        }
+
+        // these are searched for in the whole line, so they're only searched for until they're found
+        if (!forkedVMTerminated && line.contains("The forked VM terminated without properly saying goodbye.")) {
+            forkedVMTerminated = true
+        }
+
+        when (language) {
+            Language.JAVA -> parseCheckstyle(line)
+            Language.KOTLIN -> parseDetekt(line)
+        }
+
+        if (line.startsWith("[INFO] PMD Failure")) {
+            pmdErrors.add(line.substring(19))  // to remove "[INFO] PMD Failure: "
+        }
+
+        if (line.startsWith("[WARNING] Some problems were encountered while building the effective model")) {
+            effectiveModelProblems = true
+        }
+        if (!forkedProcessError && line.contains("There was an error in the forked process")) {
+            forkedProcessError = true
+        }
+        if (line.startsWith("[ERROR] Failed to execute goal")) {
+            failedGoal = true
+            if (line.startsWith("[ERROR] Failed to execute goal org.apache.maven.plugins:maven-surefire-plugin") ||
+                    line.startsWith("[ERROR] Failed to execute goal org.apache.maven.plugins:maven-compiler-plugin") ||
+                    line.startsWith("[ERROR] Failed to execute goal org.jetbrains.kotlin:kotlin-maven-plugin")) {
+                failedGoalOfCompilerOrTests = true
+            }
+        }
+    }
+
+    private fun parseCompilation(line: String) {
+        if (compilationState == BlockState.ENDED) {
+            return
+        }
+
+        // the regular expressions are only tried on the lines that can match them
+        if (line.startsWith(compilationTriggerPrefix) && compilationTrigger.matches(line)) {
+            compilationState = BlockState.STARTED
+            compilationLines.clear()
+        } else if (compilationState == BlockState.STARTED) {
+            if (line.startsWith("[INFO] BUILD FAILURE") ||
+                    line.startsWith("[INFO] --- ")) {    // no compilation errors on Kotlin
+                compilationState = BlockState.ENDED
+            } else if (isCompilationProblem(line)) {
+                compilationLines.add(line)
+            }
+        }
+    }
+
+    private fun parseCheckstyle(line: String) {
+        if (line.startsWith("[INFO] Starting audit...")) {
+            checkstyleValidationActive = true
+            auditBlock.start()
+        } else {
+            if (line.startsWith("Audit done.")) {
+                auditBlock.end()
+            }
+            auditBlock.accept(line)
+        }
+    }
+
+    private fun parseDetekt(line: String) {
+        if (line.startsWith("[INFO] --- detekt")) {
+            checkstyleValidationActive = true
+            if (detektState != BlockState.ENDED) {
+                detektState = BlockState.STARTED
+                detektLinesSinceStart = 0
+                detektLines.clear()
+            }
+        } else if (detektState == BlockState.STARTED) {
+            if (detektLinesSinceStart > 1 &&
+                    (line.startsWith("detekt finished") || line.startsWith("[INFO]"))) {
+                detektState = BlockState.ENDED
+            } else {
+                if (line.startsWith("\t") && !line.startsWith("\t-")) {
+                    detektLines.add(line)
+                }
+                detektLinesSinceStart++
+            }
+        }
+    }
+
+    private fun isCompilationProblem(line: String) = line.startsWith("[ERROR] ") || line.startsWith("  ")
+
+    private fun compilationProblem(line: String) =
+        line.replace("[ERROR] ${mainFolder}", "").replace("[ERROR] ${testFolder}", "[TEST] ")
+
+    /**
+     * @return what was extracted from the lines accepted so far
+     */
+    @Synchronized
+    fun result(): ParsedMavenOutput {
+        val compilationErrors = ArrayList<String>()
+        if (compilationState == BlockState.ENDED) {
+            compilationLines.mapTo(compilationErrors) { compilationProblem(it) }
+        }
+        testCompilationBlock.result().mapTo(compilationErrors) { compilationProblem(it) }
+
+        // check if tests didn't run because of a crash or System.exit(). for the lack of better solution, I'll
+        // consider this as a compilation error
+        if (forkedVMTerminated) {
+            when (language) {
+                Language.JAVA -> compilationErrors.add("Invalid call to System.exit(). Please remove this instruction")
+                Language.KOTLIN -> compilationErrors.add("Invalid call to System.exit() or exitProcess(). Please remove this instruction")
+            }
+        }
+
+        val checkstyleErrors = when (language) {
+            Language.JAVA -> auditBlock.result().map { it.replace("[WARN] ${mainFolder}", "") }
+            Language.KOTLIN -> detektLines.map { it.replace("\t", "").replace(mainFolder, "") }
+        }
+
+        // if there were problems with the pom.xml or forking the process (e.g., heap space), or if it has a failed
+        // goal other than compiler or surefire (junit), it is a fatal error
+        val executionFailed = effectiveModelProblems || forkedProcessError || (failedGoal && !failedGoalOfCompilerOrTests)
+
+        return ParsedMavenOutput(compilationErrors, checkstyleErrors, checkstyleValidationActive, ArrayList(pmdErrors),
+            executionFailed)
+    }
+
+    companion object {
+        private const val TEST_COMPILATION_TRIGGER_PREFIX = "[ERROR] Failed to execute goal org.jetbrains.kotlin:kotlin-maven-plugin"
+
+        private val javaCompilationTrigger = "\\[ERROR\\] COMPILATION ERROR :.*".toRegex()
+        private val kotlinCompilationTrigger = "\\[INFO\\] --- kotlin(-maven-plugin)?:\\d+\\.\\d+\\.\\d+:compile.*".toRegex()
+        private val testCompilationTrigger =
+            "\\[ERROR\\] Failed to execute goal org\\.jetbrains\\.kotlin:kotlin-maven-plugin.*test-compile.*".toRegex()
+
+        /**
+         * Parses the whole output of a maven build.
+         */
+        fun parse(language: Language, mavenizedProjectFolder: String, mavenOutputLines: List<String>): ParsedMavenOutput {
+            val parser = MavenOutputParser(language, mavenizedProjectFolder)
+            mavenOutputLines.forEach { parser.accept(it) }
+            return parser.result()
+        }
+    }
+}
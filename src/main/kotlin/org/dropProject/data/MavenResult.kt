@@ -21,17 +21,31 @@ package org.dropproject.data
 
 import org.dropproject.Constants
 
+/**
+ * Enum representing the stages of a build, in the order in which they run. Maven stops at the first stage that fails,
+ * so the later stages don't run (e.g., a project that doesn't compile doesn't spend time running tests).
+ */
+enum class BuildStage {
+    COMPILATION, TEST_COMPILATION, TESTS, OTHER
+}
+
 /**
  * Represents the Output of a Maven build process.
  *
  * @property resultCode is an Int
  * @property outputLines is a List of String
  * @property expiredByTimeout is a Boolean
+ * @property outputTrimmed is a Boolean, indicating if the build was stopped because it was producing too much output
+ * @property failedStage is the [BuildStage] where the build failed, or null if it didn't fail
  */
 data class MavenResult(val resultCode : Int,
                        val outputLines: List<String>,
-                       var expiredByTimeout : Boolean = false) {
-    fun tooMuchOutput() = outputLines
+                       var expiredByTimeout : Boolean = false,
+                       val outputTrimmed : Boolean = false,
+                       val failedStage : BuildStage? = null) {
+    fun compilationFailed() = failedStage == BuildStage.COMPILATION || failedStage == BuildStage.TEST_COMPILATION
+
+    fun tooMuchOutput() = outputTrimmed || outputLines
         .filter { !it.startsWith("\tat ") }  // count lines that are not associated with stacktraces
         .size >= Constants.TOO_MUCH_OUTPUT_THRESHOLD
 }
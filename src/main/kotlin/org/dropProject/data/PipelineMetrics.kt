@@ -0,0 +1,58 @@
+/*-
+ * ========================LICENSE_START=================================
+ * DropProject
+ * %%
+ * Copyright (C) 2019 - 2026 Pedro Alves
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package org.dropproject.data
+
+/**
+ * Represents the stages that a submission goes through, from the upload until its results are stored.
+ *
+ * @property tag is the value of the stage label in the exported metrics
+ */
+enum class PipelineStage(val tag: String) {
+    UPLOAD_STORE("upload_store"),
+    UNZIP("unzip"),
+    PROJECT_STRUCTURE("project_structure"),
+    POM_VALIDATION("pom_validation"),
+    MAVENIZE("mavenize"),
+    QUEUE_WAIT("queue_wait"),
+    BUILD("build"),
+    BUILD_REPORT("build_report"),
+    PERSISTENCE("persistence")
+}
+
+/**
+ * Represents the time spent in a [PipelineStage] by the submissions of an assignment that had the same outcome.
+ *
+ * @property stage is the [PipelineStage]
+ * @property assignmentId is the id of the assignment
+ * @property outcome is a String describing how the stage ended (e.g., "success", "error", "compilation")
+ * @property count is the number of times that the stage was executed
+ * @property totalNanos is the total time spent in the stage, in nanoseconds
+ * @property maxNanos is the longest execution of the stage, in nanoseconds
+ */
+data class StageTimer(val stage: PipelineStage,
+                      val assignmentId: String,
+                      val outcome: String,
+                      val count: Long,
+                      val totalNanos: Long,
+                      val maxNanos: Long) {
+
+    val meanMillis: Long
+        get() = if (count == 0L) 0 else totalNanos / count / 1_000_000
+}
@@ -0,0 +1,29 @@
+/*-
+ * ========================LICENSE_START=================================
+ * DropProject
+ * %%
+ * Copyright (C) 2019 - 2026 Pedro Alves
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package org.dropproject.data
+
+/**
+ * Represents where a submission is in the build queue and when its build is expected to finish.
+ *
+ * @property position is the number of builds that have to finish before this one starts (0 means it's running)
+ * @property estimatedSeconds is the expected time, in seconds, until the build finishes, or null if there isn't
+ * enough information to estimate it (e.g., no build finished since Drop Project started)
+ */
+data class QueueEstimate(val position: Int, val estimatedSeconds: Long?)
@@ -0,0 +1,69 @@
+/*-
+ * ========================LICENSE_START=================================
+ * DropProject
+ * %%
+ * Copyright (C) 2019 - 2026 Pedro Alves
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package org.dropproject.data
+
+import java.io.File
+
+/**
+ * Why a [RunningBuild] was killed.
+ */
+enum class BuildKillReason {
+    TIMEOUT,            // the build took longer than the configured timeout
+    ABORTED,            // an admin aborted the submission
+    TOO_MUCH_OUTPUT     // the build produced too much output (see MavenOutputCollector)
+}
+
+/**
+ * Represents a maven build that is running on this node.
+ *
+ * @property submissionId is the id of the submission being built, or null if it's not a submission (e.g., the
+ * assignment check)
+ * @property mavenizedProjectFolder is the folder that is being built
+ * @property thread is the Thread that started the build
+ * @property startedAt is the time (in millis) when the build started
+ */
+class RunningBuild(val submissionId: Long?,
+                   val mavenizedProjectFolder: File,
+                   val thread: Thread,
+                   val startedAt: Long = System.currentTimeMillis()) {
+
+    /**
+     * The maven process, once it's found (see [org.dropproject.services.BuildProcessMonitor]).
+     */
+    @Volatile
+    var process: ProcessHandle? = null
+
+    @Volatile
+    var killedBy: BuildKillReason? = null
+
+    val runningSeconds: Long
+        get() = (System.currentTimeMillis() - startedAt) / 1000
+
+    val pid: Long?
+        get() = process?.pid()
+}
+
+/**
+ * Represents the resources used by the processes of a [RunningBuild] (the maven process and its descendants).
+ *
+ * @property cpuSeconds is the CPU time used so far, or null if it's not available
+ * @property memoryMb is the resident memory, or null if it's not available
+ */
+data class BuildResourceUsage(val cpuSeconds: Double?, val memoryMb: Long?)
@@ -23,9 +23,14 @@ import com.fasterxml.jackson.annotation.JsonInclude
 
 /**
  * Represents the response after a submission. It will be converted to JSON
+ *
+ * @property queuePosition is the number of builds that have to finish before this submission's build starts (0 means
+ * it's running), or null if it isn't waiting for a build
+ * @property estimatedSeconds is the expected time, in seconds, until the submission is validated
  */
 @JsonInclude(JsonInclude.Include.NON_NULL)  // exclude nulls fields from serialization
-class SubmissionResult(val submissionId: Long? = null, val error: String? = null) {
+class SubmissionResult(val submissionId: Long? = null, val error: String? = null,
+                       val queuePosition: Int? = null, val estimatedSeconds: Long? = null) {
 
     init {
         if (submissionId == null && error == null) {
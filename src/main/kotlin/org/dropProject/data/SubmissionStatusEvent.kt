@@ -0,0 +1,43 @@
+/*-
+ * ========================LICENSE_START=================================
+ * DropProject
+ * %%
+ * Copyright (C) 2019 - 2026 Pedro Alves
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package org.dropproject.data
+
+import com.fasterxml.jackson.annotation.JsonInclude
+import org.dropproject.dao.SubmissionReport
+import org.dropproject.dao.SubmissionStatus
+import java.util.*
+
+/**
+ * Represents a change in the status of a submission, pushed to the clients that follow it (see
+ * [org.dropproject.services.SubmissionEvents]). It will be converted to JSON
+ *
+ * @property finished is true if the submission won't change anymore (i.e., its build ended)
+ * @property queuePosition is the number of builds that have to finish before this one starts (0 means it's running)
+ * @property estimatedSeconds is the expected time, in seconds, until the submission is validated
+ * @property summary are the results of the build (except the hidden tests), sent when it's finished
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)  // exclude nulls fields from serialization
+data class SubmissionStatusEvent(val submissionId: Long,
+                                 val status: SubmissionStatus,
+                                 val statusDate: Date,
+                                 val finished: Boolean,
+                                 val queuePosition: Int? = null,
+                                 val estimatedSeconds: Long? = null,
+                                 val summary: List<SubmissionReport>? = null)
@@ -0,0 +1,38 @@
+/*-
+ * ========================LICENSE_START=================================
+ * DropProject
+ * %%
+ * Copyright (C) 2019 - 2026 Pedro Alves
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package org.dropproject.data
+
+/**
+ * Represents a build handed to a remote worker. It contains everything the worker needs to build the project, besides
+ * the project itself, which is downloaded separately.
+ *
+ * @property jobId is a Long, identifying the [BuildJob]
+ * @property submissionId is a Long, identifying the [Submission] being built
+ * @property authorsStr is a String identifying the authors, used for logging
+ * @property principalName is the user on behalf of whom the tests run
+ * @property maxMemoryMb is the maximum memory allowed for the tests
+ * @property calculateCoverage is a Boolean, indicating if the coverage of the student tests should be measured
+ */
+data class WorkerBuildJob(val jobId: Long,
+                          val submissionId: Long,
+                          val authorsStr: String,
+                          val principalName: String?,
+                          val maxMemoryMb: Int?,
+                          val calculateCoverage: Boolean)
@@ -20,6 +20,7 @@
 package org.dropproject.forms
 
 import org.dropproject.dao.AssignmentVisibility
+import org.dropproject.dao.BuildEngine
 import org.dropproject.dao.Language
 import org.dropproject.dao.LeaderboardType
 import org.dropproject.dao.SubmissionStructure
@@ -72,6 +73,8 @@ data class AssignmentForm(
 
         var leaderboardType: LeaderboardType? = null,
 
+        var buildEngine: BuildEngine? = null,
+
         var assignees: String? = null,
 
         var editMode: Boolean = false,
@@ -0,0 +1,79 @@
+/*-
+ * ========================LICENSE_START=================================
+ * DropProject
+ * %%
+ * Copyright (C) 2019 - 2026 Pedro Alves
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package org.dropproject.repository
+
+import org.dropproject.dao.BuildJob
+import org.dropproject.dao.BuildJobStatus
+import org.springframework.data.jpa.repository.JpaRepository
+import org.springframework.data.jpa.repository.Modifying
+import org.springframework.data.jpa.repository.Query
+import org.springframework.data.repository.query.Param
+import org.springframework.transaction.annotation.Transactional
+import java.util.*
+
+/**
+ * Provides functions to query [BuildJob]s that have been persisted in the database.
+ */
+interface BuildJobRepository : JpaRepository<BuildJob, Long> {
+
+    fun findByStatusOrderByEnqueuedAt(status: BuildJobStatus): List<BuildJob>
+    fun findByStatusAndLeaseExpiresAtBefore(status: BuildJobStatus, date: Date): List<BuildJob>
+    fun existsBySubmissionId(submissionId: Long): Boolean
+
+    /**
+     * Claims a queued job for a node. Only one node succeeds, even if several try to claim the same job.
+     *
+     * @return 1 if the job was claimed, 0 otherwise
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE BuildJob j SET j.status = :running, j.leaseOwner = :owner, j.leaseExpiresAt = :leaseExpiresAt, " +
+            "j.heartbeatDate = :now, j.startedAt = :now, j.attempts = j.attempts + 1 " +
+            "WHERE j.id = :id AND j.status = :queued")
+    fun claim(@Param("id") id: Long, @Param("owner") owner: String, @Param("now") now: Date,
+              @Param("leaseExpiresAt") leaseExpiresAt: Date,
+              @Param("queued") queued: BuildJobStatus = BuildJobStatus.QUEUED,
+              @Param("running") running: BuildJobStatus = BuildJobStatus.RUNNING): Int
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE BuildJob j SET j.leaseExpiresAt = :leaseExpiresAt, j.heartbeatDate = :now " +
+            "WHERE j.leaseOwner = :owner AND j.status = :running")
+    fun renewLeases(@Param("owner") owner: String, @Param("now") now: Date,
+                    @Param("leaseExpiresAt") leaseExpiresAt: Date,
+                    @Param("running") running: BuildJobStatus = BuildJobStatus.RUNNING): Int
+
+    /**
+     * Puts a running job whose lease expired back in the queue. Only one node succeeds, even if several try to
+     * release the same job.
+     *
+     * @return 1 if the job was released, 0 otherwise
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE BuildJob j SET j.status = :queued, j.leaseOwner = null, j.leaseExpiresAt = null " +
+            "WHERE j.id = :id AND j.status = :running AND j.leaseExpiresAt < :now")
+    fun releaseExpired(@Param("id") id: Long, @Param("now") now: Date,
+                       @Param("queued") queued: BuildJobStatus = BuildJobStatus.QUEUED,
+                       @Param("running") running: BuildJobStatus = BuildJobStatus.RUNNING): Int
+
+    @Transactional
+    fun deleteBySubmissionIdAndStatus(submissionId: Long, status: BuildJobStatus): Long
+}
@@ -19,10 +19,14 @@
  */
 package org.dropproject.repository
 
+import org.springframework.data.domain.Pageable
 import org.springframework.data.jpa.repository.JpaRepository
+import org.springframework.data.jpa.repository.Query
 import org.dropproject.dao.BuildReport
 
 interface BuildReportRepository : JpaRepository<BuildReport, Long> {
 
+    @Query("select r.id from BuildReport r where r.compressedBuildReport is null")
+    fun findUncompressedIds(pageable: Pageable) : List<Long>
 
 }
@@ -19,7 +19,11 @@
  */
 package org.dropproject.repository
 
+import org.springframework.data.domain.Pageable
 import org.springframework.data.jpa.repository.JpaRepository
+import org.springframework.data.repository.query.Param
+import org.springframework.data.jpa.repository.Modifying
+import org.springframework.data.jpa.repository.Query
 import org.springframework.transaction.annotation.Transactional
 import org.dropproject.dao.JUnitReport
 import org.dropproject.dao.ProjectGroup
@@ -33,6 +37,15 @@ interface JUnitReportRepository : JpaRepository<JUnitReport, Long> {
 
     fun findBySubmissionId(submissionId: Long) : List<JUnitReport>?
 
+    @Query("select distinct r.submissionId from JUnitReport r where not exists " +
+            "(select t.id from SubmissionTestResult t where t.submissionId = r.submissionId)")
+    fun findSubmissionIdsWithoutTestResults() : List<Long>
+
+    @Query("select r.id from JUnitReport r where r.compressedXmlReport is null")
+    fun findUncompressedIds(pageable: Pageable) : List<Long>
+
     @Transactional
-    fun deleteBySubmissionId(submissionId: Long)
+    @Modifying
+    @Query("delete from JUnitReport jr where jr.submissionId = :submissionId")
+    fun deleteBySubmissionId(@Param("submissionId") submissionId: Long)
 }
@@ -19,7 +19,11 @@
  */
 package org.dropproject.repository
 
+import org.springframework.data.domain.Pageable
 import org.springframework.data.jpa.repository.JpaRepository
+import org.springframework.data.repository.query.Param
+import org.springframework.data.jpa.repository.Modifying
+import org.springframework.data.jpa.repository.Query
 import org.springframework.transaction.annotation.Transactional
 import org.dropproject.dao.JacocoReport
 
@@ -30,6 +34,11 @@ interface JacocoReportRepository : JpaRepository<JacocoReport, Long> {
 
     fun findBySubmissionId(submissionId: Long) : List<JacocoReport>?
 
+    @Query("select r.id from JacocoReport r where r.compressedCsvReport is null")
+    fun findUncompressedIds(pageable: Pageable) : List<Long>
+
     @Transactional
-    fun deleteBySubmissionId(submissionId: Long)
+    @Modifying
+    @Query("delete from JacocoReport jr where jr.submissionId = :submissionId")
+    fun deleteBySubmissionId(@Param("submissionId") submissionId: Long)
 }
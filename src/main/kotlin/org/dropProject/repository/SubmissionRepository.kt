@@ -55,6 +55,12 @@ interface SubmissionRepository : JpaRepository<Submission, Long> {
 
     fun findByGitSubmissionId(gitSubmissionId: Long) : List<Submission>
 
+    fun findByBuildReportIdIn(buildReportIds: Collection<Long>) : List<Submission>
+
+    fun findFirstByAssignmentIdAndGroupAndSubmitterUserIdAndSourcesFingerprintAndStatusAndIdNotOrderByIdDesc(
+        assignmentId: String, group: ProjectGroup, submitterUserId: String, sourcesFingerprint: String, status: String,
+        id: Long) : Submission?
+
     fun findFirstByAssignmentIdOrderBySubmissionDateDesc(assignmentId: String) : Submission
 
     fun findByStatusOrderByStatusDate(statusId: String): List<Submission>
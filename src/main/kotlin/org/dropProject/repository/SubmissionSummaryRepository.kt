@@ -0,0 +1,43 @@
+/*-
+ * ========================LICENSE_START=================================
+ * DropProject
+ * %%
+ * Copyright (C) 2019 - 2026 Pedro Alves
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package org.dropproject.repository
+
+import org.springframework.data.jpa.repository.JpaRepository
+import org.springframework.data.jpa.repository.Modifying
+import org.springframework.data.jpa.repository.Query
+import org.springframework.data.repository.query.Param
+import org.springframework.transaction.annotation.Transactional
+import org.dropproject.dao.SubmissionSummary
+
+/**
+ * Provides functions to query [SubmissionSummary]s that have been persisted in the database.
+ */
+interface SubmissionSummaryRepository : JpaRepository<SubmissionSummary, Long> {
+
+    fun findByAssignmentId(assignmentId: String) : List<SubmissionSummary>
+
+    @Transactional
+    fun deleteBySubmissionId(submissionId: Long)
+
+    @Transactional
+    @Modifying
+    @Query("delete from SubmissionSummary ss where ss.assignmentId = :assignmentId")
+    fun deleteByAssignmentId(@Param("assignmentId") assignmentId: String)
+}
@@ -68,10 +68,13 @@ class AssignmentService(
     val submissionService: SubmissionService,
     val assignmentTestMethodRepository: AssignmentTestMethodRepository,
     val submissionReportRepository: SubmissionReportRepository,
+    val submissionSummaryRepository: SubmissionSummaryRepository,
     val assignmentTagRepository: AssignmentTagRepository,
     val buildReportRepository: BuildReportRepository,
     val jUnitReportRepository: JUnitReportRepository,
+    val buildReportBuilder: BuildReportBuilder,
     val jacocoReportRepository: JacocoReportRepository,
+    val reportCompressor: ReportCompressor,
     val projectGroupRestrictionsRepository: ProjectGroupRestrictionsRepository,
     val zipService: ZipService,
     val pendingTasks: PendingTasks,
@@ -298,6 +301,11 @@ class AssignmentService(
      * @param assignmentForm, the AssignmentForm from which the Assignment contents will be copied
      */
     fun updateAssignment(existingAssignment: Assignment, assignmentForm: AssignmentForm) {
+        // the submission summaries (e.g., the number of mandatory tests that passed) depend on these settings
+        val summariesOutdated = existingAssignment.mandatoryTestsSuffix != assignmentForm.mandatoryTestsSuffix ||
+                existingAssignment.acceptsStudentTests != assignmentForm.acceptsStudentTests ||
+                existingAssignment.hiddenTestsVisibility != assignmentForm.hiddenTestsVisibility
+
         existingAssignment.name = assignmentForm.assignmentName!!
         existingAssignment.packageName = assignmentForm.assignmentPackage
         existingAssignment.language = assignmentForm.language!!
@@ -313,6 +321,7 @@ class AssignmentService(
         existingAssignment.showLeaderBoard = assignmentForm.leaderboardType != null
         existingAssignment.hiddenTestsVisibility = assignmentForm.hiddenTestsVisibility
         existingAssignment.leaderboardType = assignmentForm.leaderboardType
+        existingAssignment.buildEngine = assignmentForm.buildEngine
         existingAssignment.visibility = assignmentForm.visibility
 
         // remove projectGroupRestrictions if minGroupSize was updated to null
@@ -342,6 +351,11 @@ class AssignmentService(
         tagNames?.forEach {
             addTagToAssignment(existingAssignment, it)
         }
+
+        // they're recreated from the build reports the next time they're listed (see SubmissionService.getSummaries)
+        if (summariesOutdated) {
+            submissionSummaryRepository.deleteByAssignmentId(existingAssignment.id)
+        }
     }
 
     /**
@@ -367,7 +381,7 @@ class AssignmentService(
             submissions.forEach {
                 with(it) {
                     val buildReport =
-                        if (buildReport != null) buildReport!!.buildReport else null
+                        buildReport?.let { reportCompressor.buildReportOf(it) }
                     val submissionReport = submissionReportRepository.findBySubmissionId(id).map { eachReport ->
                         SubmissionExport.SubmissionReport(
                             eachReport.reportKey, eachReport.reportValue,
@@ -375,10 +389,10 @@ class AssignmentService(
                         )
                     }
                     val junitReports = jUnitReportRepository.findBySubmissionId(id)?.map { jUnitReport ->
-                        SubmissionExport.JUnitReport(jUnitReport.fileName, jUnitReport.xmlReport)
+                        SubmissionExport.JUnitReport(jUnitReport.fileName, reportCompressor.xmlReportOf(jUnitReport))
                     }
                     val jacocoReports = jacocoReportRepository.findBySubmissionId(id)?.map { jacocoReport ->
-                        SubmissionExport.JacocoReport(jacocoReport.fileName, jacocoReport.csvReport)
+                        SubmissionExport.JacocoReport(jacocoReport.fileName, reportCompressor.csvReportOf(jacocoReport))
                     }
                     val submissionExport = SubmissionExport(
                         id = id, submissionId = submissionId,
@@ -566,11 +580,15 @@ class AssignmentService(
             val authorDetailsList = it.authors.map { a -> AuthorDetails(a.name, a.userId) }
             val group = projectGroupService.getOrCreateProjectGroup(authorDetailsList)
 
+            // the reports are compressed with a dictionary built from the reports of the first imported submission
+            val dictionary = if (reportCompressor.enabled) reportCompressor.dictionaryFor(assignmentId) {
+                listOfNotNull(it.buildReport) + it.junitReports.orEmpty().map { r -> r.xmlReport } +
+                        it.jacocoReports.orEmpty().map { r -> r.csvReport }
+            } else null
+
             val buildReport: BuildReport? =
                 if (it.buildReport != null) {
-                    val buildReport = BuildReport(buildReport = it.buildReport!!)
-                    buildReportRepository.save(buildReport)
-                    buildReport
+                    buildReportRepository.save(reportCompressor.compress(BuildReport(buildReport = it.buildReport!!), dictionary))
                 } else {
                     null
                 }
@@ -604,13 +622,14 @@ class AssignmentService(
             submissionRepository.save(submission)
 
             it.junitReports?.forEach { r ->
-                jUnitReportRepository.save(JUnitReport(submissionId = submission.id, fileName = r.filename,
-                    xmlReport = r.xmlReport))
+                jUnitReportRepository.save(reportCompressor.compress(JUnitReport(submissionId = submission.id,
+                    fileName = r.filename, xmlReport = r.xmlReport), dictionary))
             }
+            buildReportBuilder.saveTestResultsFromJUnitReports(submission.id)
 
             it.jacocoReports?.forEach { r ->
-                jacocoReportRepository.save(JacocoReport(submissionId = submission.id, fileName = r.filename,
-                    csvReport = r.csvReport))
+                jacocoReportRepository.save(reportCompressor.compress(JacocoReport(submissionId = submission.id,
+                    fileName = r.filename, csvReport = r.csvReport), dictionary))
             }
 
             // update assignment metrics
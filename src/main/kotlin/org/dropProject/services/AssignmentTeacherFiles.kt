@@ -71,7 +71,10 @@ class AssignmentTeacherFiles(val buildWorker: BuildWorker,
                              val applicationContext: ApplicationContext,
                              val i18n: MessageSource,
                              val markdownRenderer: MarkdownRenderer,
-                             val dropProjectProperties: DropProjectProperties
+                             val dropProjectProperties: DropProjectProperties,
+                             val teacherTestsCache: TeacherTestsCache,
+                             val buildReportCache: BuildReportCache,
+                             val workspaceBuilder: WorkspaceBuilder
 ) {
 
     @Value("\${spring.web.locale}")
@@ -109,7 +112,7 @@ class AssignmentTeacherFiles(val buildWorker: BuildWorker,
         val gitFolder     = File(rootFolder, ".git").absolutePath
         val targetFolder  = File(rootFolder, "target").absolutePath
 
-        FileUtils.copyDirectory(rootFolder, mavenizedProjectFolder) {
+        workspaceBuilder.copyTeacherFiles(rootFolder, mavenizedProjectFolder) {
             !it.absolutePath.startsWith(srcMainFolder) &&
                     !it.absolutePath.startsWith(gitFolder) &&
                     !it.absolutePath.startsWith(targetFolder)
@@ -226,12 +229,19 @@ class AssignmentTeacherFiles(val buildWorker: BuildWorker,
                 testClass = parts[0], testMethod = parts[1]))
         }
 
+        // the build reports of the submissions depend on the test methods
+        buildReportCache.evictAssignment(assignment.id)
+
         if (!buildReport.compilationErrors.isEmpty()) {
+            teacherTestsCache.evict(assignment.id)
             report.add(AssignmentValidator.Info(AssignmentValidator.InfoType.ERROR,
                 "Assignment has compilation errors."))
             return report
         }
 
+        // the teacher tests were just compiled, so let's keep them for the (fast) builds of the submissions
+        teacherTestsCache.store(assignment, assignmentFolder)
+
         if (!buildReport.checkstyleErrors.isEmpty()) {
             report.add(AssignmentValidator.Info(AssignmentValidator.InfoType.ERROR,
                 "Assignment has checkstyle errors."))
@@ -25,6 +25,7 @@ import org.apache.maven.model.Model
 import org.apache.maven.model.io.xpp3.MavenXpp3Reader
 import org.dropproject.Constants
 import org.dropproject.dao.Assignment
+import org.dropproject.dao.BuildEngine
 import org.dropproject.dao.Language
 import org.dropproject.dao.TestVisibility
 import org.dropproject.extensions.toEscapedHtml
@@ -101,6 +102,7 @@ class AssignmentValidator {
         }
         validatePomPreparedForCoverage(model, assignment)
         validateCheckstyleVersion(model)
+        validateFastBuildEngine(model, assignment)
     }
 
     // tests that the assignment is ready to use the system property "dropProject.currentUserId"
@@ -454,6 +456,18 @@ class AssignmentValidator {
         }
     }
 
+    // the fast build engine only compiles and runs the tests, so the checkstyle rules wouldn't be enforced
+    private fun validateFastBuildEngine(pomModel: Model, assignment: Assignment) {
+
+        if (assignment.buildEngine == BuildEngine.FAST &&
+                pomModel.build.plugins.any { it.artifactId == "maven-checkstyle-plugin" }) {
+            report.add(Info(InfoType.WARNING, "The fast build engine doesn't run checkstyle.",
+                    "Your pom.xml uses the maven-checkstyle-plugin, but the submissions won't be checked by it " +
+                            "unless they're built with maven. Edit this assignment and select the 'Maven' build engine " +
+                            "if the checkstyle rules must be enforced."))
+        }
+    }
+
     private fun searchAllSourceFilesWithinFolder(folder: File, text: String): Boolean {
         return folder.walkTopDown()
                 .filter { it -> it.name.endsWith(".java") || it.name.endsWith(".kt") }
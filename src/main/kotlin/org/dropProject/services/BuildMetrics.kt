@@ -0,0 +1,206 @@
+/*-
+ * ========================LICENSE_START=================================
+ * DropProject
+ * %%
+ * Copyright (C) 2019 - 2026 Pedro Alves
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package org.dropproject.services
+
+import org.dropproject.data.AssignmentLatency
+import org.dropproject.data.PipelineStage
+import org.dropproject.data.StageTimer
+import org.springframework.stereotype.Service
+import java.util.concurrent.ConcurrentHashMap
+import kotlin.math.ceil
+
+/**
+ * Measures the time spent in each [PipelineStage] of the submissions, by assignment and outcome, since this node
+ * started. The measures are exported in the Prometheus text format (see [prometheusText]), through /admin/metrics.
+ *
+ * It also keeps the builds that finished in the last hour, to calculate the throughput and the end-to-end latency
+ * shown in the admin dashboard, as well as the time that the students have to wait for their builds.
+ */
+@Service
+class BuildMetrics {
+
+    private data class TimerKey(val stage: PipelineStage, val assignmentId: String, val outcome: String)
+
+    private class TimerStats {
+        var count = 0L
+        var totalNanos = 0L
+        var maxNanos = 0L
+    }
+
+    private val timers = ConcurrentHashMap<TimerKey, TimerStats>()
+
+    private class FinishedBuild(val finishedAt: Long, val assignmentId: String, val latencyMillis: Long)
+
+    // the builds that finished in the last hour, starting with the oldest
+    private val finishedBuilds = ArrayDeque<FinishedBuild>()
+
+    /**
+     * Records one execution of a stage.
+     *
+     * @param stage is the [PipelineStage]
+     * @param assignmentId is the id of the assignment of the submission
+     * @param outcome is a String describing how the stage ended
+     * @param nanos is the time spent in the stage, in nanoseconds
+     */
+    fun record(stage: PipelineStage, assignmentId: String, outcome: String, nanos: Long) {
+        val stats = timers.computeIfAbsent(TimerKey(stage, assignmentId, outcome)) { TimerStats() }
+        synchronized(stats) {
+            stats.count++
+            stats.totalNanos += nanos
+            stats.maxNanos = maxOf(stats.maxNanos, nanos)
+        }
+    }
+
+    /**
+     * Runs [block], recording the time it took as an execution of [stage]. If it throws an exception, the outcome
+     * is "error".
+     *
+     * @param outcome calculates the outcome from the result of [block] (by default, it's "success")
+     */
+    fun <T> time(stage: PipelineStage, assignmentId: String, outcome: (T) -> String = { "success" },
+                 block: () -> T): T {
+        val start = System.nanoTime()
+        val result = try {
+            block()
+        } catch (e: Throwable) {
+            record(stage, assignmentId, "error", System.nanoTime() - start)
+            throw e
+        }
+        record(stage, assignmentId, outcome(result), System.nanoTime() - start)
+        return result
+    }
+
+    /**
+     * Records a build that finished, i.e., whose results were stored.
+     *
+     * @param assignmentId is the id of the assignment of the submission
+     * @param latencyMillis is the time since the submission was made
+     */
+    fun recordFinishedBuild(assignmentId: String, latencyMillis: Long, now: Long = System.currentTimeMillis()) {
+        synchronized(finishedBuilds) {
+            finishedBuilds.addLast(FinishedBuild(now, assignmentId, latencyMillis))
+            removeOldFinishedBuilds(now)
+        }
+    }
+
+    /**
+     * @return the number of builds that finished in the last [millis] (up to one hour)
+     */
+    fun finishedBuildsSince(millis: Long, now: Long = System.currentTimeMillis()): Int {
+        synchronized(finishedBuilds) {
+            removeOldFinishedBuilds(now)
+            return finishedBuilds.count { it.finishedAt > now - millis }
+        }
+    }
+
+    /**
+     * @return the median and the 95th percentile of the end-to-end latency of the builds that finished in the last
+     * hour, by assignment
+     */
+    fun latencies(now: Long = System.currentTimeMillis()): List<AssignmentLatency> {
+        val latenciesByAssignment = synchronized(finishedBuilds) {
+            removeOldFinishedBuilds(now)
+            finishedBuilds.groupBy({ it.assignmentId }, { it.latencyMillis })
+        }
+        return latenciesByAssignment.map { (assignmentId, latencies) ->
+            val sorted = latencies.sorted()
+            AssignmentLatency(assignmentId, sorted.size, percentile(sorted, 50) / 1000, percentile(sorted, 95) / 1000)
+        }.sortedBy { it.assignmentId }
+    }
+
+    /**
+     * Estimates the time until a build finishes, from the throughput of the last minutes (or, if no build finished
+     * recently, from the mean build time) and the mean build time.
+     *
+     * @param position is the number of builds that have to finish before this one starts (0 means it's running)
+     *
+     * @return the estimated time in seconds or null if no build was measured yet
+     */
+    fun estimatedSeconds(position: Int, now: Long = System.currentTimeMillis()): Long? {
+        val buildTimers = timers.filterKeys { it.stage == PipelineStage.BUILD }.values
+        val (count, totalNanos) = buildTimers.fold(0L to 0L) { (count, totalNanos), stats ->
+            synchronized(stats) { (count + stats.count) to (totalNanos + stats.totalNanos) }
+        }
+        val meanBuildSeconds = if (count > 0) seconds(totalNanos) / count else null
+
+        val recentBuilds = finishedBuildsSince(THROUGHPUT_WINDOW, now)
+        val waitSeconds = when {
+            position == 0 -> 0.0
+            recentBuilds > 0 -> position * (THROUGHPUT_WINDOW / 1000.0) / recentBuilds
+            meanBuildSeconds != null -> position * meanBuildSeconds  // assumes one build at a time
+            else -> return null
+        }
+        return ceil(waitSeconds + (meanBuildSeconds ?: 0.0)).toLong()
+    }
+
+    private fun removeOldFinishedBuilds(now: Long) {
+        while (finishedBuilds.isNotEmpty() && finishedBuilds.first().finishedAt <= now - ONE_HOUR) {
+            finishedBuilds.removeFirst()
+        }
+    }
+
+    // nearest-rank percentile of a sorted (non-empty) list
+    private fun percentile(sorted: List<Long>, percentile: Int) =
+        sorted[maxOf(0, (sorted.size * percentile + 99) / 100 - 1)]
+
+    /**
+     * @return the [StageTimer]s, ordered by stage, assignment and outcome
+     */
+    fun timers(): List<StageTimer> {
+        return timers.map { (key, stats) ->
+            synchronized(stats) {
+                StageTimer(key.stage, key.assignmentId, key.outcome, stats.count, stats.totalNanos, stats.maxNanos)
+            }
+        }.sortedWith(compareBy({ it.stage }, { it.assignmentId }, { it.outcome }))
+    }
+
+    /**
+     * @return the timers in the Prometheus text format, as Micrometer would export them
+     */
+    fun prometheusText(): String {
+        val timers = timers()
+        val result = StringBuilder()
+        result.append("# HELP dp_pipeline_stage_seconds Time spent in each stage of the submissions\n")
+        result.append("# TYPE dp_pipeline_stage_seconds summary\n")
+        for (timer in timers) {
+            result.append("dp_pipeline_stage_seconds_count${labels(timer)} ${timer.count}\n")
+            result.append("dp_pipeline_stage_seconds_sum${labels(timer)} ${seconds(timer.totalNanos)}\n")
+        }
+        result.append("# HELP dp_pipeline_stage_seconds_max Longest execution of each stage of the submissions\n")
+        result.append("# TYPE dp_pipeline_stage_seconds_max gauge\n")
+        for (timer in timers) {
+            result.append("dp_pipeline_stage_seconds_max${labels(timer)} ${seconds(timer.maxNanos)}\n")
+        }
+        return result.toString()
+    }
+
+    private fun labels(timer: StageTimer) =
+        "{stage=\"${timer.stage.tag}\",assignment=\"${escape(timer.assignmentId)}\",outcome=\"${escape(timer.outcome)}\"}"
+
+    private fun escape(value: String) = value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n")
+
+    private fun seconds(nanos: Long) = nanos / 1_000_000_000.0
+
+    companion object {
+        const val ONE_MINUTE = 60 * 1000L
+        const val ONE_HOUR = 60 * ONE_MINUTE
+        const val THROUGHPUT_WINDOW = 10 * ONE_MINUTE
+    }
+}
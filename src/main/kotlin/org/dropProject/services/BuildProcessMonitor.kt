@@ -0,0 +1,190 @@
+/*-
+ * ========================LICENSE_START=================================
+ * DropProject
+ * %%
+ * Copyright (C) 2019 - 2026 Pedro Alves
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package org.dropproject.services
+
+import org.dropproject.data.BuildKillReason
+import org.dropproject.data.BuildResourceUsage
+import org.dropproject.data.RunningBuild
+import org.slf4j.LoggerFactory
+import org.springframework.stereotype.Service
+import java.io.File
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * Keeps track of the maven builds running on this node, so that they can be killed (e.g., on timeout or when an admin
+ * aborts a submission).
+ *
+ * Killing a build means killing the maven process and all its descendants (e.g., the JVM forked by surefire to run the
+ * tests). Just interrupting the thread that started the build is not enough, since the forked processes would keep
+ * running.
+ *
+ * With the maven daemon (mvnd), the build runs in a daemon that is not a descendant of the maven (client) process, so
+ * the processes forked by the build are also searched by the project folder in their command line, and the daemon
+ * that ran the build is killed along with them.
+ */
+@Service
+class BuildProcessMonitor {
+
+    val LOG = LoggerFactory.getLogger(this.javaClass.name)
+
+    private val runningBuilds = ConcurrentHashMap.newKeySet<RunningBuild>()
+
+    /**
+     * Registers a build that is about to start in the current thread. It must be unregistered when it finishes.
+     */
+    fun register(mavenizedProjectFolder: File, submissionId: Long?): RunningBuild {
+        val runningBuild = RunningBuild(submissionId, mavenizedProjectFolder, Thread.currentThread())
+        runningBuilds.add(runningBuild)
+        return runningBuild
+    }
+
+    fun unregister(runningBuild: RunningBuild) {
+        runningBuilds.remove(runningBuild)
+    }
+
+    /**
+     * @return the builds that are running, starting with the oldest
+     */
+    fun runningBuilds(): List<RunningBuild> {
+        return runningBuilds.sortedBy { it.startedAt }.onEach { findProcess(it) }
+    }
+
+    /**
+     * @return the resources used by the processes of [runningBuild] or null if they're not found
+     */
+    fun resourceUsage(runningBuild: RunningBuild): BuildResourceUsage? {
+        val mavenProcess = findProcess(runningBuild) ?: return null
+        val processes = mavenProcess.descendants().toList() + mavenProcess
+
+        val cpuTimes = processes.map { it.info().totalCpuDuration().orElse(null) }
+        val cpuSeconds = if (cpuTimes.all { it == null }) null else cpuTimes.sumOf { it?.toMillis() ?: 0 } / 1000.0
+
+        val residentMemories = processes.map { residentMemoryKb(it.pid()) }
+        val memoryMb = if (residentMemories.all { it == null }) null else residentMemories.sumOf { it ?: 0 } / 1024
+
+        return BuildResourceUsage(cpuSeconds, memoryMb)
+    }
+
+    // the JDK doesn't provide the memory of other processes, so it's read from /proc (only available on Linux)
+    private fun residentMemoryKb(pid: Long): Long? {
+        return try {
+            File("/proc/${pid}/status").readLines()
+                .firstOrNull { it.startsWith("VmRSS:") }
+                ?.substringAfter(":")?.trim()?.substringBefore(" ")?.toLong()
+        } catch (e: Exception) {
+            null
+        }
+    }
+
+    /**
+     * Kills the builds started by [thread]. Called when the task running in that thread timed out.
+     *
+     * @return the number of builds that were killed
+     */
+    fun killBuildsOfThread(thread: Thread): Int {
+        val builds = runningBuilds.filter { it.thread == thread }
+        builds.forEach { kill(it, BuildKillReason.TIMEOUT) }
+        return builds.size
+    }
+
+    /**
+     * Kills the build of a submission, if it's running.
+     *
+     * @return true if the build was running
+     */
+    fun abort(submissionId: Long): Boolean {
+        val builds = runningBuilds.filter { it.submissionId == submissionId }
+        builds.forEach { kill(it, BuildKillReason.ABORTED) }
+        return builds.isNotEmpty()
+    }
+
+    /**
+     * Kills the maven process of [runningBuild] and all its descendants. The thread that started the build will see
+     * the maven invocation ending and can check [RunningBuild.killedBy].
+     */
+    fun kill(runningBuild: RunningBuild, reason: BuildKillReason) {
+        if (runningBuild.killedBy == null) {
+            runningBuild.killedBy = reason
+        }
+
+        val mavenProcess = findProcess(runningBuild)
+
+        // the descendants must be collected before killing their parent, otherwise they would be reparented
+        val processes = if (mavenProcess != null) mavenProcess.descendants().toList() + mavenProcess else emptyList()
+        val daemonProcesses = findDaemonProcesses(runningBuild, processes)
+        if (processes.isEmpty() && daemonProcesses.isEmpty()) {
+            LOG.warn("Unable to find the processes of the build of ${runningBuild.mavenizedProjectFolder.name} (${reason})")
+            return
+        }
+
+        (processes + daemonProcesses).forEach { it.destroyForcibly() }
+        LOG.info("Killed ${processes.size + daemonProcesses.size} processes of the build of " +
+                "${runningBuild.mavenizedProjectFolder.name} (pid: ${mavenProcess?.pid()}, " +
+                "daemon processes: ${daemonProcesses.size}, reason: ${reason})")
+    }
+
+    /**
+     * Finds the processes of a build that are not descendants of its maven process, i.e., the processes forked by
+     * the maven daemon (e.g., the JVM where surefire runs the tests) and the daemon itself.
+     *
+     * @param mavenProcesses are the maven process and its descendants, which are excluded
+     */
+    private fun findDaemonProcesses(runningBuild: RunningBuild, mavenProcesses: List<ProcessHandle>): List<ProcessHandle> {
+        val excludedPids = mavenProcesses.map { it.pid() }.toSet() + ProcessHandle.current().pid()
+        val folderPattern = folderPattern(runningBuild)
+
+        val forks = ProcessHandle.allProcesses()
+            .filter { it.pid() !in excludedPids && folderPattern.containsMatchIn(it.info().commandLine().orElse("")) }
+            .toList()
+
+        // each daemon runs one build at a time, so killing it doesn't affect other builds
+        val daemons = forks
+            .mapNotNull { it.parent().orElse(null) }
+            .filter { it.pid() !in excludedPids && it.info().commandLine().orElse("").contains("mvnd") }
+
+        return (daemons + forks)
+            .flatMap { it.descendants().toList() + it }
+            .filter { it.pid() !in excludedPids }
+            .distinctBy { it.pid() }
+    }
+
+    /**
+     * Finds the maven process of a build among the children of this JVM. The process is remembered in the
+     * [RunningBuild], so it's only searched once.
+     */
+    private fun findProcess(runningBuild: RunningBuild): ProcessHandle? {
+        val knownProcess = runningBuild.process
+        if (knownProcess != null) {
+            return knownProcess
+        }
+
+        // maven is launched from the project folder, which appears in its command line
+        val folderPattern = folderPattern(runningBuild)
+        val process = ProcessHandle.current().children()
+            .filter { folderPattern.containsMatchIn(it.info().commandLine().orElse("")) }
+            .findFirst().orElse(null)
+        runningBuild.process = process
+        return process
+    }
+
+    // matches the project folder, which must not be confused with other folders that start with the same path
+    private fun folderPattern(runningBuild: RunningBuild) =
+        Regex(Regex.escape(runningBuild.mavenizedProjectFolder.absolutePath) + "(?![\\w.-])")
+}
@@ -26,10 +26,15 @@ import org.dropproject.dao.Assignment
 import org.dropproject.dao.JUnitReport
 import org.dropproject.dao.JacocoReport
 import org.dropproject.dao.Submission
+import org.dropproject.dao.SubmissionSummary
+import org.dropproject.dao.SubmissionTestResult
 import org.dropproject.data.BuildReport
+import org.dropproject.data.TestType
 import org.dropproject.repository.AssignmentTestMethodRepository
 import org.dropproject.repository.JUnitReportRepository
 import org.dropproject.repository.JacocoReportRepository
+import org.dropproject.repository.SubmissionSummaryRepository
+import org.dropproject.repository.SubmissionTestResultRepository
 import org.slf4j.LoggerFactory
 import java.io.File
 import java.io.FileNotFoundException
@@ -44,6 +49,9 @@ class BuildReportBuilder(
     val jacocoResultsParser: JacocoResultsParser,
     val jUnitReportRepository: JUnitReportRepository,
     val jacocoReportRepository: JacocoReportRepository,
+    val submissionTestResultRepository: SubmissionTestResultRepository,
+    val submissionSummaryRepository: SubmissionSummaryRepository,
+    val reportCompressor: ReportCompressor,
     val messageSource: MessageSource
 ) {
 
@@ -64,27 +72,35 @@ class BuildReportBuilder(
               assignment: Assignment,
               submission: Submission? = null) : BuildReport {
 
-        val junitReportFromDB : List<JUnitReport>? =
-                if (submission != null) jUnitReportRepository.findBySubmissionId(submission.id)
+        val testResultsFromDB : List<SubmissionTestResult>? =
+                if (submission != null) submissionTestResultRepository.findBySubmissionIdOrderById(submission.id)
                 else null
 
         val jUnitResults =
-                if (junitReportFromDB != null && !junitReportFromDB.isEmpty()) {
-                    // LOG.info("Got jUnit Report from DB")
-                    junitReportFromDB
-                            .map { it -> junitResultsParser.parseXml(it.xmlReport) }
-                            .toList()
+                if (testResultsFromDB != null && !testResultsFromDB.isEmpty()) {
+                    SubmissionTestResult.toJUnitResults(testResultsFromDB)
                 } else {
-                    try {
-                        // LOG.info("Got jUnit Report from File System")
-                        File("${mavenizedProjectFolder}/target/surefire-reports")
-                                .walkTopDown()
-                                .filter { it -> it.name.endsWith(".xml") }
-                                .map { it -> junitResultsParser.parseXml(it.readText()) }
+                    // e.g., submissions built before the test results were stored (see saveTestResultsFromJUnitReports)
+                    val junitReportFromDB : List<JUnitReport>? =
+                            if (submission != null) jUnitReportRepository.findBySubmissionId(submission.id)
+                            else null
+
+                    if (junitReportFromDB != null && !junitReportFromDB.isEmpty()) {
+                        junitReportFromDB
+                                .map { it -> junitResultsParser.parseXml(reportCompressor.xmlReportOf(it)) }
                                 .toList()
-                    } catch (e: FileNotFoundException) {
-                        LOG.info("Not found ${mavenizedProjectFolder}/target/surefire-reports. Probably this assignment doesn't produce test results")
-                        emptyList<JUnitResults>()
+                    } else {
+                        try {
+                            // LOG.info("Got jUnit Report from File System")
+                            File("${mavenizedProjectFolder}/target/surefire-reports")
+                                    .walkTopDown()
+                                    .filter { it -> it.name.endsWith(".xml") }
+                                    .map { it -> junitResultsParser.parseXml(it.readText()) }
+                                    .toList()
+                        } catch (e: FileNotFoundException) {
+                            LOG.info("Not found ${mavenizedProjectFolder}/target/surefire-reports. Probably this assignment doesn't produce test results")
+                            emptyList<JUnitResults>()
+                        }
                     }
                 }
 
@@ -96,7 +112,7 @@ class BuildReportBuilder(
             if (jacocoReportFromDB != null && !jacocoReportFromDB.isEmpty()) {
                 // LOG.info("Got Jacoco Report from DB")
                 jacocoReportFromDB
-                        .map { it -> jacocoResultsParser.parseCsv(it.csvReport) }
+                        .map { it -> jacocoResultsParser.parseCsv(reportCompressor.csvReportOf(it)) }
                         .toList()
 
             } else {
@@ -105,4 +121,49 @@ class BuildReportBuilder(
 
         return BuildReport(mavenOutputLines, mavenizedProjectFolder, assignment, jUnitResults, jacocoResults, messageSource)
     }
+
+    /**
+     * Stores the result of each test of a [Submission], so that its JUnit reports don't have to be parsed again when
+     * its [BuildReport] is built (see [build]).
+     *
+     * @param submissionId is the id of the [Submission]
+     * @param junitResults is a List of [JUnitResults], parsed from the JUnit reports of the submission
+     */
+    fun saveTestResults(submissionId: Long, junitResults: List<JUnitResults>) {
+        submissionTestResultRepository.saveAll(junitResults
+            .flatMap { SubmissionTestResult.fromJUnitResults(submissionId, it) }
+            .distinctBy { it.fullTestClassName to it.methodName })  // truncated names may collide
+    }
+
+    /**
+     * Extracts the test results of a [Submission] from its JUnit reports, stored in the database.
+     *
+     * @param submissionId is the id of the [Submission]
+     */
+    fun saveTestResultsFromJUnitReports(submissionId: Long) {
+        val junitReports = jUnitReportRepository.findBySubmissionId(submissionId).orEmpty()
+        saveTestResults(submissionId, junitReports.map { junitResultsParser.parseXml(reportCompressor.xmlReportOf(it)) })
+    }
+
+    /**
+     * Stores the [SubmissionSummary] of a [Submission].
+     *
+     * @param submission is the [Submission]
+     * @param buildReport is the [BuildReport] of the submission
+     *
+     * @return the [SubmissionSummary]
+     */
+    fun saveSummary(submission: Submission, buildReport: BuildReport) : SubmissionSummary {
+        // when the submission has just been built, its coverage reports may not have been read yet
+        val jacocoResults = buildReport.jacocoResults.ifEmpty {
+            jacocoReportRepository.findBySubmissionId(submission.id).orEmpty().map { jacocoResultsParser.parseCsv(reportCompressor.csvReportOf(it)) }
+        }
+
+        return submissionSummaryRepository.save(SubmissionSummary(submissionId = submission.id,
+            assignmentId = submission.assignmentId,
+            studentTests = buildReport.junitSummaryAsObject(TestType.STUDENT),
+            teacherTests = buildReport.junitSummaryAsObject(TestType.TEACHER),
+            hiddenTests = buildReport.junitSummaryAsObject(TestType.HIDDEN),
+            coverage = jacocoResults.firstOrNull()?.lineCoveragePercent))
+    }
 }
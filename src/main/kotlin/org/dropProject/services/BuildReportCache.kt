@@ -0,0 +1,117 @@
+/*-
+ * ========================LICENSE_START=================================
+ * DropProject
+ * %%
+ * Copyright (C) 2019 - 2026 Pedro Alves
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package org.dropproject.services
+
+import org.dropproject.config.DropProjectProperties
+import org.dropproject.dao.Submission
+import org.dropproject.dao.SubmissionStatus
+import org.dropproject.data.BuildReport
+import org.springframework.stereotype.Service
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Keeps the most recently used [BuildReport]s, so that showing the report of a submission doesn't have to parse its
+ * maven output and its JUnit/Jacoco reports again.
+ *
+ * The reports are kept by submission and status. Only the reports of submissions whose build has ended are kept,
+ * since they don't change until the submission is rebuilt (which evicts them, see [evict]). The reports also depend
+ * on the assignment (e.g., its test methods), so changing the assignment evicts the reports of its submissions
+ * (see [evictAssignment]).
+ */
+@Service
+class BuildReportCache(val dropProjectProperties: DropProjectProperties) {
+
+    private data class Key(val submissionId: Long, val status: SubmissionStatus)
+
+    private class Entry(val assignmentId: String, val buildReport: BuildReport)
+
+    private val maxSize = dropProjectProperties.build.reportCacheSize
+
+    // in access order, so that the eldest entry is the least recently used
+    private val cache = object : LinkedHashMap<Key, Entry>(16, 0.75f, true) {
+        override fun removeEldestEntry(eldest: MutableMap.MutableEntry<Key, Entry>) = size > maxSize
+    }
+
+    private val hits = AtomicLong()
+    private val misses = AtomicLong()
+
+    /**
+     * Returns the [BuildReport] of a submission, building it with [build] if it's not cached.
+     *
+     * @param submission is the [Submission]
+     * @param build builds the report of the submission
+     */
+    fun get(submission: Submission, build: () -> BuildReport): BuildReport {
+        val status = submission.getStatus()
+        if (maxSize <= 0 || status !in CACHEABLE_STATUS) {
+            return build()
+        }
+
+        val key = Key(submission.id, status)
+        synchronized(cache) { cache[key] }?.let {
+            hits.incrementAndGet()
+            return it.buildReport
+        }
+
+        misses.incrementAndGet()
+        val buildReport = build()
+        synchronized(cache) { cache[key] = Entry(submission.assignmentId, buildReport) }
+        return buildReport
+    }
+
+    /**
+     * Removes the reports of a submission (e.g., because it was rebuilt or deleted).
+     */
+    fun evict(submissionId: Long) {
+        synchronized(cache) { cache.keys.removeIf { it.submissionId == submissionId } }
+    }
+
+    /**
+     * Removes the reports of all the submissions of an assignment (e.g., because the assignment was changed).
+     */
+    fun evictAssignment(assignmentId: String) {
+        synchronized(cache) { cache.values.removeIf { it.assignmentId == assignmentId } }
+    }
+
+    fun size() = synchronized(cache) { cache.size }
+
+    fun hits() = hits.get()
+
+    fun misses() = misses.get()
+
+    /**
+     * @return the hits and misses of the cache in the Prometheus text format (see [BuildMetrics.prometheusText])
+     */
+    fun prometheusText(): String {
+        return "# HELP dp_build_report_cache_requests_total Requests for build reports, by result\n" +
+                "# TYPE dp_build_report_cache_requests_total counter\n" +
+                "dp_build_report_cache_requests_total{result=\"hit\"} ${hits()}\n" +
+                "dp_build_report_cache_requests_total{result=\"miss\"} ${misses()}\n" +
+                "# HELP dp_build_report_cache_size Build reports in the cache\n" +
+                "# TYPE dp_build_report_cache_size gauge\n" +
+                "dp_build_report_cache_size ${size()}\n"
+    }
+
+    companion object {
+        // the builds of submissions with these status have ended
+        private val CACHEABLE_STATUS = setOf(SubmissionStatus.VALIDATED, SubmissionStatus.VALIDATED_REBUILT,
+            SubmissionStatus.FAILED)
+    }
+}
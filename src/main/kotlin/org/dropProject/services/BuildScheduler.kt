@@ -0,0 +1,538 @@
+/*-
+ * ========================LICENSE_START=================================
+ * DropProject
+ * %%
+ * Copyright (C) 2019 - 2026 Pedro Alves
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package org.dropproject.services
+
+import org.dropproject.config.DropProjectProperties
+import org.dropproject.dao.BuildJob
+import org.dropproject.dao.BuildJobStatus
+import org.dropproject.dao.BuildPriority
+import org.dropproject.dao.Submission
+import org.dropproject.dao.SubmissionStatus
+import org.dropproject.data.BuildExecution
+import org.dropproject.data.BuildQueueStats
+import org.dropproject.data.PipelineStage
+import org.dropproject.data.QueueEstimate
+import org.dropproject.repository.BuildJobRepository
+import org.dropproject.repository.SubmissionRepository
+import org.slf4j.LoggerFactory
+import org.springframework.boot.context.event.ApplicationReadyEvent
+import org.springframework.context.event.EventListener
+import org.springframework.core.task.AsyncTaskExecutor
+import org.springframework.scheduling.annotation.Scheduled
+import org.springframework.stereotype.Service
+import java.io.File
+import java.net.InetAddress
+import java.util.*
+import java.util.concurrent.Executor
+
+/**
+ * Decides the order in which submissions are built.
+ *
+ * Builds are not handed directly to the async executor. Instead, each scheduled build submits a "dispatch" to the
+ * executor and, when a thread picks that dispatch, it runs the best build that is waiting at that moment:
+ * - builds are picked by [BuildPriority] (student uploads go before git reports which go before teacher rebuilds);
+ * - within the same priority, assignments take turns and, within each assignment, groups take turns, so that a group
+ * (or an assignment) with many builds doesn't delay everyone else;
+ * - an assignment doesn't run more than drop-project.build.max-concurrent-per-assignment builds at the same time.
+ * Each time a build finishes, a new dispatch is submitted if there are builds waiting.
+ *
+ * Since the dispatches go through the async executor, the timeout and thread pool size configured in the admin
+ * dashboard still apply.
+ *
+ * Every build is also persisted as a [BuildJob], which must be claimed (in the database) before running. While running,
+ * its lease is renewed periodically; builds whose lease expired (for example, because the node crashed) are put back in
+ * the queue. When Drop Project starts, the builds that were waiting are queued again, so a restart doesn't lose them.
+ *
+ * When drop-project.workers.remote-builds is set, this node doesn't dispatch builds to its own executor. Instead, remote
+ * workers claim them through the [org.dropproject.controllers.WorkerAPIController] and send back their
+ * [BuildExecution], which is evaluated here.
+ */
+@Service
+class BuildScheduler(val asyncExecutor: Executor,
+                     val buildWorker: BuildWorker,
+                     val assignmentTeacherFiles: AssignmentTeacherFiles,
+                     val buildJobRepository: BuildJobRepository,
+                     val submissionRepository: SubmissionRepository,
+                     val dropProjectProperties: DropProjectProperties,
+                     val buildMetrics: BuildMetrics,
+                     val submissionEvents: SubmissionEvents) {
+
+    val LOG = LoggerFactory.getLogger(this.javaClass.name)
+
+    /**
+     * Identifies this node as the owner of the leases of the builds it is running.
+     */
+    val nodeId = "${runCatching { InetAddress.getLocalHost().hostName }.getOrDefault("dp")}-${UUID.randomUUID().toString().take(8)}"
+
+    // priority -> assignmentId -> groupId -> builds. The order of the (linked) maps is the round-robin order
+    private val queues = EnumMap<BuildPriority, LinkedHashMap<String, LinkedHashMap<Long, ArrayDeque<BuildJob>>>>(BuildPriority::class.java)
+    private val runningJobs = mutableListOf<BuildJob>()
+
+    /**
+     * Puts the build of a [Submission] in the queue.
+     *
+     * @param submission is the [Submission] being built
+     * @param mavenizedProjectFolder is the folder that will be built
+     * @param authorsStr is a String identifying the authors, used for logging
+     * @param priority is the [BuildPriority] of this build
+     * @param principalName is the user that requested the build
+     * @param rebuildByTeacher is a Boolean, indicating if this build was requested by a teacher
+     * @param dontChangeStatusDate is a Boolean, indicating if the submission's status date should be preserved
+     * @param reuseResultOf is the id of an earlier [Submission] with the same files, whose result is reused
+     */
+    fun schedule(submission: Submission, mavenizedProjectFolder: File, authorsStr: String, priority: BuildPriority,
+                 principalName: String?, rebuildByTeacher: Boolean = false, dontChangeStatusDate: Boolean = false,
+                 reuseResultOf: Long? = null) {
+        val job = buildJobRepository.save(BuildJob(submissionId = submission.id, assignmentId = submission.assignmentId,
+            groupId = submission.group.id, priority = priority,
+            mavenizedProjectFolder = mavenizedProjectFolder.absolutePath, authorsStr = authorsStr,
+            principalName = principalName, rebuildByTeacher = rebuildByTeacher,
+            dontChangeStatusDate = dontChangeStatusDate, reuseResultOf = reuseResultOf))
+
+        enqueue(job)
+        LOG.info("[${authorsStr}] Scheduled build of submission ${submission.id} (${priority.description})")
+        dispatch()
+    }
+
+    /**
+     * Removes a build that is still waiting in the queue. Builds that are already running are not affected.
+     *
+     * @return true if the build was waiting and was removed
+     */
+    fun cancel(submissionId: Long): Boolean {
+        val removedFromQueue = synchronized(this) {
+            val removed = queues.values.any { byAssignment ->
+                byAssignment.values.any { byGroup ->
+                    byGroup.values.any { jobs -> jobs.removeIf { it.submissionId == submissionId } }
+                }
+            }
+            removeEmptyQueues()
+            removed
+        }
+        val removedFromDatabase = buildJobRepository.deleteBySubmissionIdAndStatus(submissionId, BuildJobStatus.QUEUED) > 0
+        return removedFromQueue || removedFromDatabase
+    }
+
+    @Synchronized
+    fun isQueued(submissionId: Long): Boolean {
+        return queuedJobs().any { it.submissionId == submissionId }
+    }
+
+    /**
+     * @return the builds waiting in the queue, starting with the oldest
+     */
+    @Synchronized
+    fun queuedJobsList(): List<BuildJob> {
+        return queuedJobs().sortedBy { it.enqueuedAt }
+    }
+
+    /**
+     * @return the builds that are running, on this node or on remote workers, starting with the oldest
+     */
+    @Synchronized
+    fun runningJobsList(): List<BuildJob> {
+        return runningJobs.sortedBy { it.startedAt ?: it.enqueuedAt }
+    }
+
+    /**
+     * Calculates the position of a build in the queue, following the order in which the builds are dispatched (by
+     * priority and then round-robin between assignments and between groups), and estimates when it will finish (see
+     * [BuildMetrics.estimatedSeconds]).
+     *
+     * @return a [QueueEstimate] or null if the build is neither queued nor running
+     */
+    fun estimate(submissionId: Long): QueueEstimate? {
+        val position = queuePosition(submissionId) ?: return null
+        return QueueEstimate(position, buildMetrics.estimatedSeconds(position))
+    }
+
+    /**
+     * Estimates when a build that isn't queued yet (e.g., the submission is still being unzipped) will finish,
+     * assuming that it will wait for all the builds that are waiting now.
+     */
+    fun estimateForNewBuild(): QueueEstimate {
+        val position = queueDepth() + 1
+        return QueueEstimate(position, buildMetrics.estimatedSeconds(position))
+    }
+
+    /**
+     * @return the number of builds waiting in the queue
+     */
+    @Synchronized
+    fun queueDepth(): Int {
+        return queuedJobs().size
+    }
+
+    @Synchronized
+    private fun queuePosition(submissionId: Long): Int? {
+        if (runningJobs.any { it.submissionId == submissionId }) {
+            return 0
+        }
+
+        var position = 0
+        for (priority in BuildPriority.values()) {
+            val byAssignment = queues[priority] ?: continue
+            val jobs = roundRobin(byAssignment.values.map { byGroup -> roundRobin(byGroup.values.map { it.toList() }) })
+            for (job in jobs) {
+                position++
+                if (job.submissionId == submissionId) {
+                    return position
+                }
+            }
+        }
+        return null
+    }
+
+    // takes one element of each list at a time, which is how pollNext goes through the queues
+    private fun roundRobin(lists: Collection<List<BuildJob>>): List<BuildJob> {
+        val result = mutableListOf<BuildJob>()
+        val maxSize = lists.maxOfOrNull { it.size } ?: 0
+        for (i in 0 until maxSize) {
+            lists.forEach { list -> list.getOrNull(i)?.let { result.add(it) } }
+        }
+        return result
+    }
+
+    /**
+     * Forgets a build that is running on a remote worker, which can't be killed from here. When the worker sends its
+     * result, it's discarded (see [completeWorkerJob]).
+     *
+     * @return true if the build was running on a remote worker
+     */
+    fun abandonRemoteBuild(submissionId: Long): Boolean {
+        val job = synchronized(this) {
+            runningJobs.firstOrNull { it.submissionId == submissionId && it.leaseOwner != null && it.leaseOwner != nodeId }
+                ?.also { job -> runningJobs.removeIf { it.id == job.id } }
+        } ?: return false
+        buildJobRepository.deleteById(job.id)
+        return true
+    }
+
+    @Synchronized
+    fun stats(): BuildQueueStats {
+        val queued = queuedJobs()
+        val oldestEnqueuedAt = queued.minOfOrNull { it.enqueuedAt.time }
+        return BuildQueueStats(
+            queuedByPriority = BuildPriority.values().associateWith { priority -> queued.count { it.priority == priority } },
+            queuedByAssignment = queued.groupingBy { it.assignmentId }.eachCount().toSortedMap(),
+            runningByAssignment = runningJobs.groupingBy { it.assignmentId }.eachCount().toSortedMap(),
+            oldestWaitingSeconds = if (oldestEnqueuedAt != null) (System.currentTimeMillis() - oldestEnqueuedAt) / 1000 else 0)
+    }
+
+    /**
+     * Queues again the builds that were waiting when Drop Project stopped, as well as the ones that were running and
+     * whose lease already expired. The ones whose lease is still valid will be recovered by [renewLeases].
+     */
+    @EventListener(ApplicationReadyEvent::class)
+    fun recoverJobs() {
+        val queuedJobs = buildJobRepository.findByStatusOrderByEnqueuedAt(BuildJobStatus.QUEUED)
+        if (queuedJobs.isNotEmpty()) {
+            LOG.info("Recovering ${queuedJobs.size} build(s) that were waiting in the queue")
+            queuedJobs.forEach { enqueue(it) }
+        }
+
+        releaseExpiredJobs()
+
+        queuedJobs.forEach { _ -> dispatch() }
+    }
+
+    /**
+     * Renews the leases of the builds running on this node and puts back in the queue the builds whose lease
+     * expired (i.e., their node stopped renewing them).
+     */
+    // run every 20 seconds
+    @Scheduled(fixedRate = 20_000)
+    fun renewLeases() {
+        val now = Date()
+        buildJobRepository.renewLeases(nodeId, now, leaseExpiration(now))
+
+        if (releaseExpiredJobs() > 0) {
+            dispatch()
+        }
+    }
+
+    /**
+     * Claims the best waiting build on behalf of a remote worker. The builds that reuse an earlier result don't need
+     * a worker, so they are evaluated here, in between.
+     *
+     * @param workerId identifies the worker, which becomes the owner of the lease
+     *
+     * @return the claimed [BuildJob] or null if there are no builds waiting
+     */
+    fun claimForWorker(workerId: String): BuildJob? {
+        while (true) {
+            val job = claimNext(workerId) ?: return null
+            if (job.reuseResultOf == null) {
+                return job
+            }
+            runClaimedJob(job)
+        }
+    }
+
+    /**
+     * Renews the leases of the builds that a remote worker is running.
+     */
+    fun renewWorkerLeases(workerId: String) {
+        val now = Date()
+        buildJobRepository.renewLeases(workerId, now, leaseExpiration(now))
+    }
+
+    /**
+     * Evaluates the result of a build that was run by a remote worker.
+     *
+     * @return false if the worker no longer owns the build (e.g., its lease expired and the build was given to
+     * someone else)
+     */
+    fun completeWorkerJob(jobId: Long, workerId: String, buildExecution: BuildExecution): Boolean {
+        val job = buildJobRepository.findById(jobId).orElse(null)
+        if (job == null || job.status != BuildJobStatus.RUNNING || job.leaseOwner != workerId) {
+            LOG.warn("Worker ${workerId} sent the result of build ${jobId}, which it doesn't own")
+            return false
+        }
+
+        try {
+            val submission = submissionRepository.findById(job.submissionId).orElse(null)
+            if (submission != null) {
+                val mavenizedProjectFolder = File(job.mavenizedProjectFolder)
+                buildWorker.processBuildExecution(buildExecution.relocatedTo(mavenizedProjectFolder), mavenizedProjectFolder,
+                    job.authorsStr, submission, dontChangeStatusDate = job.dontChangeStatusDate, rebuildByTeacher = job.rebuildByTeacher)
+            }
+            buildJobRepository.deleteById(job.id)
+        } catch (e: Exception) {
+            LOG.error("[${job.authorsStr}] Processing the build of submission ${job.submissionId} failed", e)
+            retryOrFail(job)
+        } finally {
+            synchronized(this) {
+                runningJobs.removeIf { it.id == job.id }
+            }
+        }
+
+        return true
+    }
+
+    /**
+     * Effectively builds the submission (or evaluates the result that it reuses). Only called after the job was claimed.
+     */
+    fun runJob(job: BuildJob) {
+        val submission = submissionRepository.findById(job.submissionId).orElse(null)
+        if (submission == null) {
+            LOG.warn("Submission ${job.submissionId} no longer exists. Skipping its build")
+            return
+        }
+
+        // if the earlier submission was meanwhile deleted or rebuilt, the submission is built after all
+        val earlierSubmission = job.reuseResultOf?.let { submissionRepository.findById(it).orElse(null) }
+        if (earlierSubmission != null && earlierSubmission.getStatus() == SubmissionStatus.VALIDATED) {
+            val earlierProjectFolder = assignmentTeacherFiles.getProjectFolderAsFile(earlierSubmission, wasRebuilt = false)
+            if (buildWorker.reuseResult(earlierSubmission, earlierProjectFolder, File(job.mavenizedProjectFolder),
+                    job.authorsStr, submission)) {
+                return
+            }
+        }
+
+        buildWorker.checkProject(File(job.mavenizedProjectFolder), job.authorsStr, submission,
+            principalName = job.principalName, dontChangeStatusDate = job.dontChangeStatusDate,
+            rebuildByTeacher = job.rebuildByTeacher)
+    }
+
+    private fun dispatch() {
+        if (dropProjectProperties.workers.remoteBuilds) {
+            return  // the remote workers will claim the builds
+        }
+
+        val runnable = Runnable { runNext() }
+        val executor = asyncExecutor
+        if (executor is AsyncTaskExecutor) {
+            executor.submit(runnable)  // submit (not execute) so that the executor applies its timeout
+        } else {
+            executor.execute(runnable)
+        }
+    }
+
+    private fun runNext() {
+        val job = claimNext(nodeId) ?: return
+
+        if (runClaimedJob(job)) {
+            dispatch()
+        }
+    }
+
+    /**
+     * @return true if there are builds waiting in the queue
+     */
+    private fun runClaimedJob(job: BuildJob): Boolean {
+        try {
+            LOG.info("[${job.authorsStr}] Started build of submission ${job.submissionId} " +
+                    "(waited ${(job.startedAt!!.time - job.enqueuedAt.time) / 1000}s, attempt ${job.attempts})")
+            runJob(job)
+            buildJobRepository.deleteById(job.id)
+        } catch (e: Throwable) {
+            LOG.error("[${job.authorsStr}] Build of submission ${job.submissionId} failed", e)
+            retryOrFail(job)
+        } finally {
+            synchronized(this) {
+                runningJobs.removeIf { it.id == job.id }
+            }
+        }
+
+        return synchronized(this) { queuedJobs().isNotEmpty() }
+    }
+
+    /**
+     * Takes the best waiting build that this node manages to claim. Builds that were meanwhile claimed by
+     * another node (or cancelled) are discarded.
+     */
+    private fun claimNext(owner: String): BuildJob? {
+        while (true) {
+            val candidate = synchronized(this) {
+                val next = pollNext() ?: return null
+                runningJobs.add(next)
+                next
+            }
+
+            val now = Date()
+            if (buildJobRepository.claim(candidate.id, owner, now, leaseExpiration(now)) == 1) {
+                val claimedJob = buildJobRepository.findById(candidate.id).orElse(null)
+                if (claimedJob != null) {
+                    synchronized(this) {
+                        runningJobs.removeIf { it.id == candidate.id }
+                        runningJobs.add(claimedJob)
+                    }
+                    buildMetrics.record(PipelineStage.QUEUE_WAIT, claimedJob.assignmentId,
+                        if (owner == nodeId) "local" else "remote",
+                        (claimedJob.startedAt!!.time - claimedJob.enqueuedAt.time) * 1_000_000)
+                    publishStarted(claimedJob)
+                    return claimedJob
+                }
+            }
+
+            synchronized(this) {
+                runningJobs.removeIf { it.id == candidate.id }
+            }
+        }
+    }
+
+    private fun retryOrFail(job: BuildJob) {
+        if (job.attempts < dropProjectProperties.build.maxAttempts) {
+            LOG.info("[${job.authorsStr}] Build of submission ${job.submissionId} will be retried")
+            job.status = BuildJobStatus.QUEUED
+            job.leaseOwner = null
+            job.leaseExpiresAt = null
+            enqueue(buildJobRepository.save(job))
+        } else {
+            buildJobRepository.deleteById(job.id)
+            submissionRepository.findById(job.submissionId).ifPresent {
+                it.setStatus(SubmissionStatus.FAILED)
+                submissionRepository.save(it)
+                submissionEvents.publish(it)
+            }
+        }
+    }
+
+    // the status of the submission doesn't change, but its followers learn that the build is running
+    private fun publishStarted(job: BuildJob) {
+        if (submissionEvents.isFollowed(job.submissionId)) {
+            submissionRepository.findById(job.submissionId).ifPresent {
+                submissionEvents.publish(it, QueueEstimate(0, buildMetrics.estimatedSeconds(0)))
+            }
+        }
+    }
+
+    /**
+     * @return the number of expired builds that were put back in the queue
+     */
+    private fun releaseExpiredJobs(): Int {
+        val now = Date()
+        var numReleased = 0
+        for (expiredJob in buildJobRepository.findByStatusAndLeaseExpiresAtBefore(BuildJobStatus.RUNNING, now)) {
+            if (buildJobRepository.releaseExpired(expiredJob.id, now) == 1) {
+                LOG.warn("[${expiredJob.authorsStr}] The lease of the build of submission ${expiredJob.submissionId} " +
+                        "(owned by ${expiredJob.leaseOwner}) expired")
+                synchronized(this) {
+                    runningJobs.removeIf { it.id == expiredJob.id }
+                }
+                expiredJob.status = BuildJobStatus.QUEUED
+                expiredJob.leaseOwner = null
+                expiredJob.leaseExpiresAt = null
+                if (expiredJob.attempts < dropProjectProperties.build.maxAttempts) {
+                    enqueue(expiredJob)
+                    numReleased++
+                } else {
+                    retryOrFail(expiredJob)
+                }
+            }
+        }
+        return numReleased
+    }
+
+    private fun leaseExpiration(now: Date) = Date(now.time + dropProjectProperties.build.leaseSeconds * 1000L)
+
+    @Synchronized
+    private fun enqueue(job: BuildJob) {
+        queues.getOrPut(job.priority) { LinkedHashMap() }
+            .getOrPut(job.assignmentId) { LinkedHashMap() }
+            .getOrPut(job.groupId) { ArrayDeque() }
+            .addLast(job)
+    }
+
+    // must be called while holding the lock
+    private fun pollNext(): BuildJob? {
+        val maxPerAssignment = dropProjectProperties.build.maxConcurrentPerAssignment
+
+        for (priority in BuildPriority.values()) {
+            val byAssignment = queues[priority] ?: continue
+            for (assignmentId in byAssignment.keys.toList()) {
+                if (maxPerAssignment > 0 && runningJobs.count { it.assignmentId == assignmentId } >= maxPerAssignment) {
+                    continue
+                }
+
+                val byGroup = byAssignment.getValue(assignmentId)
+                val groupId = byGroup.keys.first()
+                val jobs = byGroup.getValue(groupId)
+                val job = jobs.removeFirst()
+
+                // move the group and the assignment to the end of the line
+                byGroup.remove(groupId)
+                if (jobs.isNotEmpty()) {
+                    byGroup[groupId] = jobs
+                }
+                byAssignment.remove(assignmentId)
+                if (byGroup.isNotEmpty()) {
+                    byAssignment[assignmentId] = byGroup
+                }
+
+                return job
+            }
+        }
+
+        return null
+    }
+
+    private fun queuedJobs(): List<BuildJob> {
+        return queues.values.flatMap { byAssignment -> byAssignment.values.flatMap { byGroup -> byGroup.values.flatten() } }
+    }
+
+    private fun removeEmptyQueues() {
+        for (byAssignment in queues.values) {
+            byAssignment.values.forEach { byGroup -> byGroup.values.removeIf { it.isEmpty() } }
+            byAssignment.values.removeIf { it.isEmpty() }
+        }
+    }
+}
@@ -20,17 +20,18 @@
 package org.dropproject.services
 
 import jakarta.persistence.EntityNotFoundException
-import org.springframework.scheduling.annotation.Async
 import org.springframework.stereotype.Service
 import org.springframework.transaction.annotation.Transactional
 import org.dropproject.dao.*
+import org.dropproject.data.BuildExecution
+import org.dropproject.data.MavenResult
 import org.dropproject.data.BuildReport
+import org.dropproject.data.PipelineStage
 import org.dropproject.data.TestType
 import org.dropproject.repository.*
 import org.slf4j.LoggerFactory
 import java.io.File
 import java.nio.charset.Charset
-import java.nio.file.Files
 import java.util.*
 import java.util.logging.Logger
 
@@ -50,6 +51,8 @@ fun hasCoverageReport(mavenizedProjectFolder: File): Boolean {
 @Service
 class BuildWorker(
         val mavenInvoker: MavenInvoker,
+        val fastBuildEngine: FastBuildEngine,
+        val teacherTestsCache: TeacherTestsCache,
         val assignmentRepository: AssignmentRepository,
         val submissionRepository: SubmissionRepository,
         val gitSubmissionRepository: GitSubmissionRepository,
@@ -57,7 +60,12 @@ class BuildWorker(
         val buildReportRepository: BuildReportRepository,
         val jUnitReportRepository: JUnitReportRepository,
         val jacocoReportRepository: JacocoReportRepository,
-        val buildReportBuilder: BuildReportBuilder) {
+        val submissionTestResultRepository: SubmissionTestResultRepository,
+        val buildReportBuilder: BuildReportBuilder,
+        val buildReportCache: BuildReportCache,
+        val reportCompressor: ReportCompressor,
+        val buildMetrics: BuildMetrics,
+        val submissionEvents: SubmissionEvents) {
 
     val LOG = LoggerFactory.getLogger(this.javaClass.name)
 
@@ -72,24 +80,154 @@ class BuildWorker(
      * @param dontChangeStatusDate is a Boolean
      * @param rebuildByTeacher is a Boolean
      */
-    @Async
     @Transactional
     fun checkProject(mavenizedProjectFolder: File, authorsStr: String, submission: Submission,
                           principalName: String?, dontChangeStatusDate: Boolean = false, rebuildByTeacher: Boolean = false) {
 
         val assignment = assignmentRepository.findById(submission.assignmentId).orElse(null)
 
-        if (assignment.maxMemoryMb != null) {
-            LOG.info("[${authorsStr}] Started maven invocation (max: ${assignment.maxMemoryMb}Mb)")
+        val realPrincipalName = if (rebuildByTeacher) submission.submitterUserId else principalName
+        val teacherTests = if (assignment.buildEngine == BuildEngine.FAST) teacherTestsCache.get(assignment) else null
+        val buildExecution = buildMetrics.time(PipelineStage.BUILD, assignment.id, { buildOutcome(it.mavenResult) }) {
+            executeBuild(mavenizedProjectFolder, authorsStr, realPrincipalName, assignment.maxMemoryMb,
+                assignment.calculateStudentTestsCoverage, submission.id, assignment.buildEngine, teacherTests)
+        }
+
+        processBuildExecution(buildExecution, mavenizedProjectFolder, authorsStr, submission, dontChangeStatusDate,
+            rebuildByTeacher)
+    }
+
+    /**
+     * Evaluates the stored result of an earlier [Submission] with the same files (see
+     * [SubmissionService.sourcesFingerprint]) as if it was produced by building this submission.
+     *
+     * @param earlierSubmission is the [Submission] whose result is reused
+     * @param earlierProjectFolder is the folder where the earlier submission was built
+     * @param mavenizedProjectFolder is a File
+     * @param authorsStr is a String
+     * @param submission is a [Submission]
+     *
+     * @return false if the earlier submission doesn't have a build report to reuse
+     */
+    @Transactional
+    fun reuseResult(earlierSubmission: Submission, earlierProjectFolder: File, mavenizedProjectFolder: File,
+                    authorsStr: String, submission: Submission): Boolean {
+
+        val earlierBuildReport = earlierSubmission.buildReport ?: return false
+        val assignment = assignmentRepository.findById(submission.assignmentId).orElse(null)
+
+        val outputLines = reportCompressor.buildReportOf(earlierBuildReport).split("\n")
+        val surefireReports = jUnitReportRepository.findBySubmissionId(earlierSubmission.id).orEmpty()
+            .associate { it.fileName to reportCompressor.xmlReportOf(it) }
+        val jacocoReports = if (assignment.calculateStudentTestsCoverage) {
+            jacocoReportRepository.findBySubmissionId(earlierSubmission.id).orEmpty()
+                .associate { it.fileName to reportCompressor.csvReportOf(it) }
+        } else {
+            null
+        }
+
+        LOG.info("[${authorsStr}] Same files as submission ${earlierSubmission.id}. Reusing its result")
+        submission.reusedFromSubmissionId = earlierSubmission.id
+
+        // the output has the paths of the folder where the earlier submission was built
+        val buildExecution = BuildExecution(MavenResult(resultCode = 0, outputLines = outputLines), surefireReports,
+            jacocoReports, projectFolder = earlierProjectFolder.absolutePath)
+        processBuildExecution(buildExecution.relocatedTo(mavenizedProjectFolder), mavenizedProjectFolder, authorsStr,
+            submission)
+        return true
+    }
+
+    /**
+     * Builds a project, without touching the database. This is the part of [checkProject] that runs on remote
+     * workers.
+     *
+     * @param mavenizedProjectFolder is a File
+     * @param authorsStr is a String
+     * @param principalName is a String
+     * @param maxMemoryMb is an Int
+     * @param calculateCoverage is a Boolean, indicating if the coverage of the student tests should be measured
+     * @param submissionId is the id of the submission being built
+     * @param buildEngine is the [BuildEngine] of the assignment
+     * @param teacherTests are the assignment's [CompiledTeacherTests] (only used by the fast build engine)
+     *
+     * @return a [BuildExecution]
+     */
+    fun executeBuild(mavenizedProjectFolder: File, authorsStr: String, principalName: String?, maxMemoryMb: Int?,
+                     calculateCoverage: Boolean, submissionId: Long? = null,
+                     buildEngine: BuildEngine? = null, teacherTests: CompiledTeacherTests? = null): BuildExecution {
+
+        if (maxMemoryMb != null) {
+            LOG.info("[${authorsStr}] Started maven invocation (max: ${maxMemoryMb}Mb)")
         } else {
             LOG.info("[${authorsStr}] Started maven invocation")
         }
 
-        val realPrincipalName = if (rebuildByTeacher) submission.submitterUserId else principalName
-        val mavenResult = mavenInvoker.run(mavenizedProjectFolder, realPrincipalName, assignment.maxMemoryMb)
+        // the coverage of the student tests is measured in the same invocation, with a separate jacoco session
+        val measureCoverage = calculateCoverage && hasCoverageReport(mavenizedProjectFolder)
+
+        // the fast engine doesn't measure coverage, so in that case the project is built by maven
+        val fastResult = if (buildEngine == BuildEngine.FAST && !measureCoverage) {
+            fastBuildEngine.run(mavenizedProjectFolder, principalName, maxMemoryMb, submissionId, teacherTests)
+        } else {
+            null
+        }
+
+        val mavenResult = fastResult ?: mavenInvoker.run(mavenizedProjectFolder, principalName, maxMemoryMb,
+            separateTestsCoverage = measureCoverage, submissionId = submissionId)
 
         LOG.info("[${authorsStr}] Finished maven invocation")
 
+        if (mavenResult.expiredByTimeout || mavenResult.tooMuchOutput()) {
+            return BuildExecution(mavenResult)
+        }
+
+        if (mavenResult.compilationFailed()) {
+            // maven stopped before the tests, so there are no test or coverage reports to collect
+            LOG.info("[${authorsStr}] Compilation failed, tests were not executed")
+            return BuildExecution(mavenResult)
+        }
+
+        val surefireReports = File("${mavenizedProjectFolder}/target/surefire-reports")
+                .walkTopDown()
+                .filter { it -> it.name.endsWith(".xml") }
+                .associate { it.name to it.readText(Charset.forName("UTF-8")) }
+
+        val jacocoReports = if (measureCoverage) {
+            File("${mavenizedProjectFolder}/target/site/jacoco")
+                    .listFiles()
+                    ?.filter { it -> it.name.endsWith(".csv") }
+                    ?.associate { it.name to it.readText(Charset.forName("UTF-8")) }
+                    .orEmpty()
+        } else {
+            null
+        }
+
+        return BuildExecution(mavenResult, surefireReports, jacocoReports)
+    }
+
+    /**
+     * Evaluates the result of building a [Submission] (locally or in a remote worker) and stores it in the database.
+     *
+     * @param buildExecution is a [BuildExecution]
+     * @param mavenizedProjectFolder is a File
+     * @param authorsStr is a String
+     * @param submission is a [Submission]
+     * @param dontChangeStatusDate is a Boolean
+     * @param rebuildByTeacher is a Boolean
+     */
+    @Transactional
+    fun processBuildExecution(buildExecution: BuildExecution, mavenizedProjectFolder: File, authorsStr: String,
+                              submission: Submission, dontChangeStatusDate: Boolean = false,
+                              rebuildByTeacher: Boolean = false) {
+
+        val start = System.nanoTime()
+        var buildReportNanos = 0L
+
+        val assignment = assignmentRepository.findById(submission.assignmentId).orElse(null)
+        val mavenResult = buildExecution.mavenResult
+
+        buildExecution.writeReportsTo(mavenizedProjectFolder)
+
         when {
             mavenResult.expiredByTimeout -> submission.setStatus(SubmissionStatus.ABORTED_BY_TIMEOUT,
                                                                     dontUpdateStatusDate = dontChangeStatusDate)
@@ -97,12 +235,21 @@ class BuildWorker(
                                                                     dontUpdateStatusDate = dontChangeStatusDate)
             else -> {
                 LOG.info("[${authorsStr}] Maven invoker OK")
-                val buildReport = buildReportBuilder.build(mavenResult.outputLines, mavenizedProjectFolder.absolutePath,
+                val buildReportStart = System.nanoTime()
+                val buildReport = buildMetrics.time(PipelineStage.BUILD_REPORT, assignment.id) {
+                    buildReportBuilder.build(mavenResult.outputLines, mavenizedProjectFolder.absolutePath,
                         assignment, submission)
+                }
+                buildReportNanos = System.nanoTime() - buildReportStart
 
                 // clear previous indicators except PROJECT_STRUCTURE
                 submissionReportRepository.deleteBySubmissionIdExceptProjectStructure(submission.id)
 
+                // a submission rebuilt in place (or whose build is retried) still has the reports of the previous build
+                jUnitReportRepository.deleteBySubmissionId(submission.id)
+                jacocoReportRepository.deleteBySubmissionId(submission.id)
+                submissionTestResultRepository.deleteBySubmissionId(submission.id)
+
                 if (!buildReport.mavenExecutionFailed()) {
 
                     submissionReportRepository.save(
@@ -182,74 +329,57 @@ class BuildWorker(
                     }
                 }
 
-                val buildReportDB = buildReportRepository.save(org.dropproject.dao.BuildReport(
-                        buildReport = buildReport.mavenOutput()))
-                submission.buildReport = buildReportDB
-
-                // store the junit reports in the DB
-                File("${mavenizedProjectFolder}/target/surefire-reports")
-                        .walkTopDown()
-                        .filter { it -> it.name.endsWith(".xml") }
-                        .forEach {
-                            val report = JUnitReport(submissionId = submission.id, fileName = it.name,
-                                    xmlReport = it.readText(Charset.forName("UTF-8")))
-                            jUnitReportRepository.save(report)
-                        }
+                // the reports are compressed with a dictionary built from the reports of the first submission of the assignment
+                val dictionary = if (reportCompressor.enabled) reportCompressor.dictionaryFor(assignment.id) {
+                    reportCompressor.samplesFrom(buildReport.mavenOutput(), mavenizedProjectFolder)
+                } else null
 
+                val buildReportDB = buildReportRepository.save(reportCompressor.compress(org.dropproject.dao.BuildReport(
+                        buildReport = buildReport.mavenOutput()), dictionary))
+                submission.buildReport = buildReportDB
+                buildReportCache.evict(submission.id)  // it may have the report of a previous build
 
-                if (assignment.calculateStudentTestsCoverage && hasCoverageReport(mavenizedProjectFolder)) {
-
-                    // this may seem stupid but I have to rename TestTeacher files to something that will make junit ignore them,
-                    // then invoke maven again, so that the coverage report is based
-                    // on the sole execution of the student unit tests (otherwise, it will include coverage from
-                    // the teacher tests) and finally rename TestTeacher files back
-                    File("${mavenizedProjectFolder}/src/test")
+                // store the junit reports and the result of each test in the DB (if it didn't compile, the tests didn't run)
+                if (!mavenResult.compilationFailed()) {
+                    File("${mavenizedProjectFolder}/target/surefire-reports")
                             .walkTopDown()
-                            .filter { it -> it.name.startsWith("TestTeacher") }
+                            .filter { it -> it.name.endsWith(".xml") }
                             .forEach {
-                                Files.move(it.toPath(), it.toPath().resolveSibling("${it.name}.ignore"))
+                                val report = JUnitReport(submissionId = submission.id, fileName = it.name,
+                                        xmlReport = it.readText(Charset.forName("UTF-8")))
+                                jUnitReportRepository.save(reportCompressor.compress(report, dictionary))
                             }
+                    buildReportBuilder.saveTestResults(submission.id, buildReport.junitResults)
+                }
 
 
-                    LOG.info("[${authorsStr}] Started maven invocation again (for coverage)")
-
-                    val mavenResultCoverage = mavenInvoker.run(mavenizedProjectFolder, realPrincipalName, assignment.maxMemoryMb)
-                    if (!mavenResultCoverage.expiredByTimeout) {
-                        LOG.info("[${authorsStr}] Finished maven invocation (for coverage)")
+                if (assignment.calculateStudentTestsCoverage && buildExecution.jacocoReports != null) {
 
-                        // check again the result of the tests
-                        val buildReportCoverage = buildReportBuilder.build(mavenResult.outputLines, mavenizedProjectFolder.absolutePath,
-                                assignment, submission)
-                        if (buildReportCoverage.hasJUnitErrors(TestType.STUDENT) == true) {
-                            LOG.warn("Submission ${submission.id} failed executing student tests when isolated from teacher tests")
+                    // the coverage report only has the student tests (which run in their own surefire execution, see
+                    // MavenInvoker), so it's only meaningful if they pass
+                    if (buildReport.hasJUnitErrors(TestType.STUDENT) == true) {
+                        LOG.warn("Submission ${submission.id} has failing student tests, so their coverage was not stored")
+                    } else {
+                        if (File("${mavenizedProjectFolder}/target/site/jacoco").exists()) {
+                            // store the jacoco reports in the DB
+                            File("${mavenizedProjectFolder}/target/site/jacoco")
+                                    .listFiles()
+                                    .filter { it -> it.name.endsWith(".csv") }
+                                    .forEach {
+                                        val report = JacocoReport(submissionId = submission.id, fileName = it.name,
+                                                csvReport = it.readText(Charset.forName("UTF-8")))
+                                        jacocoReportRepository.save(reportCompressor.compress(report, dictionary))
+                                    }
                         } else {
-                            if (File("${mavenizedProjectFolder}/target/site/jacoco").exists()) {
-                                // store the jacoco reports in the DB
-                                File("${mavenizedProjectFolder}/target/site/jacoco")
-                                        .listFiles()
-                                        .filter { it -> it.name.endsWith(".csv") }
-                                        .forEach {
-                                            val report = JacocoReport(submissionId = submission.id, fileName = it.name,
-                                                    csvReport = it.readText(Charset.forName("UTF-8")))
-                                            jacocoReportRepository.save(report)
-                                        }
-                            } else {
-                                LOG.warn("Submission ${submission.id} failed measuring coverage because the folder " +
-                                        "[${mavenizedProjectFolder}/target/site/jacoco] doesn't exist")
-                            }
+                            LOG.warn("Submission ${submission.id} failed measuring coverage because the folder " +
+                                    "[${mavenizedProjectFolder}/target/site/jacoco] doesn't exist")
                         }
-
                     }
-
-                    File("${mavenizedProjectFolder}/src/test")
-                            .walkTopDown()
-                            .filter { it -> it.name.endsWith(".ignore") }
-                            .forEach {
-                                Files.move(it.toPath(), it.toPath().resolveSibling(it.name.replace(".ignore","")))
-                            }
-
                 }
 
+                // so that the reports listing many submissions don't have to build the full report of each one
+                buildReportBuilder.saveSummary(submission, buildReport)
+
                 if (buildReport.mavenExecutionFailed()) {
                     submission.setStatus(SubmissionStatus.FAILED, dontUpdateStatusDate = dontChangeStatusDate)
                 } else {
@@ -279,6 +409,26 @@ class BuildWorker(
         }
 
         submissionRepository.save(submission)
+        submissionEvents.publish(submission)
+
+        // everything but the build report is storing the results (the transaction is committed afterwards)
+        buildMetrics.record(PipelineStage.PERSISTENCE, submission.assignmentId, submission.getStatus().name.lowercase(),
+            System.nanoTime() - start - buildReportNanos)
+        if (!rebuildByTeacher) {
+            buildMetrics.recordFinishedBuild(submission.assignmentId, System.currentTimeMillis() - submission.submissionDate.time)
+        }
+    }
+
+    /**
+     * @return a String describing how a build ended, used as the outcome of its [PipelineStage.BUILD]
+     */
+    fun buildOutcome(mavenResult: MavenResult): String {
+        return when {
+            mavenResult.expiredByTimeout -> "timeout"
+            mavenResult.tooMuchOutput() -> "too_much_output"
+            mavenResult.failedStage != null -> "${mavenResult.failedStage!!.name.lowercase()}_failed"
+            else -> "success"
+        }
     }
 
     /**
@@ -300,6 +450,12 @@ class BuildWorker(
 
         if (!mavenResult.expiredByTimeout) {
             LOG.info("Maven invoker OK for ${assignment.id}")
+
+            // from now on, the submissions of this assignment are built offline
+            if (!mavenInvoker.isPinned(assignmentFolder)) {
+                mavenInvoker.pinDependencies(assignmentFolder)
+            }
+
             return buildReportBuilder.build(mavenResult.outputLines, assignmentFolder.absolutePath, assignment)
         } else {
             LOG.info("Maven invoker aborted by timeout for ${assignment.id}")
@@ -0,0 +1,201 @@
+/*-
+ * ========================LICENSE_START=================================
+ * DropProject
+ * %%
+ * Copyright (C) 2019 - 2026 Pedro Alves
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package org.dropproject.services
+
+import org.dropproject.config.DropProjectProperties
+import org.dropproject.config.PendingTasks
+import org.dropproject.dao.Assignment
+import org.dropproject.dao.Submission
+import org.dropproject.dao.SubmissionStatus
+import org.dropproject.data.BulkRebuildProgress
+import org.dropproject.repository.SubmissionRepository
+import org.slf4j.LoggerFactory
+import org.springframework.stereotype.Service
+import java.security.Principal
+
+/**
+ * Rebuilds the final submission (or the last one, if none was marked as final) of every group of an assignment,
+ * applying the current assignment files. This is useful, for example, after fixing a teacher test.
+ *
+ * The rebuilds go through the [BuildScheduler] (with the teacher rebuild priority), but only a limited number of them
+ * (drop-project.build.bulk-rebuild-concurrency) is put in the queue at the same time, so that a bulk rebuild doesn't
+ * flood the queue. Submissions whose inputs (the student files, the assignment files and the build settings) didn't
+ * change since they were built are skipped.
+ *
+ * The progress is kept in the [PendingTasks] and the bulk rebuild can be cancelled: the rebuilds that are still waiting
+ * in the queue are discarded, but the ones already running are allowed to finish.
+ */
+@Service
+class BulkRebuildService(
+    val submissionService: SubmissionService,
+    val submissionRepository: SubmissionRepository,
+    val buildScheduler: BuildScheduler,
+    val pendingTasks: PendingTasks,
+    val dropProjectProperties: DropProjectProperties
+) {
+
+    val LOG = LoggerFactory.getLogger(this.javaClass.name)
+
+    var pollInterval = 1000L
+
+    /**
+     * Starts the bulk rebuild of an assignment, in the background. If there's already a bulk rebuild running for this
+     * assignment, that one is returned instead.
+     *
+     * @return the [BulkRebuildProgress] of the bulk rebuild
+     */
+    @Synchronized
+    fun start(assignment: Assignment, principal: Principal): BulkRebuildProgress {
+        val runningRebuild = pendingTasks.pendingTasks.values
+            .filterIsInstance<BulkRebuildProgress>()
+            .find { it.assignmentId == assignment.id && !it.finished }
+        if (runningRebuild != null) {
+            return runningRebuild
+        }
+
+        val progress = BulkRebuildProgress(taskId = "rebuild-${assignment.id}-${System.currentTimeMillis()}",
+            assignmentId = assignment.id, requestedBy = principal.name)
+        pendingTasks.put(progress.taskId, progress)
+
+        LOG.info("Started bulk rebuild of ${assignment.id} (taskId: ${progress.taskId})")
+
+        val thread = Thread({
+            try {
+                rebuildAll(assignment, principal, progress)
+            } catch (e: Exception) {
+                LOG.error("Bulk rebuild of ${assignment.id} failed", e)
+            } finally {
+                progress.finished = true
+                LOG.info("Finished bulk rebuild of ${assignment.id}: ${progress.rebuilt} rebuilt, " +
+                        "${progress.skipped} skipped, ${progress.failed} failed, ${progress.cancelledBuilds} cancelled")
+            }
+        }, "bulk-rebuild-${assignment.id}")
+        thread.isDaemon = true
+        thread.start()
+
+        return progress
+    }
+
+    fun getProgress(taskId: String): BulkRebuildProgress? {
+        return pendingTasks.get(taskId) as? BulkRebuildProgress
+    }
+
+    /**
+     * @return false if there's no bulk rebuild with this id, or if it already finished
+     */
+    fun cancel(taskId: String): Boolean {
+        val progress = getProgress(taskId) ?: return false
+        if (progress.finished) {
+            return false
+        }
+        progress.cancelled = true
+        return true
+    }
+
+    private fun rebuildAll(assignment: Assignment, principal: Principal, progress: BulkRebuildProgress) {
+        val submissionInfos = submissionService.getSubmissionsList(assignment, retrieveReport = false)
+        progress.total = submissionInfos.size
+
+        // rebuilt submission -> original submission
+        val inFlight = LinkedHashMap<Long, Submission>()
+        val maxInFlight = dropProjectProperties.build.bulkRebuildConcurrency.coerceAtLeast(1)
+
+        for (submissionInfo in submissionInfos) {
+            while (inFlight.size >= maxInFlight && !progress.cancelled) {
+                Thread.sleep(pollInterval)
+                checkFinished(inFlight, progress)
+            }
+            if (progress.cancelled) {
+                break
+            }
+
+            val submission = submissionInfo.lastSubmission
+
+            // the builds of this same project that are still valid (e.g., an earlier rebuild)
+            val validFingerprints = submissionInfo.allSubmissions
+                .filter { it.submissionId == submission.submissionId && it.gitSubmissionId == submission.gitSubmissionId }
+                .filter { it.getStatus() == SubmissionStatus.VALIDATED || it.getStatus() == SubmissionStatus.VALIDATED_REBUILT }
+                .mapNotNull { it.sourcesFingerprint }
+                .toSet()
+
+            try {
+                val rebuiltSubmission = submissionService.rebuildFull(submission, assignment, principal,
+                    skipIfFingerprintIn = validFingerprints)
+                if (rebuiltSubmission == null) {
+                    progress.skipped++
+                } else {
+                    inFlight[rebuiltSubmission.id] = submission
+                }
+            } catch (e: Exception) {
+                LOG.error("Bulk rebuild of ${assignment.id}: unable to rebuild submission ${submission.id}", e)
+                progress.failed++
+            }
+            checkFinished(inFlight, progress)
+        }
+
+        if (progress.cancelled) {
+            // the rebuilds that are still waiting in the queue are discarded
+            for (rebuiltSubmissionId in inFlight.keys.toList()) {
+                if (buildScheduler.cancel(rebuiltSubmissionId)) {
+                    submissionRepository.findById(rebuiltSubmissionId).ifPresent {
+                        it.setStatus(SubmissionStatus.DELETED)
+                        submissionRepository.save(it)
+                    }
+                    inFlight.remove(rebuiltSubmissionId)
+                    progress.cancelledBuilds++
+                }
+            }
+            progress.running = inFlight.size
+        }
+
+        while (inFlight.isNotEmpty()) {
+            Thread.sleep(pollInterval)
+            checkFinished(inFlight, progress)
+        }
+    }
+
+    /**
+     * Removes the rebuilds that finished from [inFlight], updating the progress. When the rebuild of a submission that
+     * was marked as final succeeds, the rebuilt submission becomes the final one.
+     */
+    private fun checkFinished(inFlight: MutableMap<Long, Submission>, progress: BulkRebuildProgress) {
+        val iterator = inFlight.iterator()
+        while (iterator.hasNext()) {
+            val (rebuiltSubmissionId, originalSubmission) = iterator.next()
+            val rebuiltSubmission = submissionRepository.findById(rebuiltSubmissionId).orElse(null)
+            val status = rebuiltSubmission?.getStatus()
+            if (status == SubmissionStatus.SUBMITTED_FOR_REBUILD || status == SubmissionStatus.REBUILDING) {
+                continue
+            }
+
+            iterator.remove()
+            if (status == SubmissionStatus.VALIDATED_REBUILT) {
+                progress.rebuilt++
+                if (originalSubmission.markedAsFinal) {
+                    submissionService.markAsFinal(rebuiltSubmission)
+                    submissionRepository.save(rebuiltSubmission)
+                }
+            } else {
+                progress.failed++
+            }
+        }
+        progress.running = inFlight.size
+    }
+}
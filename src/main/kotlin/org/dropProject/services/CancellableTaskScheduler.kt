@@ -20,32 +20,97 @@
 package org.dropproject.services
 
 import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler
-import java.util.*
 import java.util.concurrent.Callable
 import java.util.concurrent.Future
-import kotlin.concurrent.schedule
+import java.util.concurrent.ScheduledFuture
+import java.util.concurrent.ScheduledThreadPoolExecutor
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicReference
 
 /**
- * Tasks created through this scheduler are cancelled after a certain time
+ * Tasks created through this scheduler are cancelled after a certain time.
+ *
+ * The time is counted from the moment the task starts running. All the timeouts are handled by a single thread (instead
+ * of one timer thread per task) and, when a task times out, [onTimeout] is called with the thread that is running it,
+ * before interrupting it. This allows, for example, killing the processes started by the task (see
+ * [BuildProcessMonitor]), which wouldn't stop just by interrupting the thread.
  */
-class CancellableTaskScheduler(var timeout: Long) : ThreadPoolTaskScheduler() {
+class CancellableTaskScheduler(var timeout: Long,
+                               private val onTimeout: (Thread) -> Unit = {}) : ThreadPoolTaskScheduler() {
 
-    override fun submit(task: Runnable): Future<*> {
-        val future = super.submit(task)
+    private val timeouts = ScheduledThreadPoolExecutor(1) { runnable ->
+        val thread = Thread(runnable, "Timeout")
+        thread.isDaemon = true
+        thread
+    }.apply { removeOnCancelPolicy = true }
+
+    /**
+     * The timeout of a single task.
+     *
+     * The thread is pooled, so once the task finishes it may be running another task. The timeout and the end of the
+     * task are serialized by this object's lock, so that the timeout only acts on the thread while it's running the
+     * task that timed out.
+     */
+    private inner class TaskTimeout {
+        val future = AtomicReference<Future<*>>()
+        private var scheduledTimeout: ScheduledFuture<*>? = null
+        private var finished = false
+
+        @Synchronized
+        fun started() {
+            val thread = Thread.currentThread()
+            scheduledTimeout = timeouts.schedule({ timedOut(thread) }, timeout, TimeUnit.MILLISECONDS)
+        }
 
-        Timer("Timeout", false).schedule(timeout) { future.cancel(true) }
+        @Synchronized
+        private fun timedOut(thread: Thread) {
+            if (finished) {
+                return
+            }
 
+            onTimeout(thread)
+            val taskFuture = future.get()
+            if (taskFuture != null) taskFuture.cancel(true) else thread.interrupt()
+        }
+
+        @Synchronized
+        fun finished() {
+            finished = true
+            scheduledTimeout?.cancel(false)
+        }
+    }
+
+    override fun submit(task: Runnable): Future<*> {
+        val taskTimeout = TaskTimeout()
+        val future = super.submit(Runnable {
+            taskTimeout.started()
+            try {
+                task.run()
+            } finally {
+                taskTimeout.finished()
+            }
+        })
+        taskTimeout.future.set(future)
         return future
     }
 
     // on the latest spring version, this seems to be the method that is called
     override fun <T : Any?> submit(task: Callable<T>): Future<T> {
-        val future = super.submit(task)
-
-        Timer("Timeout", false).schedule(timeout) {
-            future.cancel(true)
-        }
-
+        val taskTimeout = TaskTimeout()
+        val future = super.submit(Callable {
+            taskTimeout.started()
+            try {
+                task.call()
+            } finally {
+                taskTimeout.finished()
+            }
+        })
+        taskTimeout.future.set(future)
         return future
     }
+
+    override fun shutdown() {
+        timeouts.shutdownNow()
+        super.shutdown()
+    }
 }
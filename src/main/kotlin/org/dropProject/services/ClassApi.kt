@@ -0,0 +1,196 @@
+/*-
+ * ========================LICENSE_START=================================
+ * DropProject
+ * %%
+ * Copyright (C) 2019 - 2026 Pedro Alves
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package org.dropproject.services
+
+import org.springframework.asm.ClassReader
+import org.springframework.asm.ClassVisitor
+import org.springframework.asm.FieldVisitor
+import org.springframework.asm.MethodVisitor
+import org.springframework.asm.Opcodes
+import org.springframework.asm.SpringAsmInfo
+import java.io.File
+import java.io.InputStream
+import java.util.jar.JarFile
+
+/**
+ * Represents the non-private API (classes, fields and methods) of a set of compiled classes, read directly from the
+ * .class files (the classes are never loaded).
+ *
+ * It's used to check if code that was compiled against some classes (e.g., the teacher tests, compiled against the
+ * teacher's solution) would compile the same way against other classes (e.g., the student's solution).
+ */
+class ClassApi private constructor(val classes: Map<String, ClassInfo>) {
+
+    /**
+     * Represents the API of a single class.
+     *
+     * @property name is the internal name of the class (e.g., org/dropProject/Main)
+     * @property header is a String with the access flags, the generic signature, the superclass and the interfaces
+     * @property members maps each (non-private) field and method name to the declarations with that name
+     * @property constants is a Set with the names of the fields whose value is inlined by the compiler
+     */
+    data class ClassInfo(val name: String, val header: String, val members: Map<String, Set<String>>,
+                         val constants: Set<String>, val superName: String?, val interfaces: List<String>)
+
+    /**
+     * Checks if code compiled against these classes (the reference) links and behaves as if it was compiled against
+     * [other]. This is conservative: when in doubt, the answer is false.
+     *
+     * @param other is the ClassApi of the classes that will be used instead of these
+     * @param usedClasses is a Set with the internal names of the classes referenced by the compiled code
+     * @param usedPackages is a Set with the internal names of the packages of the compiled code
+     *
+     * @return true if the compiled code can be used with [other]
+     */
+    fun isCompatibleWith(other: ClassApi, usedClasses: Set<String>, usedPackages: Set<String>): Boolean {
+
+        // the used classes (and their superclasses) must have exactly the same declarations, since adding an
+        // overload could change the method that is called
+        val pending = ArrayDeque(usedClasses.filter { classes.containsKey(it) })
+        val checked = mutableSetOf<String>()
+        while (pending.isNotEmpty()) {
+            val name = pending.removeFirst()
+            if (!checked.add(name)) {
+                continue
+            }
+            val reference = classes.getValue(name)
+            val candidate = other.classes[name] ?: return false
+            if (reference.header != candidate.header) {
+                return false
+            }
+            if (reference.members.any { (memberName, declarations) -> candidate.members[memberName] != declarations }) {
+                return false
+            }
+            (listOfNotNull(reference.superName) + reference.interfaces)
+                .filter { classes.containsKey(it) }
+                .forEach { pending.add(it) }
+        }
+
+        // constants are inlined, so they're not referenced by the compiled code
+        for (reference in classes.values.filter { it.constants.isNotEmpty() }) {
+            val candidate = other.classes[reference.name] ?: return false
+            if (reference.constants.any { candidate.members[it] != reference.members[it] }) {
+                return false
+            }
+        }
+
+        // a new class in the same package of the compiled code may hide a class that it imports with a wildcard
+        val usedSimpleNames = usedClasses.map { it.substringAfterLast("/") }.toSet()
+        return other.classes.keys.none {
+            !classes.containsKey(it) && it.substringBeforeLast("/", "") in usedPackages &&
+                    it.substringAfterLast("/") in usedSimpleNames
+        }
+    }
+
+    companion object {
+
+        private const val MEMBER_ACCESS_MASK = Opcodes.ACC_PUBLIC or Opcodes.ACC_PROTECTED or Opcodes.ACC_STATIC or
+                Opcodes.ACC_FINAL or Opcodes.ACC_ABSTRACT or Opcodes.ACC_VARARGS
+
+        /**
+         * Reads the API of the classes of a folder (e.g., target/classes) or a jar.
+         */
+        fun read(classesLocation: File): ClassApi {
+            val classes = HashMap<String, ClassInfo>()
+            forEachClass(classesLocation) { input ->
+                val info = readClass(input.readBytes())
+                classes[info.name] = info
+            }
+            return ClassApi(classes)
+        }
+
+        /**
+         * Reads the internal names of all the classes referenced by the classes of a folder or a jar.
+         */
+        fun readUsedClasses(classesLocation: File): Set<String> {
+            val usedClasses = HashSet<String>()
+            forEachClass(classesLocation) { input ->
+                val reader = ClassReader(input.readBytes())
+                val buffer = CharArray(reader.maxStringLength)
+                for (i in 1 until reader.itemCount) {
+                    val offset = reader.getItem(i)
+                    // the second slot of a long or a double has offset 0
+                    if (offset > 0 && reader.readByte(offset - 1) == CONSTANT_CLASS) {
+                        usedClasses.add(reader.readUTF8(offset, buffer).trimStart('[').removePrefix("L").removeSuffix(";"))
+                    }
+                }
+            }
+            return usedClasses
+        }
+
+        private const val CONSTANT_CLASS = 7
+
+        private fun forEachClass(classesLocation: File, action: (InputStream) -> Unit) {
+            if (!classesLocation.exists()) {
+                return
+            } else if (classesLocation.isDirectory) {
+                classesLocation.walkTopDown()
+                    .filter { it.isFile && it.name.endsWith(".class") }
+                    .forEach { file -> file.inputStream().use(action) }
+            } else {
+                JarFile(classesLocation).use { jar ->
+                    jar.entries().asSequence()
+                        .filter { !it.isDirectory && it.name.endsWith(".class") }
+                        .forEach { entry -> jar.getInputStream(entry).use(action) }
+                }
+            }
+        }
+
+        private fun readClass(bytes: ByteArray): ClassInfo {
+            val reader = ClassReader(bytes)
+            val members = HashMap<String, MutableSet<String>>()
+            val constants = HashSet<String>()
+            var header = ""
+
+            reader.accept(object : ClassVisitor(SpringAsmInfo.ASM_VERSION) {
+                override fun visit(version: Int, access: Int, name: String, signature: String?, superName: String?,
+                                   interfaces: Array<out String>?) {
+                    header = "${access and Opcodes.ACC_SYNTHETIC.inv()} ${signature} ${superName} " +
+                            "${interfaces?.joinToString(",")}"
+                }
+
+                override fun visitField(access: Int, name: String, descriptor: String, signature: String?,
+                                        value: Any?): FieldVisitor? {
+                    if (access and (Opcodes.ACC_PRIVATE or Opcodes.ACC_SYNTHETIC) == 0) {
+                        members.getOrPut(name) { HashSet() }
+                            .add("field ${access and MEMBER_ACCESS_MASK} ${descriptor} ${signature} ${value}")
+                        if (value != null && access and Opcodes.ACC_FINAL != 0) {
+                            constants.add(name)
+                        }
+                    }
+                    return null
+                }
+
+                override fun visitMethod(access: Int, name: String, descriptor: String, signature: String?,
+                                         exceptions: Array<out String>?): MethodVisitor? {
+                    if (access and (Opcodes.ACC_PRIVATE or Opcodes.ACC_SYNTHETIC or Opcodes.ACC_BRIDGE) == 0) {
+                        members.getOrPut(name) { HashSet() }
+                            .add("method ${access and MEMBER_ACCESS_MASK} ${descriptor} ${signature} " +
+                                    "${exceptions?.sorted()?.joinToString(",")}")
+                    }
+                    return null
+                }
+            }, ClassReader.SKIP_CODE or ClassReader.SKIP_DEBUG or ClassReader.SKIP_FRAMES)
+
+            return ClassInfo(reader.className, header, members, constants, reader.superName,
+                reader.interfaces.toList())
+        }
+    }
+}
@@ -0,0 +1,411 @@
+/*-
+ * ========================LICENSE_START=================================
+ * DropProject
+ * %%
+ * Copyright (C) 2019 - 2026 Pedro Alves
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package org.dropproject.services
+
+import com.sun.source.util.JavacTask
+import com.sun.source.util.TaskEvent
+import com.sun.source.util.TaskListener
+import org.dropproject.data.BuildKillReason
+import org.dropproject.data.MavenResult
+import org.dropproject.data.RunningBuild
+import org.slf4j.LoggerFactory
+import org.springframework.stereotype.Service
+import java.io.ByteArrayOutputStream
+import java.io.File
+import java.io.StringWriter
+import java.nio.charset.Charset
+import java.util.*
+import java.util.concurrent.ConcurrentHashMap
+import java.util.jar.JarFile
+import javax.tools.Diagnostic
+import javax.tools.DiagnosticCollector
+import javax.tools.JavaFileObject
+import javax.tools.ToolProvider
+
+/**
+ * Builds Java projects without maven (see [org.dropproject.dao.BuildEngine.FAST]): the sources are compiled in-process,
+ * with javax.tools, and the JUnit 4 tests run in a separate (sandboxed) JVM.
+ *
+ * The result is the same as if the project was built by the [MavenInvoker]: the output mimics the one of maven (so that,
+ * for example, the compilation errors are found by the [org.dropproject.data.BuildReport]) and the results of the tests
+ * are written to target/surefire-reports, in the same format as the maven-surefire-plugin.
+ *
+ * The other plugins of the pom.xml (e.g., checkstyle) don't run.
+ *
+ * When possible, the teacher tests are not compiled: the ones compiled when the assignment was validated are used
+ * instead (see [TeacherTestsCache]).
+ */
+@Service
+class FastBuildEngine(
+    val mavenInvoker: MavenInvoker,
+    val buildProcessMonitor: BuildProcessMonitor
+) {
+
+    val LOG = LoggerFactory.getLogger(this.javaClass.name)
+
+    // pom.xml hash -> dependencies
+    private val classpathCache = ConcurrentHashMap<String, List<File>>()
+
+    // junit jar -> folder with the compiled FastTestRunner
+    private val runnerCache = ConcurrentHashMap<File, File>()
+
+    /**
+     * Builds a project, if possible.
+     *
+     * @param mavenizedProjectFolder is a File containing the project's files
+     * @param principalName is a String
+     * @param maxMemoryMb is an Int
+     * @param submissionId is the id of the submission being built (if any), so that an admin can abort it
+     * @param teacherTests are the assignment's [CompiledTeacherTests], if available
+     *
+     * @return a [MavenResult] or null if this project can't be built without maven (e.g., it's not tested with JUnit 4)
+     */
+    fun run(mavenizedProjectFolder: File, principalName: String?, maxMemoryMb: Int?,
+            submissionId: Long? = null, teacherTests: CompiledTeacherTests? = null): MavenResult? {
+
+        if (ToolProvider.getSystemJavaCompiler() == null) {
+            LOG.warn("The fast build engine requires a JDK. Falling back to maven")
+            return null
+        }
+
+        if (File(mavenizedProjectFolder, "src/main/kotlin").exists()) {
+            return null
+        }
+
+        val classpath = resolveClasspath(mavenizedProjectFolder) ?: return null
+        if (classpath.none { isJUnit4(it) }) {
+            LOG.info("${mavenizedProjectFolder.name} is not tested with JUnit 4. Falling back to maven")
+            return null
+        }
+
+        return build(mavenizedProjectFolder, classpath, principalName, maxMemoryMb, submissionId, teacherTests)
+    }
+
+    /**
+     * The dependencies only depend on the pom.xml, which is the same for all the submissions of an assignment, so
+     * they're only resolved (by maven) once.
+     */
+    private fun resolveClasspath(mavenizedProjectFolder: File): List<File>? {
+        val key = mavenInvoker.pomKey(mavenizedProjectFolder)
+
+        classpathCache[key]?.let { return it }
+
+        val classpath = mavenInvoker.resolveTestClasspath(mavenizedProjectFolder) ?: return null
+        classpathCache[key] = classpath
+        return classpath
+    }
+
+    private fun isJUnit4(jar: File) = jar.name.matches("junit-4\\..*\\.jar".toRegex())
+
+    private class BuildKilledException : RuntimeException()
+
+    /**
+     * Builds a project whose dependencies are already known.
+     *
+     * @param classpath is a List with the jars of the project's dependencies
+     * @param teacherTests are the assignment's [CompiledTeacherTests], used instead of compiling the teacher tests
+     * if the project is compatible with them
+     */
+    fun build(mavenizedProjectFolder: File, classpath: List<File>, principalName: String?, maxMemoryMb: Int?,
+              submissionId: Long? = null, teacherTests: CompiledTeacherTests? = null): MavenResult {
+
+        val runningBuild = buildProcessMonitor.register(mavenizedProjectFolder, submissionId)
+        val outputCollector = MavenOutputCollector { reason ->
+            LOG.warn("The build of ${mavenizedProjectFolder.name} produced ${reason}. Killing it...")
+            buildProcessMonitor.kill(runningBuild, BuildKillReason.TOO_MUCH_OUTPUT)
+        }
+
+        try {
+            val targetFolder = File(mavenizedProjectFolder, "target")
+            targetFolder.deleteRecursively()
+            val classesFolder = File(targetFolder, "classes")
+            val testClassesFolder = File(targetFolder, "test-classes")
+
+            File(mavenizedProjectFolder, "src/main/resources").takeIf { it.exists() }?.copyRecursively(classesFolder)
+            File(mavenizedProjectFolder, "src/test/resources").takeIf { it.exists() }?.copyRecursively(testClassesFolder)
+
+            val projectName = mavenizedProjectFolder.name
+            val testSourceFolder = File(mavenizedProjectFolder, "src/test/java")
+            val mainCompiled = compile(projectName, File(mavenizedProjectFolder, "src/main/java"), classesFolder,
+                classpath, "compile", runningBuild, outputCollector)
+            val precompiledTests = teacherTests?.takeIf { mainCompiled && canUse(it, testSourceFolder, classesFolder) }
+            val compiled = mainCompiled &&
+                compile(projectName, testSourceFolder, testClassesFolder,
+                    listOfNotNull(precompiledTests?.testsJar, classesFolder) + classpath, "testCompile",
+                    runningBuild, outputCollector) { precompiledTests?.isTeacherSource(testSourceFolder, it) == true }
+            if (!compiled) {
+                // if the build was killed while compiling, it's handled below
+                if (runningBuild.killedBy == null) {
+                    outputCollector.accept("[INFO] BUILD FAILURE")
+                    return MavenResult(resultCode = 1, outputLines = outputCollector.outputLines(),
+                        failedStage = outputCollector.failedStage)
+                }
+            } else {
+                outputCollector.accept("[INFO] --- maven-surefire-plugin:fast:test (default-test) @ ${projectName} ---")
+                val testsPassed = runningBuild.killedBy == null && runTests(mavenizedProjectFolder,
+                    listOfNotNull(testClassesFolder, precompiledTests?.testsJar),
+                    listOfNotNull(testClassesFolder, precompiledTests?.testsJar, classesFolder) + classpath,
+                    principalName, maxMemoryMb, runningBuild, outputCollector)
+                outputCollector.accept(if (testsPassed) "[INFO] BUILD SUCCESS" else "[INFO] BUILD FAILURE")
+            }
+
+        } finally {
+            buildProcessMonitor.unregister(runningBuild)
+        }
+
+        val outputLines = outputCollector.outputLines()
+
+        if (outputCollector.fatalReason != null) {
+            return MavenResult(resultCode = 1, outputLines = outputLines, outputTrimmed = true)
+        }
+
+        if (runningBuild.killedBy == BuildKillReason.TIMEOUT || runningBuild.killedBy == BuildKillReason.ABORTED) {
+            LOG.warn("Fast build of ${mavenizedProjectFolder.name} was killed (${runningBuild.killedBy})")
+            return MavenResult(resultCode = 1, outputLines = outputLines, expiredByTimeout = true)
+        }
+
+        return MavenResult(resultCode = if (outputCollector.failedStage == null) 0 else 1, outputLines = outputLines,
+            failedStage = outputCollector.failedStage)
+    }
+
+    private fun canUse(teacherTests: CompiledTeacherTests, testSourceFolder: File, classesFolder: File): Boolean {
+        return try {
+            teacherTests.canBeUsedWith(testSourceFolder, classesFolder)
+        } catch (e: Exception) {
+            LOG.warn("Unable to check if the compiled teacher tests can be used: ${e.message}")
+            false
+        }
+    }
+
+    /**
+     * Compiles all the java files of a folder, writing the errors like the maven-compiler-plugin does.
+     *
+     * The compilation runs in this thread, so there's no process to kill when the build times out or is aborted.
+     * Instead, javac is stopped between the compilation of two files, as soon as [runningBuild] is killed.
+     *
+     * @param exclude tells which files are not to be compiled (e.g., because they're already compiled)
+     *
+     * @return false if there were compilation errors or the build was killed
+     */
+    private fun compile(projectName: String, sourceFolder: File, outputFolder: File, classpath: List<File>,
+                        goal: String, runningBuild: RunningBuild, outputCollector: MavenOutputCollector,
+                        exclude: (File) -> Boolean = { false }): Boolean {
+
+        outputCollector.accept("[INFO] --- maven-compiler-plugin:fast:${goal} (default-${goal}) @ ${projectName} ---")
+
+        val sourceFiles = sourceFolder.walkTopDown()
+            .filter { it.isFile && it.name.endsWith(".java") && !exclude(it) }
+            .toList()
+        if (sourceFiles.isEmpty()) {
+            return true
+        }
+
+        outputFolder.mkdirs()
+
+        val compiler = ToolProvider.getSystemJavaCompiler()
+        val diagnostics = DiagnosticCollector<JavaFileObject>()
+        val fileManager = compiler.getStandardFileManager(diagnostics, null, Charset.forName("UTF-8"))
+        val options = listOf("-d", outputFolder.absolutePath,
+            "-classpath", classpath.joinToString(File.pathSeparator) { it.absolutePath },
+            "-encoding", "UTF-8", "-g", "-proc:none")
+
+        val success = try {
+            fileManager.use {
+                val task = compiler.getTask(StringWriter(), it, diagnostics, options, null,
+                    it.getJavaFileObjectsFromFiles(sourceFiles)) as JavacTask
+                task.addTaskListener(object : TaskListener {
+                    override fun started(e: TaskEvent) {
+                        if (runningBuild.killedBy != null) {
+                            throw BuildKilledException()
+                        }
+                    }
+                })
+                task.call()
+            }
+        } catch (e: RuntimeException) {
+            // javac wraps the exceptions thrown by the listeners
+            if (runningBuild.killedBy == null) {
+                throw e
+            }
+            return false
+        }
+
+        val errors = diagnostics.diagnostics.filter { it.kind == Diagnostic.Kind.ERROR }
+        if (success && errors.isEmpty()) {
+            return true
+        }
+
+        outputCollector.accept("[ERROR] COMPILATION ERROR : ")
+        outputCollector.accept("[INFO] -------------------------------------------------------------")
+        for (error in errors) {
+            val messageLines = error.getMessage(Locale.ENGLISH).lines()
+            val source = error.source?.let { File(it.toUri()).absolutePath }
+            if (source != null) {
+                outputCollector.accept("[ERROR] ${source}:[${error.lineNumber},${error.columnNumber}] ${messageLines[0]}")
+            } else {
+                outputCollector.accept("[ERROR] ${messageLines[0]}")
+            }
+            messageLines.drop(1).forEach { outputCollector.accept("  ${it}") }
+        }
+        outputCollector.accept("[INFO] ${errors.size} error${if (errors.size == 1) "" else "s"}")
+        outputCollector.accept("[INFO] -------------------------------------------------------------")
+        return false
+    }
+
+    /**
+     * Runs the tests in a new JVM, with the same arguments (e.g., the sandbox) that maven uses when forking the tests.
+     * Only the test classes that surefire would run by default are included (Test*, *Test, *Tests and *TestCase).
+     *
+     * @param testClassesLocations are the folders (or jars) with the compiled test classes
+     *
+     * @return false if some test didn't pass
+     */
+    private fun runTests(mavenizedProjectFolder: File, testClassesLocations: List<File>, classpath: List<File>,
+                         principalName: String?, maxMemoryMb: Int?, runningBuild: RunningBuild,
+                         outputCollector: MavenOutputCollector): Boolean {
+
+        val testClasses = testClassesLocations.flatMap { classFiles(it) }
+            .filter { !it.contains("$") }
+            .map { it.removeSuffix(".class").replace('/', '.') }
+            .distinct()
+            .filter {
+                val simpleName = it.substringAfterLast(".")
+                simpleName.startsWith("Test") || simpleName.endsWith("Test") ||
+                        simpleName.endsWith("Tests") || simpleName.endsWith("TestCase")
+            }
+            .sorted()
+            .toList()
+
+        if (testClasses.isEmpty()) {
+            return true
+        }
+
+        val runnerFolder = compileRunner(classpath.first { isJUnit4(it) })
+        val token = "##dp-${UUID.randomUUID()}##"
+
+        val command = ArrayList<String>()
+        command.add(File(System.getProperty("java.home"), "bin/java").absolutePath)
+        command.addAll(mavenInvoker.testsJvmArgs(principalName, maxMemoryMb))
+        command.add("-Dfile.encoding=UTF-8")
+        command.add("-cp")
+        command.add((listOf(runnerFolder) + classpath).joinToString(File.pathSeparator) { it.absolutePath })
+        command.add("org.dropproject.fastbuild.FastTestRunner")
+        command.addAll(testClasses)
+
+        val process = ProcessBuilder(command)
+            .directory(mavenizedProjectFolder)
+            .redirectErrorStream(true)
+            .start()
+        runningBuild.process = process.toHandle()
+
+        // the token goes through the standard input, since the tests could read the command line and forge the reports
+        process.outputStream.use { it.write("${token}\n".toByteArray(Charset.forName("UTF-8"))) }
+
+        val reports = LinkedHashMap<String, String>()
+        var finished = false
+        var testsPassed = true
+
+        outputCollector.accept("-------------------------------------------------------")
+        outputCollector.accept(" T E S T S")
+        outputCollector.accept("-------------------------------------------------------")
+
+        process.inputStream.bufferedReader(Charset.forName("UTF-8")).useLines { lines ->
+            for (line in lines) {
+                // the token may come after an incomplete line printed by the tests
+                val tokenIndex = line.indexOf(token)
+                if (tokenIndex >= 0) {
+                    if (tokenIndex > 0) {
+                        outputCollector.accept(line.substring(0, tokenIndex))
+                    }
+                    val parts = line.substring(tokenIndex).split(" ")
+                    if (parts[1] == "END") {
+                        finished = true
+                        testsPassed = parts[2] == "0"
+                    } else if (parts[1].matches(reportNameRegex)) {
+                        reports[File(parts[1]).name] = String(Base64.getDecoder().decode(parts[2]), Charset.forName("UTF-8"))
+                    } else {
+                        LOG.warn("Ignoring the report ${parts[1]} of ${mavenizedProjectFolder.name}: invalid name")
+                    }
+                } else {
+                    outputCollector.accept(line)
+                }
+            }
+        }
+        process.waitFor()
+
+        // only written now, so that they replace anything the tests may have written in the same folder
+        val reportsFolder = File(mavenizedProjectFolder, "target/surefire-reports")
+        reportsFolder.deleteRecursively()
+        reportsFolder.mkdirs()
+        reports.forEach { (fileName, xml) -> File(reportsFolder, fileName).writeText(xml) }
+
+        if (!finished) {
+            // e.g., the student code called System.exit()
+            outputCollector.accept("[ERROR] The forked VM terminated without properly saying goodbye. VM crash or System.exit called?")
+            return false
+        }
+
+        return testsPassed
+    }
+
+    /**
+     * @return the paths (e.g., org/dropProject/TestTeacher.class) of the .class files of a folder or jar
+     */
+    private fun classFiles(classesLocation: File): List<String> {
+        return if (!classesLocation.exists()) {
+            emptyList()
+        } else if (classesLocation.isDirectory) {
+            classesLocation.walkTopDown()
+                .filter { it.isFile && it.name.endsWith(".class") }
+                .map { it.relativeTo(classesLocation).invariantSeparatorsPath }
+                .toList()
+        } else {
+            JarFile(classesLocation).use { jar ->
+                jar.entries().asSequence().map { it.name }.filter { it.endsWith(".class") }.toList()
+            }
+        }
+    }
+
+    /**
+     * The runner is compiled once for each version of JUnit.
+     */
+    private fun compileRunner(junitJar: File): File {
+        return runnerCache.computeIfAbsent(junitJar) {
+            val runnerFolder = kotlin.io.path.createTempDirectory("dp-fast-runner").toFile()
+            runnerFolder.deleteOnExit()
+            val sourceFile = File(runnerFolder, "FastTestRunner.java")
+            sourceFile.writeText(javaClass.getResource("/fast-build/FastTestRunner.java")!!.readText())
+
+            val compiler = ToolProvider.getSystemJavaCompiler()
+            val errors = ByteArrayOutputStream()
+            val result = compiler.run(null, errors, errors, "-d", runnerFolder.absolutePath,
+                "-classpath", junitJar.absolutePath, "-proc:none", "-encoding", "UTF-8", sourceFile.absolutePath)
+            if (result != 0) {
+                throw IllegalStateException("Unable to compile the FastTestRunner against ${junitJar}: ${errors}")
+            }
+            runnerFolder
+        }
+    }
+
+    companion object {
+        // the names of the reports come from the JVM where the tests run, so they can't be trusted
+        private val reportNameRegex = "TEST-[\\w.$]+\\.xml".toRegex()
+    }
+}
@@ -34,9 +34,12 @@ class GitSubmissionService(
         val submissionRepository: SubmissionRepository,
         val gitSubmissionRepository: GitSubmissionRepository,
         val jUnitReportRepository: JUnitReportRepository,
+        val submissionTestResultRepository: SubmissionTestResultRepository,
+        val submissionSummaryRepository: SubmissionSummaryRepository,
         val jacocoReportRepository: JacocoReportRepository,
         val submissionReportRepository: SubmissionReportRepository,
-        val projectGroupRepository: ProjectGroupRepository) {
+        val projectGroupRepository: ProjectGroupRepository,
+        val buildReportCache: BuildReportCache) {
 
     /**
      * Searches the [SubmissionRepository] for a [Submission] belonging to authorName and corresponding to a
@@ -64,7 +67,10 @@ class GitSubmissionService(
         for (submission in submissions) {
             submissionReportRepository.deleteBySubmissionId(submission.id)
             jUnitReportRepository.deleteBySubmissionId(submission.id)
+            submissionTestResultRepository.deleteBySubmissionId(submission.id)
+            submissionSummaryRepository.deleteBySubmissionId(submission.id)
             jacocoReportRepository.deleteBySubmissionId(submission.id)
+            buildReportCache.evict(submission.id)
         }
 
         submissionRepository.deleteByGitSubmissionId(gitSubmission.id)
@@ -49,6 +49,7 @@ enum class JUnitMethodResultType(val value: String) {
  * @property failureType is a a String
  * @property failureErrorLine is a String
  * @property failureDetail is a String
+ * @property time is a Float with the time (in seconds) that it took to execute the test
  */
 data class JUnitMethodResult(
     @JsonView(JSONViews.StudentAPI::class)
@@ -62,7 +63,8 @@ data class JUnitMethodResult(
     @JsonView(JSONViews.StudentAPI::class)
     val failureErrorLine: String?,
     @JsonView(JSONViews.StudentAPI::class)
-    val failureDetail: String?) {
+    val failureDetail: String?,
+    val time: Float = 0f) {
 
     companion object {
         fun empty(): JUnitMethodResult {
@@ -178,7 +180,7 @@ class JunitResultsParser {
                 else if (it.hasFailure()) JUnitMethodResultType.FAILURE
                 else if (it.hasSkipped()) JUnitMethodResultType.IGNORED else JUnitMethodResultType.SUCCESS,
                 it.failureType, it.failureErrorLine,
-                it.failureDetail) }.toList()
+                it.failureDetail, it.time) }.toList()
 
         return JUnitResults(parseResult.name, parseResult.fullClassName,
                 parseResult.numberOfTests - parseResult.numberOfSkipped,
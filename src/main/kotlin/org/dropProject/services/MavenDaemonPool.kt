@@ -0,0 +1,218 @@
+/*-
+ * ========================LICENSE_START=================================
+ * DropProject
+ * %%
+ * Copyright (C) 2019 - 2026 Pedro Alves
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package org.dropproject.services
+
+import org.dropproject.config.DropProjectProperties
+import org.slf4j.LoggerFactory
+import org.springframework.boot.context.event.ApplicationReadyEvent
+import org.springframework.context.event.EventListener
+import org.springframework.stereotype.Service
+import java.io.File
+import java.lang.management.ManagementFactory
+import java.nio.file.Files
+import java.util.*
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import kotlin.concurrent.thread
+
+/**
+ * Manages a pool of long-lived, pre-warmed build JVMs, backed by the Maven Daemon (mvnd).
+ *
+ * Each daemon already has Maven, the settings and the plugins loaded (and JIT compiled), so a submission that is handed
+ * to it doesn't pay the startup cost of a cold Maven. mvnd starts a new daemon whenever all the existing ones are busy,
+ * so the pool naturally grows up to the number of concurrent builds.
+ *
+ * Daemons are recycled (stopped, so that the next build starts a fresh one) after a certain number of builds or when the
+ * machine is running low on memory. Since mvnd can only stop all the daemons at once, the pool is drained first: the
+ * builds that start meanwhile run on a regular maven (otherwise their daemon could be stopped in the middle of the
+ * build) and, once the builds running on the daemons finish, the daemons are stopped in the background.
+ *
+ * The builds that run on a daemon are not descendants of the maven process started by [MavenInvoker], so
+ * [BuildProcessMonitor] kills the daemon that ran a build when the build must be aborted (e.g., on timeout).
+ *
+ * When the daemon is not enabled, all the functions are no-ops and [MavenInvoker] forks a regular maven.
+ */
+@Service
+class MavenDaemonPool(val dropProjectProperties: DropProjectProperties) {
+
+    val LOG = LoggerFactory.getLogger(this.javaClass.name)
+
+    // the number of builds running on the daemons and the recycling are guarded by this object's lock
+    private var runningBuilds = 0
+    private var draining = false
+    private var stopping = false
+    private val buildsSinceRecycle = AtomicInteger(0)
+
+    val enabled: Boolean
+        get() = dropProjectProperties.maven.daemon.enabled
+
+    val numBuildsSinceRecycle: Int
+        get() = buildsSinceRecycle.get()
+
+    /**
+     * True while the daemons are being recycled, i.e., until they're stopped.
+     */
+    val recycling: Boolean
+        @Synchronized get() = draining
+
+    /**
+     * @return the mvnd client executable, which replaces the regular mvn executable
+     */
+    fun executable(): File {
+        val isWindows = System.getProperty("os.name").lowercase().contains("win")
+        return File(dropProjectProperties.maven.daemon.home, if (isWindows) "bin/mvnd.cmd" else "bin/mvnd")
+    }
+
+    /**
+     * @return the system properties that configure the daemons, to be passed on each invocation
+     */
+    fun daemonProperties(): Properties {
+        val properties = Properties()
+        properties["mvnd.maxHeapSize"] = dropProjectProperties.maven.daemon.maxHeapSize
+        properties["mvnd.idleTimeout"] = dropProjectProperties.maven.daemon.idleTimeout
+        properties["mvnd.noBuffering"] = "true"  // the output must arrive line by line, as it does with maven
+        return properties
+    }
+
+    /**
+     * Called before a build starts.
+     *
+     * @return true if the build must run on a daemon (and call [buildFinished] when it finishes) or false if it must
+     * run on a regular maven, because the daemon is not enabled or the daemons are being recycled
+     */
+    @Synchronized
+    fun buildStarted(): Boolean {
+        if (!enabled || draining) {
+            return false
+        }
+
+        runningBuilds++
+        return true
+    }
+
+    /**
+     * Called when a build that ran on a daemon finishes.
+     */
+    @Synchronized
+    fun buildFinished() {
+        val numBuilds = buildsSinceRecycle.incrementAndGet()
+        if (numBuilds >= dropProjectProperties.maven.daemon.recycleAfterBuilds) {
+            LOG.info("Maven daemons executed $numBuilds builds. They will be recycled")
+            draining = true
+        } else if (isLowOnMemory()) {
+            LOG.warn("Free memory is below ${dropProjectProperties.maven.daemon.minFreeMemoryMb}Mb. Maven daemons will be recycled")
+            draining = true
+        }
+
+        runningBuilds--
+        stopIfDrained()
+    }
+
+    /**
+     * Stops all the daemons, in the background. The next build on a daemon will start a fresh one. If there are builds
+     * running on the daemons, it waits until they finish, while the new builds run on a regular maven.
+     */
+    @Synchronized
+    fun recycle() {
+        draining = true
+        stopIfDrained()
+    }
+
+    // must be called with this object's lock, but the daemons are stopped without it, so that the builds don't wait
+    private fun stopIfDrained() {
+        if (!draining || stopping || runningBuilds > 0) {
+            return
+        }
+
+        stopping = true
+        buildsSinceRecycle.set(0)
+        thread(name = "mvnd-recycle", isDaemon = true) {
+            try {
+                runDaemonCommand(listOf("--stop"))
+            } finally {
+                synchronized(this) {
+                    stopping = false
+                    draining = false
+                }
+            }
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent::class)
+    fun warmUp() {
+        if (!enabled || dropProjectProperties.maven.daemon.warmUpDaemons <= 0) {
+            return
+        }
+
+        // a minimal project is enough to boot the daemon JVM and load maven's core and settings
+        val warmUpFolder = Files.createTempDirectory("dp-mvnd-warmup").toFile()
+        File(warmUpFolder, "pom.xml").writeText("""
+            <project xmlns="http://maven.apache.org/POM/4.0.0">
+                <modelVersion>4.0.0</modelVersion>
+                <groupId>org.dropproject</groupId>
+                <artifactId>warm-up</artifactId>
+                <version>1.0</version>
+                <packaging>pom</packaging>
+            </project>
+        """.trimIndent())
+
+        val numDaemons = dropProjectProperties.maven.daemon.warmUpDaemons
+        LOG.info("Warming up $numDaemons maven daemon(s)")
+
+        // the warm up builds run concurrently, otherwise mvnd would reuse the same daemon for all of them
+        val warmUpThreads = (1..numDaemons).map {
+            thread(name = "mvnd-warmup-$it", isDaemon = true) {
+                runDaemonCommand(listOf("-B", "-q", "-f", File(warmUpFolder, "pom.xml").absolutePath,
+                    "-Dmaven.repo.local=${File(dropProjectProperties.maven.repository).absolutePath}",
+                    "validate"))
+            }
+        }
+
+        thread(name = "mvnd-warmup-cleanup", isDaemon = true) {
+            warmUpThreads.forEach { it.join() }
+            warmUpFolder.deleteRecursively()
+            LOG.info("Maven daemons are warm")
+        }
+    }
+
+    private fun isLowOnMemory(): Boolean {
+        val osBean = ManagementFactory.getOperatingSystemMXBean() as? com.sun.management.OperatingSystemMXBean
+            ?: return false
+        return osBean.freeMemorySize < dropProjectProperties.maven.daemon.minFreeMemoryMb * 1024L * 1024L
+    }
+
+    private fun runDaemonCommand(args: List<String>) {
+        try {
+            val processBuilder = ProcessBuilder(listOf(executable().absolutePath) + args)
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+            if (dropProjectProperties.maven.useCurrentJdk) {
+                processBuilder.environment()["JAVA_HOME"] = System.getProperty("java.home")
+            }
+            val process = processBuilder.start()
+            if (!process.waitFor(2, TimeUnit.MINUTES)) {
+                LOG.warn("mvnd ${args.last()} is taking too long. Aborting...")
+                process.destroyForcibly()
+            }
+        } catch (e: Exception) {
+            LOG.error("Error running mvnd ${args.last()}: ${e.message}")
+        }
+    }
+}
@@ -20,11 +20,16 @@
 package org.dropproject.services
 
 import org.apache.maven.model.Dependency
+import org.apache.maven.model.Model
+import org.apache.maven.model.Plugin
+import org.apache.maven.model.PluginExecution
 import org.apache.maven.model.io.xpp3.MavenXpp3Reader
 import org.apache.maven.model.io.xpp3.MavenXpp3Writer
 import org.apache.maven.shared.invoker.DefaultInvocationRequest
 import org.apache.maven.shared.invoker.DefaultInvoker
+import org.codehaus.plexus.util.xml.Xpp3Dom
 import org.dropproject.Constants
+import org.dropproject.data.BuildKillReason
 import org.dropproject.data.MavenResult
 import org.slf4j.LoggerFactory
 import org.dropproject.config.DropProjectProperties
@@ -32,14 +37,19 @@ import org.springframework.stereotype.Service
 import java.io.File
 import java.io.FileReader
 import java.io.StringWriter
+import java.nio.file.Files
+import java.security.MessageDigest
 import java.util.*
+import java.util.concurrent.ConcurrentHashMap
 
 /**
  * Utility to perform Maven related tasks.
  */
 @Service
 class MavenInvoker(
-    val dropProjectProperties: DropProjectProperties
+    val dropProjectProperties: DropProjectProperties,
+    val mavenDaemonPool: MavenDaemonPool,
+    val buildProcessMonitor: BuildProcessMonitor
 ) {
 
     val LOG = LoggerFactory.getLogger(this.javaClass.name)
@@ -52,16 +62,26 @@ class MavenInvoker(
 
     var showMavenOutput = false
 
+    // pom key (see writePomFile) -> the transformed pom.xml
+    private val transformedPoms = ConcurrentHashMap<String, String>()
+
     /**
      * Runs and project using Maven. This function executes the compilation and testing of a submitted project.
      *
      * @param mavenizedProjectFolder is a File containing the project's files
      * @param principalName is a String
      * @param maxMemoryMb is an Int
+     * @param separateTestsCoverage is a Boolean, indicating if the coverage of the student tests should be measured
+     * separately from the teacher tests (see [separateCoverageByTestType])
+     * @param submissionId is the id of the submission being built (if any), so that an admin can abort it
+     * @param allowOffline is a Boolean, indicating if the build can run offline (if the dependencies are pinned). An
+     * offline build that misses some artifact is retried once, online
      *
      * @return a MavenResult
      */
-    fun run(mavenizedProjectFolder: File, principalName: String?, maxMemoryMb: Int?) : MavenResult {
+    fun run(mavenizedProjectFolder: File, principalName: String?, maxMemoryMb: Int?,
+            separateTestsCoverage: Boolean = false, submissionId: Long? = null,
+            allowOffline: Boolean = true) : MavenResult {
 
         if (!File(dropProjectProperties.maven.repository).exists()) {
             val success = File(dropProjectProperties.maven.repository).mkdirs()
@@ -70,12 +90,7 @@ class MavenInvoker(
             }
         }
 
-        val outputLines = ArrayList<String>()
-
-        var dpArgLine = ""
-        if (maxMemoryMb != null) {
-            dpArgLine += " -Xmx${maxMemoryMb}M"
-        }
+        val dpArgLine = testsJvmArgs(principalName, maxMemoryMb).joinToString(separator = " ")
 
         val request = DefaultInvocationRequest()
         request.baseDirectory = mavenizedProjectFolder
@@ -84,26 +99,21 @@ class MavenInvoker(
         }
         request.isDebug = false
         request.isBatchMode = true
-        if (principalName != null) {
-            dpArgLine += " -DdropProject.currentUserId=${principalName}"
-        }
 
-        if (securityManagerEnabled) {
-            dpArgLine += " -Djava.security.manager=org.dropproject.security.SandboxSecurityManager"
-            dpArgLine += " -DdropProject.maven.repository=${File(dropProjectProperties.maven.repository).absolutePath}"
-            // uncomment this to diagnose problems within our custom security manager (SandboxSecurityManager)
-//            dpArgLine += " -DdropProject.securityManager.debug=true"
-        }
+        // once the dependencies of the pom.xml are pinned, the build doesn't need (nor wait for) remote repositories
+        val offline = allowOffline && isPinned(mavenizedProjectFolder)
+        request.isOffline = offline
 
-        // TODO: The line below doesn't work form multiple properties. so, for now, we'll replace the property
-        //  directly the pom.file
-        // request.mavenOpts = "-Ddp.argLine=\"${dpArgLine.trim()}\""
+        // the transformed pom.xml is the same for all the builds with the same pom.xml. The arguments that change with
+        // each build are passed as a user property, which maven interpolates in the pom.xml
+        val properties = Properties()
+        properties["dp.argLine"] = dpArgLine.trim()
 
-        val replacedPomFile = transformPomFile(mavenizedProjectFolder, dpArgLine)
+        val replacedPomFile = writePomFile(mavenizedProjectFolder, separateTestsCoverage)
 
         request.pomFile = replacedPomFile
 
-        // the above line only works if the surefire plugin is configured this way:
+        // the dp.argLine property only works if the surefire plugin is configured this way:
 //            <plugin>
 //              <groupId>org.apache.maven.plugins</groupId>
 //              <artifactId>maven-surefire-plugin</artifactId>
@@ -113,33 +123,68 @@ class MavenInvoker(
 //              </configuration>
 //            </plugin>
 
-        var numLines = 0
+        // while running, the build can be killed by the monitor (e.g., on timeout)
+        val runningBuild = buildProcessMonitor.register(mavenizedProjectFolder, submissionId)
+
+        // the output is checked as it arrives, so that a runaway build is killed right away instead of running until
+        // the timeout
+        val outputCollector = MavenOutputCollector { reason ->
+            LOG.warn("The build of ${mavenizedProjectFolder.name} produced ${reason}. Killing it...")
+            buildProcessMonitor.kill(runningBuild, BuildKillReason.TOO_MUCH_OUTPUT)
+        }
         request.setOutputHandler {
             line -> run {
                 if (showMavenOutput) {
                     println(">>> ${line}")
                 }
-                if (!line.startsWith("\tat ")) {  // count lines that are not associated with stacktraces
-                    numLines++
-                }
-                if (numLines < Constants.TOO_MUCH_OUTPUT_THRESHOLD) {
-                    outputLines.add(line)
-                }
-                if (numLines == Constants.TOO_MUCH_OUTPUT_THRESHOLD) {
-                    outputLines.add("*** Trimmed here by DP ***")
-                }
+                outputCollector.accept(line)
             }
         }
-        request.goals = Arrays.asList("clean", "compile", "test")  // "pmd:check", "checkstyle:check", "exec:java"
+        // a single pass through the lifecycle: maven stops at the first phase that fails, so a project that doesn't
+        // compile never reaches the tests ("clean compile test" would run the phases up to compile twice)
+        request.goals = Arrays.asList("clean", "test")  // "pmd:check", "checkstyle:check", "exec:java"
 
         val invoker = DefaultInvoker()
         invoker.mavenHome = File(dropProjectProperties.maven.home)
         invoker.localRepositoryDirectory = File(dropProjectProperties.maven.repository)
+        val onDaemon = mavenDaemonPool.buildStarted()
+        if (onDaemon) {
+            // hand the project to one of the warm daemons instead of starting a cold maven
+            invoker.mavenExecutable = mavenDaemonPool.executable()
+            properties.putAll(mavenDaemonPool.daemonProperties())
+        }
+        request.properties = properties
 
-        val result = invoker.execute(request)
+        val result = try {
+            invoker.execute(request)
+        } finally {
+            if (onDaemon) {
+                mavenDaemonPool.buildFinished()
+            }
+            buildProcessMonitor.unregister(runningBuild)
+        }
 
         replacedPomFile.delete()
 
+        val outputLines = outputCollector.outputLines()
+
+        if (offline && runningBuild.killedBy == null && missesArtifactsOffline(outputLines)) {
+            // e.g., the local repository was cleaned. Pin the dependencies again on the next check of the assignment
+            LOG.warn("Offline build of ${mavenizedProjectFolder.name} is missing some artifacts. Building online...")
+            manifestFile(mavenizedProjectFolder).delete()
+            return run(mavenizedProjectFolder, principalName, maxMemoryMb, separateTestsCoverage, submissionId,
+                allowOffline = false)
+        }
+
+        if (outputCollector.fatalReason != null) {
+            return MavenResult(resultCode = result.exitCode, outputLines = outputLines, outputTrimmed = true)
+        }
+
+        if (runningBuild.killedBy == BuildKillReason.TIMEOUT || runningBuild.killedBy == BuildKillReason.ABORTED) {
+            LOG.warn("Maven execution of ${mavenizedProjectFolder.name} was killed (${runningBuild.killedBy})")
+            return MavenResult(resultCode = result.exitCode, outputLines = outputLines, expiredByTimeout = true)
+        }
+
         if (result.exitCode != 0) {
             if (result.executionException != null) {
                 if (result.executionException is org.apache.maven.shared.utils.cli.CommandLineTimeOutException) {
@@ -153,12 +198,190 @@ class MavenInvoker(
             }
         }
 
-        return MavenResult(resultCode = result.exitCode, outputLines = outputLines)
+        if (outputCollector.failedStage != null) {
+            LOG.info("Build of ${mavenizedProjectFolder.name} failed in stage ${outputCollector.failedStage}")
+        }
+
+        return MavenResult(resultCode = result.exitCode, outputLines = outputLines,
+            failedStage = outputCollector.failedStage)
+    }
+
+    /**
+     * @return the arguments of the JVM that runs the tests of a project (i.e., the sandbox, the memory limit and the
+     * current user)
+     */
+    fun testsJvmArgs(principalName: String?, maxMemoryMb: Int?): List<String> {
+        val args = ArrayList<String>()
+        if (maxMemoryMb != null) {
+            args.add("-Xmx${maxMemoryMb}M")
+        }
+        if (principalName != null) {
+            args.add("-DdropProject.currentUserId=${principalName}")
+        }
+        if (securityManagerEnabled) {
+            args.add("-Djava.security.manager=org.dropproject.security.SandboxSecurityManager")
+            args.add("-DdropProject.maven.repository=${File(dropProjectProperties.maven.repository).absolutePath}")
+            // uncomment this to diagnose problems within our custom security manager (SandboxSecurityManager)
+//            args.add("-DdropProject.securityManager.debug=true")
+        }
+        return args
+    }
+
+    /**
+     * Resolves the classpath needed to compile and test a project (i.e., the jars of all its dependencies, including
+     * the ones with test scope), using the maven-dependency-plugin. This is used by the [FastBuildEngine], which builds
+     * projects without maven.
+     *
+     * @param mavenizedProjectFolder is a File containing the project's files
+     *
+     * @return a List of jar files or null if the dependencies couldn't be resolved
+     */
+    fun resolveTestClasspath(mavenizedProjectFolder: File): List<File>? {
+        val outputFile = File.createTempFile("dp-classpath", ".txt")
+        try {
+            val outputLines = invokeGoals(mavenizedProjectFolder, listOf("dependency:build-classpath"), Properties().apply {
+                setProperty("mdep.outputFile", outputFile.absolutePath)
+                setProperty("mdep.includeScope", "test")
+            }) ?: return null
+            return outputFile.readText()
+                .trim()
+                .split(File.pathSeparator)
+                .filter { it.isNotBlank() }
+                .map { File(it) }
+        } finally {
+            outputFile.delete()
+        }
+    }
+
+    /**
+     * Resolves all the plugins and dependencies of a project (i.e., downloads them to the local repository) and
+     * writes a manifest listing them. From then on, the projects with the same pom.xml are built offline, so that
+     * their builds don't depend on (nor wait for) the remote repositories. This is done when an assignment is checked,
+     * after it's built, since that build also resolves the artifacts that the plugins only need while running (e.g.,
+     * the surefire providers).
+     *
+     * The manifests are kept in the local repository, so that they're gone if the repository is removed.
+     *
+     * @param mavenizedProjectFolder is a File containing the project's files
+     *
+     * @return true if all the plugins and dependencies were resolved
+     */
+    fun pinDependencies(mavenizedProjectFolder: File): Boolean {
+        val outputFile = File.createTempFile("dp-dependencies", ".txt")
+        try {
+            invokeGoals(mavenizedProjectFolder,
+                listOf("dependency:go-offline", "dependency:list", "dependency:resolve-plugins"),
+                Properties().apply {
+                    setProperty("outputFile", outputFile.absolutePath)
+                    setProperty("appendOutput", "true")
+                }) ?: return false
+
+            val manifestFile = manifestFile(mavenizedProjectFolder)
+            manifestFile.parentFile.mkdirs()
+            manifestFile.writeText("# Dependencies of ${mavenizedProjectFolder.name}, pinned at ${Date()}\n" +
+                    outputFile.readText())
+            LOG.info("Pinned the dependencies of ${mavenizedProjectFolder.name} (${manifestFile.name})")
+            return true
+        } finally {
+            outputFile.delete()
+        }
+    }
+
+    /**
+     * @return true if the dependencies of the project's pom.xml are pinned (see [pinDependencies])
+     */
+    fun isPinned(mavenizedProjectFolder: File) = manifestFile(mavenizedProjectFolder).exists()
+
+    /**
+     * @return a String identifying the project's pom.xml (as built by DP), so that the information that only
+     * depends on the pom.xml (e.g., its dependencies) can be shared by all the projects with the same pom.xml
+     */
+    fun pomKey(mavenizedProjectFolder: File): String {
+        val digest = MessageDigest.getInstance("SHA-256")
+        digest.update(File(mavenizedProjectFolder, "pom.xml").readBytes())
+        digest.update(securityManagerEnabled.toString().toByteArray())
+        return digest.digest().joinToString("") { "%02x".format(it) }
+    }
+
+    private fun manifestFile(mavenizedProjectFolder: File) =
+        File(dropProjectProperties.maven.repository, ".dp-manifests/${pomKey(mavenizedProjectFolder)}.txt")
+
+    /**
+     * @return true if an offline build failed because some artifact wasn't in the local repository
+     */
+    fun missesArtifactsOffline(outputLines: List<String>) =
+        outputLines.any { it.startsWith("[ERROR]") && it.contains("in offline mode") }
+
+    /**
+     * Runs maven goals (other than building the project), with the same pom.xml used to build it.
+     *
+     * @return the output of maven or null if it failed
+     */
+    private fun invokeGoals(mavenizedProjectFolder: File, goals: List<String>, properties: Properties): List<String>? {
+        val replacedPomFile = writePomFile(mavenizedProjectFolder, separateTestsCoverage = false)
+        properties["dp.argLine"] = ""
+
+        val request = DefaultInvocationRequest()
+        request.baseDirectory = mavenizedProjectFolder
+        request.pomFile = replacedPomFile
+        if (dropProjectProperties.maven.useCurrentJdk) {
+            request.javaHome = File(System.getProperty("java.home"))
+        }
+        request.isBatchMode = true
+        request.goals = goals
+        request.properties = properties
+        val outputLines = ArrayList<String>()
+        request.setOutputHandler { line -> outputLines.add(line) }
+
+        val invoker = DefaultInvoker()
+        invoker.mavenHome = File(dropProjectProperties.maven.home)
+        invoker.localRepositoryDirectory = File(dropProjectProperties.maven.repository)
+
+        try {
+            val result = invoker.execute(request)
+            if (result.exitCode != 0) {
+                LOG.warn("Unable to run ${goals} on ${mavenizedProjectFolder.name}: " +
+                        outputLines.filter { it.startsWith("[ERROR]") }.take(5).joinToString(separator = "\n"))
+                return null
+            }
+            return outputLines
+        } finally {
+            replacedPomFile.delete()
+        }
+    }
+
+    /**
+     * Writes the pom.xml used by maven (i.e., the project's pom.xml transformed by [transformPom]) in the project, as
+     * pom_updated.xml. The pom.xml is only transformed once for all the projects with the same pom.xml (see [pomKey]),
+     * but each project gets its own file: the code being built may change the files of its project, so a file shared
+     * with other builds could be used to change how they're built (e.g., without the sandbox).
+     *
+     * @return the pom_updated.xml file, which should be deleted after the build
+     */
+    fun writePomFile(mavenizedProjectFolder: File, separateTestsCoverage: Boolean): File {
+        val key = "${pomKey(mavenizedProjectFolder)}${if (separateTestsCoverage) "-coverage" else ""}"
+        val transformedPom = transformedPoms.computeIfAbsent(key) {
+            transformPom(mavenizedProjectFolder, separateTestsCoverage)
+        }
+
+        // deleted first, in case it was replaced by a link to some other file
+        val replacedPomFile = File(mavenizedProjectFolder, "pom_updated.xml")
+        Files.deleteIfExists(replacedPomFile.toPath())
+        replacedPomFile.writeText(transformedPom)
+        return replacedPomFile
     }
 
-    private fun transformPomFile(mavenizedProjectFolder: File, dpArgLine: String): File {
+    /**
+     * @return the contents of the project's pom.xml changed to be built by DP. References to ${dp.argLine} are kept,
+     * since its value depends on each build
+     */
+    private fun transformPom(mavenizedProjectFolder: File, separateTestsCoverage: Boolean): String {
         val reader = MavenXpp3Reader()
-        val model = reader.read(FileReader(File(mavenizedProjectFolder, "pom.xml")))
+        val model = FileReader(File(mavenizedProjectFolder, "pom.xml")).use { reader.read(it) }
+
+        if (separateTestsCoverage) {
+            separateCoverageByTestType(model)
+        }
 
         if (securityManagerEnabled) {
             val securityManagerDependency = Dependency()
@@ -171,12 +394,87 @@ class MavenInvoker(
 
         val stringWriter = StringWriter()
         MavenXpp3Writer().write(stringWriter, model)
+        return stringWriter.toString()
+    }
+
+    /**
+     * Changes the POM model so that a single maven invocation measures the coverage of the student tests alone.
+     *
+     * The tests are split in two surefire executions: the student tests (the default execution, excluding TestTeacher*
+     * classes) and the teacher tests. Each execution runs with its own jacoco agent, writing to its own session file,
+     * and the coverage report is generated only from the session of the student tests. Test failures don't stop the
+     * build, otherwise failing student tests would prevent the teacher tests (and the report) from running. The results
+     * of the tests are read from the surefire reports, so this doesn't affect the evaluation.
+     *
+     * Does nothing if the POM doesn't include the jacoco-maven-plugin.
+     *
+     * @param model is the [Model] of the POM file, which will be changed
+     */
+    fun separateCoverageByTestType(model: Model) {
+        val build = model.build ?: return
+        val jacocoPlugin = build.plugins.find { it.artifactId == "jacoco-maven-plugin" } ?: return
+
+        var surefirePlugin = build.plugins.find { it.artifactId == "maven-surefire-plugin" }
+        if (surefirePlugin == null) {
+            surefirePlugin = Plugin()
+            surefirePlugin.groupId = "org.apache.maven.plugins"
+            surefirePlugin.artifactId = "maven-surefire-plugin"
+            build.plugins.add(surefirePlugin)
+        }
 
-        var replacedPomFileContent = stringWriter.buffer.toString()
-        replacedPomFileContent = replacedPomFileContent.replace("\${dp.argLine}", dpArgLine.trim())
+        // keep the argLine configured by the teacher (e.g., ${dp.argLine}), except the reference to the
+        // jacoco agent, which is now set by each execution
+        val configuredArgLine = ((surefirePlugin.configuration as Xpp3Dom?)?.getChild("argLine")?.value ?: "")
+            .replace("\${argLine}", "")
+            .replace("@{argLine}", "")
+            .trim()
 
-        val replacedPomFile = File(mavenizedProjectFolder, "pom_updated.xml")
-        replacedPomFile.writeText(replacedPomFileContent)
-        return replacedPomFile
+        fun surefireConfiguration(agentProperty: String, pattern: String, include: Boolean): Xpp3Dom {
+            val configuration = Xpp3Dom("configuration")
+            configuration.addChild(xmlNode("argLine", "@{${agentProperty}} ${configuredArgLine}".trim()))
+            configuration.addChild(xmlNode("testFailureIgnore", "true"))
+            val patterns = Xpp3Dom(if (include) "includes" else "excludes")
+            patterns.addChild(xmlNode(if (include) "include" else "exclude", pattern))
+            configuration.addChild(patterns)
+            return configuration
+        }
+
+        surefirePlugin.executions.removeIf { it.id == "default-test" || it.id == "dp-teacher-tests" }
+        surefirePlugin.addExecution(pluginExecution("default-test", null, "test",
+            surefireConfiguration("dpStudentCoverage", "**/TestTeacher*", include = false)))
+        surefirePlugin.addExecution(pluginExecution("dp-teacher-tests", "test", "test",
+            surefireConfiguration("dpTeacherCoverage", "**/TestTeacher*", include = true)))
+
+        jacocoPlugin.executions.clear()
+        jacocoPlugin.addExecution(pluginExecution("dp-student-agent", null, "prepare-agent", Xpp3Dom("configuration").apply {
+            addChild(xmlNode("destFile", "\${project.build.directory}/jacoco-student.exec"))
+            addChild(xmlNode("propertyName", "dpStudentCoverage"))
+        }))
+        jacocoPlugin.addExecution(pluginExecution("dp-teacher-agent", null, "prepare-agent", Xpp3Dom("configuration").apply {
+            addChild(xmlNode("destFile", "\${project.build.directory}/jacoco-teacher.exec"))
+            addChild(xmlNode("propertyName", "dpTeacherCoverage"))
+        }))
+        jacocoPlugin.addExecution(pluginExecution("dp-student-report", "test", "report", Xpp3Dom("configuration").apply {
+            addChild(xmlNode("dataFile", "\${project.build.directory}/jacoco-student.exec"))
+        }))
+
+        // executions bound to the same phase run in the order of the plugins, so the report must come after the tests
+        build.plugins.remove(jacocoPlugin)
+        build.plugins.add(jacocoPlugin)
+    }
+
+    private fun pluginExecution(id: String, phase: String?, goal: String, configuration: Xpp3Dom): PluginExecution {
+        val execution = PluginExecution()
+        execution.id = id
+        execution.phase = phase
+        execution.addGoal(goal)
+        execution.configuration = configuration
+        return execution
+    }
+
+    private fun xmlNode(name: String, value: String): Xpp3Dom {
+        val node = Xpp3Dom(name)
+        node.value = value
+        return node
     }
 }
@@ -0,0 +1,134 @@
+/*-
+ * ========================LICENSE_START=================================
+ * DropProject
+ * %%
+ * Copyright (C) 2019 - 2026 Pedro Alves
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package org.dropproject.services
+
+import org.dropproject.Constants
+import org.dropproject.data.BuildStage
+import java.util.*
+
+/**
+ * Collects the output of a maven build as it is produced, detecting as soon as possible that the build must be
+ * stopped (for example, because the student's code is stuck printing in a loop).
+ *
+ * It also follows the stage of the build (based on the goal that maven is running), so that it's known where the build
+ * failed without having to parse the whole output afterwards.
+ *
+ * Only a bounded number of lines is kept: the head of the output, up to the point where it was considered fatal,
+ * and a small tail with the lines that were produced after that (until the process was effectively killed).
+ *
+ * @param onFatal is called once, from the thread that reads the output, when a fatal condition is detected
+ */
+class MavenOutputCollector(private val onFatal: (reason: String) -> Unit) {
+
+    /**
+     * A condition that, once detected in the output, means the build is useless and should be stopped.
+     */
+    private class FatalCondition(val reason: String, val matches: (MavenOutputCollector) -> Boolean)
+
+    private val fatalConditions = listOf(
+        FatalCondition("more than ${Constants.TOO_MUCH_OUTPUT_THRESHOLD} lines of output") {
+            it.numLines >= Constants.TOO_MUCH_OUTPUT_THRESHOLD
+        },
+        FatalCondition("more than ${Constants.TOO_MUCH_OUTPUT_MAX_LINES} lines of output (including stacktraces)") {
+            it.numTotalLines >= Constants.TOO_MUCH_OUTPUT_MAX_LINES
+        }
+    )
+
+    private val head = ArrayList<String>()
+    private val tail = ArrayDeque<String>()
+
+    // lines that are not associated with stacktraces
+    private var numLines = 0
+    private var numTotalLines = 0
+
+    private var currentStage: BuildStage? = null
+
+    /**
+     * The [BuildStage] where the build failed, or null if it didn't fail (or didn't finish).
+     */
+    var failedStage: BuildStage? = null
+        private set
+
+    /**
+     * The reason why the output was considered fatal, or null if it wasn't (yet).
+     */
+    @Volatile
+    var fatalReason: String? = null
+        private set
+
+    @Synchronized
+    fun accept(line: String) {
+        numTotalLines++
+        if (!line.startsWith("\tat ")) {
+            numLines++
+        }
+
+        trackStage(line)
+
+        if (fatalReason != null) {
+            // keep only the last lines, produced while the process was being killed
+            tail.addLast(line)
+            if (tail.size > Constants.TOO_MUCH_OUTPUT_TAIL_LINES) {
+                tail.removeFirst()
+            }
+            return
+        }
+
+        val fatalCondition = fatalConditions.firstOrNull { it.matches(this) }
+        if (fatalCondition != null) {
+            fatalReason = fatalCondition.reason
+            onFatal(fatalCondition.reason)
+        } else {
+            head.add(line)
+        }
+    }
+
+    private fun trackStage(line: String) {
+        val goalMatch = goalRegex.find(line)
+        if (goalMatch != null) {
+            val (plugin, goal) = goalMatch.destructured
+            currentStage = when {
+                goal == "compile" && (plugin.contains("compiler") || plugin.contains("kotlin")) -> BuildStage.COMPILATION
+                goal == "testCompile" || goal == "test-compile" -> BuildStage.TEST_COMPILATION
+                goal == "test" && plugin.contains("surefire") -> BuildStage.TESTS
+                else -> BuildStage.OTHER
+            }
+        } else if (line.startsWith("[INFO] BUILD FAILURE")) {
+            failedStage = currentStage ?: BuildStage.OTHER
+        }
+    }
+
+    /**
+     * @return the collected lines. If the output was trimmed, a line marks the place where that happened.
+     */
+    @Synchronized
+    fun outputLines(): List<String> {
+        if (fatalReason == null) {
+            return ArrayList(head)
+        }
+        return head + "*** Trimmed here by DP ***" + tail
+    }
+
+    companion object {
+        // e.g. "[INFO] --- maven-compiler-plugin:3.1:compile (default-compile) @ project ---" (older maven versions)
+        // or "[INFO] --- compiler:3.1:compile (default-compile) @ project ---"
+        private val goalRegex = "^\\[INFO\\] --- (\\S+):[^:\\s]+:(\\S+) \\(".toRegex()
+    }
+}
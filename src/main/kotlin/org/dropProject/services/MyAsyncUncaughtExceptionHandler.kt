@@ -23,8 +23,6 @@ import org.dropproject.config.PendingTaskError
 import org.dropproject.config.PendingTasks
 import org.springframework.aop.interceptor.SimpleAsyncUncaughtExceptionHandler
 import org.springframework.stereotype.Service
-import org.dropproject.dao.Submission
-import org.dropproject.dao.SubmissionStatus
 import org.dropproject.repository.SubmissionRepository
 import org.slf4j.LoggerFactory
 import java.lang.reflect.Method
@@ -46,7 +44,6 @@ class MyAsyncUncaughtExceptionHandler(val submissionRepository: SubmissionReposi
 
         // since the method comparison is not typesafe, I minimize the chance of error with this
         require(AssignmentService::class.memberFunctions.any { it.name == "exportAssignment" })
-        require(BuildWorker::class.memberFunctions.any { it.name == "checkProject" })
 
         when (methodThatThrewTheException) {
             "exportAssignment" -> {
@@ -55,12 +52,6 @@ class MyAsyncUncaughtExceptionHandler(val submissionRepository: SubmissionReposi
                 pendingTasks.put(taskId, PendingTaskError(ex))
             }
 
-            "checkProject" -> {
-                val submission = params[2] as Submission
-                submission.setStatus(SubmissionStatus.FAILED)
-                submissionRepository.save(submission)
-            }
-
             else -> super.handleUncaughtException(ex, method, *params)
         }
 
@@ -0,0 +1,204 @@
+/*-
+ * ========================LICENSE_START=================================
+ * DropProject
+ * %%
+ * Copyright (C) 2019 - 2026 Pedro Alves
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package org.dropproject.services
+
+import com.fasterxml.jackson.databind.ObjectMapper
+import org.dropproject.config.DropProjectProperties
+import org.dropproject.data.BuildExecution
+import org.dropproject.data.WorkerBuildJob
+import org.slf4j.LoggerFactory
+import org.springframework.boot.context.event.ApplicationReadyEvent
+import org.springframework.context.event.EventListener
+import org.springframework.stereotype.Service
+import java.io.File
+import java.net.InetAddress
+import java.net.URI
+import java.net.URLEncoder
+import java.net.http.HttpClient
+import java.net.http.HttpRequest
+import java.net.http.HttpResponse
+import java.nio.charset.StandardCharsets
+import java.time.Duration
+import java.util.*
+import java.util.concurrent.Executor
+import java.util.concurrent.Semaphore
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Runs Drop Project as a remote build worker. It's only active when drop-project.workers.coordinator-url is set.
+ *
+ * The worker repeatedly claims builds from the coordinator (the web node), downloads the project, builds it with
+ * [BuildWorker.executeBuild] and sends back the [BuildExecution]. The evaluation and storage of the results is done
+ * by the coordinator, so the worker doesn't need access to the database.
+ *
+ * While there are builds running, the worker sends heartbeats to the coordinator, so that its leases don't expire.
+ */
+@Service
+class RemoteBuildWorker(
+    val buildWorker: BuildWorker,
+    val zipService: ZipService,
+    val asyncExecutor: Executor,
+    val asyncConfigurer: org.dropproject.config.AsyncConfigurer?,
+    val objectMapper: ObjectMapper,
+    val dropProjectProperties: DropProjectProperties
+) {
+
+    val LOG = LoggerFactory.getLogger(this.javaClass.name)
+
+    val workerId: String = dropProjectProperties.workers.id.ifEmpty {
+        "${InetAddress.getLocalHost().hostName}-${UUID.randomUUID().toString().substring(0, 8)}"
+    }
+
+    private val httpClient: HttpClient = HttpClient.newBuilder()
+        .connectTimeout(Duration.ofSeconds(10))
+        .build()
+
+    private val runningBuilds = AtomicInteger(0)
+
+    @EventListener(ApplicationReadyEvent::class)
+    fun start() {
+        if (dropProjectProperties.workers.coordinatorUrl.isEmpty()) {
+            return
+        }
+
+        val concurrency = dropProjectProperties.workers.concurrency
+        asyncConfigurer?.setThreadPoolSize(concurrency)
+
+        LOG.info("Starting remote build worker ${workerId} (concurrency: ${concurrency}), " +
+                "pulling builds from ${dropProjectProperties.workers.coordinatorUrl}")
+
+        val pollThread = Thread({ pollLoop(concurrency) }, "worker-poll")
+        pollThread.isDaemon = true
+        pollThread.start()
+
+        val heartbeatThread = Thread({ heartbeatLoop() }, "worker-heartbeat")
+        heartbeatThread.isDaemon = true
+        heartbeatThread.start()
+    }
+
+    private fun pollLoop(concurrency: Int) {
+        val freeSlots = Semaphore(concurrency)
+        while (true) {
+            try {
+                freeSlots.acquire()
+                val job = claim()
+                if (job == null) {
+                    freeSlots.release()
+                    Thread.sleep(dropProjectProperties.workers.pollInterval)
+                    continue
+                }
+
+                runningBuilds.incrementAndGet()
+                asyncExecutor.execute {
+                    try {
+                        build(job)
+                    } finally {
+                        runningBuilds.decrementAndGet()
+                        freeSlots.release()
+                    }
+                }
+            } catch (e: InterruptedException) {
+                return
+            } catch (e: Exception) {
+                LOG.warn("Unable to claim builds from the coordinator: ${e.message}")
+                freeSlots.release()
+                Thread.sleep(dropProjectProperties.workers.pollInterval)
+            }
+        }
+    }
+
+    private fun heartbeatLoop() {
+        val interval = dropProjectProperties.build.leaseSeconds * 1000L / 3
+        while (true) {
+            try {
+                Thread.sleep(interval)
+                if (runningBuilds.get() > 0) {
+                    send(request("/api/worker/heartbeat").POST(HttpRequest.BodyPublishers.noBody()).build(),
+                        HttpResponse.BodyHandlers.discarding())
+                }
+            } catch (e: InterruptedException) {
+                return
+            } catch (e: Exception) {
+                LOG.warn("Unable to send heartbeat to the coordinator: ${e.message}")
+            }
+        }
+    }
+
+    private fun claim(): WorkerBuildJob? {
+        val response = send(request("/api/worker/jobs/claim").POST(HttpRequest.BodyPublishers.noBody()).build(),
+            HttpResponse.BodyHandlers.ofString())
+        return if (response.statusCode() == 200) objectMapper.readValue(response.body(), WorkerBuildJob::class.java) else null
+    }
+
+    private fun build(job: WorkerBuildJob) {
+        val jobFolder = File(dropProjectProperties.workers.workFolder, "job-${job.jobId}-${workerId}")
+        try {
+            jobFolder.deleteRecursively()
+            jobFolder.mkdirs()
+
+            val zipFile = File(jobFolder, "project.zip")
+            val download = send(request("/api/worker/jobs/${job.jobId}/project").GET().build(),
+                HttpResponse.BodyHandlers.ofFile(zipFile.toPath()))
+            if (download.statusCode() != 200) {
+                LOG.warn("[${job.authorsStr}] Unable to download the project of build ${job.jobId} " +
+                        "(status: ${download.statusCode()})")
+                return
+            }
+            val projectFolder = zipService.unzip(zipFile.toPath(), zipFile.name)
+
+            LOG.info("[${job.authorsStr}] Started build of submission ${job.submissionId}")
+            val buildExecution = buildWorker.executeBuild(projectFolder, job.authorsStr, job.principalName,
+                job.maxMemoryMb, job.calculateCoverage, job.submissionId)
+
+            // if the build was interrupted by the timeout, the flag must be cleared to send the result
+            Thread.interrupted()
+
+            // the output has the paths of this worker's folder, which the coordinator replaces by its own
+            val result = buildExecution.copy(projectFolder = projectFolder.absolutePath)
+            val response = send(request("/api/worker/jobs/${job.jobId}/result")
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(result)))
+                .build(), HttpResponse.BodyHandlers.discarding())
+            if (response.statusCode() != 200) {
+                LOG.warn("[${job.authorsStr}] The coordinator didn't accept the result of build ${job.jobId} " +
+                        "(status: ${response.statusCode()})")
+            } else {
+                LOG.info("[${job.authorsStr}] Finished build of submission ${job.submissionId}")
+            }
+        } catch (e: Exception) {
+            // the lease will expire and the coordinator will put the build back in the queue
+            LOG.error("[${job.authorsStr}] Build ${job.jobId} failed on this worker", e)
+        } finally {
+            jobFolder.deleteRecursively()
+        }
+    }
+
+    private fun request(path: String): HttpRequest.Builder {
+        val workerIdParam = URLEncoder.encode(workerId, StandardCharsets.UTF_8)
+        return HttpRequest.newBuilder()
+            .uri(URI.create("${dropProjectProperties.workers.coordinatorUrl.trimEnd('/')}${path}?workerId=${workerIdParam}"))
+            .header("Authorization", "Bearer ${dropProjectProperties.workers.token}")
+            .timeout(Duration.ofMinutes(2))
+    }
+
+    private fun <T> send(request: HttpRequest, handler: HttpResponse.BodyHandler<T>): HttpResponse<T> {
+        return httpClient.send(request, handler)
+    }
+}
@@ -0,0 +1,344 @@
+/*-
+ * ========================LICENSE_START=================================
+ * DropProject
+ * %%
+ * Copyright (C) 2019 - 2026 Pedro Alves
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package org.dropproject.services
+
+import org.dropproject.config.DropProjectProperties
+import org.dropproject.dao.BuildReport
+import org.dropproject.dao.CompressionDictionary
+import org.dropproject.dao.JUnitReport
+import org.dropproject.dao.JacocoReport
+import org.dropproject.dao.Submission
+import org.dropproject.repository.*
+import org.slf4j.LoggerFactory
+import org.springframework.data.domain.PageRequest
+import org.springframework.stereotype.Service
+import java.io.ByteArrayOutputStream
+import java.io.File
+import java.nio.ByteBuffer
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicLong
+import java.util.zip.Deflater
+import java.util.zip.Inflater
+
+/**
+ * Compresses the reports that are stored in the database for each submission: the maven output ([BuildReport]),
+ * the JUnit reports ([JUnitReport]) and the Jacoco reports ([JacocoReport]).
+ *
+ * The reports of the submissions of an assignment are nearly identical (same plugins, same tests, same classes), so
+ * they're compressed with a dictionary built from the reports of the first submission of the assignment that was
+ * built (see [CompressionDictionary]). The compressed reports are only decompressed when they're read (see
+ * [buildReportOf], [xmlReportOf] and [csvReportOf]).
+ */
+@Service
+class ReportCompressor(val compressionDictionaryRepository: CompressionDictionaryRepository,
+                       val buildReportRepository: BuildReportRepository,
+                       val jUnitReportRepository: JUnitReportRepository,
+                       val jacocoReportRepository: JacocoReportRepository,
+                       val submissionRepository: SubmissionRepository,
+                       val dropProjectProperties: DropProjectProperties) {
+
+    val LOG = LoggerFactory.getLogger(this.javaClass.name)
+
+    // assignmentId -> dictionary used to compress the reports of its submissions
+    private val assignmentDictionaries = ConcurrentHashMap<String, CompressionDictionary>()
+
+    // dictionaryId -> contents of the dictionary
+    private val dictionaries = ConcurrentHashMap<Long, ByteArray>()
+
+    // size of the reports compressed since this node started, before and after being compressed
+    private val uncompressedBytes = AtomicLong()
+    private val compressedBytes = AtomicLong()
+
+    val enabled: Boolean
+        get() = dropProjectProperties.storage.compressReports
+
+    /**
+     * Returns the dictionary used to compress the reports of an assignment, building it if the assignment doesn't
+     * have one yet.
+     *
+     * @param assignmentId is a String, identifying the assignment
+     * @param samples returns the reports from which the dictionary is built (e.g., the reports of a submission)
+     *
+     * @return the [CompressionDictionary] or null if there were no samples to build one
+     */
+    fun dictionaryFor(assignmentId: String, samples: () -> List<String>): CompressionDictionary? {
+        assignmentDictionaries[assignmentId]?.let { return it }
+
+        synchronized(this) {
+            val dictionary = assignmentDictionaries[assignmentId]
+                ?: compressionDictionaryRepository.findFirstByAssignmentIdOrderByIdDesc(assignmentId)
+                ?: buildDictionary(samples())?.let {
+                    LOG.info("Built a dictionary with ${it.size} bytes to compress the reports of ${assignmentId}")
+                    compressionDictionaryRepository.save(CompressionDictionary(assignmentId = assignmentId, dictionary = it))
+                }
+                ?: return null
+
+            dictionaries[dictionary.id] = dictionary.dictionary
+            assignmentDictionaries[assignmentId] = dictionary
+            return dictionary
+        }
+    }
+
+    /**
+     * @return the reports produced by the build of a project (the maven output and the JUnit and Jacoco reports in
+     * its target folder), to build a dictionary from them
+     */
+    fun samplesFrom(mavenOutput: String, mavenizedProjectFolder: File): List<String> {
+        val junitReports = File(mavenizedProjectFolder, "target/surefire-reports").listFiles { file -> file.name.endsWith(".xml") }
+        val jacocoReports = File(mavenizedProjectFolder, "target/site/jacoco").listFiles { file -> file.name.endsWith(".csv") }
+        return listOf(mavenOutput) +
+                (junitReports?.sortedBy { it.name }?.map { it.readText() } ?: emptyList()) +
+                (jacocoReports?.sortedBy { it.name }?.map { it.readText() } ?: emptyList())
+    }
+
+    private fun samplesFrom(submission: Submission): List<String> {
+        return listOfNotNull(submission.buildReport?.let { buildReportOf(it) }) +
+                (jUnitReportRepository.findBySubmissionId(submission.id)?.map { xmlReportOf(it) } ?: emptyList()) +
+                (jacocoReportRepository.findBySubmissionId(submission.id)?.map { csvReportOf(it) } ?: emptyList())
+    }
+
+    /**
+     * Removes the dictionaries of an assignment (e.g., because it was deleted, along with its submissions).
+     */
+    fun deleteDictionaries(assignmentId: String) {
+        assignmentDictionaries.remove(assignmentId)?.let { dictionaries.remove(it.id) }
+        compressionDictionaryRepository.deleteByAssignmentId(assignmentId)
+    }
+
+    /**
+     * @return the [BuildReport] compressed with [dictionary] or the same report if the compression is disabled
+     */
+    fun compress(report: BuildReport, dictionary: CompressionDictionary?) =
+        if (!enabled || report.compressedBuildReport != null) report
+        else report.withCompressedReport(compress(report.plainBuildReport, dictionary))
+
+    /**
+     * @return the [JUnitReport] compressed with [dictionary] or the same report if the compression is disabled
+     */
+    fun compress(report: JUnitReport, dictionary: CompressionDictionary?) =
+        if (!enabled || report.compressedXmlReport != null) report
+        else report.withCompressedReport(compress(report.plainXmlReport, dictionary))
+
+    /**
+     * @return the [JacocoReport] compressed with [dictionary] or the same report if the compression is disabled
+     */
+    fun compress(report: JacocoReport, dictionary: CompressionDictionary?) =
+        if (!enabled || report.compressedCsvReport != null) report
+        else report.withCompressedReport(compress(report.plainCsvReport, dictionary))
+
+    private fun compress(text: String, dictionary: CompressionDictionary?): ByteArray {
+        val bytes = text.toByteArray(Charsets.UTF_8)
+        val compressed = compress(bytes, dictionary?.id ?: NO_DICTIONARY, dictionary?.dictionary)
+        uncompressedBytes.addAndGet(bytes.size.toLong())
+        compressedBytes.addAndGet(compressed.size.toLong())
+        return compressed
+    }
+
+    /**
+     * @return the maven output stored in a [BuildReport], decompressing it if needed
+     */
+    fun buildReportOf(report: BuildReport) = report.compressedBuildReport?.let { decompress(it) } ?: report.plainBuildReport
+
+    /**
+     * @return the XML stored in a [JUnitReport], decompressing it if needed
+     */
+    fun xmlReportOf(report: JUnitReport) = report.compressedXmlReport?.let { decompress(it) } ?: report.plainXmlReport
+
+    /**
+     * @return the CSV stored in a [JacocoReport], decompressing it if needed
+     */
+    fun csvReportOf(report: JacocoReport) = report.compressedCsvReport?.let { decompress(it) } ?: report.plainCsvReport
+
+    /**
+     * Decompresses a report compressed by [compress], loading its dictionary if it's not in memory yet (e.g., it was
+     * built by another node).
+     */
+    fun decompress(compressed: ByteArray): String {
+        return decompress(compressed) { dictionaryId ->
+            dictionaries[dictionaryId]
+                ?: compressionDictionaryRepository.findById(dictionaryId).orElse(null)?.dictionary
+                    ?.also { dictionaries[dictionaryId] = it }
+                ?: throw IllegalStateException("Dictionary ${dictionaryId} not found")
+        }
+    }
+
+    /**
+     * Compresses some of the reports that were stored before the reports were compressed (or while the compression
+     * was disabled), with the dictionaries of their assignments. It's called regularly (see [ScheduledTasks]) until
+     * there are none left, so that the existing reports are compressed in the background, a few at a time.
+     *
+     * @param maxReports is the maximum number of reports of each kind (maven output, JUnit and Jacoco) to compress
+     *
+     * @return the number of reports that were compressed
+     */
+    fun compressStoredReports(maxReports: Int = BATCH_SIZE): Int {
+        if (!enabled) {
+            return 0
+        }
+
+        val page = PageRequest.of(0, maxReports)
+        val buildReportIds = buildReportRepository.findUncompressedIds(page)
+        val jUnitReportIds = jUnitReportRepository.findUncompressedIds(page)
+        val jacocoReportIds = jacocoReportRepository.findUncompressedIds(page)
+        val total = buildReportIds.size + jUnitReportIds.size + jacocoReportIds.size
+        if (total == 0) {
+            return 0
+        }
+
+        val uncompressedBefore = uncompressedBytes.get()
+        val compressedBefore = compressedBytes.get()
+
+        for (ids in buildReportIds.chunked(BATCH_SIZE)) {
+            // the build reports of the assignments themselves don't belong to a submission
+            val submissions = submissionRepository.findByBuildReportIdIn(ids).associateBy { it.buildReport!!.id }
+            for (report in buildReportRepository.findAllById(ids)) {
+                val dictionary = submissions[report.id]?.let { dictionaryFor(it.assignmentId) { samplesFrom(it) } }
+                buildReportRepository.save(compress(report, dictionary))
+            }
+        }
+
+        for (ids in jUnitReportIds.chunked(BATCH_SIZE)) {
+            val reports = jUnitReportRepository.findAllById(ids)
+            val submissions = submissionRepository.findAllById(reports.map { it.submissionId }.distinct()).associateBy { it.id }
+            for (report in reports) {
+                val dictionary = submissions[report.submissionId]?.let { dictionaryFor(it.assignmentId) { samplesFrom(it) } }
+                jUnitReportRepository.save(compress(report, dictionary))
+            }
+        }
+
+        for (ids in jacocoReportIds.chunked(BATCH_SIZE)) {
+            val reports = jacocoReportRepository.findAllById(ids)
+            val submissions = submissionRepository.findAllById(reports.map { it.submissionId }.distinct()).associateBy { it.id }
+            for (report in reports) {
+                val dictionary = submissions[report.submissionId]?.let { dictionaryFor(it.assignmentId) { samplesFrom(it) } }
+                jacocoReportRepository.save(compress(report, dictionary))
+            }
+        }
+
+        val uncompressed = uncompressedBytes.get() - uncompressedBefore
+        val compressed = compressedBytes.get() - compressedBefore
+        LOG.info("Compressed ${total} stored report(s): from ${uncompressed / 1024} KB to ${compressed / 1024} KB " +
+                "(${savedPercentage(uncompressed, compressed)}% saved)")
+        return total
+    }
+
+    /**
+     * @return the size of the reports compressed since this node started, in the Prometheus text format (see
+     * [BuildMetrics.prometheusText])
+     */
+    fun prometheusText(): String {
+        return "# HELP dp_report_storage_bytes_total Size of the reports compressed since this node started, " +
+                "before and after being compressed\n" +
+                "# TYPE dp_report_storage_bytes_total counter\n" +
+                "dp_report_storage_bytes_total{form=\"uncompressed\"} ${uncompressedBytes.get()}\n" +
+                "dp_report_storage_bytes_total{form=\"compressed\"} ${compressedBytes.get()}\n"
+    }
+
+    private fun savedPercentage(uncompressed: Long, compressed: Long) =
+        if (uncompressed == 0L) 0 else (100 * (uncompressed - compressed) / uncompressed)
+
+    companion object {
+        // deflate only looks for matches in the last 32K, so a bigger dictionary would be useless
+        const val DICTIONARY_SIZE = 32 * 1024
+
+        private const val FORMAT_VERSION: Byte = 1
+        private const val NO_DICTIONARY = 0L
+        private const val BATCH_SIZE = 100
+
+        /**
+         * Builds a dictionary with the beginning of each sample, since that's the part that the reports of different
+         * submissions have in common (e.g., the plugins that ran or the headers of the JUnit reports).
+         *
+         * @return the dictionary or null if there are no samples
+         */
+        fun buildDictionary(samples: List<String>): ByteArray? {
+            val nonEmptySamples = samples.filter { it.isNotEmpty() }
+            if (nonEmptySamples.isEmpty()) {
+                return null
+            }
+
+            val sizePerSample = DICTIONARY_SIZE / nonEmptySamples.size
+            val dictionary = ByteArrayOutputStream()
+            for (sample in nonEmptySamples) {
+                val bytes = sample.toByteArray(Charsets.UTF_8)
+                dictionary.write(bytes, 0, minOf(bytes.size, sizePerSample))
+            }
+            return dictionary.toByteArray()
+        }
+
+        /**
+         * Compresses some bytes. The result starts with a header (the format version and the id of the dictionary)
+         * followed by the deflated bytes.
+         */
+        fun compress(bytes: ByteArray, dictionaryId: Long, dictionary: ByteArray?): ByteArray {
+            val deflater = Deflater(Deflater.BEST_COMPRESSION)
+            try {
+                if (dictionary != null) {
+                    deflater.setDictionary(dictionary)
+                }
+                deflater.setInput(bytes)
+                deflater.finish()
+
+                val output = ByteArrayOutputStream(bytes.size / 4 + 16)
+                output.write(ByteBuffer.allocate(9).put(FORMAT_VERSION).putLong(dictionaryId).array())
+                val buffer = ByteArray(8192)
+                while (!deflater.finished()) {
+                    output.write(buffer, 0, deflater.deflate(buffer))
+                }
+                return output.toByteArray()
+            } finally {
+                deflater.end()
+            }
+        }
+
+        /**
+         * Decompresses some bytes compressed by [compress].
+         *
+         * @param dictionary returns the contents of a dictionary, given its id
+         */
+        fun decompress(compressed: ByteArray, dictionary: (Long) -> ByteArray): String {
+            val header = ByteBuffer.wrap(compressed, 0, 9)
+            val version = header.get()
+            check(version == FORMAT_VERSION) { "Unknown format of compressed report: ${version}" }
+            val dictionaryId = header.getLong()
+
+            val inflater = Inflater()
+            try {
+                inflater.setInput(compressed, 9, compressed.size - 9)
+                val output = ByteArrayOutputStream(compressed.size * 4)
+                val buffer = ByteArray(8192)
+                while (!inflater.finished()) {
+                    val count = inflater.inflate(buffer)
+                    if (count == 0 && !inflater.finished()) {
+                        if (inflater.needsDictionary()) {
+                            inflater.setDictionary(dictionary(dictionaryId))
+                        } else if (inflater.needsInput()) {
+                            throw IllegalStateException("Compressed report is truncated")
+                        }
+                    }
+                    output.write(buffer, 0, count)
+                }
+                return output.toString(Charsets.UTF_8)
+            } finally {
+                inflater.end()
+            }
+        }
+    }
+}
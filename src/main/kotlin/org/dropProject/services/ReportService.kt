@@ -33,6 +33,7 @@ import org.springframework.beans.factory.annotation.Value
 import org.springframework.context.MessageSource
 import org.springframework.security.access.AccessDeniedException
 import org.springframework.stereotype.Service
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter
 import java.io.File
 import java.security.Principal
 import java.util.*
@@ -54,6 +55,10 @@ class FullBuildReport(
     var error: String? = null,
     var isValidating: Boolean? = null,
     @JsonView(JSONViews.StudentAPI::class)
+    var queuePosition: Int? = null,
+    @JsonView(JSONViews.StudentAPI::class)
+    var estimatedSeconds: Long? = null,
+    @JsonView(JSONViews.StudentAPI::class)
     var summary: MutableList<SubmissionReport>? = null,
     @JsonView(JSONViews.StudentAPI::class)
     var structureErrors: List<String>? = null,
@@ -75,10 +80,14 @@ class ReportService(
     val buildReportRepository: BuildReportRepository,
     val assignmentTeacherFiles: AssignmentTeacherFiles,
     val buildReportBuilder: BuildReportBuilder,
+    val buildReportCache: BuildReportCache,
+    val reportCompressor: ReportCompressor,
     val i18n: MessageSource,
     val gitClient: GitClient,
     val asyncConfigurer: AsyncConfigurer,
     val markdownRenderer: MarkdownRenderer,
+    val buildScheduler: BuildScheduler,
+    val submissionEvents: SubmissionEvents,
 ) {
 
     val LOG = LoggerFactory.getLogger(this.javaClass.name)
@@ -95,17 +104,7 @@ class ReportService(
 
         if (submission != null) {
 
-            // check that principal belongs to the group that made this submission
-            if (!request.isUserInRole("TEACHER")) {
-                val groupElements = submission.group.authors
-                if (groupElements.filter { it -> it.userId == principal.realName() }.isEmpty()) {
-                    throw org.springframework.security.access.AccessDeniedException("${principal.realName()} is not allowed to view this report")
-                }
-            }
-
-            if (submission.getStatus() == SubmissionStatus.DELETED) {
-                throw AccessDeniedException("This submission was deleted")
-            }
+            checkCanViewReport(submission, principal, request)
 
             fullBuildReport.numSubmissions = submissionRepository.countBySubmitterUserIdAndAssignmentId(submission.submitterUserId, submission.assignmentId)
 
@@ -149,8 +148,10 @@ class ReportService(
                     // in this case, it may be useful to show the maven output
                     submission.buildReport?.let {
                             buildReportDB ->
-                        fullBuildReport.buildReport = buildReportBuilder.build(buildReportDB.buildReport.split("\n"),
-                            mavenizedProjectFolder.absolutePath, assignment, submission)
+                        fullBuildReport.buildReport = buildReportCache.get(submission) {
+                            buildReportBuilder.build(reportCompressor.buildReportOf(buildReportDB).split("\n"),
+                                mavenizedProjectFolder.absolutePath, assignment, submission)
+                        }
                     }
                 }
                 SubmissionStatus.ABORTED_BY_TIMEOUT -> fullBuildReport.error = i18n.getMessage("student.build-report.abortedByTimeout", arrayOf(
@@ -159,7 +160,15 @@ class ReportService(
                 SubmissionStatus.TOO_MUCH_OUTPUT -> fullBuildReport.error = i18n.getMessage("student.build-report.tooMuchOutput", null, currentLocale)
                 SubmissionStatus.DELETED -> fullBuildReport.error = i18n.getMessage("student.build-report.deleted", null, currentLocale)
                 SubmissionStatus.SUBMITTED, SubmissionStatus.SUBMITTED_FOR_REBUILD, SubmissionStatus.REBUILDING -> {
-                    fullBuildReport.error = i18n.getMessage("student.build-report.submitted", null, currentLocale)
+                    val estimate = buildScheduler.estimate(submission.id)
+                    fullBuildReport.error = if (estimate?.estimatedSeconds != null) {
+                        i18n.getMessage("student.build-report.queued",
+                            arrayOf(estimate.position, estimate.estimatedSeconds), currentLocale)
+                    } else {
+                        i18n.getMessage("student.build-report.submitted", null, currentLocale)
+                    }
+                    fullBuildReport.queuePosition = estimate?.position
+                    fullBuildReport.estimatedSeconds = estimate?.estimatedSeconds
                     fullBuildReport.isValidating = true
                 }
                 SubmissionStatus.VALIDATED, SubmissionStatus.VALIDATED_REBUILT -> {
@@ -180,8 +189,10 @@ class ReportService(
 
                     submission.buildReport?.let {
                             buildReportDB ->
-                        fullBuildReport.buildReport = buildReportBuilder.build(buildReportDB.buildReport.split("\n"),
-                            mavenizedProjectFolder.absolutePath, assignment, submission)
+                        fullBuildReport.buildReport = buildReportCache.get(submission) {
+                            buildReportBuilder.build(reportCompressor.buildReportOf(buildReportDB).split("\n"),
+                                mavenizedProjectFolder.absolutePath, assignment, submission)
+                        }
                     }
                 }
             }
@@ -190,4 +201,36 @@ class ReportService(
         return fullBuildReport
 
     }
+
+    /**
+     * Follows the status of a [Submission] (see [SubmissionEvents]), instead of polling its build report.
+     *
+     * @param submissionId is a Long, identifying the submission
+     * @param principal is a [Principal] representing the user making the request
+     * @param request is an HttpServletRequest
+     *
+     * @return an SseEmitter that sends the current status and its transitions until the submission is validated
+     */
+    fun followSubmission(submissionId: Long, principal: Principal, request: HttpServletRequest): SseEmitter {
+        val submission = submissionRepository.findById(submissionId)
+            .orElseThrow { EntityNotFoundException("Submission ${submissionId} not found") }
+
+        checkCanViewReport(submission, principal, request)
+
+        return submissionEvents.subscribe(submission, buildScheduler.estimate(submission.id))
+    }
+
+    // only the teachers and the members of the group that made the submission can see its report
+    private fun checkCanViewReport(submission: Submission, principal: Principal, request: HttpServletRequest) {
+        if (!request.isUserInRole("TEACHER")) {
+            val groupElements = submission.group.authors
+            if (groupElements.filter { it -> it.userId == principal.realName() }.isEmpty()) {
+                throw org.springframework.security.access.AccessDeniedException("${principal.realName()} is not allowed to view this report")
+            }
+        }
+
+        if (submission.getStatus() == SubmissionStatus.DELETED) {
+            throw AccessDeniedException("This submission was deleted")
+        }
+    }
 }
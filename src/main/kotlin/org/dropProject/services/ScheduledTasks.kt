@@ -23,6 +23,7 @@ import org.springframework.scheduling.annotation.Scheduled
 import org.springframework.stereotype.Component
 import org.dropproject.dao.SubmissionStatus
 import org.dropproject.repository.AssignmentRepository
+import org.dropproject.repository.BuildJobRepository
 import org.dropproject.repository.SubmissionRepository
 import org.slf4j.LoggerFactory
 import org.dropproject.config.DropProjectProperties
@@ -38,8 +39,11 @@ import java.util.logging.Logger
 class ScheduledTasks(
         val submissionRepository: SubmissionRepository,
         val assignmentRepository: AssignmentRepository,
+        val buildJobRepository: BuildJobRepository,
         val gitClient: GitClient,
-        val dropProjectProperties: DropProjectProperties
+        val dropProjectProperties: DropProjectProperties,
+        val submissionEvents: SubmissionEvents,
+        val reportCompressor: ReportCompressor
 ) {
 
     val LOG = LoggerFactory.getLogger(this.javaClass.name)
@@ -55,12 +59,26 @@ class ScheduledTasks(
 
         val expiredSubmissions = submissionRepository.findByStatusAndStatusDateBefore(SubmissionStatus.SUBMITTED.code, sometimeAgo)
         for (expiredSubmission in expiredSubmissions) {
+            if (buildJobRepository.existsBySubmissionId(expiredSubmission.id)) {
+                continue  // it's still in the build queue, which may be long (e.g. during an exam)
+            }
             LOG.info("Cleaning up expired submission ${expiredSubmission.id} submitted at ${expiredSubmission.statusDate}")
             expiredSubmission.setStatus(SubmissionStatus.ABORTED_BY_TIMEOUT)
             submissionRepository.save(expiredSubmission)
+            submissionEvents.publish(expiredSubmission)
         }
     }
 
+    /**
+     * Compresses the reports that were stored before they were compressed (or while the compression was disabled), a
+     * few at a time, so that neither the startup nor the other scheduled tasks have to wait for all of them.
+     */
+    // run every minute
+    @Scheduled(initialDelay = 60_000, fixedDelay = 60_000)
+    fun compressStoredReports() {
+        reportCompressor.compressStoredReports(maxReports = 1000)
+    }
+
     /**
      * Refreshes the SSH keys for all assignments. This is useful to prevent GitHub from deleting unused SSH keys.
      *
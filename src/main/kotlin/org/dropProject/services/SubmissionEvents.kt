@@ -0,0 +1,143 @@
+/*-
+ * ========================LICENSE_START=================================
+ * DropProject
+ * %%
+ * Copyright (C) 2019 - 2026 Pedro Alves
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package org.dropproject.services
+
+import org.dropproject.dao.Indicator
+import org.dropproject.dao.Submission
+import org.dropproject.dao.SubmissionStatus
+import org.dropproject.data.QueueEstimate
+import org.dropproject.data.SubmissionStatusEvent
+import org.dropproject.repository.SubmissionReportRepository
+import org.slf4j.LoggerFactory
+import org.springframework.stereotype.Service
+import org.springframework.transaction.support.TransactionSynchronization
+import org.springframework.transaction.support.TransactionSynchronizationManager
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter
+import java.util.*
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.CopyOnWriteArrayList
+
+/**
+ * Pushes the status of the submissions to the clients that follow them (the build report page and the student API),
+ * through server-sent events, so that they don't have to poll until the submission is validated.
+ *
+ * Each client receives the current status when it subscribes and then every transition, until the build ends. The
+ * transitions are only sent after they're committed, so a client that reacts to them (e.g., by reloading the build
+ * report) always finds the results in the database.
+ */
+@Service
+class SubmissionEvents(val submissionReportRepository: SubmissionReportRepository) {
+
+    val LOG = LoggerFactory.getLogger(this.javaClass.name)
+
+    private val emitters = ConcurrentHashMap<Long, CopyOnWriteArrayList<SseEmitter>>()
+
+    /**
+     * Subscribes to the status of a [Submission]. If it is already finished, the emitter is completed right after
+     * sending its status.
+     *
+     * @param estimate is the [QueueEstimate] of the submission's build, if it's waiting for one
+     */
+    fun subscribe(submission: Submission, estimate: QueueEstimate?): SseEmitter {
+        val emitter = SseEmitter(TIMEOUT)
+        val submissionEmitters = emitters.computeIfAbsent(submission.id) { CopyOnWriteArrayList() }
+        submissionEmitters.add(emitter)
+        emitter.onCompletion { remove(submission.id, emitter) }
+        emitter.onTimeout { emitter.complete() }
+        emitter.onError { remove(submission.id, emitter) }
+
+        // the submission may have changed after it was read, but then its transition follows this status
+        send(submission.id, listOf(emitter), statusEvent(submission, estimate))
+        return emitter
+    }
+
+    /**
+     * Sends the status of a [Submission] to the clients that follow it. If there is a transaction, it's sent after
+     * the transaction commits.
+     */
+    fun publish(submission: Submission, estimate: QueueEstimate? = null) {
+        val submissionEmitters = emitters[submission.id]
+        if (submissionEmitters.isNullOrEmpty()) {
+            return
+        }
+
+        // read the summary now, while the results are visible to this transaction
+        val event = statusEvent(submission, estimate)
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(object : TransactionSynchronization {
+                override fun afterCommit() {
+                    send(submission.id, submissionEmitters, event)
+                }
+            })
+        } else {
+            send(submission.id, submissionEmitters, event)
+        }
+    }
+
+    /**
+     * @return true if some client is following the submission
+     */
+    fun isFollowed(submissionId: Long): Boolean {
+        return !emitters[submissionId].isNullOrEmpty()
+    }
+
+    private fun statusEvent(submission: Submission, estimate: QueueEstimate?): SubmissionStatusEvent {
+        val status = submission.getStatus()
+        val finished = status !in PENDING_STATUSES
+        val summary = if (finished) {
+            submissionReportRepository.findBySubmissionId(submission.id)
+                .filter { it.reportKey != Indicator.HIDDEN_UNIT_TESTS.code }
+        } else {
+            null
+        }
+        return SubmissionStatusEvent(submission.id, status, submission.statusDate, finished,
+            if (finished) null else estimate?.position, if (finished) null else estimate?.estimatedSeconds, summary)
+    }
+
+    private fun send(submissionId: Long, submissionEmitters: List<SseEmitter>, event: SubmissionStatusEvent) {
+        for (emitter in submissionEmitters) {
+            try {
+                emitter.send(SseEmitter.event().name("status").data(event))
+                if (event.finished) {
+                    emitter.complete()
+                }
+            } catch (e: Exception) {
+                // the client went away
+                LOG.debug("Unable to send the status of submission ${submissionId}: ${e.message}")
+                remove(submissionId, emitter)
+            }
+        }
+    }
+
+    private fun remove(submissionId: Long, emitter: SseEmitter) {
+        emitters.computeIfPresent(submissionId) { _, submissionEmitters ->
+            submissionEmitters.remove(emitter)
+            if (submissionEmitters.isEmpty()) null else submissionEmitters
+        }
+    }
+
+    companion object {
+        // the clients (e.g., EventSource) reconnect when the connection is closed, receiving the current status again
+        const val TIMEOUT = 10 * 60 * 1000L
+
+        val PENDING_STATUSES = EnumSet.of(SubmissionStatus.SUBMITTED, SubmissionStatus.SUBMITTED_FOR_REBUILD,
+            SubmissionStatus.REBUILDING)
+    }
+}
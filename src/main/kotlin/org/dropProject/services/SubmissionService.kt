@@ -27,6 +27,7 @@ import org.dropproject.controllers.InvalidProjectStructureException
 import org.dropproject.controllers.UploadController
 import org.dropproject.dao.*
 import org.dropproject.data.AuthorDetails
+import org.dropproject.data.PipelineStage
 import org.dropproject.data.SubmissionInfo
 import org.dropproject.data.SubmissionResult
 import org.dropproject.data.TestType
@@ -42,6 +43,8 @@ import org.slf4j.LoggerFactory
 import org.dropproject.config.DropProjectProperties
 import org.springframework.beans.factory.annotation.Value
 import org.springframework.context.MessageSource
+import org.springframework.http.HttpHeaders
+import org.springframework.http.HttpStatus
 import org.springframework.http.ResponseEntity
 import org.springframework.scheduling.annotation.EnableAsync
 import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler
@@ -54,7 +57,9 @@ import java.io.IOException
 import java.io.InputStream
 import java.nio.charset.Charset
 import java.nio.charset.UnsupportedCharsetException
+import java.nio.file.Files
 import java.nio.file.Paths
+import java.security.MessageDigest
 import java.security.Principal
 import java.sql.Timestamp
 import java.time.LocalDateTime
@@ -62,6 +67,7 @@ import java.time.format.DateTimeFormatter
 import java.time.temporal.ChronoUnit
 import java.util.*
 import java.util.concurrent.Executor
+import java.util.concurrent.RejectedExecutionException
 import jakarta.servlet.http.HttpServletRequest
 
 
@@ -76,17 +82,26 @@ class SubmissionService(
     val submissionReportRepository: SubmissionReportRepository,
     val assignmentTeacherFiles: AssignmentTeacherFiles,
     val buildReportBuilder: BuildReportBuilder,
+    val buildReportCache: BuildReportCache,
     val storageService: StorageService,
     val projectGroupRepository: ProjectGroupRepository,
     val projectGroupService: ProjectGroupService,
     val i18n: MessageSource,
-    val buildWorker: BuildWorker,
+    val buildScheduler: BuildScheduler,
     val asyncExecutor: Executor,
     val zipService: ZipService,
     val assignmentRepository: AssignmentRepository,
     val dropProjectProperties: DropProjectProperties,
     val cooloffOverrideService: CooloffOverrideService,
-    val pomValidator: PomValidator
+    val pomValidator: PomValidator,
+    val reportCompressor: ReportCompressor,
+    val submissionSummaryRepository: SubmissionSummaryRepository,
+    val submissionTestResultRepository: SubmissionTestResultRepository,
+    val workspaceBuilder: WorkspaceBuilder,
+    val buildMetrics: BuildMetrics,
+    val submissionEvents: SubmissionEvents,
+    val unzipExecutor: Executor,
+    val mavenizeExecutor: Executor
 ) {
 
     val LOG = LoggerFactory.getLogger(this.javaClass.name)
@@ -110,40 +125,40 @@ class SubmissionService(
             .filter { it.getStatus() != SubmissionStatus.DELETED }
 
         val submissionsByGroup = submissions.groupBy { it.group }
-
-        val submissionInfoList = ArrayList<SubmissionInfo>()
-        for ((group, submissionList) in submissionsByGroup) {
-            val sortedSubmissionList =
+            .mapValues { (_, submissionList) ->
                 submissionList.sortedWith(compareByDescending<Submission> { it.submissionDate }
                     .thenByDescending { it.statusDate })
-
-            // check if some submission has been marked as final. in that case, that goes into the start of the list
-            var lastSubmission = sortedSubmissionList[0]
-            for (submission in sortedSubmissionList) {
-                if (submission.markedAsFinal) {
-                    lastSubmission = submission
-                    break
-                }
             }
 
-            if (retrieveReport) {
-                lastSubmission.buildReport?.let {
-                        buildReportDB ->
-                    val reportElements = submissionReportRepository.findBySubmissionId(lastSubmission.id)
-                    lastSubmission.reportElements = reportElements
-
-                    val mavenizedProjectFolder = assignmentTeacherFiles.getProjectFolderAsFile(lastSubmission,
-                        lastSubmission.getStatus() == SubmissionStatus.VALIDATED_REBUILT)
-                    val buildReport = buildReportBuilder.build(buildReportDB.buildReport.split("\n"),
-                        mavenizedProjectFolder.absolutePath, assignment, lastSubmission)
-                    lastSubmission.ellapsed = buildReport.elapsedTimeJUnit()
-                    lastSubmission.teacherTests = buildReport.junitSummaryAsObject(TestType.TEACHER)
-                    lastSubmission.hiddenTests = buildReport.junitSummaryAsObject(TestType.HIDDEN)
-                    if (buildReport.jacocoResults.isNotEmpty()) {
-                        lastSubmission.coverage = buildReport.jacocoResults[0].lineCoveragePercent
-                    }
+        // the indicators of the last submissions are read from their summaries, with a single query
+        val lastSubmissions = submissionsByGroup.values.map { lastSubmission(it) }.filter { it.buildReport != null }
+        val summaries = if (retrieveReport) getSummaries(lastSubmissions, assignment) else emptyMap()
+        val reportElements = if (retrieveReport) {
+            submissionReportRepository.findBySubmissionIdIn(lastSubmissions.map { it.id }).groupBy { it.submissionId }
+        } else {
+            emptyMap()
+        }
+        val testResults = if (retrieveReport && assignment.assignmentTestMethods.isNotEmpty()) {
+            submissionTestResultRepository.findBySubmissionIdInOrderById(lastSubmissions.map { it.id })
+                .groupBy { it.submissionId }
+        } else {
+            emptyMap()
+        }
+
+        val submissionInfoList = ArrayList<SubmissionInfo>()
+        for ((group, sortedSubmissionList) in submissionsByGroup) {
+            val lastSubmission = lastSubmission(sortedSubmissionList)
 
-                    lastSubmission.testResults = buildReport.testResults()
+            if (retrieveReport) {
+                summaries[lastSubmission.id]?.let {
+                        summary ->
+                    lastSubmission.reportElements = reportElements[lastSubmission.id].orEmpty()
+                    lastSubmission.ellapsed = summary.ellapsed()
+                    lastSubmission.teacherTests = summary.teacherTests
+                    lastSubmission.hiddenTests = summary.hiddenTests
+                    lastSubmission.coverage = summary.coverage
+                    lastSubmission.testResults = org.dropproject.data.BuildReport.testResults(assignment,
+                        SubmissionTestResult.toJUnitResults(testResults[lastSubmission.id].orEmpty()))
                 }
             }
 
@@ -153,6 +168,42 @@ class SubmissionService(
         return submissionInfoList
     }
 
+    // if some submission has been marked as final, that's the last one. otherwise, it's the most recent
+    private fun lastSubmission(sortedSubmissionList: List<Submission>): Submission {
+        return sortedSubmissionList.firstOrNull { it.markedAsFinal } ?: sortedSubmissionList[0]
+    }
+
+    /**
+     * Gets the [SubmissionSummary]s of some (already built) submissions of an [Assignment], with a single query.
+     * If a submission doesn't have one yet (e.g., it was built before the summaries existed), it's created now, from
+     * its full build report.
+     *
+     * @param submissions is a List of [Submission]s of the assignment
+     * @param assignment is the [Assignment]
+     *
+     * @return a Map with the summaries, by submission id
+     */
+    fun getSummaries(submissions: List<Submission>, assignment: Assignment): Map<Long, SubmissionSummary> {
+        val builtSubmissions = submissions.filter { it.buildReport != null }
+        val summaries = submissionSummaryRepository.findAllById(builtSubmissions.map { it.id })
+            .associateBy { it.submissionId }
+            .toMutableMap()
+
+        for (submission in builtSubmissions) {
+            if (!summaries.containsKey(submission.id)) {
+                val mavenizedProjectFolder = assignmentTeacherFiles.getProjectFolderAsFile(submission,
+                    submission.getStatus() == SubmissionStatus.VALIDATED_REBUILT)
+                val buildReport = buildReportCache.get(submission) {
+                    buildReportBuilder.build(reportCompressor.buildReportOf(submission.buildReport!!).split("\n"),
+                        mavenizedProjectFolder.absolutePath, assignment, submission)
+                }
+                summaries[submission.id] = buildReportBuilder.saveSummary(submission, buildReport)
+            }
+        }
+
+        return summaries
+    }
+
     /**
      * Marks a [Submission] as final, and all other submissions for the same group and assignment as not final
      * @param submission is the Submission to mark as final
@@ -227,6 +278,26 @@ class SubmissionService(
             }
         }
 
+        // during surges, each student has to wait a while between submissions
+        val queueDepth = buildScheduler.queueDepth()
+        val throttleQueueDepth = dropProjectProperties.build.throttleQueueDepth
+        if (throttleQueueDepth > 0 && queueDepth >= throttleQueueDepth && !request.isUserInRole("TEACHER")) {
+            val lastSubmission = getLastSubmission(principal, assignment.id)
+            if (lastSubmission != null) {
+                val nextSubmissionTime = Timestamp(lastSubmission.submissionDate.time).toLocalDateTime()
+                    .plusSeconds(dropProjectProperties.build.throttleIntervalSeconds.toLong())
+                val retryAfterSeconds = ChronoUnit.SECONDS.between(LocalDateTime.now(), nextSubmissionTime)
+                if (retryAfterSeconds >= 0) {
+                    LOG.info("[${principal.realName()}] was throttled (${queueDepth} builds in the queue)")
+                    val tRemaining = nextSubmissionTime.format(DateTimeFormatter.ofPattern("HH:mm:ss"))
+                    return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                        .header(HttpHeaders.RETRY_AFTER, (retryAfterSeconds + 1).toString())
+                        .body(SubmissionResult(error=i18n.getMessage("student.submit.throttled",
+                            arrayOf(queueDepth, tRemaining), currentLocale)))
+                }
+            }
+        }
+
         val originalFilename = file.originalFilename ?: throw IllegalArgumentException("Missing originalFilename")
 
         if (!originalFilename.endsWith(".zip", ignoreCase = true)) {
@@ -234,69 +305,117 @@ class SubmissionService(
         }
 
         LOG.debug("[${principal.realName()}] uploaded ${originalFilename}")
-        val projectFolder: File? = storageService.store(file, assignment.id)
+        val zipFile = storageService.storeZip(file, assignment.id)
+        val projectFolder = storageService.projectFolderOf(zipFile)
 
-        if (projectFolder != null) {
-            val authors = getProjectAuthors(File(projectFolder, "AUTHORS.txt"))
-            LOG.info("[${authors.joinToString(separator = "|")}] Received ${originalFilename}")
+        // AUTHORS.txt is read directly from the zip file, so that the group is checked before replying
+        val authors = getProjectAuthors(zipService.readEntry(zipFile, "AUTHORS.txt"))
+        val authorsStr = authors.joinToString(separator = "|")
+        LOG.info("[${authorsStr}] Received ${originalFilename}")
 
-            // check if the principal is one of group elements
-            if (authors.filter { it.number == principal.realName() }.isEmpty()) {
-                throw InvalidProjectStructureException(i18n.getMessage("student.submit.notAGroupElement", null, currentLocale)
-                )
-            }
+        // check if the principal is one of group elements
+        if (authors.filter { it.number == principal.realName() }.isEmpty()) {
+            throw InvalidProjectStructureException(i18n.getMessage("student.submit.notAGroupElement", null, currentLocale)
+            )
+        }
 
-            // check if the group complies with possible group restrictions
-            if (assignment.projectGroupRestrictions != null) {
-                val restrictions = assignment.projectGroupRestrictions!!
-                if (authors.size !in restrictions.minGroupSize .. (restrictions.maxGroupSize ?: 50) &&
-                    !restrictions.exceptionsAsList().contains(principal.realName())) {
-                    throw InvalidProjectGroupException(i18n.getMessage("student.submit.invalidGroup",
-                        arrayOf(restrictions.minGroupSize, restrictions.maxGroupSize ?: 50), currentLocale))
-                }
+        // check if the group complies with possible group restrictions
+        if (assignment.projectGroupRestrictions != null) {
+            val restrictions = assignment.projectGroupRestrictions!!
+            if (authors.size !in restrictions.minGroupSize .. (restrictions.maxGroupSize ?: 50) &&
+                !restrictions.exceptionsAsList().contains(principal.realName())) {
+                throw InvalidProjectGroupException(i18n.getMessage("student.submit.invalidGroup",
+                    arrayOf(restrictions.minGroupSize, restrictions.maxGroupSize ?: 50), currentLocale))
             }
+        }
 
-            // check if all group members are in the assignment's whitelist
-            assignmentService.checkGroupMembersInWhitelist(assignment.id, authors.map { it.number }, i18n, currentLocale)
+        // check if all group members are in the assignment's whitelist
+        assignmentService.checkGroupMembersInWhitelist(assignment.id, authors.map { it.number }, i18n, currentLocale)
 
-            val group = projectGroupService.getOrCreateProjectGroup(authors)
+        val group = projectGroupService.getOrCreateProjectGroup(authors)
 
-            // verify that there is not another submission with the Submitted status
-            val existingSubmissions = submissionRepository
-                .findByGroupAndAssignmentIdOrderBySubmissionDateDescStatusDateDesc(group, assignment.id)
-                .filter { it.getStatus() != SubmissionStatus.DELETED }
-            for (submission in existingSubmissions) {
-                if (submission.getStatus() == SubmissionStatus.SUBMITTED) {
-                    LOG.info("[${authors.joinToString(separator = "|")}] tried to submit before the previous one has been validated")
-                    return ResponseEntity.internalServerError()
-                        .body(SubmissionResult(error=i18n.getMessage("student.submit.pending", null, currentLocale)))
-                }
+        // verify that there is not another submission with the Submitted status
+        val existingSubmissions = submissionRepository
+            .findByGroupAndAssignmentIdOrderBySubmissionDateDescStatusDateDesc(group, assignment.id)
+            .filter { it.getStatus() != SubmissionStatus.DELETED }
+        for (submission in existingSubmissions) {
+            if (submission.getStatus() == SubmissionStatus.SUBMITTED) {
+                LOG.info("[${authorsStr}] tried to submit before the previous one has been validated")
+                return ResponseEntity.internalServerError()
+                    .body(SubmissionResult(error=i18n.getMessage("student.submit.pending", null, currentLocale)))
             }
+        }
 
-            val submission = Submission(
-                submissionId = projectFolder.name, submissionDate = Date(),
-                status = SubmissionStatus.SUBMITTED.code, statusDate = Date(), assignmentId = assignment.id,
-                assignmentGitHash = assignment.gitCurrentHash, submitterUserId = principal.realName(),
-                submissionFolder = projectFolder.relativeTo(storageService.rootFolder()).path,
-                submissionMode = submissionMode
-            )
-            submission.group = group
+        val submission = Submission(
+            submissionId = projectFolder.name, submissionDate = Date(),
+            status = SubmissionStatus.SUBMITTED.code, statusDate = Date(), assignmentId = assignment.id,
+            assignmentGitHash = assignment.gitCurrentHash, submitterUserId = principal.realName(),
+            submissionFolder = projectFolder.relativeTo(storageService.rootFolder()).path,
+            submissionMode = submissionMode
+        )
+        submission.group = group
+        saveSubmissionAndUpdateAssignmentMetrics(submission)
+
+        // the submission is only queued after being unzipped and mavenized, in the background, so the estimate is
+        // based on the builds that are waiting now. The updated estimate is sent to those who follow the submission
+        val estimate = buildScheduler.estimateForNewBuild()
+
+        // the rest (unzip, structure check and mavenize) happens in the background
+        try {
+            ingestSubmission(zipFile, assignment, authorsStr, submission, principal)
+        } catch (e: RejectedExecutionException) {
+            LOG.warn("[${authorsStr}] Submission ${submission.id} was rejected (too many submissions waiting to be unzipped)")
+            submission.setStatus(SubmissionStatus.DELETED)
             saveSubmissionAndUpdateAssignmentMetrics(submission)
+            val retryAfterSeconds = dropProjectProperties.ingestion.retryAfterSeconds
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, retryAfterSeconds.toString())
+                .body(SubmissionResult(error=i18n.getMessage("student.submit.busy",
+                    arrayOf(retryAfterSeconds), currentLocale)))
+        }
 
-            buildSubmission(
-                projectFolder,
-                assignment,
-                authors.joinToString(separator = "|"),
-                submission,
-                asyncExecutor,
-                principal = principal
-            )
+        return ResponseEntity.ok(SubmissionResult(submissionId = submission.id,
+            queuePosition = estimate.position, estimatedSeconds = estimate.estimatedSeconds))
+    }
 
-            return ResponseEntity.ok(SubmissionResult(submissionId = submission.id))
+    /**
+     * Prepares an uploaded submission for the build, in two stages, each one running in its own (bounded) executor:
+     * first the zip file is unzipped (see [unzipExecutor]) and then the project structure is checked and the project
+     * is mavenized and scheduled for the build (see [mavenizeExecutor] and [buildSubmission]).
+     *
+     * If a stage fails, the submission is marked as FAILED.
+     *
+     * @throws RejectedExecutionException if there are too many submissions waiting to be unzipped
+     *
+     * @param zipFile is the uploaded zip file, already stored (see [StorageService.storeZip])
+     * @param submission is the [Submission], already saved with the SUBMITTED status
+     */
+    fun ingestSubmission(zipFile: File, assignment: Assignment, authorsStr: String, submission: Submission,
+                         principal: Principal?) {
+        runIngestionStage(unzipExecutor, authorsStr, submission) {
+            val projectFolder = storageService.unzip(zipFile, assignment.id)
+
+            runIngestionStage(mavenizeExecutor, authorsStr, submission) {
+                buildSubmission(projectFolder, assignment, authorsStr, submission, asyncExecutor, principal = principal)
+                // e.g., the project structure is invalid or it's waiting in the build queue
+                if (submissionEvents.isFollowed(submission.id)) {
+                    submissionEvents.publish(submission, buildScheduler.estimate(submission.id))
+                }
+            }
         }
+    }
 
-        return ResponseEntity.internalServerError().body(SubmissionResult(error=i18n.getMessage("student.submit.fileError", null, currentLocale)))
-
+    private fun runIngestionStage(executor: Executor, authorsStr: String, submission: Submission, stage: () -> Unit) {
+        executor.execute {
+            try {
+                stage()
+            } catch (e: Exception) {
+                LOG.error("[${authorsStr}] Unable to prepare submission ${submission.id} for the build", e)
+                submission.setStatus(SubmissionStatus.FAILED)
+                submissionRepository.save(submission)
+                submissionEvents.publish(submission)
+            }
+        }
     }
 
     /**
@@ -354,14 +473,23 @@ class SubmissionService(
     }
 
     fun getProjectAuthors(authorsFile: File) : List<AuthorDetails> {
+        return getProjectAuthors(if (authorsFile.existsCaseSensitive()) authorsFile.readBytes() else null)
+    }
+
+    /**
+     * Parses the contents of the AUTHORS.txt file (e.g., read directly from the uploaded zip file).
+     *
+     * @param authorsContents is the contents of AUTHORS.txt or null if there's no such file
+     */
+    fun getProjectAuthors(authorsContents: ByteArray?) : List<AuthorDetails> {
 
         // check for AUTHORS.txt file
-        if (!authorsFile.existsCaseSensitive()) {
+        if (authorsContents == null) {
             throw InvalidProjectStructureException(i18n.getMessage("error.authors.missing", null, currentLocale))
         }
 
         // check the encoding of AUTHORS.txt
-        val charset = try { guessCharset(authorsFile.inputStream()) } catch (ie: IOException) { Charset.defaultCharset() }
+        val charset = try { guessCharset(authorsContents.inputStream()) } catch (ie: IOException) { Charset.defaultCharset() }
         if (!charset.equals(Charset.defaultCharset())) {
             LOG.debug("AUTHORS.txt is not in the default charset (${Charset.defaultCharset()}): ${charset}")
         }
@@ -370,7 +498,7 @@ class SubmissionService(
         val authors = ArrayList<AuthorDetails>()
         val authorIDs = HashSet<String>()
         try {
-            authorsFile.readLines(charset = charset)
+            String(authorsContents, charset).lines()
                 .filter { line -> line.isNotBlank() }
                 .map { line -> line.split(";") }
                 .forEach { parts -> run {
@@ -443,14 +571,17 @@ class SubmissionService(
      * @property asyncExecutor is an Executor
      * @property teacherRebuid is a Boolean, indicating if this "build" is being requested by a teacher
      * @property principal is a [Principal] representing the user making the request
+     * @property premavenizedProjectFolder is a folder where the project was already mavenized (see [rebuildFull]), if any
      */
     fun buildSubmission(projectFolder: File, assignment: Assignment,
                         authorsStr: String,
                         submission: Submission,
                         asyncExecutor: Executor,
                         teacherRebuild: Boolean = false,
-                        principal: Principal?) {
-        val projectStructureErrors = checkProjectStructure(projectFolder, assignment)
+                        principal: Principal?,
+                        premavenizedProjectFolder: File? = null) {
+        val projectStructureErrors = buildMetrics.time(PipelineStage.PROJECT_STRUCTURE, assignment.id,
+            { if (it.isEmpty()) "ok" else "nok" }) { checkProjectStructure(projectFolder, assignment) }
         if (!projectStructureErrors.isEmpty()) {
             LOG.info("[${authorsStr}] Project Structure NOK")
             submissionReportRepository.save(SubmissionReport(submissionId = submission.id,
@@ -458,28 +589,159 @@ class SubmissionService(
             submission.structureErrors = projectStructureErrors.joinToString(separator = ";")
             submission.setStatus(SubmissionStatus.VALIDATED)
             submissionRepository.save(submission)
+            premavenizedProjectFolder?.deleteRecursively()
         } else {
             LOG.info("[${authorsStr}] Project Structure OK")
             submissionReportRepository.save(SubmissionReport(submissionId = submission.id,
                 reportKey = Indicator.PROJECT_STRUCTURE.code, reportValue = "OK"))
 
-            val mavenizedProjectFolder = mavenize(projectFolder, submission, assignment, teacherRebuild)
+            val mavenizedProjectFolder = buildMetrics.time(PipelineStage.MAVENIZE, assignment.id) {
+                mavenize(projectFolder, submission, assignment, teacherRebuild, premavenizedProjectFolder)
+            }
             LOG.info("[${authorsStr}] Mavenized to folder ${mavenizedProjectFolder}")
 
             if (asyncExecutor is ThreadPoolTaskScheduler) {
                 LOG.debug("asyncExecutor.activeCount = ${asyncExecutor.activeCount}")
             }
 
+            submission.sourcesFingerprint = sourcesFingerprint(mavenizedProjectFolder, assignment)
             if (teacherRebuild) {
                 submission.setStatus(SubmissionStatus.REBUILDING, dontUpdateStatusDate = true)
-                submissionRepository.save(submission)
             }
+            submissionRepository.save(submission)
+
+            val earlierSubmission = if (teacherRebuild) null else findSubmissionWithSameResult(submission, assignment)
 
-            buildWorker.checkProject(mavenizedProjectFolder, authorsStr, submission, rebuildByTeacher = teacherRebuild,
-                principalName = principal?.name)
+            val priority = when {
+                teacherRebuild -> BuildPriority.TEACHER_REBUILD
+                submission.gitSubmissionId != null -> BuildPriority.GIT_REPORT
+                else -> BuildPriority.STUDENT_UPLOAD
+            }
+            buildScheduler.schedule(submission, mavenizedProjectFolder, authorsStr, priority,
+                principalName = principal?.name, rebuildByTeacher = teacherRebuild,
+                reuseResultOf = earlierSubmission?.id)
+        }
+    }
+
+    /**
+     * Builds a submission again, applying the current assignment files (which may have changed since the submission).
+     * The original submission is preserved: the result goes into a new submission, which is a clone of the original.
+     *
+     * @param submission is the [Submission] to rebuild
+     * @param assignment is the [Assignment] of the submission
+     * @param principal is a [Principal] representing the user requesting the rebuild
+     * @param skipIfFingerprintIn is a Set of fingerprints (see [sourcesFingerprint]) of builds that are still valid. If
+     * the project, mavenized with the current assignment files, has one of these fingerprints, it's not rebuilt
+     *
+     * @return the new [Submission] or null if the rebuild was skipped
+     */
+    fun rebuildFull(submission: Submission, assignment: Assignment, principal: Principal?,
+                    skipIfFingerprintIn: Set<String> = emptySet()): Submission? {
+
+        // create another submission that is a clone of this one, to preserve the original submission
+        val rebuiltSubmission = Submission(submissionId = submission.submissionId,
+                gitSubmissionId = submission.gitSubmissionId,
+                submissionDate = submission.submissionDate,
+                submitterUserId = submission.submitterUserId,
+                assignmentId = submission.assignmentId,
+                assignmentGitHash = submission.assignmentGitHash,
+                submissionFolder = submission.submissionFolder,
+                status = SubmissionStatus.SUBMITTED_FOR_REBUILD.code,
+                statusDate = Date())
+        rebuiltSubmission.group = submission.group
+
+        val projectFolder = getOriginalProjectFolder(rebuiltSubmission)
+
+        // the fingerprint is calculated on the project mavenized with the current assignment files. If it's rebuilt,
+        // that's the folder that is built, so that the project is only mavenized once
+        var premavenizedProjectFolder: File? = null
+        if (skipIfFingerprintIn.isNotEmpty()) {
+            premavenizedProjectFolder = premavenize(projectFolder, rebuiltSubmission, assignment)
+            if (premavenizedProjectFolder != null &&
+                sourcesFingerprint(premavenizedProjectFolder, assignment) in skipIfFingerprintIn) {
+                LOG.info("Submission ${submission.id} is up to date with the assignment files. Skipping its rebuild")
+                premavenizedProjectFolder.deleteRecursively()
+                return null
+            }
+        }
+
+        val authors = getProjectAuthors(File(projectFolder, "AUTHORS.txt"))
+
+        saveSubmissionAndUpdateAssignmentMetrics(rebuiltSubmission)
+        buildSubmission(projectFolder, assignment, authors.joinToString(separator = "|"), rebuiltSubmission,
+                asyncExecutor, teacherRebuild = true, principal = principal,
+                premavenizedProjectFolder = premavenizedProjectFolder)
+
+        return rebuiltSubmission
+    }
+
+    /**
+     * Mavenizes a project that is about to be rebuilt into a temporary folder, next to the folder where it will be
+     * built (see [mavenize]), so that it can be moved there.
+     *
+     * @return the temporary folder or null if the project can't be mavenized
+     */
+    private fun premavenize(projectFolder: File, rebuiltSubmission: Submission, assignment: Assignment): File? {
+        val mavenizedProjectFolder = assignmentTeacherFiles.getProjectFolderAsFile(rebuiltSubmission, wasRebuilt = true)
+        val tempFolder = Files.createTempDirectory(mavenizedProjectFolder.parentFile.toPath(),
+            "${mavenizedProjectFolder.name}-").toFile()
+        return try {
+            mavenizeTo(projectFolder, tempFolder, assignment)
+            tempFolder
+        } catch (e: Exception) {
+            LOG.warn("Unable to mavenize ${projectFolder}: ${e.message}")
+            tempFolder.deleteRecursively()
+            null
         }
     }
 
+    /**
+     * Calculates a fingerprint of everything that determines the result of building a mavenized project: its files
+     * (the student's and the teacher's), the version of the assignment and the assignment settings that affect the build.
+     *
+     * @param mavenizedProjectFolder is a File
+     * @param assignment is the [Assignment]
+     *
+     * @return a String with the (hex) SHA-256 of the project
+     */
+    fun sourcesFingerprint(mavenizedProjectFolder: File, assignment: Assignment): String {
+        val digest = MessageDigest.getInstance("SHA-256")
+        val settings = "${assignment.gitCurrentHash}|${assignment.maxMemoryMb}|" +
+                "${assignment.calculateStudentTestsCoverage}|${assignment.buildEngine}"
+        digest.update(settings.toByteArray())
+
+        mavenizedProjectFolder.walkTopDown()
+            .onEnter { it == mavenizedProjectFolder || it.name != "target" }
+            .filter { it.isFile }
+            .map { it.relativeTo(mavenizedProjectFolder).invariantSeparatorsPath to it }
+            .sortedBy { it.first }
+            .forEach { (relativePath, file) ->
+                digest.update(0)
+                digest.update(relativePath.toByteArray())
+                digest.update(0)
+                digest.update(file.readBytes())
+            }
+
+        return digest.digest().joinToString("") { "%02x".format(it) }
+    }
+
+    /**
+     * Searches for an earlier validated submission with the same fingerprint (i.e., exactly the same files, built
+     * against the same version of the assignment), whose result can be reused instead of building this submission
+     * again (see [BuildWorker.reuseResult]). Since the tests receive the id of the submitter, it must be the same.
+     *
+     * @return the earlier [Submission] or null if there isn't one
+     */
+    private fun findSubmissionWithSameResult(submission: Submission, assignment: Assignment): Submission? {
+        val fingerprint = submission.sourcesFingerprint ?: return null
+        val earlierSubmission = submissionRepository
+            .findFirstByAssignmentIdAndGroupAndSubmitterUserIdAndSourcesFingerprintAndStatusAndIdNotOrderByIdDesc(
+                assignment.id, submission.group, submission.submitterUserId, fingerprint, SubmissionStatus.VALIDATED.code,
+                submission.id)
+            ?: return null
+        return if (earlierSubmission.buildReport != null) earlierSubmission else null
+    }
+
     private fun checkCompactProjectStructure(projectFolder: File, assignment: Assignment): List<String> {
         val erros = ArrayList<String>()
         if (!File(projectFolder, "src").existsCaseSensitive()) {
@@ -577,8 +839,10 @@ class SubmissionService(
                     val studentPom = File(projectFolder, "pom.xml")
                     val teacherPom = assignmentTeacherFiles.getTeacherPomFile(assignment)
 
-                    val pomValidation = pomValidator.validateStudentPom(studentPom, teacherPom,
-                                                                         assignment.acceptsStudentTests)
+                    val pomValidation = buildMetrics.time(PipelineStage.POM_VALIDATION, assignment.id,
+                        { if (it.isValid) "valid" else "invalid" }) {
+                        pomValidator.validateStudentPom(studentPom, teacherPom, assignment.acceptsStudentTests)
+                    }
                     if (!pomValidation.isValid) {
                         structureErrors.addAll(pomValidation.errors)
                     }
@@ -622,14 +886,14 @@ class SubmissionService(
 
         // Copy student README if exists (overwrites teacher's)
         if (File(projectFolder, "README.md").exists()) {
-            FileUtils.copyFile(File(projectFolder, "README.md"), File(mavenizedProjectFolder, "README.md"))
+            workspaceBuilder.replaceFile(File(projectFolder, "README.md"), File(mavenizedProjectFolder, "README.md"))
         } else if (File(projectFolder, "README.txt").exists()) {
-            FileUtils.copyFile(File(projectFolder, "README.txt"), File(mavenizedProjectFolder, "README.txt"))
+            workspaceBuilder.replaceFile(File(projectFolder, "README.txt"), File(mavenizedProjectFolder, "README.txt"))
         }
 
         // Copy student images
         projectFolder.listFiles { file -> file.extension in listOf("png", "jpg", "jpeg", "gif") }
-            ?.forEach { FileUtils.copyFile(it, File(mavenizedProjectFolder, it.name)) }
+            ?.forEach { workspaceBuilder.replaceFile(it, File(mavenizedProjectFolder, it.name)) }
     }
 
     /**
@@ -676,14 +940,14 @@ class SubmissionService(
 
         // Copy student README if exists (overwrites teacher's)
         if (File(projectFolder, "README.md").exists()) {
-            FileUtils.copyFile(File(projectFolder, "README.md"), File(mavenizedProjectFolder, "README.md"))
+            workspaceBuilder.replaceFile(File(projectFolder, "README.md"), File(mavenizedProjectFolder, "README.md"))
         } else if (File(projectFolder, "README.txt").exists()) {
-            FileUtils.copyFile(File(projectFolder, "README.txt"), File(mavenizedProjectFolder, "README.txt"))
+            workspaceBuilder.replaceFile(File(projectFolder, "README.txt"), File(mavenizedProjectFolder, "README.txt"))
         }
 
         // Copy student images
         projectFolder.listFiles { file -> file.extension in listOf("png", "jpg", "jpeg", "gif") }
-            ?.forEach { FileUtils.copyFile(it, File(mavenizedProjectFolder, it.name)) }
+            ?.forEach { workspaceBuilder.replaceFile(it, File(mavenizedProjectFolder, it.name)) }
     }
 
     /**
@@ -694,13 +958,16 @@ class SubmissionService(
      * @param teacherRebuild is a Boolean
      * @return File
      */
-    private fun mavenize(projectFolder: File, submission: Submission, assignment: Assignment, teacherRebuild: Boolean = false): File {
+    private fun mavenize(projectFolder: File, submission: Submission, assignment: Assignment, teacherRebuild: Boolean = false,
+                         premavenizedProjectFolder: File? = null): File {
         val mavenizedProjectFolder = assignmentTeacherFiles.getProjectFolderAsFile(submission, teacherRebuild)
         mavenizedProjectFolder.deleteRecursively()
 
-        when (assignment.submissionStructure) {
-            SubmissionStructure.COMPACT -> mavenizeCompactStructure(projectFolder, mavenizedProjectFolder, assignment)
-            SubmissionStructure.MAVEN -> mavenizeMavenStructure(projectFolder, mavenizedProjectFolder, assignment)
+        if (premavenizedProjectFolder != null) {
+            // it's in the same folder, so it's just renamed
+            Files.move(premavenizedProjectFolder.toPath(), mavenizedProjectFolder.toPath())
+        } else {
+            mavenizeTo(projectFolder, mavenizedProjectFolder, assignment)
         }
 
         // Finally remove the original project folder (the zip file is still kept)
@@ -713,6 +980,13 @@ class SubmissionService(
         return mavenizedProjectFolder
     }
 
+    private fun mavenizeTo(projectFolder: File, mavenizedProjectFolder: File, assignment: Assignment) {
+        when (assignment.submissionStructure) {
+            SubmissionStructure.COMPACT -> mavenizeCompactStructure(projectFolder, mavenizedProjectFolder, assignment)
+            SubmissionStructure.MAVEN -> mavenizeMavenStructure(projectFolder, mavenizedProjectFolder, assignment)
+        }
+    }
+
     fun deleteMavenizedFolderFor(submissions: List<Submission>) {
         for (submission in submissions) {
             val mavenizedProjectFolder = assignmentTeacherFiles.getProjectFolderAsFile(submission,
@@ -758,19 +1032,18 @@ class SubmissionService(
     }
 
     fun fillIndicatorsFor(submissions: List<Submission>) {
-        for (submission in submissions) {
-            val assignment = assignmentRepository.findById(submission.assignmentId)
-                .orElseThrow { EntityNotFoundException("Assignment ${submission.assignmentId} not found") }
-            submission.reportElements = submissionReportRepository.findBySubmissionId(submission.id)
-            submission.overdue = assignment.overdue(submission)
-            submission.buildReport?.let {
-                    buildReportDB ->
-                val mavenizedProjectFolder = assignmentTeacherFiles.getProjectFolderAsFile(submission,
-                    submission.getStatus() == SubmissionStatus.VALIDATED_REBUILT)
-                val buildReport = buildReportBuilder.build(buildReportDB.buildReport.split("\n"),
-                    mavenizedProjectFolder.absolutePath, assignment, submission)
-                submission.ellapsed = buildReport.elapsedTimeJUnit()
-                submission.teacherTests = buildReport.junitSummaryAsObject()
+        for ((assignmentId, assignmentSubmissions) in submissions.groupBy { it.assignmentId }) {
+            val assignment = assignmentRepository.findById(assignmentId)
+                .orElseThrow { EntityNotFoundException("Assignment ${assignmentId} not found") }
+            val summaries = getSummaries(assignmentSubmissions, assignment)
+            for (submission in assignmentSubmissions) {
+                submission.reportElements = submissionReportRepository.findBySubmissionId(submission.id)
+                submission.overdue = assignment.overdue(submission)
+                summaries[submission.id]?.let {
+                        summary ->
+                    submission.ellapsed = summary.ellapsed()
+                    submission.teacherTests = summary.teacherTests
+                }
             }
         }
     }
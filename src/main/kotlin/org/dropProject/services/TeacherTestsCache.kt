@@ -0,0 +1,181 @@
+/*-
+ * ========================LICENSE_START=================================
+ * DropProject
+ * %%
+ * Copyright (C) 2019 - 2026 Pedro Alves
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package org.dropproject.services
+
+import org.dropproject.config.DropProjectProperties
+import org.dropproject.dao.Assignment
+import org.dropproject.dao.Language
+import org.slf4j.LoggerFactory
+import org.springframework.stereotype.Service
+import java.io.File
+import java.security.MessageDigest
+import java.util.*
+import java.util.concurrent.ConcurrentHashMap
+import java.util.jar.JarEntry
+import java.util.jar.JarOutputStream
+
+/**
+ * Represents the teacher tests of a version of an assignment, compiled against the teacher's solution.
+ *
+ * @property gitHash is the assignment's commit from which the tests were compiled
+ * @property testsJar is a jar with the compiled test classes
+ * @property sourceFiles maps each test source file (relative to src/test/java) to its SHA-256
+ */
+class CompiledTeacherTests(val gitHash: String,
+                           val testsJar: File,
+                           val sourceFiles: Map<String, String>,
+                           private val referenceApi: ClassApi,
+                           private val usedClasses: Set<String>,
+                           private val usedPackages: Set<String>) {
+
+    /**
+     * Checks if the compiled tests can replace the compilation of the test sources of a project. That's the case
+     * if the project has exactly the teacher's test sources and its main classes have the same API as the teacher's
+     * solution (otherwise, the compilation of the tests could fail or produce different classes).
+     *
+     * @param testSourceFolder is the project's src/test/java
+     * @param classesFolder is the folder with the project's compiled main classes
+     */
+    fun canBeUsedWith(testSourceFolder: File, classesFolder: File): Boolean {
+        return sourceFiles.all { (path, sha256) ->
+            val file = File(testSourceFolder, path)
+            file.isFile && sha256(file) == sha256
+        } && referenceApi.isCompatibleWith(ClassApi.read(classesFolder), usedClasses, usedPackages)
+    }
+
+    fun isTeacherSource(testSourceFolder: File, file: File) =
+        sourceFiles.containsKey(file.relativeTo(testSourceFolder).invariantSeparatorsPath)
+}
+
+private fun sha256(file: File) =
+    MessageDigest.getInstance("SHA-256").digest(file.readBytes()).joinToString("") { "%02x".format(it) }
+
+/**
+ * Keeps the teacher tests of each assignment compiled (see [CompiledTeacherTests]), so that the builds done by
+ * the [FastBuildEngine] don't have to compile them again for each submission.
+ *
+ * The tests are compiled by maven when the assignment is validated and they're kept (on disk) for the assignment's
+ * current git commit. Refreshing the assignment from git invalidates them.
+ */
+@Service
+class TeacherTestsCache(val dropProjectProperties: DropProjectProperties) {
+
+    val LOG = LoggerFactory.getLogger(this.javaClass.name)
+
+    // assignmentId -> compiled tests of the current version of the assignment
+    private val cache = ConcurrentHashMap<String, CompiledTeacherTests>()
+
+    /**
+     * Keeps the teacher tests of an assignment that was just built (by the assignment validation), replacing the
+     * ones of previous versions.
+     *
+     * @param assignment is the [Assignment]
+     * @param assignmentFolder is the assignment's folder, with the classes compiled by maven in its target folder
+     */
+    fun store(assignment: Assignment, assignmentFolder: File) {
+        evict(assignment.id)
+
+        val gitHash = assignment.gitCurrentHash ?: return
+        val testClassesFolder = File(assignmentFolder, "target/test-classes")
+        val classesFolder = File(assignmentFolder, "target/classes")
+        val testSourceFolder = File(assignmentFolder, "src/test/java")
+        if (assignment.language != Language.JAVA || !testClassesFolder.exists() || !testSourceFolder.exists()) {
+            return
+        }
+
+        try {
+            val folder = cacheFolder(assignment.id)
+            folder.mkdirs()
+            writeJar(testClassesFolder, File(folder, "${gitHash}-tests.jar"))
+            writeJar(classesFolder, File(folder, "${gitHash}-main.jar"))
+
+            // written last, since its presence means that the jars are complete
+            val sourceFiles = Properties()
+            testSourceFolder.walkTopDown().filter { it.isFile }.forEach {
+                sourceFiles.setProperty(it.relativeTo(testSourceFolder).invariantSeparatorsPath, sha256(it))
+            }
+            val tempFile = File(folder, "${gitHash}.properties.tmp")
+            tempFile.outputStream().use { sourceFiles.store(it, null) }
+            tempFile.renameTo(File(folder, "${gitHash}.properties"))
+
+            LOG.info("Stored the compiled teacher tests of ${assignment.id} (${gitHash})")
+        } catch (e: Exception) {
+            LOG.warn("Unable to store the compiled teacher tests of ${assignment.id}: ${e.message}")
+            evict(assignment.id)
+        }
+    }
+
+    /**
+     * @return the compiled teacher tests of the current version of [assignment] or null if they're not available
+     */
+    fun get(assignment: Assignment): CompiledTeacherTests? {
+        val gitHash = assignment.gitCurrentHash ?: return null
+
+        cache[assignment.id]?.takeIf { it.gitHash == gitHash }?.let { return it }
+
+        val folder = cacheFolder(assignment.id)
+        val sourcesFile = File(folder, "${gitHash}.properties")
+        if (!sourcesFile.exists()) {
+            return null
+        }
+
+        try {
+            val sourceFiles = Properties()
+            sourcesFile.inputStream().use { sourceFiles.load(it) }
+            val testsJar = File(folder, "${gitHash}-tests.jar")
+            val testClasses = ClassApi.read(testsJar)
+            val compiledTests = CompiledTeacherTests(gitHash, testsJar,
+                sourceFiles.stringPropertyNames().associateWith { sourceFiles.getProperty(it) },
+                ClassApi.read(File(folder, "${gitHash}-main.jar")),
+                ClassApi.readUsedClasses(testsJar),
+                testClasses.classes.keys.map { it.substringBeforeLast("/", "") }.toSet())
+            cache[assignment.id] = compiledTests
+            return compiledTests
+        } catch (e: Exception) {
+            LOG.warn("Unable to read the compiled teacher tests of ${assignment.id}: ${e.message}")
+            return null
+        }
+    }
+
+    /**
+     * Removes the compiled teacher tests of an assignment (e.g., because it was refreshed from git).
+     */
+    fun evict(assignmentId: String) {
+        cache.remove(assignmentId)
+        cacheFolder(assignmentId).deleteRecursively()
+    }
+
+    private fun cacheFolder(assignmentId: String) =
+        File(dropProjectProperties.assignments.compiledTestsLocation, assignmentId)
+
+    private fun writeJar(classesFolder: File, jarFile: File) {
+        val tempFile = File(jarFile.parentFile, "${jarFile.name}.tmp")
+        JarOutputStream(tempFile.outputStream()).use { jar ->
+            classesFolder.takeIf { it.exists() }?.walkTopDown()
+                ?.filter { it.isFile && it.name.endsWith(".class") }
+                ?.forEach {
+                    jar.putNextEntry(JarEntry(it.relativeTo(classesFolder).invariantSeparatorsPath))
+                    it.inputStream().use { input -> input.copyTo(jar) }
+                    jar.closeEntry()
+                }
+        }
+        tempFile.renameTo(jarFile)
+    }
+}
@@ -0,0 +1,69 @@
+/*-
+ * ========================LICENSE_START=================================
+ * DropProject
+ * %%
+ * Copyright (C) 2019 - 2026 Pedro Alves
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package org.dropproject.services
+
+import org.springframework.stereotype.Service
+import java.io.File
+import java.nio.file.Files
+import java.nio.file.StandardCopyOption
+
+/**
+ * Builds the mavenized projects (the folders where the submissions are built) from the teacher files of an assignment.
+ *
+ * Each mavenized project gets its own copy of the teacher files (e.g., the pom.xml and the teacher tests). They can't be
+ * shared between projects (e.g., hard linked from a read-only snapshot), since the code being built runs as the same
+ * user as drop project and may change the files of its project: a shared file could be made writable again and
+ * changed, and the teacher tests of all the other submissions would change with it.
+ */
+@Service
+class WorkspaceBuilder {
+
+    /**
+     * Copies the teacher files of an assignment to a mavenized project, like FileUtils.copyDirectory would
+     * (including the empty folders), replacing the files that already exist.
+     *
+     * @param teacherFolder is the assignment's folder
+     * @param mavenizedProjectFolder is the mavenized project
+     * @param filter tells which files and folders (of the assignment's folder) are included
+     */
+    fun copyTeacherFiles(teacherFolder: File, mavenizedProjectFolder: File, filter: (File) -> Boolean) {
+
+        teacherFolder.walkTopDown()
+            .onEnter { it == teacherFolder || filter(it) }
+            .filter { it != teacherFolder && filter(it) }
+            .forEach { file ->
+                val destination = File(mavenizedProjectFolder, file.relativeTo(teacherFolder).path)
+                if (file.isDirectory) {
+                    destination.mkdirs()
+                } else {
+                    replaceFile(file, destination)
+                }
+            }
+    }
+
+    /**
+     * Copies a file to a mavenized project, replacing the destination if it exists (e.g., a teacher file).
+     */
+    fun replaceFile(source: File, destination: File) {
+        destination.parentFile.mkdirs()
+        Files.copy(source.toPath(), destination.toPath(),
+            StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES)
+    }
+}
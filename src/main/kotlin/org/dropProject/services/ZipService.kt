@@ -100,7 +100,7 @@ class ZipService {
      */
     fun unzip(file: Path, originalFilename: String?): File {
         val destinationFileFile = file.toFile()
-        val destinationFolder = File(destinationFileFile.parent, destinationFileFile.nameWithoutExtension)
+        val destinationFolder = unzipFolderOf(destinationFileFile)
 
         val zipFile = org.apache.commons.compress.archivers.zip.ZipFile.builder()
             .setFile(destinationFileFile)
@@ -134,4 +134,36 @@ class ZipService {
         return destinationFolder
     }
 
+    /**
+     * @return the folder where [unzip] puts the contents of a ZIP file
+     */
+    fun unzipFolderOf(file: File): File {
+        return File(file.parent, file.nameWithoutExtension)
+    }
+
+    /**
+     * Reads a file from a ZIP file without decompressing the others.
+     *
+     * @param file is the ZIP file
+     * @param entryName is the (case-sensitive) path of the file inside the ZIP file
+     *
+     * @return the contents of the file or null if the ZIP file doesn't contain it
+     */
+    fun readEntry(file: File, entryName: String): ByteArray? {
+        try {
+            org.apache.commons.compress.archivers.zip.ZipFile.builder()
+                .setFile(file)
+                .get()
+                .use { zipFile ->
+                    val entry = zipFile.getEntry(entryName) ?: return null
+                    if (entry.isDirectory) {
+                        return null
+                    }
+                    return zipFile.getInputStream(entry).use { it.readBytes() }
+                }
+        } catch (e: IOException) {
+            throw StorageException("Failed to read ${entryName} from ${file.name}", e)
+        }
+    }
+
 }
@@ -20,6 +20,8 @@
 package org.dropproject.storage
 
 import org.dropproject.dao.Submission
+import org.dropproject.data.PipelineStage
+import org.dropproject.services.BuildMetrics
 import org.dropproject.services.ZipService
 import org.dropproject.config.DropProjectProperties
 import org.springframework.stereotype.Service
@@ -35,7 +37,8 @@ import java.util.*
 @Service
 class FileSystemStorageService (
     val zipService : ZipService,
-    val dropProjectProperties: DropProjectProperties
+    val dropProjectProperties: DropProjectProperties,
+    val buildMetrics: BuildMetrics
 ) : StorageService {
 
     override fun rootFolder(): File {
@@ -43,6 +46,15 @@ class FileSystemStorageService (
     }
 
     override fun store(file: MultipartFile, assignmentId: String) : File? {
+        return unzip(storeZip(file, assignmentId), assignmentId)
+    }
+
+    /**
+     * Persists the uploaded zip file, without unzipping it (see [unzip]).
+     *
+     * @return the stored zip file
+     */
+    override fun storeZip(file: MultipartFile, assignmentId: String) : File {
         val originalFilename = file.originalFilename ?: throw IllegalArgumentException("Missing original filename")
         val filename = StringUtils.cleanPath(originalFilename)
         try {
@@ -53,28 +65,38 @@ class FileSystemStorageService (
                 // This is a security check
                 throw StorageException("Cannot store file with relative path outside current directory ${filename}")
             }
+            if (!filename.endsWith(".zip", ignoreCase = true)) {
+                throw Exception("$filename doesn't end with .zip! This shouldn't happen.")
+            }
 
             val destinationPartialFolder = File(dropProjectProperties.storage.uploadLocation, Submission.relativeUploadFolder(assignmentId, Date()))
             destinationPartialFolder.mkdirs()
 
             val destinationFile = File(destinationPartialFolder, "${System.currentTimeMillis()}-${filename}")
-            Files.copy(file.inputStream,
-                    destinationFile.toPath(),
-                    StandardCopyOption.REPLACE_EXISTING)
-
-            if (filename.endsWith(".zip", ignoreCase = true)) {
-                val destinationFolder = zipService.unzip(destinationFile.toPath(), filename)
-                return destinationFolder
-            } else {
-                throw Exception("$filename doesn't end with .zip! This shouldn't happen.")
+            buildMetrics.time(PipelineStage.UPLOAD_STORE, assignmentId) {
+                Files.copy(file.inputStream,
+                        destinationFile.toPath(),
+                        StandardCopyOption.REPLACE_EXISTING)
             }
+            return destinationFile
 
         } catch (e: IOException) {
             throw StorageException("Failed to store file $filename", e)
         }
     }
 
+    /**
+     * Unzips a zip file stored by [storeZip] into its project folder (see [projectFolderOf]).
+     */
+    override fun unzip(zipFile: File, assignmentId: String): File {
+        return buildMetrics.time(PipelineStage.UNZIP, assignmentId) {
+            zipService.unzip(zipFile.toPath(), zipFile.name)
+        }
+    }
 
+    override fun projectFolderOf(zipFile: File): File {
+        return zipService.unzipFolderOf(zipFile)
+    }
 
     override fun init() {
         try {
@@ -31,5 +31,11 @@ interface StorageService {
 
     fun store(file: MultipartFile, assignmentId: String): File?
 
+    fun storeZip(file: MultipartFile, assignmentId: String): File
+
+    fun unzip(zipFile: File, assignmentId: String): File
+
+    fun projectFolderOf(zipFile: File): File
+
     fun retrieveProjectFolder(submission: Submission): File?
 }
@@ -0,0 +1,207 @@
+package org.dropproject.fastbuild;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Locale;
+
+import org.junit.runner.Description;
+import org.junit.runner.JUnitCore;
+import org.junit.runner.notification.Failure;
+import org.junit.runner.notification.RunListener;
+
+/**
+ * Runs JUnit 4 test classes in the JVM forked by drop-project's FastBuildEngine and produces the same XML reports as
+ * the maven-surefire-plugin.
+ *
+ * Usage: FastTestRunner &lt;testClass&gt;...
+ *
+ * The reports are sent through the standard output, in lines with a token (so that they can be told apart
+ * from the output of the tests), because the sandbox may not allow writing files. The last line is
+ * "&lt;token&gt; END &lt;number of tests that didn't pass&gt;".
+ *
+ * The token is read from the standard input before any test class is loaded and it's never visible to the code being
+ * tested (unlike the command line, which that code could read), so the tests can't forge the reports.
+ *
+ * This file is compiled at runtime, against the classpath of the project being tested.
+ */
+public class FastTestRunner {
+
+    public static void main(String[] args) throws Exception {
+        String token = readToken(System.in);
+
+        // keep a reference to the real stdout, since the tests may replace System.out
+        PrintStream out = System.out;
+        int numFailed = 0;
+
+        for (int i = 0; i < args.length; i++) {
+            Class<?> testClass = Class.forName(args[i], false, FastTestRunner.class.getClassLoader());
+            if (Modifier.isAbstract(testClass.getModifiers()) || testClass.isInterface()) {
+                continue;
+            }
+
+            out.println("Running " + testClass.getName());
+
+            SuiteListener listener = new SuiteListener(testClass.getName());
+            JUnitCore core = new JUnitCore();
+            core.addListener(listener);
+            long start = System.currentTimeMillis();
+            core.run(testClass);
+            double elapsed = (System.currentTimeMillis() - start) / 1000.0;
+
+            out.println(String.format(Locale.US, "Tests run: %d, Failures: %d, Errors: %d, Skipped: %d, Time elapsed: %.3f sec",
+                    listener.testCases.size(), listener.count("failure"), listener.count("error"),
+                    listener.count("skipped"), elapsed));
+
+            numFailed += listener.count("failure") + listener.count("error");
+
+            String xml = listener.toXml(elapsed);
+            out.println(token + " TEST-" + testClass.getName() + ".xml " +
+                    Base64.getEncoder().encodeToString(xml.getBytes(StandardCharsets.UTF_8)));
+        }
+
+        out.println(token + " END " + numFailed);
+        out.flush();
+    }
+
+    // reads the first line byte by byte, so that nothing else is consumed from the standard input
+    private static String readToken(InputStream in) throws IOException {
+        StringBuilder token = new StringBuilder();
+        int c;
+        while ((c = in.read()) != -1 && c != '\n') {
+            token.append((char) c);
+        }
+        return token.toString();
+    }
+
+    private static class TestCaseResult {
+        final String name;
+        long start = System.currentTimeMillis();
+        double elapsed;
+        String resultType;  // null, "failure", "error" or "skipped"
+        Throwable exception;
+
+        TestCaseResult(String name) {
+            this.name = name;
+        }
+    }
+
+    private static class SuiteListener extends RunListener {
+        final String className;
+        final List<TestCaseResult> testCases = new ArrayList<>();
+
+        SuiteListener(String className) {
+            this.className = className;
+        }
+
+        private TestCaseResult find(Description description) {
+            String name = description.getMethodName() != null ? description.getMethodName() : className;
+            for (int i = testCases.size() - 1; i >= 0; i--) {
+                if (testCases.get(i).name.equals(name)) {
+                    return testCases.get(i);
+                }
+            }
+            // e.g., a failure in @BeforeClass
+            TestCaseResult testCase = new TestCaseResult(name);
+            testCases.add(testCase);
+            return testCase;
+        }
+
+        int count(String resultType) {
+            int count = 0;
+            for (TestCaseResult testCase : testCases) {
+                if (resultType.equals(testCase.resultType)) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        @Override
+        public void testStarted(Description description) {
+            testCases.add(new TestCaseResult(description.getMethodName()));
+        }
+
+        @Override
+        public void testFinished(Description description) {
+            TestCaseResult testCase = find(description);
+            testCase.elapsed = (System.currentTimeMillis() - testCase.start) / 1000.0;
+        }
+
+        @Override
+        public void testFailure(Failure failure) {
+            TestCaseResult testCase = find(failure.getDescription());
+            // like surefire, assertion errors are failures and other exceptions are errors
+            testCase.resultType = failure.getException() instanceof AssertionError ? "failure" : "error";
+            testCase.exception = failure.getException();
+        }
+
+        @Override
+        public void testAssumptionFailure(Failure failure) {
+            find(failure.getDescription()).resultType = "skipped";
+        }
+
+        @Override
+        public void testIgnored(Description description) {
+            TestCaseResult testCase = new TestCaseResult(description.getMethodName());
+            testCase.resultType = "skipped";
+            testCases.add(testCase);
+        }
+
+        String toXml(double elapsed) {
+            StringBuilder xml = new StringBuilder();
+            xml.append("<?xml version=\"1.0\" encoding=\"UTF-8\" ?>\n");
+            xml.append(String.format(Locale.US,
+                    "<testsuite tests=\"%d\" failures=\"%d\" name=\"%s\" time=\"%.3f\" errors=\"%d\" skipped=\"%d\">\n",
+                    testCases.size(), count("failure"), escape(className), elapsed, count("error"), count("skipped")));
+            for (TestCaseResult testCase : testCases) {
+                xml.append(String.format(Locale.US, "  <testcase classname=\"%s\" name=\"%s\" time=\"%.3f\"",
+                        escape(className), escape(testCase.name), testCase.elapsed));
+                if (testCase.resultType == null) {
+                    xml.append("/>\n");
+                } else if (testCase.resultType.equals("skipped")) {
+                    xml.append(">\n    <skipped/>\n  </testcase>\n");
+                } else {
+                    StringWriter stackTrace = new StringWriter();
+                    testCase.exception.printStackTrace(new PrintWriter(stackTrace));
+                    xml.append(">\n    <").append(testCase.resultType);
+                    if (testCase.exception.getMessage() != null) {
+                        xml.append(" message=\"").append(escape(testCase.exception.getMessage())).append("\"");
+                    }
+                    xml.append(" type=\"").append(escape(testCase.exception.getClass().getName())).append("\">");
+                    xml.append(escape(stackTrace.toString()));
+                    xml.append("</").append(testCase.resultType).append(">\n  </testcase>\n");
+                }
+            }
+            xml.append("</testsuite>\n");
+            return xml.toString();
+        }
+    }
+
+    private static String escape(String text) {
+        StringBuilder result = new StringBuilder(text.length());
+        for (char c : text.toCharArray()) {
+            switch (c) {
+                case '<': result.append("&lt;"); break;
+                case '>': result.append("&gt;"); break;
+                case '&': result.append("&amp;"); break;
+                case '"': result.append("&quot;"); break;
+                default:
+                    // characters that are not allowed in XML 1.0
+                    if (c < 0x20 && c != '\t' && c != '\n' && c != '\r') {
+                        result.append(' ');
+                    } else {
+                        result.append(c);
+                    }
+            }
+        }
+        return result.toString();
+    }
+}
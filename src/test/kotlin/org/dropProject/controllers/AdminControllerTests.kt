@@ -24,12 +24,15 @@ import org.dropproject.dao.Assignment
 import org.dropproject.dao.AssignmentTag
 import org.dropproject.dao.Submission
 import org.dropproject.dao.SubmissionStatus
+import org.dropproject.data.PipelineStage
 import org.dropproject.forms.SubmissionMethod
 import org.dropproject.repository.AssignmentRepository
 import org.dropproject.repository.AssignmentTagRepository
 import org.dropproject.repository.SubmissionRepository
 import org.dropproject.services.AssignmentService
+import org.dropproject.services.BuildMetrics
 import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
 import org.junit.FixMethodOrder
 import org.junit.Test
 import org.junit.runner.RunWith
@@ -73,6 +76,9 @@ class AdminControllerTests {
     @Autowired
     lateinit var assignmentService : AssignmentService
 
+    @Autowired
+    lateinit var buildMetrics : BuildMetrics
+
     @Test
     @WithMockUser("admin",roles=["DROP_PROJECT_ADMIN"])
     @DirtiesContext
@@ -134,6 +140,52 @@ class AdminControllerTests {
                 .andExpect(header().string("Location", "/admin/showPending"))
     }
 
+    @Test
+    @WithMockUser("admin",roles=["DROP_PROJECT_ADMIN"])
+    @DirtiesContext
+    fun test_03_metrics() {
+        buildMetrics.record(PipelineStage.MAVENIZE, "testJavaProj", "success", 2_000_000_000)
+        buildMetrics.record(PipelineStage.MAVENIZE, "testJavaProj", "success", 1_000_000_000)
+
+        val metrics = this.mvc.perform(get("/admin/metrics"))
+            .andExpect(status().isOk)
+            .andReturn().response.contentAsString
+
+        assertTrue(metrics.contains(
+            "dp_pipeline_stage_seconds_count{stage=\"mavenize\",assignment=\"testJavaProj\",outcome=\"success\"} 2\n"))
+        assertTrue(metrics.contains(
+            "dp_pipeline_stage_seconds_sum{stage=\"mavenize\",assignment=\"testJavaProj\",outcome=\"success\"} 3.0\n"))
+        assertTrue(metrics.contains(
+            "dp_pipeline_stage_seconds_max{stage=\"mavenize\",assignment=\"testJavaProj\",outcome=\"success\"} 2.0\n"))
+
+        // and the usage of the build reports cache
+        assertTrue(metrics.contains("# TYPE dp_build_report_cache_requests_total counter\n"))
+    }
+
+    @Test
+    @WithMockUser("teacher1",roles=["TEACHER"])
+    @DirtiesContext
+    fun test_04_metricsOnlyForAdmins() {
+        this.mvc.perform(get("/admin/metrics"))
+            .andExpect(forwardedUrl("/access-denied.html"))
+    }
+
+    @Test
+    @WithMockUser("admin",roles=["DROP_PROJECT_ADMIN"])
+    @DirtiesContext
+    fun test_05_buildSystemStatus() {
+        buildMetrics.recordFinishedBuild("testJavaProj", 12_000)
+
+        this.mvc.perform(get("/admin/buildSystem"))
+            .andExpect(status().isOk)
+            .andExpect(jsonPath("$.queued").isEmpty)
+            .andExpect(jsonPath("$.running").isEmpty)
+            .andExpect(jsonPath("$.finishedLastMinute").value(1))
+            .andExpect(jsonPath("$.finishedLastHour").value(1))
+            .andExpect(jsonPath("$.latencies[0].assignmentId").value("testJavaProj"))
+            .andExpect(jsonPath("$.latencies[0].p95Seconds").value(12))
+    }
+
     @Test
     @WithMockUser("admin",roles=["DROP_PROJECT_ADMIN"])
     @DirtiesContext
@@ -0,0 +1,166 @@
+/*-
+ * ========================LICENSE_START=================================
+ * DropProject
+ * %%
+ * Copyright (C) 2019 - 2026 Pedro Alves
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package org.dropproject.controllers
+
+import org.dropproject.TestsHelper
+import org.dropproject.config.DropProjectProperties
+import org.dropproject.dao.Assignment
+import org.dropproject.dao.SubmissionStatus
+import org.dropproject.forms.SubmissionMethod
+import org.dropproject.repository.AssignmentRepository
+import org.dropproject.repository.BuildJobRepository
+import org.dropproject.repository.SubmissionRepository
+import org.junit.After
+import org.junit.Assert.*
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc
+import org.springframework.boot.test.context.SpringBootTest
+import org.springframework.security.core.authority.SimpleGrantedAuthority
+import org.springframework.security.core.userdetails.User
+import org.springframework.test.annotation.DirtiesContext
+import org.springframework.test.context.ActiveProfiles
+import org.springframework.test.context.TestPropertySource
+import org.springframework.test.context.bean.override.convention.TestBean
+import org.springframework.test.context.junit4.SpringRunner
+import org.springframework.test.web.servlet.MockMvc
+import org.springframework.test.web.servlet.ResultMatcher
+import org.springframework.test.web.servlet.result.MockMvcResultMatchers.header
+import org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath
+import org.springframework.test.web.servlet.result.MockMvcResultMatchers.status
+import java.io.File
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executor
+import java.util.concurrent.RejectedExecutionException
+import java.util.concurrent.TimeUnit
+
+/**
+ * Uploads with the submissions being unzipped in the background, like in production (the test profile does it in
+ * the thread of the request).
+ */
+@RunWith(SpringRunner::class)
+@AutoConfigureMockMvc
+@SpringBootTest
+@TestPropertySource(locations = ["classpath:drop-project-test.properties"],
+    properties = ["drop-project.workers.remote-builds=true", "drop-project.workers.token=worker-secret"])
+@ActiveProfiles("test")
+class AsyncUploadControllerTests {
+
+    @Autowired
+    lateinit var dropProjectProperties: DropProjectProperties
+
+    @Autowired
+    lateinit var mvc: MockMvc
+
+    @Autowired
+    lateinit var assignmentRepository: AssignmentRepository
+
+    @Autowired
+    lateinit var buildJobRepository: BuildJobRepository
+
+    @Autowired
+    lateinit var submissionRepository: SubmissionRepository
+
+    @Autowired
+    private lateinit var testsHelper: TestsHelper
+
+    @TestBean(name = "unzipExecutor")
+    lateinit var unzipExecutor: Executor
+
+    val STUDENT_1 = User("student1", "", mutableListOf(SimpleGrantedAuthority("ROLE_STUDENT")))
+    val STUDENT_2 = User("student2", "", mutableListOf(SimpleGrantedAuthority("ROLE_STUDENT")))
+
+    companion object {
+        // the unzip of the submissions only starts when it's opened
+        val unzipGate = CountDownLatch(1)
+
+        // simulates a full unzip queue
+        @Volatile
+        var unzipQueueFull = false
+
+        @JvmStatic
+        fun unzipExecutor(): Executor {
+            return Executor { task ->
+                if (unzipQueueFull) {
+                    throw RejectedExecutionException("The unzip queue is full")
+                }
+                Thread {
+                    unzipGate.await()
+                    task.run()
+                }.start()
+            }
+        }
+    }
+
+    @Before
+    fun setup() {
+        File(dropProjectProperties.mavenizedProjects.rootLocation).mkdirs()
+
+        assignmentRepository.save(Assignment(id = "testJavaProj", name = "Test Project (for automatic tests)",
+            packageName = "org.dropProject.sampleAssignments.testProj", ownerUserId = "teacher1",
+            submissionMethod = SubmissionMethod.UPLOAD, active = true, gitRepositoryUrl = "git://dummy",
+            gitRepositoryFolder = "testJavaProj", gitCurrentHash = "somehash"))
+    }
+
+    @After
+    fun cleanup() {
+        File(dropProjectProperties.mavenizedProjects.rootLocation).deleteRecursively()
+        File(dropProjectProperties.storage.rootLocation).deleteRecursively()
+    }
+
+    @Test
+    @DirtiesContext
+    fun queuePositionOfSubmissionStillBeingUnzipped() {
+        // the submission is not queued yet, but the reply already estimates its position
+        testsHelper.uploadProject(this.mvc, "projectCompilationErrors", "testJavaProj", STUDENT_1,
+            authors = listOf("student1" to "Student 1"), expectedResultMatcher = jsonPath("$.queuePosition").value(1))
+        assertEquals(0, buildJobRepository.count())
+
+        unzipGate.countDown()
+        val deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(30)
+        while (buildJobRepository.count() == 0L && System.currentTimeMillis() < deadline) {
+            Thread.sleep(100)
+        }
+        assertEquals(1, buildJobRepository.count())
+
+        // there are no workers, so it waits in the queue
+        testsHelper.uploadProject(this.mvc, "projectCompilationErrors", "testJavaProj", STUDENT_2,
+            authors = listOf("student2" to "Student 2"), expectedResultMatcher = jsonPath("$.queuePosition").value(2))
+    }
+
+    @Test
+    @DirtiesContext
+    fun uploadRejectedWhenTheUnzipQueueIsFull() {
+        unzipQueueFull = true
+        try {
+            testsHelper.uploadProject(this.mvc, "projectCompilationErrors", "testJavaProj", STUDENT_1,
+                authors = listOf("student1" to "Student 1"),
+                expectedResultMatcher = ResultMatcher.matchAll(status().isServiceUnavailable,
+                    header().string("Retry-After", "30")))
+        } finally {
+            unzipQueueFull = false
+        }
+
+        assertEquals(listOf(SubmissionStatus.DELETED), submissionRepository.findAll().map { it.getStatus() })
+        assertEquals(0, buildJobRepository.count())
+    }
+}
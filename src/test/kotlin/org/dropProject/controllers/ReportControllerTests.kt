@@ -49,9 +49,11 @@ import org.dropproject.dao.*
 import org.dropproject.dao.Language
 import org.dropproject.data.*
 import org.dropproject.extensions.formatDefault
+import org.dropproject.forms.AssignmentForm
 import org.dropproject.forms.SubmissionMethod
 import org.dropproject.repository.*
 import org.dropproject.services.AssignmentService
+import org.dropproject.services.BuildReportCache
 import org.dropproject.services.PlagiarismComparison
 import org.dropproject.services.ZipService
 import org.hamcrest.MatcherAssert.assertThat
@@ -103,6 +105,9 @@ class ReportControllerTests {
     @Autowired
     private lateinit var assignmentService: AssignmentService
 
+    @Autowired
+    private lateinit var buildReportCache: BuildReportCache
+
     val defaultAssignmentId = "testJavaProj"
 
     val STUDENT_1 = User("student1", "", mutableListOf(SimpleGrantedAuthority("ROLE_STUDENT")))
@@ -635,6 +640,37 @@ class ReportControllerTests {
 
     }
 
+    @Test
+    @DirtiesContext
+    fun exportCSVAfterChangingTheMandatoryTests() {
+
+        val assignment = assignmentRepository.findById(defaultAssignmentId).get()
+        assignment.mandatoryTestsSuffix = "_OBG"
+        assignmentRepository.save(assignment)
+
+        val submissionId = testsHelper.uploadProject(this.mvc, "projectOK", defaultAssignmentId, STUDENT_1)
+        val submission = submissionRepository.findById(submissionId.toLong()).get()
+        submission.markedAsFinal = true
+        submissionRepository.save(submission)
+
+        fun exportCSV() = this.mvc.perform(get("/exportCSV/testJavaProj?ellapsed=false").with(user(TEACHER_1)))
+            .andExpect(status().isOk)
+            .andReturn().response.contentAsString
+
+        // no test ends with _OBG
+        assertThat(exportCSV(), containsString(";1;0;false\n"))
+
+        // edit the assignment, so that two of the (passing) teacher tests are mandatory
+        assignmentService.updateAssignment(assignment, AssignmentForm(assignmentId = assignment.id,
+            assignmentName = assignment.name, assignmentPackage = assignment.packageName, language = assignment.language,
+            submissionMethod = assignment.submissionMethod, acceptsStudentTests = assignment.acceptsStudentTests,
+            hiddenTestsVisibility = assignment.hiddenTestsVisibility, mandatoryTestsSuffix = "Testar"))
+        assignmentRepository.save(assignment)
+        buildReportCache.evictAssignment(assignment.id)
+
+        assertThat(exportCSV(), containsString(";1;2;false\n"))
+    }
+
     @Test
     @DirtiesContext
     fun exportCSVWithGitRepository() {
@@ -29,7 +29,9 @@ import org.dropproject.forms.SubmissionMethod
 import org.dropproject.repository.AssigneeRepository
 import org.dropproject.repository.AssignmentRepository
 import org.hamcrest.Matchers.*
+import org.json.JSONObject
 import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
 import org.junit.Before
 import org.junit.Test
 import org.junit.runner.RunWith
@@ -209,6 +211,31 @@ class StudentAPIControllerTests: APIControllerTests {
         //println(result.getResponse().getContentAsString());
     }
 
+    @Test
+    @DirtiesContext
+    fun `follow the status of a submission`() {
+
+        val token = generateToken("student1", mutableListOf(SimpleGrantedAuthority("ROLE_STUDENT")), mvc)
+
+        val submissionId = testsHelper.uploadProjectByAPI(this.mvc, "projectInvalidStructure1", "testJavaProj",
+            Pair("student1", token))
+
+        // it was validated right away, so the stream only has the final status
+        val content = this.mvc.perform(
+            get("/api/student/submissions/$submissionId/events")
+                .header("authorization", testsHelper.header("student1", token)))
+            .andExpect(request().asyncStarted())
+            .andReturn().response.contentAsString
+
+        val events = content.lines().filter { it.startsWith("data:") }
+        assertEquals(content, 1, events.size)
+        val event = JSONObject(events[0].removePrefix("data:"))
+        assertEquals("VALIDATED", event.getString("status"))
+        assertTrue(event.getBoolean("finished"))
+        assertEquals("PS", event.getJSONArray("summary").getJSONObject(0).getString("reportKey"))
+        assertEquals("NOK", event.getJSONArray("summary").getJSONObject(0).getString("reportValue"))
+    }
+
     @Test
     @DirtiesContext
     fun `upload a submission file with failing tests`() {
@@ -23,11 +23,14 @@ import junit.framework.TestCase.*
 import org.dropproject.TestsHelper
 import org.dropproject.dao.*
 import org.dropproject.data.BuildReport
+import org.dropproject.data.BulkRebuildProgress
 import org.dropproject.data.SubmissionInfo
 import org.dropproject.data.TestType
 import org.dropproject.forms.SubmissionMethod
 import org.dropproject.repository.*
+import org.dropproject.services.BulkRebuildService
 import org.dropproject.services.CooloffOverrideService
+import org.dropproject.services.JUnitMethodResultType
 import org.dropproject.services.ZipService
 import org.dropproject.storage.StorageService
 import org.hamcrest.CoreMatchers
@@ -93,6 +96,12 @@ class UploadControllerTests {
     @Autowired
     lateinit var jUnitReportRepository: JUnitReportRepository
 
+    @Autowired
+    lateinit var submissionTestResultRepository: SubmissionTestResultRepository
+
+    @Autowired
+    lateinit var submissionSummaryRepository: SubmissionSummaryRepository
+
     @Autowired
     lateinit var assignmentRepository: AssignmentRepository
 
@@ -117,6 +126,9 @@ class UploadControllerTests {
     @Autowired
     lateinit var cooloffOverrideService: CooloffOverrideService
 
+    @Autowired
+    lateinit var bulkRebuildService: BulkRebuildService
+
     val STUDENT_1 = User("student1", "", mutableListOf(SimpleGrantedAuthority("ROLE_STUDENT")))
     val STUDENT_2 = User("student2", "", mutableListOf(SimpleGrantedAuthority("ROLE_STUDENT")))
     val STUDENT_3 = User("student3", "", mutableListOf(SimpleGrantedAuthority("ROLE_STUDENT")))
@@ -465,6 +477,59 @@ class UploadControllerTests {
         }
     }
 
+    @Test
+    @DirtiesContext
+    fun uploadSameProjectTwiceReusesResult() {
+
+        val firstSubmissionId = testsHelper.uploadProject(this.mvc, "projectCompilationErrors", "testJavaProj", STUDENT_1)
+        val secondSubmissionId = testsHelper.uploadProject(this.mvc, "projectCompilationErrors", "testJavaProj", STUDENT_1)
+
+        val firstSubmission = submissionRepository.findById(firstSubmissionId.toLong()).get()
+        val secondSubmission = submissionRepository.findById(secondSubmissionId.toLong()).get()
+        assertNotNull(firstSubmission.sourcesFingerprint)
+        assertEquals(firstSubmission.sourcesFingerprint, secondSubmission.sourcesFingerprint)
+        assertNull(firstSubmission.reusedFromSubmissionId)
+        assertEquals(firstSubmission.id, secondSubmission.reusedFromSubmissionId)
+        assertEquals(SubmissionStatus.VALIDATED, secondSubmission.getStatus())
+        Assert.assertNotEquals(firstSubmission.buildReport!!.id, secondSubmission.buildReport!!.id)
+
+        val reportResult = this.mvc.perform(get("/buildReport/$secondSubmissionId").with(user(STUDENT_1)))
+                .andExpect(status().isOk)
+                .andReturn()
+
+        @Suppress("UNCHECKED_CAST")
+        val summary = reportResult.modelAndView!!.modelMap["summary"] as List<SubmissionReport>
+        assertEquals(2, summary.size)
+        assertEquals(Indicator.COMPILATION, summary[1].indicator)
+        assertEquals("NOK", summary[1].reportValue)
+
+        // the paths of the earlier submission were replaced
+        val buildResult = reportResult.modelAndView!!.modelMap["buildReport"] as BuildReport
+        assertThat(buildResult.compilationErrors,
+                CoreMatchers.hasItems("org/dropProject/sampleAssignments/testProj/Main.java:[3,8] class Sample is public, should be declared in a file named Sample.java"))
+
+        // a different project is built
+        val thirdSubmissionId = testsHelper.uploadProject(this.mvc, "projectOK", "testJavaProj", STUDENT_1)
+        assertNull(submissionRepository.findById(thirdSubmissionId.toLong()).get().reusedFromSubmissionId)
+    }
+
+    @Test
+    @DirtiesContext
+    fun uploadSameProjectByAnotherGroupMemberIsBuilt() {
+
+        // the tests receive the id of the submitter, so the result may be different
+        val authors = listOf("student1" to "Student 1", "student2" to "Student 2")
+        val firstSubmissionId = testsHelper.uploadProject(this.mvc, "projectCompilationErrors", "testJavaProj", STUDENT_1, authors)
+        val secondSubmissionId = testsHelper.uploadProject(this.mvc, "projectCompilationErrors", "testJavaProj", STUDENT_2, authors)
+
+        val firstSubmission = submissionRepository.findById(firstSubmissionId.toLong()).get()
+        val secondSubmission = submissionRepository.findById(secondSubmissionId.toLong()).get()
+        assertEquals(firstSubmission.group.id, secondSubmission.group.id)
+        assertEquals(firstSubmission.sourcesFingerprint, secondSubmission.sourcesFingerprint)
+        assertNull(secondSubmission.reusedFromSubmissionId)
+        assertEquals(SubmissionStatus.VALIDATED, secondSubmission.getStatus())
+    }
+
     @Test
     @DirtiesContext
     fun multipleSubmissionsIncrementsCounter() {
@@ -966,6 +1031,19 @@ class UploadControllerTests {
         )
         assertThat(expectedFileNames,
             Matchers.containsInAnyOrder(junitReportsFromDB[0].fileName, junitReportsFromDB[1].fileName))
+
+        // the result of each test is also stored
+        val testResultsFromDB = submissionTestResultRepository.findBySubmissionIdOrderById(submissionId.toLong())
+        assertEquals(4, testResultsFromDB.size)
+        assertEquals(2, testResultsFromDB.count { it.outcome == JUnitMethodResultType.FAILURE })
+        assertEquals(setOf("TestProject1", "TestProject2"), testResultsFromDB.map { it.testClassName }.toSet())
+
+        // and so is the summary of the report
+        val submissionSummary = submissionSummaryRepository.findById(submissionId.toLong()).get()
+        assertEquals(4, submissionSummary.teacherTests?.numTests)
+        assertEquals(2, submissionSummary.teacherTests?.progress)
+        assertNull(submissionSummary.hiddenTests)
+        assertEquals(buildResult.elapsedTimeJUnit(), submissionSummary.ellapsed())
     }
 
     @Test
@@ -1594,6 +1672,94 @@ class UploadControllerTests {
         assertEquals(SubmissionStatus.VALIDATED, updatedSubmission.getStatus())
     }
 
+    @Test
+    @DirtiesContext
+    fun rebuildReplacesTheTestResults() {
+        val submissionId = testsHelper.uploadProject(this.mvc, "projectJUnitErrors", "testJavaProj", STUDENT_1).toLong()
+
+        val junitReports = jUnitReportRepository.findBySubmissionId(submissionId).orEmpty()
+        val testResults = submissionTestResultRepository.findBySubmissionIdOrderById(submissionId)
+        assertTrue(junitReports.isNotEmpty())
+        assertTrue(testResults.isNotEmpty())
+
+        this.mvc.perform(post("/rebuild/$submissionId")
+                .with(user(TEACHER_1)))
+                .andExpect(status().isFound)
+
+        assertEquals(SubmissionStatus.VALIDATED, submissionRepository.findById(submissionId).get().getStatus())
+        assertEquals(junitReports.map { it.fileName }.sorted(),
+                jUnitReportRepository.findBySubmissionId(submissionId).orEmpty().map { it.fileName }.sorted())
+        assertEquals(testResults.map { it.fullMethodName to it.outcome },
+                submissionTestResultRepository.findBySubmissionIdOrderById(submissionId).map { it.fullMethodName to it.outcome })
+    }
+
+    @Test
+    @DirtiesContext
+    fun rebuildAll() {
+        testsHelper.uploadProject(this.mvc, "projectCompilationErrors", "testJavaProj", STUDENT_1)
+        testsHelper.uploadProject(this.mvc, "projectCompilationErrors", "testJavaProj", STUDENT_2,
+            listOf(Pair("student2", "Student 2")))
+
+        fun rebuildAllAndWait(): BulkRebuildProgress {
+            val result = this.mvc.perform(post("/assignment/rebuildAll/testJavaProj")
+                    .with(user(TEACHER_1)))
+                    .andExpect(status().isFound)
+                    .andReturn()
+            val taskId = result.response.getHeader("Location")!!.substringAfterLast("/")
+
+            val progress = bulkRebuildService.getProgress(taskId)!!
+            val deadline = System.currentTimeMillis() + 120_000
+            while (!progress.finished && System.currentTimeMillis() < deadline) {
+                Thread.sleep(200)
+            }
+            assertTrue(progress.finished)
+
+            this.mvc.perform(get("/assignment/rebuildAll-status/$taskId")
+                    .with(user(TEACHER_1)))
+                    .andExpect(status().isOk)
+                    .andExpect(view().name("rebuild-all-status"))
+
+            return progress
+        }
+
+        // nothing changed since the submissions were built
+        val progress1 = rebuildAllAndWait()
+        assertEquals(2, progress1.total)
+        assertEquals(2, progress1.skipped)
+        assertEquals(0, progress1.rebuilt)
+
+        // the assignment changed
+        val assignment = assignmentRepository.findById("testJavaProj").get()
+        assignment.gitCurrentHash = "someotherhash"
+        assignmentRepository.save(assignment)
+
+        val progress2 = rebuildAllAndWait()
+        assertEquals(2, progress2.total)
+        assertEquals(0, progress2.skipped)
+        assertEquals(2, progress2.rebuilt)
+        assertEquals(2, submissionRepository.findAll().count { it.getStatus() == SubmissionStatus.VALIDATED_REBUILT })
+
+        // the rebuilt submissions are up to date
+        val progress3 = rebuildAllAndWait()
+        assertEquals(2, progress3.skipped)
+        assertEquals(0, progress3.rebuilt)
+
+        // only teachers can rebuild all
+        this.mvc.perform(post("/assignment/rebuildAll/testJavaProj")
+                .with(user(STUDENT_1)))
+                .andExpect(status().isOk)
+                .andExpect(forwardedUrl("/access-denied.html"))
+
+        // other teachers can't see or cancel the rebuild
+        val otherTeacher = User("teacher2", "", mutableListOf(SimpleGrantedAuthority("ROLE_TEACHER")))
+        this.mvc.perform(get("/assignment/rebuildAll-status/${progress3.taskId}")
+                .with(user(otherTeacher)))
+                .andExpect(status().isForbidden)
+        this.mvc.perform(post("/assignment/rebuildAll-cancel/${progress3.taskId}")
+                .with(user(otherTeacher)))
+                .andExpect(status().isForbidden)
+    }
+
     @Test
     @DirtiesContext
     fun uploadAndDeleteOneSubmission() {
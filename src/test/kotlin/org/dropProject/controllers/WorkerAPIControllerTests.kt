@@ -0,0 +1,364 @@
+/*-
+ * ========================LICENSE_START=================================
+ * DropProject
+ * %%
+ * Copyright (C) 2019 - 2026 Pedro Alves
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package org.dropproject.controllers
+
+import com.fasterxml.jackson.databind.ObjectMapper
+import org.dropproject.TestsHelper
+import org.dropproject.config.DropProjectProperties
+import org.dropproject.dao.Assignment
+import org.dropproject.dao.Indicator
+import org.dropproject.dao.SubmissionStatus
+import org.dropproject.data.BuildExecution
+import org.dropproject.data.BuildReport
+import org.dropproject.data.MavenResult
+import org.dropproject.forms.SubmissionMethod
+import org.dropproject.repository.AssignmentRepository
+import org.dropproject.repository.BuildJobRepository
+import org.dropproject.repository.SubmissionReportRepository
+import org.dropproject.repository.SubmissionRepository
+import org.hamcrest.Matchers.containsString
+import org.hamcrest.Matchers.not
+import org.json.JSONObject
+import org.junit.After
+import org.junit.Assert.*
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc
+import org.springframework.boot.test.context.SpringBootTest
+import org.springframework.http.MediaType
+import org.springframework.security.core.authority.SimpleGrantedAuthority
+import org.springframework.security.core.userdetails.User
+import org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user
+import org.springframework.test.annotation.DirtiesContext
+import org.springframework.test.context.ActiveProfiles
+import org.springframework.test.context.TestPropertySource
+import org.springframework.test.context.junit4.SpringRunner
+import org.springframework.test.web.servlet.MockMvc
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post
+import org.springframework.test.web.servlet.result.MockMvcResultMatchers.content
+import org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath
+import org.springframework.test.web.servlet.result.MockMvcResultMatchers.request
+import org.springframework.test.web.servlet.result.MockMvcResultMatchers.status
+import java.io.ByteArrayInputStream
+import java.io.File
+import java.util.zip.ZipInputStream
+
+@RunWith(SpringRunner::class)
+@AutoConfigureMockMvc
+@SpringBootTest
+@TestPropertySource(locations = ["classpath:drop-project-test.properties"],
+    properties = ["drop-project.workers.remote-builds=true", "drop-project.workers.token=worker-secret",
+        "drop-project.build.throttle-queue-depth=2"])
+@ActiveProfiles("test")
+class WorkerAPIControllerTests {
+
+    @Autowired
+    lateinit var dropProjectProperties: DropProjectProperties
+
+    @Autowired
+    lateinit var mvc: MockMvc
+
+    @Autowired
+    lateinit var assignmentRepository: AssignmentRepository
+
+    @Autowired
+    lateinit var submissionRepository: SubmissionRepository
+
+    @Autowired
+    lateinit var buildJobRepository: BuildJobRepository
+
+    @Autowired
+    lateinit var submissionReportRepository: SubmissionReportRepository
+
+    @Autowired
+    lateinit var objectMapper: ObjectMapper
+
+    @Autowired
+    private lateinit var testsHelper: TestsHelper
+
+    val STUDENT_1 = User("student1", "", mutableListOf(SimpleGrantedAuthority("ROLE_STUDENT")))
+    val STUDENT_2 = User("student2", "", mutableListOf(SimpleGrantedAuthority("ROLE_STUDENT")))
+    val TEACHER_1 = User("teacher1", "", mutableListOf(SimpleGrantedAuthority("ROLE_TEACHER")))
+
+    @Before
+    fun setup() {
+        val folder = File(dropProjectProperties.mavenizedProjects.rootLocation)
+        if (folder.exists()) {
+            folder.deleteRecursively()
+        }
+        folder.mkdirs()
+
+        val assignment01 = Assignment(id = "testJavaProj", name = "Test Project (for automatic tests)",
+                packageName = "org.dropProject.sampleAssignments.testProj", ownerUserId = "teacher1",
+                submissionMethod = SubmissionMethod.UPLOAD, active = true, gitRepositoryUrl = "git://dummy",
+                gitRepositoryFolder = "testJavaProj", gitCurrentHash = "somehash")
+        assignmentRepository.save(assignment01)
+    }
+
+    @After
+    fun cleanup() {
+        val folder = File(dropProjectProperties.mavenizedProjects.rootLocation)
+        if (folder.exists()) {
+            folder.deleteRecursively()
+        }
+
+        val submissionsFolder = File(dropProjectProperties.storage.rootLocation)
+        if (submissionsFolder.exists()) {
+            submissionsFolder.deleteRecursively()
+        }
+    }
+
+    @Test
+    @DirtiesContext
+    fun rejectsWorkersWithoutToken() {
+        this.mvc.perform(post("/api/worker/jobs/claim").param("workerId", "w1"))
+            .andExpect(status().isForbidden)
+
+        this.mvc.perform(post("/api/worker/jobs/claim").param("workerId", "w1")
+            .header("Authorization", "Bearer wrong-secret"))
+            .andExpect(status().isForbidden)
+    }
+
+    @Test
+    @DirtiesContext
+    fun buildOnRemoteWorker() {
+        val submissionId = testsHelper.uploadProject(this.mvc, "projectCompilationErrors", "testJavaProj", STUDENT_1).toLong()
+
+        // the web node doesn't build it, it waits for a worker
+        assertEquals(SubmissionStatus.SUBMITTED, submissionRepository.getReferenceById(submissionId).getStatus())
+        assertEquals(1, buildJobRepository.count())
+
+        val claimResponse = this.mvc.perform(post("/api/worker/jobs/claim").param("workerId", "w1")
+            .header("Authorization", "Bearer worker-secret"))
+            .andExpect(status().isOk)
+            .andReturn().response.contentAsString
+        val claimJSON = JSONObject(claimResponse)
+        val jobId = claimJSON.getLong("jobId")
+        assertEquals(submissionId, claimJSON.getLong("submissionId"))
+        assertEquals("student1", claimJSON.getString("principalName"))
+
+        // nothing else to claim
+        this.mvc.perform(post("/api/worker/jobs/claim").param("workerId", "w2")
+            .header("Authorization", "Bearer worker-secret"))
+            .andExpect(status().isNoContent)
+
+        // only the owner can download the project
+        this.mvc.perform(get("/api/worker/jobs/${jobId}/project").param("workerId", "w2")
+            .header("Authorization", "Bearer worker-secret"))
+            .andExpect(status().isConflict)
+
+        val zipBytes = this.mvc.perform(get("/api/worker/jobs/${jobId}/project").param("workerId", "w1")
+            .header("Authorization", "Bearer worker-secret"))
+            .andExpect(status().isOk)
+            .andReturn().response.contentAsByteArray
+        val entries = mutableListOf<String>()
+        ZipInputStream(ByteArrayInputStream(zipBytes)).use { zip ->
+            generateSequence { zip.nextEntry }.forEach { entries.add(it.name) }
+        }
+        assertTrue(entries.toString(), entries.any { it.endsWith("pom.xml") })
+
+        // the temporary zip was removed once it was sent
+        val projectFolderName = File(buildJobRepository.findById(jobId).get().mavenizedProjectFolder).name
+        assertTrue(File(System.getProperty("java.io.tmpdir")).listFiles()!!
+            .none { it.name.startsWith(projectFolderName) && it.name.endsWith(".zip") })
+
+        this.mvc.perform(post("/api/worker/heartbeat").param("workerId", "w1")
+            .header("Authorization", "Bearer worker-secret"))
+            .andExpect(status().isOk)
+
+        // the worker sends back the result of the build
+        val buildExecution = BuildExecution(MavenResult(resultCode = 1, outputLines = listOf(
+            "[ERROR] COMPILATION ERROR : ",
+            "[ERROR] /some/path/src/main/java/org/dropProject/sampleAssignments/testProj/Main.java:[3,8] class, interface, or enum expected",
+            "[INFO] BUILD FAILURE")))
+        val resultJSON = objectMapper.writeValueAsString(buildExecution)
+
+        // ...but not the one who doesn't own it
+        this.mvc.perform(post("/api/worker/jobs/${jobId}/result").param("workerId", "w2")
+            .header("Authorization", "Bearer worker-secret")
+            .contentType(MediaType.APPLICATION_JSON).content(resultJSON))
+            .andExpect(status().isConflict)
+
+        this.mvc.perform(post("/api/worker/jobs/${jobId}/result").param("workerId", "w1")
+            .header("Authorization", "Bearer worker-secret")
+            .contentType(MediaType.APPLICATION_JSON).content(resultJSON))
+            .andExpect(status().isOk)
+
+        val submission = submissionRepository.getReferenceById(submissionId)
+        assertEquals(SubmissionStatus.VALIDATED, submission.getStatus())
+        assertNotNull(submission.buildReport)
+        assertEquals(0, buildJobRepository.count())
+
+        val reports = submissionReportRepository.findBySubmissionId(submissionId)
+        assertEquals("NOK", reports.first { it.reportKey == Indicator.COMPILATION.code }.reportValue)
+    }
+
+    @Test
+    @DirtiesContext
+    fun compilationErrorsOfRemoteWorkerAreShownLikeLocalOnes() {
+        val submissionId = testsHelper.uploadProject(this.mvc, "projectCompilationErrors", "testJavaProj", STUDENT_1).toLong()
+
+        val claimJSON = JSONObject(this.mvc.perform(post("/api/worker/jobs/claim").param("workerId", "w1")
+            .header("Authorization", "Bearer worker-secret"))
+            .andExpect(status().isOk)
+            .andReturn().response.contentAsString)
+
+        // the worker built the project in its own folder
+        val workerFolder = "/var/dp-worker/job-${claimJSON.getLong("jobId")}-w1/project"
+        val buildExecution = BuildExecution(MavenResult(resultCode = 1, outputLines = listOf(
+            "[ERROR] COMPILATION ERROR : ",
+            "[ERROR] ${workerFolder}/src/main/java/org/dropProject/sampleAssignments/testProj/Main.java:[3,8] class Sample is public, should be declared in a file named Sample.java",
+            "[ERROR] ${workerFolder}/src/test/java/org/dropProject/sampleAssignments/testProj/TestTeacherProject.java:[10,9] cannot find symbol",
+            "[INFO] BUILD FAILURE")), projectFolder = workerFolder)
+        this.mvc.perform(post("/api/worker/jobs/${claimJSON.getLong("jobId")}/result").param("workerId", "w1")
+            .header("Authorization", "Bearer worker-secret")
+            .contentType(MediaType.APPLICATION_JSON).content(objectMapper.writeValueAsString(buildExecution)))
+            .andExpect(status().isOk)
+
+        val reportResult = this.mvc.perform(get("/buildReport/${submissionId}").with(user(STUDENT_1)))
+            .andExpect(status().isOk)
+            .andReturn()
+
+        // the same errors as if it was built locally (see UploadControllerTests.uploadProjectDoesntCompile)
+        val buildResult = reportResult.modelAndView!!.modelMap["buildReport"] as BuildReport
+        assertEquals(listOf(
+            "org/dropProject/sampleAssignments/testProj/Main.java:[3,8] class Sample is public, should be declared in a file named Sample.java",
+            "[TEST] org/dropProject/sampleAssignments/testProj/TestTeacherProject.java:[10,9] cannot find symbol"),
+            buildResult.compilationErrors)
+    }
+
+    @Test
+    @DirtiesContext
+    fun identicalResubmissionIsntSentToWorkers() {
+        val firstSubmissionId = testsHelper.uploadProject(this.mvc, "projectCompilationErrors", "testJavaProj", STUDENT_1).toLong()
+
+        val claimJSON = JSONObject(this.mvc.perform(post("/api/worker/jobs/claim").param("workerId", "w1")
+            .header("Authorization", "Bearer worker-secret"))
+            .andExpect(status().isOk)
+            .andReturn().response.contentAsString)
+        val buildExecution = BuildExecution(MavenResult(resultCode = 1, outputLines = listOf(
+            "[ERROR] COMPILATION ERROR : ",
+            "[ERROR] /some/path/src/main/java/org/dropProject/sampleAssignments/testProj/Main.java:[3,8] class, interface, or enum expected",
+            "[INFO] BUILD FAILURE")))
+        this.mvc.perform(post("/api/worker/jobs/${claimJSON.getLong("jobId")}/result").param("workerId", "w1")
+            .header("Authorization", "Bearer worker-secret")
+            .contentType(MediaType.APPLICATION_JSON).content(objectMapper.writeValueAsString(buildExecution)))
+            .andExpect(status().isOk)
+
+        // the result of the same files is reused when a worker asks for a build, without giving it to the worker
+        val secondSubmissionId = testsHelper.uploadProject(this.mvc, "projectCompilationErrors", "testJavaProj", STUDENT_1).toLong()
+        assertEquals(SubmissionStatus.SUBMITTED, submissionRepository.getReferenceById(secondSubmissionId).getStatus())
+
+        this.mvc.perform(post("/api/worker/jobs/claim").param("workerId", "w1")
+            .header("Authorization", "Bearer worker-secret"))
+            .andExpect(status().isNoContent)
+
+        val secondSubmission = submissionRepository.getReferenceById(secondSubmissionId)
+        assertEquals(SubmissionStatus.VALIDATED, secondSubmission.getStatus())
+        assertEquals(firstSubmissionId, secondSubmission.reusedFromSubmissionId)
+        assertEquals(0, buildJobRepository.count())
+    }
+
+    @Test
+    @DirtiesContext
+    fun throttleStudentsWhenTheQueueIsFull() {
+        // since there are no workers, the builds pile up in the queue
+        testsHelper.uploadProject(this.mvc, "projectCompilationErrors", "testJavaProj", STUDENT_1,
+            authors = listOf("student1" to "Student 1"), expectedResultMatcher = jsonPath("$.queuePosition").value(1))
+        testsHelper.uploadProject(this.mvc, "projectCompilationErrors", "testJavaProj", STUDENT_2,
+            authors = listOf("student2" to "Student 2"), expectedResultMatcher = jsonPath("$.queuePosition").value(2))
+
+        // the queue reached drop-project.build.throttle-queue-depth, so student1 has to wait before submitting again
+        val error = testsHelper.uploadProject(this.mvc, "projectCompilationErrors", "testJavaProj", STUDENT_1,
+            authors = listOf("student1" to "Student 1"), expectedResultMatcher = status().isTooManyRequests)
+        assertTrue(error, error.startsWith("The build queue is full (2 submissions waiting)"))
+        assertEquals(2, buildJobRepository.count())
+
+        // teachers are not throttled
+        testsHelper.uploadProject(this.mvc, "projectCompilationErrors", "testJavaProj", TEACHER_1,
+            authors = listOf("teacher1" to "Teacher 1"), expectedResultMatcher = jsonPath("$.queuePosition").value(3))
+    }
+
+    @Test
+    @DirtiesContext
+    fun followSubmissionBuiltOnRemoteWorker() {
+        val submissionId = testsHelper.uploadProject(this.mvc, "projectCompilationErrors", "testJavaProj", STUDENT_1).toLong()
+
+        // the build report page follows it instead of refreshing
+        this.mvc.perform(get("/buildReport/${submissionId}").with(user(STUDENT_1)))
+            .andExpect(status().isOk)
+            .andExpect(content().string(containsString("new EventSource(")))
+            .andExpect(content().string(not(containsString("http-equiv=\"refresh\""))))
+
+        // only the group elements can follow it
+        this.mvc.perform(get("/buildReport/${submissionId}/events")
+            .with(user(User("student3", "", mutableListOf(SimpleGrantedAuthority("ROLE_STUDENT"))))))
+            .andExpect(status().isForbidden)
+
+        val eventsResult = this.mvc.perform(get("/buildReport/${submissionId}/events").with(user(STUDENT_1)))
+            .andExpect(request().asyncStarted())
+            .andReturn()
+        val events = { eventsResult.response.contentAsString.lines().filter { it.startsWith("data:") }
+            .map { JSONObject(it.removePrefix("data:")) } }
+
+        // the current status is sent right away
+        assertEquals(1, events().size)
+        assertEquals("SUBMITTED", events()[0].getString("status"))
+        assertEquals(1, events()[0].getInt("queuePosition"))
+        assertFalse(events()[0].getBoolean("finished"))
+
+        val claimJSON = JSONObject(this.mvc.perform(post("/api/worker/jobs/claim").param("workerId", "w1")
+            .header("Authorization", "Bearer worker-secret"))
+            .andExpect(status().isOk)
+            .andReturn().response.contentAsString)
+
+        // the build is running
+        assertEquals(2, events().size)
+        assertEquals(0, events()[1].getInt("queuePosition"))
+
+        val buildExecution = BuildExecution(MavenResult(resultCode = 1, outputLines = listOf(
+            "[ERROR] COMPILATION ERROR : ",
+            "[ERROR] /some/path/src/main/java/org/dropProject/sampleAssignments/testProj/Main.java:[3,8] class, interface, or enum expected",
+            "[INFO] BUILD FAILURE")))
+        this.mvc.perform(post("/api/worker/jobs/${claimJSON.getLong("jobId")}/result").param("workerId", "w1")
+            .header("Authorization", "Bearer worker-secret")
+            .contentType(MediaType.APPLICATION_JSON).content(objectMapper.writeValueAsString(buildExecution)))
+            .andExpect(status().isOk)
+
+        // the final status includes the summary
+        assertEquals(3, events().size)
+        val lastEvent = events()[2]
+        assertEquals("VALIDATED", lastEvent.getString("status"))
+        assertTrue(lastEvent.getBoolean("finished"))
+        val summary = lastEvent.getJSONArray("summary")
+        assertTrue((0 until summary.length()).any {
+            summary.getJSONObject(it).getString("reportKey") == "C" && summary.getJSONObject(it).getString("reportValue") == "NOK"
+        })
+
+        // following a finished submission just sends its status
+        val finishedResult = this.mvc.perform(get("/buildReport/${submissionId}/events").with(user(STUDENT_1)))
+            .andExpect(request().asyncStarted())
+            .andReturn()
+        assertTrue(finishedResult.response.contentAsString.contains("\"finished\":true"))
+    }
+}
@@ -0,0 +1,112 @@
+/*-
+ * ========================LICENSE_START=================================
+ * DropProject
+ * %%
+ * Copyright (C) 2019 - 2026 Pedro Alves
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package org.dropproject.data
+
+import com.fasterxml.jackson.module.kotlin.jacksonObjectMapper
+import com.fasterxml.jackson.module.kotlin.readValue
+import org.dropproject.dao.Language
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Assume.assumeTrue
+import org.junit.Test
+import java.io.File
+
+class TestMavenOutputParser {
+
+    private val sampleMavenOutputs = File("src/test/sampleMavenOutputs").listFiles()!!.sortedBy { it.name }
+
+    private fun mavenizedProjectFolder(mavenOutputLines: List<String>) =
+        mavenOutputLines.firstNotNullOfOrNull { "(/\\S+?)/src/(main|test)/".toRegex().find(it)?.groupValues?.get(1) }
+            ?: "/srv/drop-project/mavenized-projects/dummy-mavenized"
+
+    /**
+     * Checks the result of parsing some maven output against the expected result, stored in
+     * src/test/sampleParsedMavenOutputs. The expected results were produced with the previous implementation (each
+     * kind of problem with its own pass through the output), so these also check that nothing changed.
+     */
+    private fun assertSameAsExpected(name: String, mavenOutputLines: List<String>) {
+        val mavenizedProjectFolder = mavenizedProjectFolder(mavenOutputLines)
+        for (language in Language.values()) {
+            val expectedFile = File("src/test/sampleParsedMavenOutputs/${name}.${language.name.lowercase()}.json")
+            val expected = jacksonObjectMapper().readValue<ParsedMavenOutput>(expectedFile)
+
+            assertEquals("$name ($language)", expected,
+                MavenOutputParser.parse(language, mavenizedProjectFolder, mavenOutputLines))
+        }
+    }
+
+    @Test
+    fun testSampleOutputs() {
+        for (sample in sampleMavenOutputs) {
+            assertSameAsExpected(sample.nameWithoutExtension, sample.readLines())
+        }
+    }
+
+    @Test
+    fun testAllSamplesTogether() {
+        // all the samples, one after the other (e.g., only the first compilation block counts)
+        assertSameAsExpected("allSamples", sampleMavenOutputs.flatMap { it.readLines() })
+    }
+
+    @Test
+    fun testLineByLine() {
+        val mavenOutputLines = File("src/test/sampleMavenOutputs/compilerError1.txt").readLines()
+        val mavenizedProjectFolder = mavenizedProjectFolder(mavenOutputLines)
+
+        val parser = MavenOutputParser(Language.JAVA, mavenizedProjectFolder)
+        mavenOutputLines.forEach { parser.accept(it) }
+
+        val parsed = parser.result()
+        assertEquals(MavenOutputParser.parse(Language.JAVA, mavenizedProjectFolder, mavenOutputLines), parsed)
+        assertEquals(false, parsed.compilationErrors.isEmpty())
+    }
+
+    /**
+     * Only runs with -Ddp.parserTiming=true, since it depends on the machine. Each time is the median of 51 runs, after
+     * 50 warm-up runs. The limits are the times of the previous implementation (one pass through the output for each
+     * kind of problem), measured the same way with JDK 17.
+     */
+    @Test
+    fun testParsingTime() {
+        assumeTrue(System.getProperty("dp.parserTiming") == "true")
+
+        fun medianMillis(mavenOutputLines: List<String>): Double {
+            val mavenizedProjectFolder = mavenizedProjectFolder(mavenOutputLines)
+            repeat(50) { MavenOutputParser.parse(Language.JAVA, mavenizedProjectFolder, mavenOutputLines) }
+            val times = (1..51).map {
+                val start = System.nanoTime()
+                MavenOutputParser.parse(Language.JAVA, mavenizedProjectFolder, mavenOutputLines)
+                (System.nanoTime() - start) / 1_000_000.0
+            }
+            return times.sorted()[times.size / 2]
+        }
+
+        val junitErrors = File("src/test/sampleMavenOutputs/junitErrors1.txt").readLines()
+        val junitErrorsMillis = medianMillis((1..1000).flatMap { junitErrors })
+        println("junitErrors1.txt x 1000: ${junitErrorsMillis} ms (previous implementation: 31 ms)")
+
+        val allSamples = sampleMavenOutputs.flatMap { it.readLines() }
+        val allSamplesMillis = medianMillis((1..100).flatMap { allSamples })
+        println("all samples x 100: ${allSamplesMillis} ms (previous implementation: 12.5 ms)")
+
+        assertTrue(junitErrorsMillis < 31)
+        assertTrue(allSamplesMillis < 12.5)
+    }
+}
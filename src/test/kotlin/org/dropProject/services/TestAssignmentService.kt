@@ -19,30 +19,49 @@
  */
 package org.dropproject.services
 
-import junit.framework.TestCase.assertEquals
+import com.fasterxml.jackson.databind.ObjectMapper
+import com.fasterxml.jackson.module.kotlin.KotlinModule
+import junit.framework.TestCase.*
 import org.dropproject.dao.Assignment
 import org.dropproject.dao.Language
 import org.dropproject.forms.AssignmentForm
 import org.dropproject.forms.SubmissionMethod
+import org.dropproject.repository.AssignmentRepository
+import org.dropproject.repository.JUnitReportRepository
+import org.dropproject.repository.SubmissionRepository
 import org.junit.Test
 import org.junit.runner.RunWith
 import org.springframework.beans.factory.annotation.Autowired
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc
 import org.springframework.boot.test.context.SpringBootTest
+import org.springframework.test.annotation.DirtiesContext
 import org.springframework.test.context.ActiveProfiles
 import org.springframework.test.context.TestPropertySource
 import org.springframework.test.context.junit4.SpringRunner
+import java.io.File
+import java.util.zip.ZipFile
 
 @RunWith(SpringRunner::class)
 @AutoConfigureMockMvc
 @SpringBootTest
-@TestPropertySource(locations = ["classpath:drop-project-test.properties"])
+// uses its own database so that dropping the schema when a dirtied context closes doesn't affect the other test classes
+@TestPropertySource(locations = ["classpath:drop-project-test.properties"],
+        properties = ["spring.datasource.url=jdbc:h2:mem:assignmentServiceTests;MODE=LEGACY"])
 @ActiveProfiles("test")
 class AssignmentServiceTests() {
 
     @Autowired
     private lateinit var assignmentService: AssignmentService
 
+    @Autowired
+    private lateinit var assignmentRepository: AssignmentRepository
+
+    @Autowired
+    private lateinit var submissionRepository: SubmissionRepository
+
+    @Autowired
+    private lateinit var jUnitReportRepository: JUnitReportRepository
+
     @Test
     fun testUpdateAssignment() {
         val assignment01 = Assignment(id = "testJavaProj", name = "Test Project (for automatic tests)",
@@ -66,4 +85,33 @@ class AssignmentServiceTests() {
 
     }
 
+    @Test
+    @DirtiesContext
+    fun testImportedReportsAreCompressed() {
+        assignmentRepository.save(Assignment(id = "dummyAssignment1", name = "Dummy Assignment",
+                packageName = "org.dropProject.samples", ownerUserId = "teacher1",
+                submissionMethod = SubmissionMethod.UPLOAD, language = Language.JAVA,
+                gitRepositoryUrl = "git://dummyRepo", gitRepositoryFolder = "dummyAssignment1"))
+
+        val submissionsJSONFile = File.createTempFile("submissions", ".json")
+        try {
+            ZipFile("src/test/sampleExports/export-assignment-and-submissions.dp").use { zip ->
+                zip.getInputStream(zip.getEntry("submissions.json")).use { input ->
+                    submissionsJSONFile.outputStream().use { input.copyTo(it) }
+                }
+            }
+
+            val mapper = ObjectMapper().registerModule(KotlinModule.Builder().build())
+            assertNull(assignmentService.importSubmissionsFromImportedFile(mapper, submissionsJSONFile))
+        } finally {
+            submissionsJSONFile.delete()
+        }
+
+        val builtSubmission = submissionRepository.findByAssignmentId("dummyAssignment1").single { it.buildReport != null }
+        assertNotNull(builtSubmission.buildReport!!.compressedBuildReport)
+        val junitReports = jUnitReportRepository.findBySubmissionId(builtSubmission.id).orEmpty()
+        assertEquals(2, junitReports.size)
+        assertTrue(junitReports.all { it.compressedXmlReport != null })
+    }
+
 }
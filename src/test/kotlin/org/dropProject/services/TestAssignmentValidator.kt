@@ -20,6 +20,7 @@
 package org.dropproject.services
 
 import org.dropproject.dao.Assignment
+import org.dropproject.dao.BuildEngine
 import org.dropproject.dao.TestVisibility
 import org.dropproject.forms.SubmissionMethod
 import org.junit.Assert.assertEquals
@@ -165,6 +166,17 @@ class TestAssignmentValidator {
         it.message == "You are using an outdated version of checkstyle."})
     }
 
+    @Test
+    fun `Test testJavaProjWithWrongCheckstyleVersion with the fast build engine`() {
+
+        val assignmentFolder = resourceLoader.getResource("file:${sampleAssignmentsRootFolder}/testJavaProjWithWrongCheckstyleVersion").file
+        dummyAssignment.buildEngine = BuildEngine.FAST
+        assignmentValidator.validate(assignmentFolder, dummyAssignment)
+        val report = assignmentValidator.report
+        assertTrue(report.any { it.type == AssignmentValidator.InfoType.WARNING &&
+                it.message == "The fast build engine doesn't run checkstyle."})
+    }
+
     @Test
     fun `Test testJavaProjJUnit5`() {
 
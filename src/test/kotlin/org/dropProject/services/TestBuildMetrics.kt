@@ -0,0 +1,106 @@
+/*-
+ * ========================LICENSE_START=================================
+ * DropProject
+ * %%
+ * Copyright (C) 2019 - 2026 Pedro Alves
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package org.dropproject.services
+
+import org.dropproject.data.PipelineStage
+import org.junit.Assert.*
+import org.junit.Test
+
+class TestBuildMetrics {
+
+    private val buildMetrics = BuildMetrics()
+
+    @Test
+    fun testTime() {
+        assertEquals(42, buildMetrics.time(PipelineStage.BUILD, "a1", { if (it > 0) "positive" else "other" }) { 42 })
+        assertEquals(1, buildMetrics.time(PipelineStage.BUILD, "a1", { if (it > 0) "positive" else "other" }) { 1 })
+        try {
+            buildMetrics.time(PipelineStage.BUILD, "a1") { throw IllegalStateException("failed") }
+            fail("The exception should be thrown")
+        } catch (e: IllegalStateException) {
+            // expected
+        }
+
+        val timers = buildMetrics.timers()
+        assertEquals(listOf("error", "positive"), timers.map { it.outcome })
+        assertEquals(listOf(1L, 2L), timers.map { it.count })
+        assertTrue(timers.all { it.stage == PipelineStage.BUILD && it.assignmentId == "a1" })
+        assertTrue(timers.all { it.maxNanos <= it.totalNanos })
+    }
+
+    @Test
+    fun testFinishedBuilds() {
+        val now = System.currentTimeMillis()
+        buildMetrics.recordFinishedBuild("a1", 90_000, now - 2 * BuildMetrics.ONE_HOUR)  // too old
+        buildMetrics.recordFinishedBuild("a1", 10_000, now - 30 * BuildMetrics.ONE_MINUTE)
+        (1..19).forEach { buildMetrics.recordFinishedBuild("a1", 20_000, now - 2 * BuildMetrics.ONE_MINUTE) }
+        buildMetrics.recordFinishedBuild("a1", 60_000, now - 1000)
+        buildMetrics.recordFinishedBuild("a2", 5_000, now - 1000)
+
+        assertEquals(2, buildMetrics.finishedBuildsSince(BuildMetrics.ONE_MINUTE, now))
+        assertEquals(22, buildMetrics.finishedBuildsSince(BuildMetrics.ONE_HOUR, now))
+
+        val latencies = buildMetrics.latencies(now)
+        assertEquals(listOf("a1", "a2"), latencies.map { it.assignmentId })
+        assertEquals(21, latencies[0].builds)
+        assertEquals(20, latencies[0].p50Seconds)
+        assertEquals(20, latencies[0].p95Seconds)
+        assertEquals(5, latencies[1].p50Seconds)
+        assertEquals(5, latencies[1].p95Seconds)
+
+        // an hour later, they're all gone
+        assertTrue(buildMetrics.latencies(now + BuildMetrics.ONE_HOUR).isEmpty())
+    }
+
+    @Test
+    fun testEstimatedSeconds() {
+        val now = System.currentTimeMillis()
+        assertNull(buildMetrics.estimatedSeconds(3, now))
+
+        // without recent builds, it's assumed that there's one build at a time
+        buildMetrics.record(PipelineStage.BUILD, "a1", "success", 20_000_000_000)
+        buildMetrics.record(PipelineStage.BUILD, "a2", "timeout", 40_000_000_000)
+        assertEquals(30L, buildMetrics.estimatedSeconds(0, now))
+        assertEquals(120L, buildMetrics.estimatedSeconds(3, now))
+
+        // 60 builds in the last 10 minutes, i.e., one build every 10 seconds
+        (1..60).forEach { buildMetrics.recordFinishedBuild("a1", 30_000, now - 1000) }
+        assertEquals(30L + 50L, buildMetrics.estimatedSeconds(5, now))
+    }
+
+    @Test
+    fun testPrometheusText() {
+        buildMetrics.record(PipelineStage.QUEUE_WAIT, "a\"1", "local", 500_000_000)
+        buildMetrics.record(PipelineStage.UNZIP, "a1", "success", 1_500_000_000)
+
+        assertEquals("""
+            # HELP dp_pipeline_stage_seconds Time spent in each stage of the submissions
+            # TYPE dp_pipeline_stage_seconds summary
+            dp_pipeline_stage_seconds_count{stage="unzip",assignment="a1",outcome="success"} 1
+            dp_pipeline_stage_seconds_sum{stage="unzip",assignment="a1",outcome="success"} 1.5
+            dp_pipeline_stage_seconds_count{stage="queue_wait",assignment="a\"1",outcome="local"} 1
+            dp_pipeline_stage_seconds_sum{stage="queue_wait",assignment="a\"1",outcome="local"} 0.5
+            # HELP dp_pipeline_stage_seconds_max Longest execution of each stage of the submissions
+            # TYPE dp_pipeline_stage_seconds_max gauge
+            dp_pipeline_stage_seconds_max{stage="unzip",assignment="a1",outcome="success"} 1.5
+            dp_pipeline_stage_seconds_max{stage="queue_wait",assignment="a\"1",outcome="local"} 0.5
+            """.trimIndent() + "\n", buildMetrics.prometheusText())
+    }
+}
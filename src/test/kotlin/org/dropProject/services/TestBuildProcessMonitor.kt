@@ -0,0 +1,242 @@
+/*-
+ * ========================LICENSE_START=================================
+ * DropProject
+ * %%
+ * Copyright (C) 2019 - 2026 Pedro Alves
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package org.dropproject.services
+
+import org.dropproject.data.BuildKillReason
+import org.junit.After
+import org.junit.Assert.*
+import org.junit.Test
+import java.io.File
+import java.nio.file.Files
+import java.util.Collections
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.CancellationException
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicReference
+
+class TestBuildProcessMonitor {
+
+    private val folder = Files.createTempDirectory("dp-monitor").toFile()
+    private val otherFolder = File(folder.absolutePath + "-other").also { it.mkdirs() }
+
+    @After
+    fun cleanup() {
+        folder.deleteRecursively()
+        otherFolder.deleteRecursively()
+    }
+
+    // mimics the way maven is launched by the invoker: a shell that changes to the project folder and forks processes
+    private fun startFakeBuild(projectFolder: File): Process {
+        return ProcessBuilder("/bin/sh", "-c", "cd '${projectFolder.absolutePath}' && (sleep 60 & sleep 60)").start()
+    }
+
+    @Test
+    fun testKillsTheWholeProcessTree() {
+        val monitor = BuildProcessMonitor()
+        val otherBuild = startFakeBuild(otherFolder)
+        val process = startFakeBuild(folder)
+        try {
+            val runningBuild = monitor.register(folder, 1L)
+            Thread.sleep(300)  // let the shell fork its children
+
+            val descendants = process.toHandle().descendants().toList()
+            assertFalse(descendants.isEmpty())
+            assertEquals(listOf(runningBuild), monitor.runningBuilds())
+            assertEquals(process.pid(), runningBuild.pid)
+
+            assertTrue(monitor.abort(1L))
+            assertFalse(monitor.abort(2L))
+
+            assertTrue(process.waitFor(5, TimeUnit.SECONDS))
+            descendants.forEach { it.onExit().get(5, TimeUnit.SECONDS) }
+            assertEquals(BuildKillReason.ABORTED, runningBuild.killedBy)
+
+            // the build of another folder (whose path starts with the same characters) was not affected
+            assertTrue(otherBuild.isAlive)
+
+            monitor.unregister(runningBuild)
+            assertTrue(monitor.runningBuilds().isEmpty())
+        } finally {
+            (otherBuild.toHandle().descendants().toList() + otherBuild.toHandle()).forEach { it.destroyForcibly() }
+            process.destroyForcibly()
+        }
+    }
+
+    @Test
+    fun testKillsTheDaemonThatRanTheBuild() {
+        val monitor = BuildProcessMonitor()
+
+        // with mvnd, maven only runs a client and the tests are forked by the daemon, which is not its descendant.
+        // The folder is passed to the fake daemon in the environment, so that only the fork has it in its command line
+        val client = ProcessBuilder("/bin/sh", "-c", "cd '${folder.absolutePath}' && sleep 60").start()
+        val daemonBuilder = ProcessBuilder("/bin/sh", "-c", "sh -c \"cd '\$DP_FOLDER' && sleep 60\" & wait", "fake-mvnd-daemon")
+        daemonBuilder.environment()["DP_FOLDER"] = folder.absolutePath
+        val daemon = daemonBuilder.start()
+        val otherDaemon = ProcessBuilder("/bin/sh", "-c", "sleep 60", "other-mvnd-daemon").start()
+        try {
+            val runningBuild = monitor.register(folder, 1L)
+            Thread.sleep(300)
+
+            val fork = daemon.toHandle().descendants().toList()
+            assertFalse(fork.isEmpty())
+
+            assertTrue(monitor.abort(1L))
+
+            assertTrue(client.waitFor(5, TimeUnit.SECONDS))
+            assertTrue(daemon.waitFor(5, TimeUnit.SECONDS))
+            fork.forEach { it.onExit().get(5, TimeUnit.SECONDS) }
+
+            // the daemons that didn't run the build were not affected
+            assertTrue(otherDaemon.isAlive)
+            monitor.unregister(runningBuild)
+        } finally {
+            listOf(client, daemon, otherDaemon).forEach { process ->
+                (process.toHandle().descendants().toList() + process.toHandle()).forEach { it.destroyForcibly() }
+            }
+        }
+    }
+
+    @Test
+    fun testResourceUsage() {
+        val monitor = BuildProcessMonitor()
+        val process = startFakeBuild(folder)
+        try {
+            val runningBuild = monitor.register(folder, 1L)
+            Thread.sleep(300)
+
+            val usage = monitor.resourceUsage(runningBuild)
+            assertNotNull(usage)
+            assertTrue(usage!!.cpuSeconds == null || usage.cpuSeconds!! >= 0.0)
+            if (File("/proc/${process.pid()}/status").exists()) {
+                assertTrue(usage.memoryMb!! >= 0)
+            }
+
+            // the processes of builds of other folders are not found
+            assertNull(monitor.resourceUsage(monitor.register(otherFolder, 2L)))
+        } finally {
+            (process.toHandle().descendants().toList() + process.toHandle()).forEach { it.destroyForcibly() }
+        }
+    }
+
+    @Test
+    fun testTimeoutKillsTheBuildsOfTheTask() {
+        val monitor = BuildProcessMonitor()
+        val scheduler = CancellableTaskScheduler(500) { thread -> monitor.killBuildsOfThread(thread) }
+        scheduler.initialize()
+
+        val buildStarted = CountDownLatch(1)
+        var exitCode = -1
+        var killedBy: BuildKillReason? = null
+        try {
+            val future = scheduler.submit(Runnable {
+                val runningBuild = monitor.register(folder, null)
+                val process = startFakeBuild(folder)
+                buildStarted.countDown()
+                try {
+                    exitCode = process.waitFor()
+                } catch (e: InterruptedException) {
+                    // the thread is also interrupted, but the process was already killed
+                    exitCode = if (process.waitFor(5, TimeUnit.SECONDS)) process.exitValue() else -1
+                }
+                killedBy = runningBuild.killedBy
+                monitor.unregister(runningBuild)
+            })
+
+            assertTrue(buildStarted.await(5, TimeUnit.SECONDS))
+            try {
+                future.get(5, TimeUnit.SECONDS)
+            } catch (e: CancellationException) {
+                // killing the processes usually ends the task before it is cancelled, but it may not
+            }
+
+            // wait for the task to finish
+            val deadline = System.currentTimeMillis() + 5000
+            while (monitor.runningBuilds().isNotEmpty() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(50)
+            }
+            assertTrue(monitor.runningBuilds().isEmpty())
+            assertEquals(BuildKillReason.TIMEOUT, killedBy)
+            assertNotEquals(0, exitCode)
+        } finally {
+            scheduler.shutdown()
+        }
+    }
+
+    @Test
+    fun testTasksThatFinishDontTimeout() {
+        val timedOut = mutableListOf<Thread>()
+        val scheduler = CancellableTaskScheduler(300) { thread -> timedOut.add(thread) }
+        scheduler.initialize()
+        try {
+            val future = scheduler.submit(Runnable { Thread.sleep(50) })
+            future.get(5, TimeUnit.SECONDS)
+            Thread.sleep(500)
+            assertTrue(timedOut.isEmpty())
+            assertFalse(future.isCancelled)
+        } finally {
+            scheduler.shutdown()
+        }
+    }
+
+    @Test
+    fun testTimeoutDoesntAffectTheNextTaskOfTheThread() {
+        val runningTask = AtomicReference<String>()
+        val killedTasks = Collections.synchronizedList(mutableListOf<String>())
+        val scheduler = CancellableTaskScheduler(200) { _ ->
+            Thread.sleep(200)  // e.g., finding the processes to kill takes a while
+            killedTasks.add(runningTask.get())
+        }
+        scheduler.poolSize = 1
+        scheduler.initialize()
+        try {
+            // it finishes while its timeout is being handled...
+            val task = scheduler.submit(Runnable {
+                runningTask.set("task")
+                val end = System.currentTimeMillis() + 250
+                while (System.currentTimeMillis() < end) {
+                    Thread.onSpinWait()
+                }
+            })
+
+            // ...so the next task, which runs on the same thread, must not be killed nor interrupted
+            var interrupted = false
+            val nextTask = scheduler.submit(Runnable {
+                runningTask.set("nextTask")
+                try {
+                    Thread.sleep(100)
+                } catch (e: InterruptedException) {
+                    interrupted = true
+                }
+            })
+
+            try {
+                task.get(5, TimeUnit.SECONDS)
+            } catch (e: CancellationException) {
+                // it was still running when it timed out
+            }
+            nextTask.get(5, TimeUnit.SECONDS)
+
+            assertEquals(listOf("task"), killedTasks.toList())
+            assertFalse(interrupted)
+        } finally {
+            scheduler.shutdown()
+        }
+    }
+}
@@ -0,0 +1,120 @@
+/*-
+ * ========================LICENSE_START=================================
+ * DropProject
+ * %%
+ * Copyright (C) 2019 - 2026 Pedro Alves
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package org.dropproject.services
+
+import org.dropproject.config.DropProjectProperties
+import org.dropproject.dao.*
+import org.dropproject.data.BuildReport
+import org.dropproject.forms.SubmissionMethod
+import org.junit.Assert.*
+import org.junit.Test
+import java.util.*
+
+class TestBuildReportCache {
+
+    private val assignment = Assignment(id = "dummy", name = "", gitRepositoryUrl = "",
+            gitRepositoryFolder = "", ownerUserId = "p4997", submissionMethod = SubmissionMethod.UPLOAD,
+            packageName = "org.dropProject.samples")
+
+    private fun cache(size: Int) =
+        BuildReportCache(DropProjectProperties(build = DropProjectProperties.Build(reportCacheSize = size)))
+
+    private fun submission(id: Long, status: SubmissionStatus, assignmentId: String = "dummy") =
+        Submission(id = id, submissionDate = Date(), submitterUserId = "student1", status = status.code,
+            statusDate = Date(), assignmentId = assignmentId, assignmentGitHash = null)
+
+    private var builds = 0
+
+    private fun build(): BuildReport {
+        builds++
+        return BuildReport(listOf("[INFO] BUILD SUCCESS"), "", assignment, emptyList(), emptyList())
+    }
+
+    @Test
+    fun testHitsAndMisses() {
+        val cache = cache(10)
+
+        val report = cache.get(submission(1, SubmissionStatus.VALIDATED)) { build() }
+        assertSame(report, cache.get(submission(1, SubmissionStatus.VALIDATED)) { build() })
+        assertEquals(1, builds)
+
+        // the report of a rebuilt submission is another one
+        assertNotSame(report, cache.get(submission(1, SubmissionStatus.VALIDATED_REBUILT)) { build() })
+        assertEquals(2, builds)
+
+        // submissions that are still being built aren't cached
+        cache.get(submission(2, SubmissionStatus.SUBMITTED_FOR_REBUILD)) { build() }
+        cache.get(submission(2, SubmissionStatus.SUBMITTED_FOR_REBUILD)) { build() }
+        assertEquals(4, builds)
+
+        assertEquals(1, cache.hits())
+        assertEquals(2, cache.misses())
+        assertEquals(2, cache.size())
+        assertTrue(cache.prometheusText().contains("dp_build_report_cache_requests_total{result=\"hit\"} 1\n"))
+        assertTrue(cache.prometheusText().contains("dp_build_report_cache_requests_total{result=\"miss\"} 2\n"))
+    }
+
+    @Test
+    fun testLeastRecentlyUsedIsRemoved() {
+        val cache = cache(2)
+
+        cache.get(submission(1, SubmissionStatus.VALIDATED)) { build() }
+        cache.get(submission(2, SubmissionStatus.VALIDATED)) { build() }
+        cache.get(submission(1, SubmissionStatus.VALIDATED)) { build() }
+        cache.get(submission(3, SubmissionStatus.VALIDATED)) { build() }  // removes 2
+        assertEquals(3, builds)
+        assertEquals(2, cache.size())
+
+        cache.get(submission(1, SubmissionStatus.VALIDATED)) { build() }
+        assertEquals(3, builds)
+        cache.get(submission(2, SubmissionStatus.VALIDATED)) { build() }
+        assertEquals(4, builds)
+    }
+
+    @Test
+    fun testEvict() {
+        val cache = cache(10)
+
+        cache.get(submission(1, SubmissionStatus.VALIDATED)) { build() }
+        cache.get(submission(1, SubmissionStatus.VALIDATED_REBUILT)) { build() }
+        cache.get(submission(2, SubmissionStatus.FAILED)) { build() }
+        cache.get(submission(3, SubmissionStatus.VALIDATED, assignmentId = "other")) { build() }
+        assertEquals(4, cache.size())
+
+        cache.evict(1)
+        assertEquals(2, cache.size())
+
+        cache.evictAssignment("dummy")
+        assertEquals(1, cache.size())
+
+        cache.get(submission(3, SubmissionStatus.VALIDATED, assignmentId = "other")) { build() }
+        assertEquals(4, builds)
+    }
+
+    @Test
+    fun testDisabled() {
+        val cache = cache(0)
+
+        cache.get(submission(1, SubmissionStatus.VALIDATED)) { build() }
+        cache.get(submission(1, SubmissionStatus.VALIDATED)) { build() }
+        assertEquals(2, builds)
+        assertEquals(0, cache.size())
+    }
+}
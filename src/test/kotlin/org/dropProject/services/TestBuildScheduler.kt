@@ -0,0 +1,253 @@
+/*-
+ * ========================LICENSE_START=================================
+ * DropProject
+ * %%
+ * Copyright (C) 2019 - 2026 Pedro Alves
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package org.dropproject.services
+
+import org.dropproject.config.DropProjectProperties
+import org.dropproject.dao.*
+import org.dropproject.repository.BuildJobRepository
+import org.dropproject.repository.SubmissionRepository
+import org.junit.Assert.*
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.boot.test.context.SpringBootTest
+import org.springframework.test.context.ActiveProfiles
+import org.springframework.test.context.TestPropertySource
+import org.springframework.test.context.junit4.SpringRunner
+import java.io.File
+import java.util.*
+import java.util.concurrent.Executor
+
+@RunWith(SpringRunner::class)
+@SpringBootTest
+@TestPropertySource(locations = ["classpath:drop-project-test.properties"])
+@ActiveProfiles("test")
+class TestBuildScheduler {
+
+    @Autowired
+    private lateinit var buildWorker: BuildWorker
+
+    @Autowired
+    private lateinit var assignmentTeacherFiles: AssignmentTeacherFiles
+
+    @Autowired
+    private lateinit var buildJobRepository: BuildJobRepository
+
+    @Autowired
+    private lateinit var submissionRepository: SubmissionRepository
+
+    @Autowired
+    private lateinit var submissionEvents: SubmissionEvents
+
+    // holds the dispatches until the test decides to run them, simulating busy build threads
+    private class ManualExecutor : Executor {
+        val pending = ArrayDeque<Runnable>()
+        override fun execute(command: Runnable) {
+            pending.add(command)
+        }
+        fun runAll() {
+            while (pending.isNotEmpty()) {
+                pending.poll().run()
+            }
+        }
+    }
+
+    private var nextSubmissionId = 1L
+
+    @Before
+    fun setup() {
+        buildJobRepository.deleteAll()
+    }
+
+    private fun submission(assignmentId: String, groupId: Long): Submission {
+        val submission = Submission(id = nextSubmissionId++, submissionDate = Date(), submitterUserId = "student1",
+            status = SubmissionStatus.SUBMITTED.code, statusDate = Date(), assignmentId = assignmentId,
+            assignmentGitHash = null)
+        submission.group = ProjectGroup(groupId)
+        return submission
+    }
+
+    // instead of building, each job runs the action registered for its authorsStr
+    private fun scheduler(executor: Executor, maxConcurrentPerAssignment: Int = 0,
+                          actions: Map<String, () -> Unit> = emptyMap(), executed: MutableList<String>) =
+        object : BuildScheduler(executor, buildWorker, assignmentTeacherFiles, buildJobRepository, submissionRepository,
+            DropProjectProperties(build = DropProjectProperties.Build(maxConcurrentPerAssignment = maxConcurrentPerAssignment)),
+            BuildMetrics(), submissionEvents) {
+            override fun runJob(job: BuildJob) {
+                actions[job.authorsStr]?.invoke()
+                executed.add(job.authorsStr)
+            }
+        }
+
+    private fun BuildScheduler.schedule(submission: Submission, label: String, priority: BuildPriority) =
+        schedule(submission, File("mavenized"), label, priority, principalName = null)
+
+    @Test
+    fun testPriorities() {
+        val executor = ManualExecutor()
+        val executed = mutableListOf<String>()
+        val scheduler = scheduler(executor, executed = executed)
+
+        scheduler.schedule(submission("a1", 1), "rebuild", BuildPriority.TEACHER_REBUILD)
+        scheduler.schedule(submission("a1", 2), "git", BuildPriority.GIT_REPORT)
+        scheduler.schedule(submission("a1", 3), "upload", BuildPriority.STUDENT_UPLOAD)
+
+        val stats = scheduler.stats()
+        assertEquals(3, stats.totalQueued)
+        assertEquals(1, stats.queuedByPriority[BuildPriority.STUDENT_UPLOAD])
+        assertEquals(3, stats.queuedByAssignment["a1"])
+        assertEquals(3, buildJobRepository.count())
+
+        executor.runAll()
+
+        assertEquals(listOf("upload", "git", "rebuild"), executed)
+        assertEquals(0, scheduler.stats().totalQueued)
+        assertEquals(0, buildJobRepository.count())
+    }
+
+    @Test
+    fun testRoundRobinAcrossGroupsAndAssignments() {
+        val executor = ManualExecutor()
+        val executed = mutableListOf<String>()
+        val scheduler = scheduler(executor, executed = executed)
+
+        // group 1 floods the queue of assignment a1
+        for (i in 1..3) {
+            scheduler.schedule(submission("a1", 1), "a1-g1", BuildPriority.TEACHER_REBUILD)
+        }
+        scheduler.schedule(submission("a1", 2), "a1-g2", BuildPriority.TEACHER_REBUILD)
+        scheduler.schedule(submission("a2", 3), "a2-g3", BuildPriority.TEACHER_REBUILD)
+
+        executor.runAll()
+
+        assertEquals(listOf("a1-g1", "a2-g3", "a1-g2", "a1-g1", "a1-g1"), executed)
+    }
+
+    @Test
+    fun testEstimate() {
+        val executor = ManualExecutor()
+        val executed = mutableListOf<String>()
+        val scheduler = scheduler(executor, executed = executed)
+
+        val a1g1 = (1..2).map { submission("a1", 1) }
+        val a1g2 = submission("a1", 2)
+        val a2g3 = submission("a2", 3)
+        a1g1.forEach { scheduler.schedule(it, "a1-g1", BuildPriority.TEACHER_REBUILD) }
+        scheduler.schedule(a1g2, "a1-g2", BuildPriority.TEACHER_REBUILD)
+        scheduler.schedule(a2g3, "a2-g3", BuildPriority.TEACHER_REBUILD)
+
+        // the positions follow the dispatch order (see testRoundRobinAcrossGroupsAndAssignments)
+        assertEquals(4, scheduler.queueDepth())
+        assertEquals(listOf(1, 2, 3, 4), listOf(a1g1[0], a2g3, a1g2, a1g1[1]).map { scheduler.estimate(it.id)?.position })
+
+        // a student upload goes ahead of the rebuilds
+        val upload = submission("a2", 4)
+        scheduler.schedule(upload, "a2-g4", BuildPriority.STUDENT_UPLOAD)
+        assertEquals(1, scheduler.estimate(upload.id)?.position)
+        assertEquals(5, scheduler.estimate(a1g1[1].id)?.position)
+        // nothing was measured yet
+        assertNull(scheduler.estimate(upload.id)?.estimatedSeconds)
+
+        executor.runAll()
+
+        assertNull(scheduler.estimate(upload.id))
+        assertEquals(0, scheduler.queueDepth())
+    }
+
+    @Test
+    fun testMaxConcurrentPerAssignment() {
+        val executor = ManualExecutor()
+        val executed = mutableListOf<String>()
+        // while the first build of a1 is running, the other dispatches can only pick a2
+        val scheduler = scheduler(executor, maxConcurrentPerAssignment = 1,
+            actions = mapOf("a1-g1" to { executor.runAll() }), executed = executed)
+
+        scheduler.schedule(submission("a1", 1), "a1-g1", BuildPriority.STUDENT_UPLOAD)
+        scheduler.schedule(submission("a1", 2), "a1-g2", BuildPriority.STUDENT_UPLOAD)
+        scheduler.schedule(submission("a2", 3), "a2-g3", BuildPriority.STUDENT_UPLOAD)
+
+        executor.runAll()
+
+        assertEquals(listOf("a2-g3", "a1-g1", "a1-g2"), executed)
+        assertEquals(0, scheduler.stats().totalQueued)
+        assertEquals(0, scheduler.stats().totalRunning)
+    }
+
+    @Test
+    fun testCancel() {
+        val executor = ManualExecutor()
+        val executed = mutableListOf<String>()
+        val scheduler = scheduler(executor, executed = executed)
+
+        val submission = submission("a1", 1)
+        scheduler.schedule(submission, "a1-g1", BuildPriority.STUDENT_UPLOAD)
+        assertTrue(scheduler.isQueued(submission.id))
+
+        assertTrue(scheduler.cancel(submission.id))
+        assertFalse(scheduler.isQueued(submission.id))
+        assertEquals(0, buildJobRepository.count())
+
+        executor.runAll()
+        assertTrue(executed.isEmpty())
+    }
+
+    @Test
+    fun testRetry() {
+        val executor = ManualExecutor()
+        val executed = mutableListOf<String>()
+        var numFailures = 0
+        val scheduler = scheduler(executor, executed = executed,
+            actions = mapOf("a1-g1" to { if (numFailures++ == 0) throw IllegalStateException("Unexpected") }))
+
+        scheduler.schedule(submission("a1", 1), "a1-g1", BuildPriority.STUDENT_UPLOAD)
+        executor.runAll()
+
+        assertEquals(listOf("a1-g1"), executed)  // the first attempt didn't reach the end
+        assertEquals(2, numFailures)
+        assertEquals(0, buildJobRepository.count())
+    }
+
+    @Test
+    fun testRecoverJobsAfterRestart() {
+        // a build that was waiting and another that was running when the previous node died
+        buildJobRepository.save(BuildJob(submissionId = 1, assignmentId = "a1", groupId = 1,
+            priority = BuildPriority.STUDENT_UPLOAD, mavenizedProjectFolder = "mavenized", authorsStr = "queued"))
+        buildJobRepository.save(BuildJob(submissionId = 2, assignmentId = "a1", groupId = 2,
+            priority = BuildPriority.STUDENT_UPLOAD, mavenizedProjectFolder = "mavenized", authorsStr = "running",
+            status = BuildJobStatus.RUNNING, attempts = 1, leaseOwner = "dead-node",
+            leaseExpiresAt = Date(System.currentTimeMillis() - 1000)))
+
+        // a build that is running on another node, which is alive
+        buildJobRepository.save(BuildJob(submissionId = 3, assignmentId = "a1", groupId = 3,
+            priority = BuildPriority.STUDENT_UPLOAD, mavenizedProjectFolder = "mavenized", authorsStr = "alive",
+            status = BuildJobStatus.RUNNING, attempts = 1, leaseOwner = "other-node",
+            leaseExpiresAt = Date(System.currentTimeMillis() + 60_000)))
+
+        val executor = ManualExecutor()
+        val executed = mutableListOf<String>()
+        val scheduler = scheduler(executor, executed = executed)
+        scheduler.recoverJobs()
+        executor.runAll()
+
+        assertEquals(listOf("queued", "running"), executed)
+        assertEquals(1, buildJobRepository.count())
+    }
+}
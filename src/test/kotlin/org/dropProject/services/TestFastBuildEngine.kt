@@ -0,0 +1,211 @@
+/*-
+ * ========================LICENSE_START=================================
+ * DropProject
+ * %%
+ * Copyright (C) 2019 - 2026 Pedro Alves
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package org.dropproject.services
+
+import org.dropproject.config.DropProjectProperties
+import org.dropproject.dao.Assignment
+import org.dropproject.data.BuildStage
+import org.dropproject.forms.SubmissionMethod
+import org.junit.After
+import org.junit.Assert.*
+import org.junit.Test
+import java.io.File
+import java.nio.file.Files
+import java.util.*
+
+class TestFastBuildEngine {
+
+    private val mavenInvoker = MavenInvoker(DropProjectProperties(), MavenDaemonPool(DropProjectProperties()),
+        BuildProcessMonitor()).also { it.disableSecurity() }
+
+    private val fastBuildEngine = FastBuildEngine(mavenInvoker, BuildProcessMonitor())
+
+    private val projectFolder = Files.createTempDirectory("dp-fast").toFile()
+
+    private val assignmentFolder = Files.createTempDirectory("dp-fast-assignment").toFile()
+
+    private val compiledTestsFolder = Files.createTempDirectory("dp-fast-compiled-tests").toFile()
+
+    private val mavenRepository = File(System.getenv("DP_MVN_REPO") ?: "${System.getProperty("user.home")}/.m2/repository")
+
+    private val classpath = listOf(
+        File(mavenRepository, "junit/junit/4.13.1/junit-4.13.1.jar"),
+        File(mavenRepository, "org/hamcrest/hamcrest-core/1.3/hamcrest-core-1.3.jar"))
+
+    @After
+    fun cleanup() {
+        projectFolder.deleteRecursively()
+        assignmentFolder.deleteRecursively()
+        compiledTestsFolder.deleteRecursively()
+    }
+
+    // a simplified version of what the SubmissionService does when mavenizing a COMPACT submission
+    private fun mavenize(projectName: String) {
+        File("src/test/sampleAssignments/testJavaProj").copyRecursively(projectFolder)
+        File("src/test/sampleProjects/compact/java/${projectName}/src").copyRecursively(File(projectFolder, "src/main/java"), overwrite = true)
+    }
+
+    private fun readReport(testClass: String): JUnitResults {
+        val report = File(projectFolder, "target/surefire-reports/TEST-org.dropProject.sampleAssignments.testProj.${testClass}.xml")
+        assertTrue(report.exists())
+        return JunitResultsParser().parseXml(report.readText())
+    }
+
+    @Test
+    fun testProjectOK() {
+        mavenize("projectOK")
+
+        val result = fastBuildEngine.build(projectFolder, classpath, "student1", null)
+
+        assertNull(result.failedStage)
+        assertFalse(result.compilationFailed())
+        assertTrue(result.outputLines.contains("[INFO] BUILD SUCCESS"))
+
+        val teacherResults = readReport("TestTeacherProject")
+        assertEquals("TestTeacherProject", teacherResults.testClassName)
+        assertEquals(2, teacherResults.numTests)
+        assertEquals(0, teacherResults.numFailures + teacherResults.numErrors)
+        assertEquals(1, readReport("TestTeacherHiddenProject").numTests)
+    }
+
+    @Test
+    fun testProjectWithCompilationErrors() {
+        mavenize("projectCompilationErrors")
+
+        val result = fastBuildEngine.build(projectFolder, classpath, "student1", null)
+
+        assertEquals(BuildStage.COMPILATION, result.failedStage)
+        assertTrue(result.compilationFailed())
+        // the same line that maven would produce, so that the build report finds the error
+        assertTrue(result.outputLines.contains("[ERROR] ${projectFolder.absolutePath}/src/main/java/org/dropProject/" +
+                "sampleAssignments/testProj/Main.java:[3,8] class Sample is public, should be declared in a file named Sample.java"))
+        assertFalse(File(projectFolder, "target/surefire-reports").exists())
+    }
+
+    @Test
+    fun testProjectWithJUnitErrors() {
+        mavenize("projectJUnitErrors")
+
+        val result = fastBuildEngine.build(projectFolder, classpath, "student1", null)
+
+        assertEquals(BuildStage.TESTS, result.failedStage)
+        assertFalse(result.compilationFailed())
+
+        val teacherResults = readReport("TestTeacherProject")
+        assertEquals(2, teacherResults.numTests)
+        assertEquals(1, teacherResults.numFailures)
+        val failedTest = teacherResults.junitMethodResults.first { it.type == JUnitMethodResultType.FAILURE }
+        assertEquals("testFuncaoParaTestar", failedTest.methodName)
+        assertEquals("java.lang.AssertionError", failedTest.failureType)
+    }
+
+    @Test
+    fun testProjectWithPrecompiledTeacherTests() {
+        // compile the assignment, as the validation of the assignment does
+        File("src/test/sampleAssignments/testJavaProj").copyRecursively(assignmentFolder)
+        fastBuildEngine.build(assignmentFolder, classpath, "teacher1", null)
+
+        val teacherTestsCache = TeacherTestsCache(DropProjectProperties(
+            assignments = DropProjectProperties.Assignments(compiledTestsLocation = compiledTestsFolder.absolutePath)))
+        val assignment = Assignment(id = "testJavaProj", name = "Test Project (for automatic tests)",
+            packageName = "org.dropProject.sampleAssignments.testProj", ownerUserId = "teacher1",
+            submissionMethod = SubmissionMethod.UPLOAD, active = true, gitRepositoryUrl = "git://dummy",
+            gitRepositoryFolder = "testJavaProj", gitCurrentHash = "somehash")
+        teacherTestsCache.store(assignment, assignmentFolder)
+        val teacherTests = teacherTestsCache.get(assignment)
+        assertNotNull(teacherTests)
+
+        mavenize("projectJUnitErrors")
+
+        val result = fastBuildEngine.build(projectFolder, classpath, "student1", null, teacherTests = teacherTests)
+
+        assertEquals(BuildStage.TESTS, result.failedStage)
+        // the teacher tests were not compiled again
+        assertFalse(File(projectFolder, "target/test-classes/org/dropProject/sampleAssignments/testProj/" +
+                "TestTeacherProject.class").exists())
+        val teacherResults = readReport("TestTeacherProject")
+        assertEquals(2, teacherResults.numTests)
+        assertEquals(1, teacherResults.numFailures)
+        assertEquals(1, readReport("TestTeacherHiddenProject").numTests)
+
+        // the compiled tests are only valid for the commit from which they were compiled
+        assignment.gitCurrentHash = "otherhash"
+        assertNull(teacherTestsCache.get(assignment))
+    }
+
+    @Test
+    fun testProjectIncompatibleWithPrecompiledTeacherTests() {
+        File("src/test/sampleAssignments/testJavaProj").copyRecursively(assignmentFolder)
+        fastBuildEngine.build(assignmentFolder, classpath, "teacher1", null)
+
+        val teacherTestsCache = TeacherTestsCache(DropProjectProperties(
+            assignments = DropProjectProperties.Assignments(compiledTestsLocation = compiledTestsFolder.absolutePath)))
+        val assignment = Assignment(id = "testJavaProj", name = "Test Project (for automatic tests)",
+            packageName = "org.dropProject.sampleAssignments.testProj", ownerUserId = "teacher1",
+            submissionMethod = SubmissionMethod.UPLOAD, active = true, gitRepositoryUrl = "git://dummy",
+            gitRepositoryFolder = "testJavaProj", gitCurrentHash = "somehash")
+        teacherTestsCache.store(assignment, assignmentFolder)
+
+        // a new overload of a method used by the tests could change the method that they call
+        mavenize("projectOK")
+        val mainFile = File(projectFolder, "src/main/java/org/dropProject/sampleAssignments/testProj/Main.java")
+        mainFile.writeText(mainFile.readText().replaceFirst("{", "{\n    static long funcaoParaTestar(long x) { return x; }\n"))
+
+        val result = fastBuildEngine.build(projectFolder, classpath, "student1", null,
+            teacherTests = teacherTestsCache.get(assignment))
+
+        assertNull(result.failedStage)
+        assertTrue(File(projectFolder, "target/test-classes/org/dropProject/sampleAssignments/testProj/" +
+                "TestTeacherProject.class").exists())
+        assertEquals(2, readReport("TestTeacherProject").numTests)
+    }
+
+    @Test
+    fun testStudentTestsCantForgeTheReports() {
+        mavenize("projectJUnitErrors")
+
+        // a student test that looks for the token in the command line of its JVM and uses it to report that all
+        // the teacher tests passed and to write a file outside of the project
+        val passedReport = Base64.getEncoder().encodeToString(("<testsuite tests=\"2\" failures=\"0\" " +
+                "name=\"org.dropProject.sampleAssignments.testProj.TestTeacherProject\" time=\"0\" errors=\"0\" " +
+                "skipped=\"0\"></testsuite>").toByteArray())
+        File(projectFolder, "src/test/java/org/dropProject/sampleAssignments/testProj/TestForger.java").writeText("""
+            package org.dropProject.sampleAssignments.testProj;
+
+            public class TestForger {
+                @org.junit.Test
+                public void forge() {
+                    for (String arg : ProcessHandle.current().info().arguments().orElse(new String[0])) {
+                        System.out.println(arg + " TEST-org.dropProject.sampleAssignments.testProj.TestTeacherProject.xml ${passedReport}");
+                        System.out.println(arg + " ../../forged.xml ${passedReport}");
+                        System.out.println(arg + " END 0");
+                    }
+                }
+            }
+        """.trimIndent())
+
+        val result = fastBuildEngine.build(projectFolder, classpath, "student1", null)
+
+        assertEquals(BuildStage.TESTS, result.failedStage)
+        assertEquals(1, readReport("TestTeacherProject").numFailures)
+        assertFalse(File(projectFolder.parentFile, "forged.xml").exists())
+        assertFalse(File(projectFolder, "forged.xml").exists())
+    }
+}
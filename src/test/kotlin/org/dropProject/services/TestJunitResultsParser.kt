@@ -19,6 +19,7 @@
  */
 package org.dropproject.services
 
+import org.dropproject.dao.SubmissionTestResult
 import org.junit.Assert.assertEquals
 import org.junit.Test
 import org.junit.runner.RunWith
@@ -28,6 +29,7 @@ import org.springframework.core.io.ResourceLoader
 import org.springframework.test.context.ActiveProfiles
 import org.springframework.test.context.TestPropertySource
 import org.springframework.test.context.junit4.SpringRunner
+import java.io.File
 
 
 @RunWith(SpringRunner::class)
@@ -112,6 +114,19 @@ java.lang.NullPointerException: Cannot invoke "java.util.ArrayList.add(Object)"
         assertEquals(1, junitResult.numSkipped)
     }
 
+    @Test
+    fun testStoredTestResults() {
+
+        // the results stored in the DB must be the same as the ones parsed from the reports
+        File(junitXmlReportsRoot).listFiles()!!
+            .filter { it.name.endsWith(".xml") }
+            .forEach { xmlFile ->
+                val junitResult = junitResultsParser.parseXml(xmlFile.readText())
+                val testResults = SubmissionTestResult.fromJUnitResults(1, junitResult)
+                assertEquals(xmlFile.name, listOf(junitResult), SubmissionTestResult.toJUnitResults(testResults))
+            }
+    }
+
     @Test
     fun testParseCoverageReport() {
 
@@ -0,0 +1,131 @@
+/*-
+ * ========================LICENSE_START=================================
+ * DropProject
+ * %%
+ * Copyright (C) 2019 - 2026 Pedro Alves
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package org.dropproject.services
+
+import org.dropproject.config.DropProjectProperties
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.io.File
+import java.nio.file.Files
+
+class TestMavenDaemonPool {
+
+    private fun daemonPool(enabled: Boolean, recycleAfterBuilds: Int, home: String = "non-existent-mvnd") =
+        MavenDaemonPool(DropProjectProperties(maven = DropProjectProperties.Maven(
+            daemon = DropProjectProperties.MavenDaemon(enabled = enabled, home = home,
+                recycleAfterBuilds = recycleAfterBuilds, minFreeMemoryMb = 0))))
+
+    // the daemons are stopped in the background
+    private fun waitForRecycle(pool: MavenDaemonPool) {
+        val deadline = System.currentTimeMillis() + 10_000
+        while (pool.recycling && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50)
+        }
+        assertFalse(pool.recycling)
+    }
+
+    @Test
+    fun testRecycleAfterBuilds() {
+        val pool = daemonPool(enabled = true, recycleAfterBuilds = 2)
+
+        assertTrue(pool.buildStarted())
+        pool.buildFinished()
+        assertEquals(1, pool.numBuildsSinceRecycle)
+
+        assertTrue(pool.buildStarted())
+        pool.buildFinished()
+        assertEquals(0, pool.numBuildsSinceRecycle)  // was recycled
+        waitForRecycle(pool)
+        assertTrue(pool.buildStarted())
+    }
+
+    @Test
+    fun testRecycleWaitsForRunningBuilds() {
+        val pool = daemonPool(enabled = true, recycleAfterBuilds = 1)
+
+        assertTrue(pool.buildStarted())
+        assertTrue(pool.buildStarted())
+        pool.buildFinished()
+        assertEquals(1, pool.numBuildsSinceRecycle)  // the other build is still running
+        assertTrue(pool.recycling)
+
+        // meanwhile, the new builds run on a regular maven, so that the daemons can be drained
+        assertFalse(pool.buildStarted())
+
+        pool.buildFinished()
+        assertEquals(0, pool.numBuildsSinceRecycle)
+        waitForRecycle(pool)
+    }
+
+    @Test
+    fun testExplicitRecycleWaitsForRunningBuilds() {
+        val pool = daemonPool(enabled = true, recycleAfterBuilds = 10)
+
+        assertTrue(pool.buildStarted())
+        pool.buildFinished()
+        assertTrue(pool.buildStarted())
+        pool.recycle()
+        assertEquals(1, pool.numBuildsSinceRecycle)  // postponed, a build is running
+        assertFalse(pool.buildStarted())
+
+        pool.buildFinished()
+        assertEquals(0, pool.numBuildsSinceRecycle)
+        waitForRecycle(pool)
+    }
+
+    @Test
+    fun testBuildsDontWaitForTheRecycle() {
+        // a fake mvnd that takes a while to stop the daemons
+        val home = Files.createTempDirectory("dp-fake-mvnd").toFile()
+        val stopped = File(home, "stopped")
+        val executable = File(home, "bin/mvnd")
+        executable.parentFile.mkdirs()
+        executable.writeText("#!/bin/sh\nsleep 1\ntouch '${stopped.absolutePath}'\n")
+        executable.setExecutable(true)
+        try {
+            val pool = daemonPool(enabled = true, recycleAfterBuilds = 10, home = home.absolutePath)
+            val start = System.currentTimeMillis()
+            pool.recycle()
+
+            // the build doesn't wait, but it can't use a daemon, since the daemons are about to be stopped
+            assertFalse(pool.buildStarted())
+            assertTrue(System.currentTimeMillis() - start < 1000)
+            assertFalse(stopped.exists())
+
+            waitForRecycle(pool)
+            assertTrue(stopped.exists())
+            assertTrue(pool.buildStarted())
+            pool.buildFinished()
+        } finally {
+            home.deleteRecursively()
+        }
+    }
+
+    @Test
+    fun testDisabled() {
+        val pool = daemonPool(enabled = false, recycleAfterBuilds = 1)
+        assertFalse(pool.enabled)
+
+        assertFalse(pool.buildStarted())
+        assertEquals(0, pool.numBuildsSinceRecycle)
+    }
+}
@@ -0,0 +1,186 @@
+/*-
+ * ========================LICENSE_START=================================
+ * DropProject
+ * %%
+ * Copyright (C) 2019 - 2026 Pedro Alves
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package org.dropproject.services
+
+import org.apache.maven.model.io.xpp3.MavenXpp3Reader
+import org.codehaus.plexus.util.xml.Xpp3Dom
+import org.dropproject.config.DropProjectProperties
+import org.junit.Assert.*
+import org.junit.Test
+import java.io.File
+import java.io.FileReader
+import java.nio.file.Files
+
+class TestMavenInvoker {
+
+    private val mavenInvoker = MavenInvoker(DropProjectProperties(), MavenDaemonPool(DropProjectProperties()),
+        BuildProcessMonitor())
+
+    private fun readPom(path: String) = MavenXpp3Reader().read(FileReader(File(path)))
+
+    @Test
+    fun testSeparateCoverageByTestType() {
+        val model = readPom("src/test/sampleAssignments/testJavaProjWithCoverage/pom.xml")
+
+        mavenInvoker.separateCoverageByTestType(model)
+
+        val surefirePlugin = model.build.plugins.first { it.artifactId == "maven-surefire-plugin" }
+        val studentTests = surefirePlugin.executions.first { it.id == "default-test" }.configuration as Xpp3Dom
+        assertEquals("@{dpStudentCoverage}", studentTests.getChild("argLine").value)
+        assertEquals("**/TestTeacher*", studentTests.getChild("excludes").getChild("exclude").value)
+        val teacherTests = surefirePlugin.executions.first { it.id == "dp-teacher-tests" }.configuration as Xpp3Dom
+        assertEquals("@{dpTeacherCoverage}", teacherTests.getChild("argLine").value)
+        assertEquals("**/TestTeacher*", teacherTests.getChild("includes").getChild("include").value)
+
+        // the report must run after the tests and only use the student session
+        val jacocoPlugin = model.build.plugins.last()
+        assertEquals("jacoco-maven-plugin", jacocoPlugin.artifactId)
+        assertEquals(listOf("dp-student-agent", "dp-teacher-agent", "dp-student-report"), jacocoPlugin.executions.map { it.id })
+        val report = jacocoPlugin.executions.last().configuration as Xpp3Dom
+        assertEquals("\${project.build.directory}/jacoco-student.exec", report.getChild("dataFile").value)
+    }
+
+    @Test
+    fun testSeparateCoverageKeepsTheArgLine() {
+        val model = readPom("src/test/sampleAssignments/testJavaProjWithCoverage/pom.xml")
+        val surefirePlugin = model.build.plugins.first { it.artifactId == "maven-surefire-plugin" }
+        val configuration = Xpp3Dom("configuration")
+        val argLine = Xpp3Dom("argLine")
+        argLine.value = "\${argLine} \${dp.argLine}"
+        configuration.addChild(argLine)
+        surefirePlugin.configuration = configuration
+
+        mavenInvoker.separateCoverageByTestType(model)
+
+        val studentTests = surefirePlugin.executions.first { it.id == "default-test" }.configuration as Xpp3Dom
+        assertEquals("@{dpStudentCoverage} \${dp.argLine}", studentTests.getChild("argLine").value)
+    }
+
+    @Test
+    fun testSeparateCoverageWithoutJacoco() {
+        val model = readPom("src/test/sampleAssignments/testJavaProj/pom.xml")
+        val numPlugins = model.build.plugins.size
+
+        mavenInvoker.separateCoverageByTestType(model)
+
+        assertEquals(numPlugins, model.build.plugins.size)
+        assertTrue(model.build.plugins.none { plugin -> plugin.executions.any { it.id == "dp-teacher-tests" } })
+    }
+
+    @Test
+    fun testPomKey() {
+        val key = mavenInvoker.pomKey(File("src/test/sampleAssignments/testJavaProj"))
+
+        // the key only depends on the pom.xml, so it's shared by the submissions of the same assignment
+        assertEquals(key, mavenInvoker.pomKey(File("src/test/sampleAssignments/testJavaProj")))
+        assertNotEquals(key, mavenInvoker.pomKey(File("src/test/sampleAssignments/testJavaProjWithCoverage")))
+
+        // without the sandbox, the pom.xml doesn't depend on the security manager
+        val insecureMavenInvoker = MavenInvoker(DropProjectProperties(), MavenDaemonPool(DropProjectProperties()),
+            BuildProcessMonitor()).also { it.disableSecurity() }
+        assertNotEquals(key, insecureMavenInvoker.pomKey(File("src/test/sampleAssignments/testJavaProj")))
+    }
+
+    @Test
+    fun testWritePomFile() {
+        val mavenizedProjectsFolder = Files.createTempDirectory("dp-poms").toFile()
+        try {
+            val mavenInvoker = MavenInvoker(DropProjectProperties(), MavenDaemonPool(DropProjectProperties()),
+                BuildProcessMonitor())
+            val project1 = File(mavenizedProjectsFolder, "project1")
+            val project2 = File(mavenizedProjectsFolder, "project2")
+            File("src/test/sampleAssignments/testJavaProj/pom.xml").copyTo(File(project1, "pom.xml"))
+            File("src/test/sampleAssignments/testJavaProj/pom.xml").copyTo(File(project2, "pom.xml"))
+
+            val pomFile1 = mavenInvoker.writePomFile(project1, separateTestsCoverage = false)
+            assertEquals(File(project1, "pom_updated.xml"), pomFile1)
+            val model = readPom(pomFile1.path)
+            assertTrue(model.dependencies.any { it.artifactId == "drop-project-security-manager" })
+            // the arguments of each build are passed as a property
+            assertTrue(pomFile1.readText().contains("<argLine>\${dp.argLine}</argLine>"))
+
+            // a build that changes its pom_updated.xml (e.g., to remove the sandbox) doesn't affect the other builds
+            pomFile1.writeText("<project/>")
+            val pomFile2 = mavenInvoker.writePomFile(project2, separateTestsCoverage = false)
+            assertFalse(Files.isSameFile(pomFile1.toPath(), pomFile2.toPath()))
+            assertTrue(readPom(pomFile2.path).dependencies.any { it.artifactId == "drop-project-security-manager" })
+        } finally {
+            mavenizedProjectsFolder.deleteRecursively()
+        }
+    }
+
+    @Test
+    fun testOfflineBuildIsRetriedOnlyOnce() {
+        val folder = Files.createTempDirectory("dp-offline").toFile()
+        try {
+            // a fake maven that can't build offline and counts how many times it runs
+            val invocations = File(folder, "invocations.txt")
+            val mvn = File(folder, "maven/bin/mvn")
+            mvn.parentFile.mkdirs()
+            mvn.writeText("""
+                #!/bin/sh
+                echo run >> '${invocations.absolutePath}'
+                for arg in "$@"; do
+                  if [ "${'$'}arg" = "-o" ] || [ "${'$'}arg" = "--offline" ]; then
+                    echo "[ERROR] Cannot access central in offline mode and the artifact junit:junit:jar:4.12 has not been downloaded from it before."
+                    exit 1
+                  fi
+                done
+                echo "[INFO] BUILD SUCCESS"
+            """.trimIndent())
+            mvn.setExecutable(true)
+
+            val mavenInvoker = MavenInvoker(DropProjectProperties(
+                maven = DropProjectProperties.Maven(home = File(folder, "maven").absolutePath,
+                    repository = File(folder, "repository").absolutePath),
+                mavenizedProjects = DropProjectProperties.MavenizedProjects(rootLocation = folder.absolutePath)),
+                MavenDaemonPool(DropProjectProperties()), BuildProcessMonitor())
+            val project = File(folder, "project")
+            File("src/test/sampleAssignments/testJavaProj/pom.xml").copyTo(File(project, "pom.xml"))
+
+            // the dependencies are pinned, but the manifest can't be removed (e.g., it was replaced by a folder)
+            val manifest = File(folder, "repository/.dp-manifests/${mavenInvoker.pomKey(project)}.txt")
+            File(manifest, "something").apply { parentFile.mkdirs() }.writeText("")
+            assertTrue(mavenInvoker.isPinned(project))
+
+            val result = mavenInvoker.run(project, "student1", null)
+
+            // the second build ran online
+            assertEquals(2, invocations.readLines().size)
+            assertEquals(0, result.resultCode)
+        } finally {
+            folder.deleteRecursively()
+        }
+    }
+
+    @Test
+    fun testMissesArtifactsOffline() {
+        assertTrue(mavenInvoker.missesArtifactsOffline(listOf(
+            "[INFO] BUILD FAILURE",
+            "[ERROR] Plugin org.apache.maven.plugins:maven-surefire-plugin:3.0.0 or one of its dependencies could " +
+                    "not be resolved: Cannot access central (https://repo.maven.apache.org/maven2) in offline mode " +
+                    "and the artifact org.apache.maven.surefire:surefire-junit4:jar:3.0.0 has not been downloaded from " +
+                    "it before. -> [Help 1]")))
+
+        // the output of the tests doesn't count
+        assertFalse(mavenInvoker.missesArtifactsOffline(listOf("Cannot access the server in offline mode",
+            "[ERROR] Tests run: 2, Failures: 1, Errors: 0, Skipped: 0")))
+    }
+}
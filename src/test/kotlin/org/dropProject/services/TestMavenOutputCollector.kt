@@ -0,0 +1,105 @@
+/*-
+ * ========================LICENSE_START=================================
+ * DropProject
+ * %%
+ * Copyright (C) 2019 - 2026 Pedro Alves
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package org.dropproject.services
+
+import org.dropproject.Constants
+import org.dropproject.data.BuildStage
+import org.junit.Assert.*
+import org.junit.Test
+import java.io.File
+
+class TestMavenOutputCollector {
+
+    @Test
+    fun testNormalOutputIsKept() {
+        val fatalReasons = mutableListOf<String>()
+        val collector = MavenOutputCollector { fatalReasons.add(it) }
+
+        for (i in 1..100) {
+            collector.accept("line ${i}")
+        }
+
+        assertNull(collector.fatalReason)
+        assertTrue(fatalReasons.isEmpty())
+        assertEquals((1..100).map { "line ${it}" }, collector.outputLines())
+    }
+
+    @Test
+    fun testTooMuchOutput() {
+        val fatalReasons = mutableListOf<String>()
+        val collector = MavenOutputCollector { fatalReasons.add(it) }
+
+        // keeps printing while the process is being killed
+        for (i in 1..Constants.TOO_MUCH_OUTPUT_THRESHOLD + 1000) {
+            collector.accept("line ${i}")
+        }
+
+        assertEquals(1, fatalReasons.size)
+        assertNotNull(collector.fatalReason)
+
+        val outputLines = collector.outputLines()
+        assertEquals(Constants.TOO_MUCH_OUTPUT_THRESHOLD - 1 + 1 + Constants.TOO_MUCH_OUTPUT_TAIL_LINES, outputLines.size)
+        assertEquals("line ${Constants.TOO_MUCH_OUTPUT_THRESHOLD - 1}", outputLines[Constants.TOO_MUCH_OUTPUT_THRESHOLD - 2])
+        assertEquals("*** Trimmed here by DP ***", outputLines[Constants.TOO_MUCH_OUTPUT_THRESHOLD - 1])
+        assertEquals("line ${Constants.TOO_MUCH_OUTPUT_THRESHOLD + 1000}", outputLines.last())
+    }
+
+    @Test
+    fun testStacktracesDontCountForTheThreshold() {
+        val collector = MavenOutputCollector { }
+
+        for (i in 1..100) {
+            collector.accept("java.lang.RuntimeException: ${i}")
+            for (j in 1..50) {
+                collector.accept("\tat org.dropProject.Main.method${j}(Main.java:${j})")
+            }
+        }
+
+        assertNull(collector.fatalReason)
+        assertEquals(100 * 51, collector.outputLines().size)
+    }
+
+    @Test
+    fun testStacktraceFlood() {
+        val collector = MavenOutputCollector { }
+
+        for (i in 1..Constants.TOO_MUCH_OUTPUT_MAX_LINES) {
+            collector.accept("\tat org.dropProject.Main.recursive(Main.java:10)")
+        }
+
+        assertNotNull(collector.fatalReason)
+        assertEquals(Constants.TOO_MUCH_OUTPUT_MAX_LINES, collector.outputLines().size)  // the last one is the marker
+    }
+
+    private fun failedStageOf(sampleMavenOutput: String): BuildStage? {
+        val collector = MavenOutputCollector { }
+        File("src/test/sampleMavenOutputs/${sampleMavenOutput}").readLines().forEach { collector.accept(it) }
+        return collector.failedStage
+    }
+
+    @Test
+    fun testFailedStage() {
+        assertNull(failedStageOf("ok1.txt"))
+        assertEquals(BuildStage.COMPILATION, failedStageOf("compilerError1.txt"))
+        assertEquals(BuildStage.COMPILATION, failedStageOf("kotlinCompilerError1.txt"))
+        assertEquals(BuildStage.TESTS, failedStageOf("junitErrors1.txt"))
+        assertEquals(BuildStage.OTHER, failedStageOf("checkstylePluginFails.txt"))
+    }
+}
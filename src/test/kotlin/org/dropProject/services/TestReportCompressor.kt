@@ -0,0 +1,138 @@
+/*-
+ * ========================LICENSE_START=================================
+ * DropProject
+ * %%
+ * Copyright (C) 2019 - 2026 Pedro Alves
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package org.dropproject.services
+
+import org.dropproject.config.DropProjectProperties
+import org.dropproject.dao.BuildReport
+import org.dropproject.dao.JUnitReport
+import org.dropproject.dao.Submission
+import org.dropproject.dao.SubmissionStatus
+import org.dropproject.repository.BuildReportRepository
+import org.dropproject.repository.CompressionDictionaryRepository
+import org.dropproject.repository.JUnitReportRepository
+import org.dropproject.repository.JacocoReportRepository
+import org.dropproject.repository.SubmissionRepository
+import org.junit.Assert.*
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.data.domain.Pageable
+import org.springframework.boot.test.context.SpringBootTest
+import org.springframework.test.context.ActiveProfiles
+import org.springframework.test.context.TestPropertySource
+import org.springframework.test.context.junit4.SpringRunner
+import java.io.File
+import java.util.*
+
+@RunWith(SpringRunner::class)
+@SpringBootTest
+// the other test classes' dirtied contexts drop the schema of the shared database when they close
+@TestPropertySource(locations = ["classpath:drop-project-test.properties"],
+        properties = ["spring.datasource.url=jdbc:h2:mem:reportCompressorTests;MODE=LEGACY"])
+@ActiveProfiles("test")
+class TestReportCompressor {
+
+    @Autowired
+    private lateinit var reportCompressor: ReportCompressor
+
+    @Autowired
+    private lateinit var buildReportRepository: BuildReportRepository
+
+    @Autowired
+    private lateinit var jUnitReportRepository: JUnitReportRepository
+
+    @Autowired
+    private lateinit var submissionRepository: SubmissionRepository
+
+    @Autowired
+    private lateinit var compressionDictionaryRepository: CompressionDictionaryRepository
+
+    @Autowired
+    private lateinit var jacocoReportRepository: JacocoReportRepository
+
+    @Autowired
+    private lateinit var dropProjectProperties: DropProjectProperties
+
+    private val mavenOutput1 = File("src/test/sampleMavenOutputs/junitErrors1.txt").readText()
+    private val mavenOutput2 = File("src/test/sampleMavenOutputs/checkstyleErrors1.txt").readText()
+    private val junitReport = File("src/test/sampleJunitXmlReports/testErrors1.xml").readText()
+
+    @Test
+    fun testCompressWithoutDictionary() {
+        val compressed = ReportCompressor.compress(mavenOutput1.toByteArray(), 0, null)
+        assertTrue(compressed.size < mavenOutput1.length / 2)
+        assertEquals(mavenOutput1, reportCompressor.decompress(compressed))
+
+        assertEquals("", reportCompressor.decompress(ReportCompressor.compress(ByteArray(0), 0, null)))
+    }
+
+    @Test
+    fun testCompressWithDictionary() {
+        val dictionary = reportCompressor.dictionaryFor("testCompressWithDictionary") { listOf(mavenOutput1, junitReport) }!!
+        assertTrue(dictionary.dictionary.size <= ReportCompressor.DICTIONARY_SIZE)
+
+        // the dictionary is only built once for each assignment
+        assertSame(dictionary, reportCompressor.dictionaryFor("testCompressWithDictionary") { fail(); emptyList() })
+
+        val report = reportCompressor.compress(BuildReport(buildReport = mavenOutput2), dictionary)
+        assertNotNull(report.compressedBuildReport)
+        assertEquals(mavenOutput2, reportCompressor.buildReportOf(report))
+
+        // the reports of the same assignment are similar, so the dictionary makes them smaller
+        val withoutDictionary = ReportCompressor.compress(mavenOutput2.toByteArray(), 0, null)
+        assertTrue(report.compressedBuildReport!!.size < withoutDictionary.size)
+
+        // other nodes load the dictionary from the database
+        val otherNode = ReportCompressor(compressionDictionaryRepository, buildReportRepository, jUnitReportRepository,
+            jacocoReportRepository, submissionRepository, dropProjectProperties)
+        assertEquals(mavenOutput2, otherNode.buildReportOf(report))
+
+        reportCompressor.deleteDictionaries("testCompressWithDictionary")
+        assertNull(compressionDictionaryRepository.findFirstByAssignmentIdOrderByIdDesc("testCompressWithDictionary"))
+    }
+
+    @Test
+    fun testCompressStoredReports() {
+        val buildReport = buildReportRepository.save(BuildReport(buildReport = mavenOutput1))
+        val submission = submissionRepository.save(Submission(submissionDate = Date(), submitterUserId = "student1",
+            status = SubmissionStatus.VALIDATED.code, statusDate = Date(), assignmentId = "testCompressStoredReports",
+            assignmentGitHash = null, buildReport = buildReport))
+        val jUnitReport = jUnitReportRepository.save(JUnitReport(submissionId = submission.id,
+            fileName = "TEST-org.dropProject.samples.TestTeacherProject.xml", xmlReport = junitReport))
+        assertNull(buildReportRepository.findById(buildReport.id).get().compressedBuildReport)
+
+        // they're compressed a few at a time
+        assertTrue(reportCompressor.compressStoredReports(maxReports = 1) in 1..3)
+        while (reportCompressor.compressStoredReports(maxReports = 1) > 0) {
+        }
+
+        val compressedBuildReport = buildReportRepository.findById(buildReport.id).get()
+        assertNotNull(compressedBuildReport.compressedBuildReport)
+        assertEquals(mavenOutput1, reportCompressor.buildReportOf(compressedBuildReport))
+
+        val compressedJUnitReport = jUnitReportRepository.findById(jUnitReport.id).get()
+        assertNotNull(compressedJUnitReport.compressedXmlReport)
+        assertEquals(junitReport, reportCompressor.xmlReportOf(compressedJUnitReport))
+
+        assertNotNull(compressionDictionaryRepository.findFirstByAssignmentIdOrderByIdDesc("testCompressStoredReports"))
+        assertTrue(reportCompressor.prometheusText().contains("dp_report_storage_bytes_total{form=\"compressed\"}"))
+        assertTrue(buildReportRepository.findUncompressedIds(Pageable.unpaged()).isEmpty())
+    }
+}
@@ -0,0 +1,113 @@
+/*-
+ * ========================LICENSE_START=================================
+ * DropProject
+ * %%
+ * Copyright (C) 2019 - 2026 Pedro Alves
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package org.dropproject.services
+
+import org.junit.After
+import org.junit.Assert.*
+import org.junit.Before
+import org.junit.Test
+import java.io.File
+import java.nio.file.Files
+
+class TestWorkspaceBuilder {
+
+    private val workspaceBuilder = WorkspaceBuilder()
+
+    private val rootFolder = Files.createTempDirectory("dp-workspace").toFile()
+
+    private val teacherFolder = File(rootFolder, "assignment")
+
+    @Before
+    fun setup() {
+        File(teacherFolder, "src/test/java/pt").mkdirs()
+        File(teacherFolder, "src/main/java/pt").mkdirs()
+        File(teacherFolder, "src/test/resources").mkdirs()
+        File(teacherFolder, "pom.xml").writeText("<project/>")
+        File(teacherFolder, "README.md").writeText("teacher readme")
+        File(teacherFolder, "src/test/java/pt/TestTeacher.java").writeText("class TestTeacher {}")
+        File(teacherFolder, "src/main/java/pt/Main.java").writeText("class Main {}")
+    }
+
+    @After
+    fun cleanup() {
+        rootFolder.deleteRecursively()
+    }
+
+    private fun mavenize(name: String): File {
+        val mavenizedProjectFolder = File(rootFolder, "mavenized/${name}")
+        val srcMainFolder = File(teacherFolder, "src/main").absolutePath
+        workspaceBuilder.copyTeacherFiles(teacherFolder, mavenizedProjectFolder) {
+            !it.absolutePath.startsWith(srcMainFolder)
+        }
+        return mavenizedProjectFolder
+    }
+
+    @Test
+    fun testCopyTeacherFiles() {
+        val project1 = mavenize("project1")
+        val project2 = mavenize("project2")
+
+        assertEquals("<project/>", File(project1, "pom.xml").readText())
+        assertEquals("class TestTeacher {}", File(project2, "src/test/java/pt/TestTeacher.java").readText())
+        assertTrue(File(project1, "src/test/resources").isDirectory)
+        assertFalse(File(project1, "src/main").exists())
+
+        // a student's file replaces the teacher's file in that project only
+        val studentReadme = File(rootFolder, "README.md")
+        studentReadme.writeText("student readme")
+        workspaceBuilder.replaceFile(studentReadme, File(project1, "README.md"))
+        assertEquals("student readme", File(project1, "README.md").readText())
+        assertEquals("teacher readme", File(project2, "README.md").readText())
+    }
+
+    @Test
+    fun testBuildCantChangeTheTeacherFilesOfOtherProjects() {
+        val project1 = mavenize("project1")
+        val project2 = mavenize("project2")
+
+        // e.g., a student test that rewrites the teacher tests
+        File(project1, "src/test/java/pt/TestTeacher.java").writeText("class TestTeacher { /* always passes */ }")
+
+        assertEquals("class TestTeacher {}", File(project2, "src/test/java/pt/TestTeacher.java").readText())
+        assertEquals("class TestTeacher {}", File(teacherFolder, "src/test/java/pt/TestTeacher.java").readText())
+        assertEquals("class TestTeacher {}", File(mavenize("project3"), "src/test/java/pt/TestTeacher.java").readText())
+    }
+
+    @Test
+    fun testTeacherFileChanged() {
+        val project1 = mavenize("project1")
+
+        val pomFile = File(teacherFolder, "pom.xml")
+        pomFile.writeText("<project><version>2</version></project>")
+        val project2 = mavenize("project2")
+
+        assertEquals("<project><version>2</version></project>", File(project2, "pom.xml").readText())
+        // the project that was already mavenized keeps the previous version
+        assertEquals("<project/>", File(project1, "pom.xml").readText())
+    }
+
+    @Test
+    fun testMavenizeAgain() {
+        val project = mavenize("project1")
+        mavenize("project1")
+
+        assertEquals("<project/>", File(project, "pom.xml").readText())
+    }
+}
@@ -19,6 +19,8 @@
  */
 package org.dropproject.services
 
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
 import org.junit.Test
 import java.io.File
 
@@ -61,4 +63,27 @@ class TestZipService {
         fileToUnzip.delete()
     }
 
+    /**
+     * Tested function: ZipService.readEntry().
+     *
+     * Scenario: a file is read from a ZIP file, without unzipping it. The path of the file is case-sensitive.
+     */
+    @Test
+    fun testReadEntry() {
+        val subDirectory = File(System.getProperty("java.io.tmpdir"), "to-zip-" + System.currentTimeMillis())
+        File(subDirectory, "src").mkdirs()
+        File(subDirectory, "AUTHORS.txt").writeText("1;Student 1")
+        File(subDirectory, "src/Main.java").writeText("class Main {}")
+        val zippedFile = zipper.createZipFromFolder("zipped-file-", subDirectory)
+
+        assertEquals("1;Student 1", zipper.readEntry(zippedFile, "AUTHORS.txt")?.toString(Charsets.UTF_8))
+        assertEquals("class Main {}", zipper.readEntry(zippedFile, "src/Main.java")?.toString(Charsets.UTF_8))
+        assertNull(zipper.readEntry(zippedFile, "authors.txt"))
+        assertNull(zipper.readEntry(zippedFile, "src"))
+
+        // clean-up
+        subDirectory.deleteRecursively()
+        zippedFile.delete()
+    }
+
 }